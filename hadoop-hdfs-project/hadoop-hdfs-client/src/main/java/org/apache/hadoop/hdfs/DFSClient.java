@@ -99,6 +99,7 @@
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
 import org.apache.hadoop.hdfs.client.impl.LeaseRenewer;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.net.Peer;
 import org.apache.hadoop.hdfs.protocol.AclException;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
@@ -282,6 +283,16 @@ public DFSClient(URI nameNodeUri, Configuration conf,
     this(nameNodeUri, null, conf, stats);
   }
 
+  /**
+   * Wraps the proxy a DFSClient makes to NameNode, e.g. to throttle the
+   * calls. The wrapped proxy is stopped with {@link RPC#stopProxy(Object)}
+   * when the client is closed.
+   */
+  @InterfaceAudience.Private
+  public interface NameNodeProxyWrapper {
+    ClientProtocol wrap(ClientProtocol namenode);
+  }
+
   /**
    * Create a new DFSClient connected to the given nameNodeUri or rpcNamenode.
    * If HA is enabled and a positive value is set for
@@ -293,6 +304,25 @@ public DFSClient(URI nameNodeUri, Configuration conf,
   @VisibleForTesting
   public DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
       Configuration conf, FileSystem.Statistics stats) throws IOException {
+    this(nameNodeUri, rpcNamenode, conf, stats, null);
+  }
+
+  /**
+   * Create a new DFSClient connected to the given nameNodeUri, whose calls
+   * to NameNode go through the proxy returned by the wrapper. Delegation
+   * tokens and the key provider are resolved against nameNodeUri as usual.
+   */
+  @InterfaceAudience.Private
+  public DFSClient(URI nameNodeUri, Configuration conf,
+      FileSystem.Statistics stats, NameNodeProxyWrapper wrapper)
+      throws IOException {
+    this(nameNodeUri, null, conf, stats,
+        Preconditions.checkNotNull(wrapper));
+  }
+
+  private DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
+      Configuration conf, FileSystem.Statistics stats,
+      NameNodeProxyWrapper wrapper) throws IOException {
     // Copy only the required DFSClient configuration
     this.tracer = FsTracer.get(conf);
     this.dfsClientConf = new DfsClientConf(conf);
@@ -324,13 +354,14 @@ public DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
           nnFallbackToSimpleAuth);
     }
 
+    ClientProtocol proxy;
     if (proxyInfo != null) {
       this.dtService = proxyInfo.getDelegationTokenService();
-      this.namenode = proxyInfo.getProxy();
+      proxy = proxyInfo.getProxy();
     } else if (rpcNamenode != null) {
       // This case is used for testing.
       Preconditions.checkArgument(nameNodeUri == null);
-      this.namenode = rpcNamenode;
+      proxy = rpcNamenode;
       dtService = null;
     } else {
       Preconditions.checkArgument(nameNodeUri != null,
@@ -338,8 +369,9 @@ public DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
       proxyInfo = NameNodeProxiesClient.createProxyWithClientProtocol(conf,
           nameNodeUri, nnFallbackToSimpleAuth);
       this.dtService = proxyInfo.getDelegationTokenService();
-      this.namenode = proxyInfo.getProxy();
+      proxy = proxyInfo.getProxy();
     }
+    this.namenode = wrapper == null ? proxy : wrapper.wrap(proxy);
 
     String localInterfaces[] =
         conf.getTrimmedStrings(DFS_CLIENT_LOCAL_INTERFACES);
@@ -2791,6 +2823,17 @@ public DFSInotifyEventInputStream getInotifyEventStream(long lastReadTxid)
         lastReadTxid);
   }
 
+  /**
+   * Stream of the inotify events accepted by the filter, which is evaluated
+   * on the NameNode.
+   */
+  public DFSInotifyEventInputStream getInotifyEventStream(long lastReadTxid,
+      EventFilter filter) throws IOException {
+    checkOpen();
+    return new DFSInotifyEventInputStream(namenode, tracer,
+        lastReadTxid, filter);
+  }
+
   @Override // RemotePeerFactory
   public Peer newConnectedPeer(InetSocketAddress addr,
       Token<BlockTokenIdentifier> blockToken, DatanodeID datanodeId)
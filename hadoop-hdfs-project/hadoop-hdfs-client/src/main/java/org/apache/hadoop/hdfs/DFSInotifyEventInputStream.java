@@ -23,6 +23,7 @@
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.hdfs.inotify.EventBatch;
 import org.apache.hadoop.hdfs.inotify.EventBatchList;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.inotify.MissingEventsException;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.util.Time;
@@ -54,6 +55,10 @@ public class DFSInotifyEventInputStream {
    * determine how far behind we are in the edit stream.
    */
   private long syncTxid;
+  /**
+   * Events the NameNode should send us, null for all of them.
+   */
+  private final EventFilter filter;
   /**
    * Used to generate wait times in {@link DFSInotifyEventInputStream#take()}.
    */
@@ -71,7 +76,13 @@ public class DFSInotifyEventInputStream {
 
   DFSInotifyEventInputStream(ClientProtocol namenode, Tracer tracer,
       long lastReadTxid) {
+    this(namenode, tracer, lastReadTxid, null);
+  }
+
+  DFSInotifyEventInputStream(ClientProtocol namenode, Tracer tracer,
+      long lastReadTxid, EventFilter filter) {
     this.namenode = namenode;
+    this.filter = filter;
     this.it = Collections.emptyIterator();
     this.lastReadTxid = lastReadTxid;
     this.tracer = tracer;
@@ -102,7 +113,9 @@ public EventBatch poll() throws IOException, MissingEventsException {
         return null;
       }
       if (!it.hasNext()) {
-        EventBatchList el = namenode.getEditsFromTxid(lastReadTxid + 1);
+        EventBatchList el = filter == null
+            ? namenode.getEditsFromTxid(lastReadTxid + 1)
+            : namenode.getEditsFromTxid(lastReadTxid + 1, filter);
         if (el.getLastTxid() != -1) {
           // we only want to set syncTxid when we were actually able to read some
           // edits on the NN -- otherwise it will seem like edits are being
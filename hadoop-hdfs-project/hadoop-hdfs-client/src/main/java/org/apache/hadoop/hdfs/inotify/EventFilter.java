@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.inotify;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Restricts the inotify events sent to a reader to the given event types
+ * and to events under the given path prefixes. The filter is evaluated on
+ * the NameNode. An empty set of types or prefixes matches everything.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class EventFilter {
+  private final List<String> pathPrefixes;
+  private final EnumSet<Event.EventType> eventTypes;
+
+  public EventFilter(Collection<String> pathPrefixes,
+      Collection<Event.EventType> eventTypes) {
+    this.pathPrefixes = new ArrayList<>();
+    if (pathPrefixes != null) {
+      for (String prefix : pathPrefixes) {
+        // "/a/b/" and "/a/b" cover the same events
+        if (prefix.length() > 1 && prefix.endsWith("/")) {
+          prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        this.pathPrefixes.add(prefix);
+      }
+    }
+    this.eventTypes = eventTypes == null || eventTypes.isEmpty()
+        ? EnumSet.noneOf(Event.EventType.class)
+        : EnumSet.copyOf(eventTypes);
+  }
+
+  public List<String> getPathPrefixes() {
+    return Collections.unmodifiableList(pathPrefixes);
+  }
+
+  public EnumSet<Event.EventType> getEventTypes() {
+    return EnumSet.copyOf(eventTypes);
+  }
+
+  public boolean accept(Event event) {
+    if (!eventTypes.isEmpty() && !eventTypes.contains(event.getEventType())) {
+      return false;
+    }
+    if (pathPrefixes.isEmpty()) {
+      return true;
+    }
+    switch (event.getEventType()) {
+    case CREATE:
+      return underPrefix(((Event.CreateEvent) event).getPath());
+    case CLOSE:
+      return underPrefix(((Event.CloseEvent) event).getPath());
+    case APPEND:
+      return underPrefix(((Event.AppendEvent) event).getPath());
+    case RENAME:
+      // Moves into and out of a watched tree are both of interest
+      Event.RenameEvent re = (Event.RenameEvent) event;
+      return underPrefix(re.getSrcPath()) || underPrefix(re.getDstPath());
+    case METADATA:
+      return underPrefix(((Event.MetadataUpdateEvent) event).getPath());
+    case UNLINK:
+      return underPrefix(((Event.UnlinkEvent) event).getPath());
+    case TRUNCATE:
+      return underPrefix(((Event.TruncateEvent) event).getPath());
+    default:
+      return true;
+    }
+  }
+
+  /**
+   * @return the batch with only the accepted events, or null if none of
+   * its events are accepted
+   */
+  public EventBatch filter(EventBatch batch) {
+    Event[] events = batch.getEvents();
+    List<Event> accepted = null;
+    for (int i = 0; i < events.length; i++) {
+      if (accept(events[i])) {
+        if (accepted != null) {
+          accepted.add(events[i]);
+        }
+      } else if (accepted == null) {
+        accepted = new ArrayList<>(events.length);
+        for (int j = 0; j < i; j++) {
+          accepted.add(events[j]);
+        }
+      }
+    }
+    if (accepted == null) {
+      return batch;
+    }
+    return accepted.isEmpty() ? null
+        : new EventBatch(batch.getTxid(),
+            accepted.toArray(new Event[accepted.size()]));
+  }
+
+  private boolean underPrefix(String path) {
+    if (path == null) {
+      return false;
+    }
+    for (String prefix : pathPrefixes) {
+      if (prefix.equals("/") || path.equals(prefix)
+          || (path.startsWith(prefix)
+              && path.charAt(prefix.length()) == '/')) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "EventFilter{pathPrefixes=" + pathPrefixes
+        + ", eventTypes=" + eventTypes + "}";
+  }
+}
@@ -40,6 +40,7 @@
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.inotify.EventBatchList;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants.RollingUpgradeAction;
 import org.apache.hadoop.hdfs.security.token.block.DataEncryptionKey;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
@@ -1532,6 +1533,17 @@ List<XAttr> listXAttrs(String src)
   @Idempotent
   EventBatchList getEditsFromTxid(long txid) throws IOException;
 
+  /**
+   * Like {@link #getEditsFromTxid(long)}, but only returns the events
+   * accepted by the filter. Batches without accepted events are left out,
+   * the returned txid range still covers them.
+   *
+   * @param filter evaluated on the NameNode, null to return all events
+   */
+  @Idempotent
+  EventBatchList getEditsFromTxid(long txid, EventFilter filter)
+      throws IOException;
+
   /**
    * Set an erasure coding policy on a specified path.
    * @param src The path to set policy on.
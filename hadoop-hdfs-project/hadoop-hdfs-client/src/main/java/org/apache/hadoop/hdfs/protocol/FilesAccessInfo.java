@@ -19,20 +19,36 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class FilesAccessInfo {
   private List<FileAccessEvent> fileAccessEvents;
+  private List<FileReadVolume> fileReadVolumes;
 
   public FilesAccessInfo(FileAccessEvent[] events) {
     this(Arrays.asList(events));
   }
 
   public FilesAccessInfo(List<FileAccessEvent> events) {
+    this(events, Collections.<FileReadVolume>emptyList());
+  }
+
+  public FilesAccessInfo(List<FileAccessEvent> events,
+      List<FileReadVolume> readVolumes) {
     this.fileAccessEvents = new ArrayList<>(events);
+    this.fileReadVolumes = new ArrayList<>(readVolumes);
   }
 
   public List<FileAccessEvent> getFileAccessEvents() {
     return fileAccessEvents;
   }
+
+  /**
+   * @return reads served by DataNodes per file since the previous call,
+   * empty unless DataNodes report block reads.
+   */
+  public List<FileReadVolume> getFileReadVolumes() {
+    return fileReadVolumes;
+  }
 }
@@ -17,9 +17,25 @@
  */
 package org.apache.hadoop.hdfs.protocol;
 
-import java.util.LinkedList;
+import com.google.common.primitives.Booleans;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Shorts;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Attributes of a batch of files, stored column by column.
+ *
+ * Each attribute requested is kept in a primitive array, so that the
+ * attributes of many files cost a few large allocations. Only the columns of
+ * the attributes requested are allocated. The arrays returned by the
+ * array accessors are backing arrays which may be longer than
+ * {@link #size()}.
+ */
 public class FilesInfo {
   public static final int LENGTH = 0x1;
   public static final int ISDIR = 0x2;
@@ -36,225 +52,271 @@ public class FilesInfo {
 
   public static final int ALL = (STORAGEPOLICY << 1) - 1;
 
-  private List<String> allPaths;
-  //private final byte[] path;
-  //private final byte[] symlink; // symlink target encoded in java UTF8 or null
-  private List<Long> length;
-  private List<Boolean> isdir;
-  private List<Short> blockReplication;
-  private List<Long> blockSize;
-  private List<Long> modificationTime;
-  private List<Long> accessTime;
-  //private final FsPermission permission;
-  private List<String> owner;
-  private List<String> group;
-  private List<Long> fileId;
-  //private final FileEncryptionInfo feInfo;
-  //private final ErasureCodingPolicy ecPolicy;
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final int vaildItems;
+  private int size = 0;
+
+  private String[] allPaths;
+  private long[] length;
+  private boolean[] isdir;
+  private short[] blockReplication;
+  private long[] blockSize;
+  private long[] modificationTime;
+  private long[] accessTime;
+  private String[] owner;
+  private String[] group;
+  private long[] fileId;
   // Used by dir, not including dot and dotdot. Always zero for a regular file.
-  private List<Integer> childrenNum;
-  private List<Byte> storagePolicy;
+  private int[] childrenNum;
+  private byte[] storagePolicy;
 
-  public List<String> getAllPaths() {
-    return allPaths;
+  public FilesInfo(int itemTypes) {
+    this(itemTypes, DEFAULT_CAPACITY);
   }
 
-  public void setAllPaths(List<String> allPaths) {
-    this.allPaths = allPaths;
+  public FilesInfo(int itemTypes, int capacity) {
+    vaildItems = itemTypes;
+    allocate(Math.max(capacity, 1));
   }
 
-  public List<Long> getLength() {
-    return length;
+  private void allocate(int capacity) {
+    allPaths = allPaths == null ? new String[capacity]
+        : Arrays.copyOf(allPaths, capacity);
+    if (isValid(LENGTH)) {
+      length = length == null ? new long[capacity]
+          : Arrays.copyOf(length, capacity);
+    }
+    if (isValid(ISDIR)) {
+      isdir = isdir == null ? new boolean[capacity]
+          : Arrays.copyOf(isdir, capacity);
+    }
+    if (isValid(BLOCK_REPLICATION)) {
+      blockReplication = blockReplication == null ? new short[capacity]
+          : Arrays.copyOf(blockReplication, capacity);
+    }
+    if (isValid(BLOCK_SIZE)) {
+      blockSize = blockSize == null ? new long[capacity]
+          : Arrays.copyOf(blockSize, capacity);
+    }
+    if (isValid(MODIFICATION_TIME)) {
+      modificationTime = modificationTime == null ? new long[capacity]
+          : Arrays.copyOf(modificationTime, capacity);
+    }
+    if (isValid(ACCESS_TIME)) {
+      accessTime = accessTime == null ? new long[capacity]
+          : Arrays.copyOf(accessTime, capacity);
+    }
+    if (isValid(OWNER)) {
+      owner = owner == null ? new String[capacity]
+          : Arrays.copyOf(owner, capacity);
+    }
+    if (isValid(GROUP)) {
+      group = group == null ? new String[capacity]
+          : Arrays.copyOf(group, capacity);
+    }
+    if (isValid(FILEID)) {
+      fileId = fileId == null ? new long[capacity]
+          : Arrays.copyOf(fileId, capacity);
+    }
+    if (isValid(CHILDRENNUM)) {
+      childrenNum = childrenNum == null ? new int[capacity]
+          : Arrays.copyOf(childrenNum, capacity);
+    }
+    if (isValid(STORAGEPOLICY)) {
+      storagePolicy = storagePolicy == null ? new byte[capacity]
+          : Arrays.copyOf(storagePolicy, capacity);
+    }
   }
 
-  public void setLength(List<Long> length) {
-    this.length = length;
+  private void ensureCapacity(int capacity) {
+    if (capacity > allPaths.length) {
+      allocate(Math.max(capacity, allPaths.length * 2));
+    }
   }
 
-  public List<Boolean> getIsdir() {
-    return isdir;
+  /**
+   * @return number of files.
+   */
+  public int size() {
+    return size;
   }
 
-  public void setIsdir(List<Boolean> isdir) {
-    this.isdir = isdir;
+  /**
+   * Set the number of files, growing the columns if needed. Used to fill
+   * the columns directly through the array accessors.
+   */
+  public void setSize(int newSize) {
+    ensureCapacity(newSize);
+    size = newSize;
   }
 
-  public List<Short> getBlockReplication() {
-    return blockReplication;
+  /**
+   * Append a file, its attributes are then set by
+   * {@link #addValue(int, HdfsFileStatus)}.
+   */
+  public void addPath(String p) {
+    ensureCapacity(size + 1);
+    allPaths[size++] = p;
   }
 
-  public void setBlockReplication(List<Short> blockReplication) {
-    this.blockReplication = blockReplication;
+  /**
+   * Set attributes of the file added last.
+   */
+  public void addValue(int types, HdfsFileStatus fileStatus) {
+    int i = size - 1;
+    types &= vaildItems;
+    if ((types & LENGTH) != 0) {
+      length[i] = fileStatus.getLen();
+    }
+    if ((types & ISDIR) != 0) {
+      isdir[i] = fileStatus.isDir();
+    }
+    if ((types & BLOCK_REPLICATION) != 0) {
+      blockReplication[i] = fileStatus.getReplication();
+    }
+    if ((types & BLOCK_SIZE) != 0) {
+      blockSize[i] = fileStatus.getBlockSize();
+    }
+    if ((types & MODIFICATION_TIME) != 0) {
+      modificationTime[i] = fileStatus.getModificationTime();
+    }
+    if ((types & ACCESS_TIME) != 0) {
+      accessTime[i] = fileStatus.getAccessTime();
+    }
+    if ((types & OWNER) != 0) {
+      owner[i] = fileStatus.getOwner();
+    }
+    if ((types & GROUP) != 0) {
+      group[i] = fileStatus.getGroup();
+    }
+    if ((types & FILEID) != 0) {
+      fileId[i] = fileStatus.getFileId();
+    }
+    if ((types & CHILDRENNUM) != 0) {
+      childrenNum[i] = fileStatus.getChildrenNum();
+    }
+    if ((types & STORAGEPOLICY) != 0) {
+      storagePolicy[i] = fileStatus.getStoragePolicy();
+    }
   }
 
-  public List<Long> getBlocksize() {
-    return blockSize;
+  public String getPath(int i) {
+    return allPaths[i];
   }
 
-  public void setBlocksize(List<Long> blockSize) {
-    this.blockSize = blockSize;
+  public void setPath(int i, String p) {
+    allPaths[i] = p;
   }
 
-  public void setModificationTime(List<Long> modificationTime) {
-    this.modificationTime = modificationTime;
+  public String[] getPaths() {
+    return allPaths;
   }
 
-  public List<Long> getModificationTime() {
-    return modificationTime;
+  public long[] getLengths() {
+    return length;
   }
 
-  public void setAccessTime(List<Long> accessTime) {
-    this.accessTime = accessTime;
+  public boolean[] getIsdirs() {
+    return isdir;
   }
 
-  public List<Long> getAccessTime() {
-    return accessTime;
+  public short[] getBlockReplications() {
+    return blockReplication;
   }
 
-  public void setOwner(List<String> owner) {
-    this.owner = owner;
+  public long[] getBlocksizes() {
+    return blockSize;
   }
 
-  public List<String> getOwner() {
-    return owner;
+  public long[] getModificationTimes() {
+    return modificationTime;
   }
 
-  public void setGroup(List<String> group) {
-    this.group = group;
+  public long[] getAccessTimes() {
+    return accessTime;
   }
 
-  public List<String> getGroup() {
-    return group;
+  public String[] getOwners() {
+    return owner;
   }
 
-  public void setFileId(List<Long> fileId) {
-    this.fileId = fileId;
+  public String[] getGroups() {
+    return group;
   }
 
-  public List<Long> getFileId() {
+  public long[] getFileIds() {
     return fileId;
   }
 
-  public List<Integer> getChildrenNum() {
+  public int[] getChildrenNums() {
     return childrenNum;
   }
 
-  public void setChildrenNum(List<Integer> childrenNum) {
-    this.childrenNum = childrenNum;
+  public byte[] getStoragePolicies() {
+    return storagePolicy;
   }
 
-  public List<Byte> getStoragePolicy() {
-    return storagePolicy;
+  // List views over the columns, nothing is copied. Views of the
+  // attributes not requested are empty.
+
+  public List<String> getAllPaths() {
+    return Arrays.asList(allPaths).subList(0, size);
   }
 
-  public void setStoragePolicy(List<Byte> storagePolicy) {
-    this.storagePolicy = storagePolicy;
+  public List<Long> getLength() {
+    return length == null ? Collections.<Long>emptyList()
+        : Longs.asList(length).subList(0, size);
   }
 
-  private int vaildItems = 0;
+  public List<Boolean> getIsdir() {
+    return isdir == null ? Collections.<Boolean>emptyList()
+        : Booleans.asList(isdir).subList(0, size);
+  }
 
-  public FilesInfo(int itemTypes) {
-    vaildItems = itemTypes;
-    allPaths = new LinkedList<>();
+  public List<Short> getBlockReplication() {
+    return blockReplication == null ? Collections.<Short>emptyList()
+        : Shorts.asList(blockReplication).subList(0, size);
+  }
 
-    this.length = new LinkedList<>();
-    this.isdir = new LinkedList<>();
-    this.blockReplication = new LinkedList<>();
-    this.blockSize = new LinkedList<>();
-    this.modificationTime = new LinkedList<>();
-    this.accessTime = new LinkedList<>();
-    this.owner = new LinkedList<>();
-    this.group = new LinkedList<>();
-    this.fileId = new LinkedList<>();
-    this.childrenNum = new LinkedList<>();
-    this.storagePolicy = new LinkedList<>();
+  public List<Long> getBlocksize() {
+    return blockSize == null ? Collections.<Long>emptyList()
+        : Longs.asList(blockSize).subList(0, size);
   }
 
-  public void addPath(String p) {
-    allPaths.add(p);
-  }
-
-  private void doAddValue(int type, Object value) {
-    switch (type) {
-      case LENGTH:
-        length.add((Long)value);
-        break;
-      case ISDIR:
-        isdir.add((Boolean)value);
-        break;
-      case BLOCK_REPLICATION:
-        blockReplication.add((Short)value);
-        break;
-      case BLOCK_SIZE:
-        blockSize.add((Long)value);
-        break;
-      case MODIFICATION_TIME:
-        modificationTime.add((Long)value);
-        break;
-      case ACCESS_TIME:
-        accessTime.add((Long)value);
-        break;
-      case OWNER:
-        owner.add((String)value);
-        break;
-      case GROUP:
-        group.add((String)value);
-        break;
-      case FILEID:
-        fileId.add((Long)value);
-        break;
-      case CHILDRENNUM:
-        childrenNum.add((Integer)value);
-        break;
-      case STORAGEPOLICY:
-        storagePolicy.add((Byte)value);
-        break;
-    }
+  public List<Long> getModificationTime() {
+    return modificationTime == null ? Collections.<Long>emptyList()
+        : Longs.asList(modificationTime).subList(0, size);
   }
 
-  public void addValue(int types, HdfsFileStatus fileStatus) {
-    for (int i = 0; i < 32; i++) {
-      int type = types & (1 << i);
-      if (type == 0) {
-        continue;
-      }
-
-      switch (type) {
-        case LENGTH:
-          length.add(fileStatus.getLen());
-          break;
-        case ISDIR:
-          isdir.add(fileStatus.isDir());
-          break;
-        case BLOCK_REPLICATION:
-          blockReplication.add(fileStatus.getReplication());
-          break;
-        case BLOCK_SIZE:
-          blockSize.add(fileStatus.getBlockSize());
-          break;
-        case MODIFICATION_TIME:
-          modificationTime.add(fileStatus.getModificationTime());
-          break;
-        case ACCESS_TIME:
-          accessTime.add(fileStatus.getAccessTime());
-          break;
-        case OWNER:
-          owner.add(fileStatus.getOwner());
-          break;
-        case GROUP:
-          group.add(fileStatus.getGroup());
-          break;
-        case FILEID:
-          fileId.add(fileStatus.getFileId());
-          break;
-        case CHILDRENNUM:
-          childrenNum.add(fileStatus.getChildrenNum());
-          break;
-        case STORAGEPOLICY:
-          storagePolicy.add(fileStatus.getStoragePolicy());
-          break;
-      }
-    }
+  public List<Long> getAccessTime() {
+    return accessTime == null ? Collections.<Long>emptyList()
+        : Longs.asList(accessTime).subList(0, size);
+  }
+
+  public List<String> getOwner() {
+    return owner == null ? Collections.<String>emptyList()
+        : Arrays.asList(owner).subList(0, size);
+  }
+
+  public List<String> getGroup() {
+    return group == null ? Collections.<String>emptyList()
+        : Arrays.asList(group).subList(0, size);
+  }
+
+  public List<Long> getFileId() {
+    return fileId == null ? Collections.<Long>emptyList()
+        : Longs.asList(fileId).subList(0, size);
+  }
+
+  public List<Integer> getChildrenNum() {
+    return childrenNum == null ? Collections.<Integer>emptyList()
+        : Ints.asList(childrenNum).subList(0, size);
+  }
+
+  public List<Byte> getStoragePolicy() {
+    return storagePolicy == null ? Collections.<Byte>emptyList()
+        : Bytes.asList(storagePolicy).subList(0, size);
   }
 
   public boolean isValid(int toTest) {
@@ -21,7 +21,6 @@
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.EnumSet;
-import java.util.LinkedList;
 import java.util.List;
 
 import com.google.common.collect.Lists;
@@ -48,6 +47,7 @@
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.AddBlockFlag;
 import org.apache.hadoop.hdfs.inotify.EventBatchList;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
@@ -265,13 +265,9 @@ public FilesInfo getFilesInfo(String[] filePaths, int infoType,
     if(filePaths == null || filePaths.length == 0) {
       return null;
     }
-    List<String> fps = new LinkedList<>();
-    for (String f : filePaths) {
-      fps.add(f);
-    }
     GetFilesInfoRequestProto req = GetFilesInfoRequestProto
         .newBuilder()
-        .addAllFilePaths(fps)
+        .addAllFilePaths(Arrays.asList(filePaths))
         .setInfoType(infoType)
         .setExpandDir(expandDir)
         .setIncludeDir(includeDir)
@@ -1661,8 +1657,18 @@ public long getCurrentEditLogTxid() throws IOException {
 
   @Override
   public EventBatchList getEditsFromTxid(long txid) throws IOException {
-    GetEditsFromTxidRequestProto req = GetEditsFromTxidRequestProto.newBuilder()
-        .setTxid(txid).build();
+    return getEditsFromTxid(txid, null);
+  }
+
+  @Override
+  public EventBatchList getEditsFromTxid(long txid, EventFilter filter)
+      throws IOException {
+    GetEditsFromTxidRequestProto.Builder builder =
+        GetEditsFromTxidRequestProto.newBuilder().setTxid(txid);
+    if (filter != null) {
+      builder.setFilter(PBHelperClient.convert(filter));
+    }
+    GetEditsFromTxidRequestProto req = builder.build();
     try {
       return PBHelperClient.convert(rpcProxy.getEditsFromTxid(null, req));
     } catch (ServiceException e) {
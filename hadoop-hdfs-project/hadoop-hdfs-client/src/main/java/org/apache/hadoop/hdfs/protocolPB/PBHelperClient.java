@@ -24,7 +24,6 @@
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,6 +58,7 @@
 import org.apache.hadoop.hdfs.inotify.Event;
 import org.apache.hadoop.hdfs.inotify.EventBatch;
 import org.apache.hadoop.hdfs.inotify.EventBatchList;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
 import org.apache.hadoop.hdfs.protocol.BlockType;
@@ -80,6 +80,7 @@
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.hdfs.protocol.FileReadVolume;
 import org.apache.hadoop.hdfs.protocol.FilesAccessInfo;
 import org.apache.hadoop.hdfs.protocol.FilesInfo;
 import org.apache.hadoop.hdfs.protocol.FsPermissionExtension;
@@ -148,6 +149,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.ErasureCodingPolicyProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.FilesAccessInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.FilesInfoProto;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.PathColumnsProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.FsPermissionProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.FsServerDefaultsProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.HdfsFileStatusProto;
@@ -206,6 +208,8 @@ public class PBHelperClient {
       AclEntryScope.values();
   private static final FsAction[] FSACTION_VALUES =
       FsAction.values();
+  // User index of a file access event with no user
+  private static final int NO_USER = -1;
 
   private PBHelperClient() {
     /** Hidden constructor */
@@ -742,87 +746,221 @@ public static NNEventProto convert(NNEvent event) {
     return builder.build();
   }
 
+  /**
+   * Split paths after their last '/', sending each parent once.
+   */
+  private static PathColumnsProto convertPaths(String[] paths, int size) {
+    PathColumnsProto.Builder builder = PathColumnsProto.newBuilder();
+    Map<String, Integer> parents = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      String path = paths[i];
+      int split = path.lastIndexOf(Path.SEPARATOR_CHAR) + 1;
+      String parent = path.substring(0, split);
+      Integer index = parents.get(parent);
+      if (index == null) {
+        index = parents.size();
+        parents.put(parent, index);
+        builder.addParents(parent);
+      }
+      builder.addParentIndex(index);
+      builder.addNames(path.substring(split));
+    }
+    return builder.build();
+  }
+
+  private static String[] convertPaths(PathColumnsProto proto) {
+    String[] paths = new String[proto.getNamesCount()];
+    for (int i = 0; i < paths.length; i++) {
+      paths[i] = proto.getParents(proto.getParentIndex(i))
+          .concat(proto.getNames(i));
+    }
+    return paths;
+  }
+
+  private static int indexOf(Map<String, Integer> dict, List<String> names,
+      String name) {
+    Integer index = dict.get(name);
+    if (index == null) {
+      index = names.size();
+      dict.put(name, index);
+      names.add(name);
+    }
+    return index;
+  }
+
+  // FilesInfoProto
   public static FilesInfo convert(FilesInfoProto proto) {
-    FilesInfo info = new FilesInfo(proto.getVaildItems());
-    info.setAccessTime(proto.getAccessTimeList());
-    info.setAllPaths(proto.getAllPathsList());
-    List<Short> reps = null;
-    List<Integer> ints = proto.getBlockReplicationList();
-    if (ints != null) {
-      reps = new LinkedList<>();
-      for (Integer s : ints) {
-        reps.add(s.shortValue());
+    String[] paths = convertPaths(proto.getPaths());
+    int n = paths.length;
+    FilesInfo info = new FilesInfo(proto.getVaildItems(), n);
+    info.setSize(n);
+    System.arraycopy(paths, 0, info.getPaths(), 0, n);
+    if (info.isValid(FilesInfo.LENGTH)) {
+      long[] length = info.getLengths();
+      for (int i = 0; i < n; i++) {
+        length[i] = proto.getLength(i);
+      }
+    }
+    if (info.isValid(FilesInfo.ISDIR)) {
+      boolean[] isdir = info.getIsdirs();
+      for (int i = 0; i < n; i++) {
+        isdir[i] = proto.getIsdir(i);
+      }
+    }
+    if (info.isValid(FilesInfo.BLOCK_REPLICATION)) {
+      short[] replication = info.getBlockReplications();
+      for (int i = 0; i < n; i++) {
+        replication[i] = (short) proto.getBlockReplication(i);
+      }
+    }
+    if (info.isValid(FilesInfo.BLOCK_SIZE)) {
+      long[] blockSize = info.getBlocksizes();
+      for (int i = 0; i < n; i++) {
+        blockSize[i] = proto.getBlockSize(i);
+      }
+    }
+    if (info.isValid(FilesInfo.MODIFICATION_TIME)) {
+      long[] mtime = info.getModificationTimes();
+      for (int i = 0; i < n; i++) {
+        mtime[i] = proto.getModificationTime(i);
+      }
+    }
+    if (info.isValid(FilesInfo.ACCESS_TIME)) {
+      long[] atime = info.getAccessTimes();
+      for (int i = 0; i < n; i++) {
+        atime[i] = proto.getAccessTime(i);
+      }
+    }
+    if (info.isValid(FilesInfo.OWNER)) {
+      String[] owner = info.getOwners();
+      for (int i = 0; i < n; i++) {
+        owner[i] = proto.getUserNames(proto.getOwner(i));
+      }
+    }
+    if (info.isValid(FilesInfo.GROUP)) {
+      String[] group = info.getGroups();
+      for (int i = 0; i < n; i++) {
+        group[i] = proto.getUserNames(proto.getGroup(i));
+      }
+    }
+    if (info.isValid(FilesInfo.FILEID)) {
+      long[] fileId = info.getFileIds();
+      for (int i = 0; i < n; i++) {
+        fileId[i] = proto.getFileId(i);
+      }
+    }
+    if (info.isValid(FilesInfo.CHILDRENNUM)) {
+      int[] childrenNum = info.getChildrenNums();
+      for (int i = 0; i < n; i++) {
+        childrenNum[i] = proto.getChildrenNum(i);
       }
     }
-    info.setBlockReplication(reps);
-    info.setBlocksize(proto.getBlockSizeList());
-    info.setChildrenNum(proto.getChildrenNumList());
-    info.setFileId(proto.getFileIdList());
-    info.setLength(proto.getLengthList());
-    info.setGroup(proto.getGroupsList());
-    info.setOwner(proto.getOwnerList());
-    info.setIsdir(proto.getIsdirList());
-    info.setModificationTime(proto.getModificationTimeList());
-    List<Byte> origPolicy = null;
-    List<Integer> tranPolicy = proto.getStoragePolicyList();
-    if (tranPolicy != null) {
-      origPolicy = new LinkedList<>();
-      for (Integer s : tranPolicy) {
-        origPolicy.add(s.byteValue());
+    if (info.isValid(FilesInfo.STORAGEPOLICY)) {
+      byte[] policy = info.getStoragePolicies();
+      for (int i = 0; i < n; i++) {
+        policy[i] = (byte) proto.getStoragePolicy(i);
       }
     }
-    info.setStoragePolicy(origPolicy);
     return info;
   }
 
   public static FilesInfoProto convert(FilesInfo info) {
-    FilesInfoProto.Builder builder = FilesInfoProto.newBuilder();
-    builder.setVaildItems(info.getVaildItems());
-    builder.addAllAccessTime(info.getAccessTime());
-    builder.addAllAllPaths(info.getAllPaths());
-    List<Short> reps = info.getBlockReplication();
-    List<Integer> ints = null;
-    if (reps != null) {
-      ints = new LinkedList<>();
-      for (Short s : reps) {
-        ints.add(s.intValue());
+    int n = info.size();
+    FilesInfoProto.Builder builder = FilesInfoProto.newBuilder()
+        .setVaildItems(info.getVaildItems())
+        .setPaths(convertPaths(info.getPaths(), n));
+    if (info.isValid(FilesInfo.LENGTH)) {
+      long[] length = info.getLengths();
+      for (int i = 0; i < n; i++) {
+        builder.addLength(length[i]);
       }
     }
-    builder.addAllBlockReplication(ints);
-    builder.addAllBlockSize(info.getBlocksize());
-    builder.addAllChildrenNum(info.getChildrenNum());
-    builder.addAllFileId(info.getFileId());
-    builder.addAllLength(info.getLength());
-    builder.addAllGroups(info.getGroup());
-    builder.addAllOwner(info.getOwner());
-    builder.addAllIsdir(info.getIsdir());
-    builder.addAllModificationTime(info.getModificationTime());
-    List<Byte> origPolicy = info.getStoragePolicy();
-    List<Integer> tranPolicy = null;
-    if (origPolicy != null) {
-      tranPolicy = new LinkedList<>();
-      for (Byte s : origPolicy) {
-        tranPolicy.add(s.intValue());
+    if (info.isValid(FilesInfo.ISDIR)) {
+      boolean[] isdir = info.getIsdirs();
+      for (int i = 0; i < n; i++) {
+        builder.addIsdir(isdir[i]);
+      }
+    }
+    if (info.isValid(FilesInfo.BLOCK_REPLICATION)) {
+      short[] replication = info.getBlockReplications();
+      for (int i = 0; i < n; i++) {
+        builder.addBlockReplication(replication[i]);
+      }
+    }
+    if (info.isValid(FilesInfo.BLOCK_SIZE)) {
+      long[] blockSize = info.getBlocksizes();
+      for (int i = 0; i < n; i++) {
+        builder.addBlockSize(blockSize[i]);
+      }
+    }
+    if (info.isValid(FilesInfo.MODIFICATION_TIME)) {
+      long[] mtime = info.getModificationTimes();
+      for (int i = 0; i < n; i++) {
+        builder.addModificationTime(mtime[i]);
+      }
+    }
+    if (info.isValid(FilesInfo.ACCESS_TIME)) {
+      long[] atime = info.getAccessTimes();
+      for (int i = 0; i < n; i++) {
+        builder.addAccessTime(atime[i]);
+      }
+    }
+    Map<String, Integer> userDict = new HashMap<>();
+    List<String> userNames = new ArrayList<>();
+    if (info.isValid(FilesInfo.OWNER)) {
+      String[] owner = info.getOwners();
+      for (int i = 0; i < n; i++) {
+        builder.addOwner(indexOf(userDict, userNames, owner[i]));
+      }
+    }
+    if (info.isValid(FilesInfo.GROUP)) {
+      String[] group = info.getGroups();
+      for (int i = 0; i < n; i++) {
+        builder.addGroup(indexOf(userDict, userNames, group[i]));
+      }
+    }
+    builder.addAllUserNames(userNames);
+    if (info.isValid(FilesInfo.FILEID)) {
+      long[] fileId = info.getFileIds();
+      for (int i = 0; i < n; i++) {
+        builder.addFileId(fileId[i]);
+      }
+    }
+    if (info.isValid(FilesInfo.CHILDRENNUM)) {
+      int[] childrenNum = info.getChildrenNums();
+      for (int i = 0; i < n; i++) {
+        builder.addChildrenNum(childrenNum[i]);
+      }
+    }
+    if (info.isValid(FilesInfo.STORAGEPOLICY)) {
+      byte[] policy = info.getStoragePolicies();
+      for (int i = 0; i < n; i++) {
+        builder.addStoragePolicy(policy[i]);
       }
     }
-    builder.addAllStoragePolicy(tranPolicy);
     return builder.build();
   }
 
   // FilesAccessInfoProto
   public static FilesAccessInfo convert(FilesAccessInfoProto proto) {
-    List<HdfsProtos.FileAccessEventProto> protos = proto.getAccessEventsList();
-    List<FileAccessEvent> events = new ArrayList<>(protos.size());
-    for(HdfsProtos.FileAccessEventProto eventProto : protos) {
-      if (eventProto.hasUser()) {
-        events.add(new FileAccessEvent(eventProto.getPath(),
-          eventProto.getUser(), eventProto.getTimestamp()));
-      } else {
-        events.add(new FileAccessEvent(eventProto.getPath(),
-          eventProto.getTimestamp()));
-      }
-    }
-    return new FilesAccessInfo(events);
+    // Events of one path share the same String
+    String[] paths = convertPaths(proto.getPaths());
+    int numEvents = proto.getEventPathCount();
+    List<FileAccessEvent> events = new ArrayList<>(numEvents);
+    long timestamp = 0;
+    for (int i = 0; i < numEvents; i++) {
+      timestamp += proto.getEventTimeDelta(i);
+      int user = proto.getEventUser(i);
+      events.add(new FileAccessEvent(paths[proto.getEventPath(i)],
+          user == NO_USER ? null : proto.getUsers(user), timestamp));
+    }
+    int numVolumes = proto.getVolumePathCount();
+    List<FileReadVolume> volumes = new ArrayList<>(numVolumes);
+    for (int i = 0; i < numVolumes; i++) {
+      volumes.add(new FileReadVolume(paths[proto.getVolumePath(i)],
+          proto.getVolumeNumReads(i), proto.getVolumeBytesRead(i)));
+    }
+    return new FilesAccessInfo(events, volumes);
   }
 
   public static FilesAccessInfoProto convert(FilesAccessInfo info) {
@@ -831,20 +969,32 @@ public static FilesAccessInfoProto convert(FilesAccessInfo info) {
     }
 
     FilesAccessInfoProto.Builder builder = FilesAccessInfoProto.newBuilder();
+    Map<String, Integer> pathDict = new HashMap<>();
+    List<String> paths = new ArrayList<>();
+    Map<String, Integer> userDict = new HashMap<>();
+    List<String> users = new ArrayList<>();
     List<FileAccessEvent> events = info.getFileAccessEvents();
-    List<HdfsProtos.FileAccessEventProto> eventsProto = new ArrayList<>();
     if (events != null) {
+      long last = 0;
       for (FileAccessEvent event : events) {
-        HdfsProtos.FileAccessEventProto.Builder eventBuilder =
-          HdfsProtos.FileAccessEventProto.newBuilder();
-        eventBuilder.setPath(event.getPath()).setTimestamp(event.getTimestamp());
-        if (event.getUser() != null) {
-          eventBuilder.setUser(event.getUser());
-        }
-        eventsProto.add(eventBuilder.build());
+        builder.addEventPath(indexOf(pathDict, paths, event.getPath()));
+        builder.addEventUser(event.getUser() == null ? NO_USER
+            : indexOf(userDict, users, event.getUser()));
+        builder.addEventTimeDelta(event.getTimestamp() - last);
+        last = event.getTimestamp();
+      }
+    }
+    List<FileReadVolume> volumes = info.getFileReadVolumes();
+    if (volumes != null) {
+      for (FileReadVolume volume : volumes) {
+        builder.addVolumePath(indexOf(pathDict, paths, volume.getPath()));
+        builder.addVolumeNumReads(volume.getNumReads());
+        builder.addVolumeBytesRead(volume.getBytesRead());
       }
     }
-    builder.addAllAccessEvents(eventsProto);
+    builder.setPaths(convertPaths(paths.toArray(new String[paths.size()]),
+        paths.size()));
+    builder.addAllUsers(users);
     return builder.build();
   }
 
@@ -2684,6 +2834,26 @@ public static GetEditsFromTxidResponseProto convertEditsResponse(
         builder.build()).build();
   }
 
+  public static InotifyProtos.EventFilterProto convert(EventFilter filter) {
+    InotifyProtos.EventFilterProto.Builder builder =
+        InotifyProtos.EventFilterProto.newBuilder()
+            .addAllPathPrefixes(filter.getPathPrefixes());
+    for (Event.EventType type : filter.getEventTypes()) {
+      builder.addEventTypes(
+          InotifyProtos.EventType.valueOf("EVENT_" + type.name()));
+    }
+    return builder.build();
+  }
+
+  public static EventFilter convert(InotifyProtos.EventFilterProto proto) {
+    List<Event.EventType> types = Lists.newArrayList();
+    for (InotifyProtos.EventType type : proto.getEventTypesList()) {
+      types.add(Event.EventType.valueOf(
+          type.name().substring("EVENT_".length())));
+    }
+    return new EventFilter(proto.getPathPrefixesList(), types);
+  }
+
   public static CryptoProtocolVersion[] convertCryptoProtocolVersions(
       List<CryptoProtocolVersionProto> protos) {
     List<CryptoProtocolVersion> versions =
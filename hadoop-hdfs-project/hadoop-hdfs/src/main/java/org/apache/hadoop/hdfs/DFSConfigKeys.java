@@ -106,6 +106,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean DFS_DATANODE_SYNC_BEHIND_WRITES_IN_BACKGROUND_DEFAULT = false;
   public static final String  DFS_DATANODE_DROP_CACHE_BEHIND_READS_KEY = "dfs.datanode.drop.cache.behind.reads";
   public static final boolean DFS_DATANODE_DROP_CACHE_BEHIND_READS_DEFAULT = false;
+  public static final String  DFS_DATANODE_BLOCK_READ_REPORT_ENABLED_KEY = "dfs.datanode.block.read.report.enabled";
+  public static final boolean DFS_DATANODE_BLOCK_READ_REPORT_ENABLED_DEFAULT = false;
+  public static final String  DFS_DATANODE_BLOCK_READ_REPORT_MAX_BLOCKS_KEY = "dfs.datanode.block.read.report.max.blocks";
+  public static final int     DFS_DATANODE_BLOCK_READ_REPORT_MAX_BLOCKS_DEFAULT = 100000;
+  public static final String  DFS_NAMENODE_BLOCK_READ_REPORT_MAX_PENDING_KEY = "dfs.namenode.block.read.report.max.pending";
+  public static final int     DFS_NAMENODE_BLOCK_READ_REPORT_MAX_PENDING_DEFAULT = 1000000;
   public static final String  DFS_DATANODE_USE_DN_HOSTNAME = "dfs.datanode.use.datanode.hostname";
   public static final boolean DFS_DATANODE_USE_DN_HOSTNAME_DEFAULT = false;
   public static final String  DFS_DATANODE_MAX_LOCKED_MEMORY_KEY = "dfs.datanode.max.locked.memory";
@@ -347,6 +353,15 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS =
       "dfs.namenode.path.based.cache.refresh.interval.ms";
   public static final long    DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS_DEFAULT = 30000L;
+  public static final String  DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_ENABLED =
+      "dfs.namenode.path.based.cache.incremental.rescan.enabled";
+  public static final boolean DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_ENABLED_DEFAULT = false;
+  public static final String  DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_CHUNK_SIZE =
+      "dfs.namenode.path.based.cache.incremental.rescan.chunk.size";
+  public static final int     DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_CHUNK_SIZE_DEFAULT = 1000;
+  public static final String  DFS_NAMENODE_PATH_BASED_CACHE_FULL_RESCAN_INTERVAL_MS =
+      "dfs.namenode.path.based.cache.full.rescan.interval.ms";
+  public static final long    DFS_NAMENODE_PATH_BASED_CACHE_FULL_RESCAN_INTERVAL_MS_DEFAULT = 3600000L;
 
   /** Pending period of block deletion since NameNode startup */
   public static final String  DFS_NAMENODE_STARTUP_DELAY_BLOCK_DELETION_SEC_KEY = "dfs.namenode.startup.delay.block.deletion.sec";
@@ -1010,6 +1025,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.inotify.max.events.per.rpc";
   public static final int DFS_NAMENODE_INOTIFY_MAX_EVENTS_PER_RPC_DEFAULT =
       1000;
+  public static final String DFS_NAMENODE_INOTIFY_EVENT_CACHE_SIZE_KEY =
+      "dfs.namenode.inotify.event.cache.size";
+  public static final int DFS_NAMENODE_INOTIFY_EVENT_CACHE_SIZE_DEFAULT =
+      65536;
 
   public static final String IGNORE_SECURE_PORTS_FOR_TESTING_KEY =
       "ignore.secure.ports.for.testing";
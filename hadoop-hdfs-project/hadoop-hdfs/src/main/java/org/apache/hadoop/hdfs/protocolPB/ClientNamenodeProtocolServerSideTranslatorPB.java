@@ -1634,7 +1634,8 @@ public GetEditsFromTxidResponseProto getEditsFromTxid(RpcController controller,
       GetEditsFromTxidRequestProto req) throws ServiceException {
     try {
       return PBHelperClient.convertEditsResponse(server.getEditsFromTxid(
-          req.getTxid()));
+          req.getTxid(),
+          req.hasFilter() ? PBHelperClient.convert(req.getFilter()) : null));
     } catch (IOException e) {
       throw new ServiceException(e);
     }
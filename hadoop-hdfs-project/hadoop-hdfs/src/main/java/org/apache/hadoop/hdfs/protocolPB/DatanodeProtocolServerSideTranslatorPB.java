@@ -42,6 +42,8 @@
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.RegisterDatanodeResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.ReportBadBlocksRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.ReportBadBlocksResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.ReportBlockReadsRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.ReportBlockReadsResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.StorageBlockReportProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.StorageReceivedDeletedBlocksProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.DatanodeIDProto;
@@ -49,6 +51,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.RollingUpgradeStatusProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsServerProtos.VersionRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsServerProtos.VersionResponseProto;
+import org.apache.hadoop.hdfs.server.protocol.BlockReadCounts;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
@@ -83,6 +86,9 @@ public class DatanodeProtocolServerSideTranslatorPB implements
   private static final CommitBlockSynchronizationResponseProto 
       VOID_COMMIT_BLOCK_SYNCHRONIZATION_RESPONSE_PROTO =
           CommitBlockSynchronizationResponseProto.newBuilder().build();
+  private static final ReportBlockReadsResponseProto
+      VOID_REPORT_BLOCK_READS_RESPONSE =
+          ReportBlockReadsResponseProto.newBuilder().build();
 
   public DatanodeProtocolServerSideTranslatorPB(DatanodeProtocol impl,
       int maxDataLength) {
@@ -214,6 +220,33 @@ public CacheReportResponseProto cacheReport(RpcController controller,
   }
 
 
+  @Override
+  public ReportBlockReadsResponseProto reportBlockReads(
+      RpcController controller, ReportBlockReadsRequestProto request)
+      throws ServiceException {
+    int n = request.getBlockIdsCount();
+    if (request.getNumReadsCount() != n || request.getBytesReadCount() != n) {
+      throw new ServiceException("Mismatched block read counts from "
+          + request.getRegistration().getDatanodeID().getIpAddr());
+    }
+    long[] blockIds = new long[n];
+    long[] numReads = new long[n];
+    long[] bytesRead = new long[n];
+    for (int i = 0; i < n; i++) {
+      blockIds[i] = request.getBlockIds(i);
+      numReads[i] = request.getNumReads(i);
+      bytesRead[i] = request.getBytesRead(i);
+    }
+    try {
+      impl.reportBlockReads(PBHelper.convert(request.getRegistration()),
+          request.getBlockPoolId(),
+          new BlockReadCounts(blockIds, numReads, bytesRead));
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+    return VOID_REPORT_BLOCK_READS_RESPONSE;
+  }
+
   @Override
   public BlockReceivedAndDeletedResponseProto blockReceivedAndDeleted(
       RpcController controller, BlockReceivedAndDeletedRequestProto request)
@@ -24,9 +24,13 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Random;
 import java.util.TreeMap;
@@ -62,6 +66,13 @@
  *
  * The CacheReplicationMonitor does a full scan when the NameNode first
  * starts up, and at configurable intervals afterwards.
+ *
+ * In incremental mode, the scans between two full scans only revisit the
+ * directives and blocks marked dirty by directive changes, namespace changes
+ * under cached paths and DataNode cache reports.  Dirty entries are processed
+ * in chunks, releasing the FSN lock between chunks.  Full scans still run at
+ * startup, after cache pool changes, and every full rescan interval, to catch
+ * anything the dirty tracking missed, such as expired directives.
  */
 @InterfaceAudience.LimitedPrivate({"HDFS"})
 public class CacheReplicationMonitor extends Thread implements Closeable {
@@ -140,8 +151,63 @@ public class CacheReplicationMonitor extends Thread implements Closeable {
    */
   private long scannedBlocks;
 
+  /**
+   * True if scans between full scans only process dirty entries.
+   */
+  private final boolean incremental;
+
+  /**
+   * Dirty directives or blocks processed before the FSN lock is released.
+   */
+  private final int chunkSize;
+
+  /**
+   * The interval between full scans in incremental mode.
+   */
+  private final long fullRescanIntervalMs;
+
+  /**
+   * Time of the last full scan.
+   */
+  private long lastFullRescanMs = 0;
+
+  /**
+   * True if the next scan must be a full one. Protected by the FSN lock.
+   */
+  private boolean needsFullRescan = true;
+
+  /**
+   * Directives changed since they were last scanned. Protected by the FSN
+   * lock.
+   */
+  private final Set<Long> dirtyDirectives = new LinkedHashSet<Long>();
+
+  /**
+   * Blocks whose replication or cache state may have changed since they
+   * were last scanned. Protected by the FSN lock.
+   */
+  private final Set<Long> dirtyBlocks = new LinkedHashSet<Long>();
+
+  /**
+   * Blocks each directive wanted cached when it was last scanned, and the
+   * reverse mapping. Only maintained in incremental mode, protected by the
+   * FSN lock.
+   */
+  private final Map<Long, Set<Long>> directiveBlocks =
+      new HashMap<Long, Set<Long>>();
+  private final Map<Long, Set<Long>> blockDirectives =
+      new HashMap<Long, Set<Long>>();
+
   public CacheReplicationMonitor(FSNamesystem namesystem,
       CacheManager cacheManager, long intervalMs, ReentrantLock lock) {
+    this(namesystem, cacheManager, intervalMs, lock, false, 0, 0);
+  }
+
+  public CacheReplicationMonitor(FSNamesystem namesystem,
+      CacheManager cacheManager, long intervalMs, ReentrantLock lock,
+      boolean incremental, int chunkSize, long fullRescanIntervalMs) {
+    Preconditions.checkArgument(!incremental || chunkSize > 0,
+        "Incremental rescan chunk size must be positive.");
     this.namesystem = namesystem;
     this.blockManager = namesystem.getBlockManager();
     this.cacheManager = cacheManager;
@@ -150,6 +216,9 @@ public CacheReplicationMonitor(FSNamesystem namesystem,
     this.lock = lock;
     this.doRescan = this.lock.newCondition();
     this.scanFinished = this.lock.newCondition();
+    this.incremental = incremental;
+    this.chunkSize = chunkSize;
+    this.fullRescanIntervalMs = fullRescanIntervalMs;
   }
 
   @Override
@@ -158,7 +227,9 @@ public void run() {
     Thread.currentThread().setName("CacheReplicationMonitor(" +
         System.identityHashCode(this) + ")");
     LOG.info("Starting CacheReplicationMonitor with interval " +
-             intervalMs + " milliseconds");
+             intervalMs + " milliseconds" + (incremental ?
+             ", incremental, full rescan interval " + fullRescanIntervalMs +
+             " milliseconds" : ""));
     try {
       long curTimeMs = Time.monotonicNow();
       while (true) {
@@ -185,7 +256,6 @@ public void run() {
           lock.unlock();
         }
         startTimeMs = curTimeMs;
-        mark = !mark;
         rescan();
         curTimeMs = Time.monotonicNow();
         // Update synchronization-related variables.
@@ -258,6 +328,41 @@ public void setNeedsRescan() {
     }
   }
 
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * Marks a directive as changed, so the next incremental scan revisits it
+   * and the blocks it covers.  No-op unless in incremental mode.
+   */
+  public void setDirectiveDirty(long directiveId) {
+    assert namesystem.hasWriteLock();
+    if (incremental) {
+      dirtyDirectives.add(directiveId);
+    }
+  }
+
+  /**
+   * Marks blocks whose cache state changed, so the next incremental scan
+   * revisits them.  No-op unless in incremental mode.
+   */
+  public void setBlocksDirty(Collection<Long> blockIds) {
+    assert namesystem.hasWriteLock();
+    if (incremental) {
+      dirtyBlocks.addAll(blockIds);
+    }
+  }
+
+  /**
+   * Indicates that the next scan must be a full one, for changes that can
+   * not be tracked per directive.
+   */
+  public void setNeedsFullRescan() {
+    assert namesystem.hasWriteLock();
+    needsFullRescan = true;
+  }
+
   /**
    * Shut down the monitor thread.
    */
@@ -284,6 +389,7 @@ public void close() throws IOException {
   private void rescan() throws InterruptedException {
     scannedDirectives = 0;
     scannedBlocks = 0;
+    boolean more;
     try {
       namesystem.writeLock();
       try {
@@ -297,13 +403,162 @@ private void rescan() throws InterruptedException {
         lock.unlock();
       }
 
-      resetStatistics();
-      rescanCacheDirectives();
-      rescanCachedBlockMap();
-      blockManager.getDatanodeManager().resetLastCachingDirectiveSentTime();
+      if (!incremental || needsFullRescan ||
+          Time.monotonicNow() - lastFullRescanMs >= fullRescanIntervalMs) {
+        fullRescan();
+        return;
+      }
+      more = rescanDirty();
     } finally {
       namesystem.writeUnlock();
     }
+    // Let other FSN operations in between chunks of dirty entries.
+    while (more) {
+      namesystem.writeLock();
+      try {
+        lock.lock();
+        try {
+          if (shutdown) {
+            throw new InterruptedException("CacheReplicationMonitor was " +
+                "shut down.");
+          }
+        } finally {
+          lock.unlock();
+        }
+        more = rescanDirty();
+      } finally {
+        namesystem.writeUnlock();
+      }
+    }
+  }
+
+  private void fullRescan() {
+    mark = !mark;
+    needsFullRescan = false;
+    lastFullRescanMs = Time.monotonicNow();
+    dirtyDirectives.clear();
+    dirtyBlocks.clear();
+    directiveBlocks.clear();
+    blockDirectives.clear();
+    resetStatistics();
+    rescanCacheDirectives();
+    rescanCachedBlockMap();
+    blockManager.getDatanodeManager().resetLastCachingDirectiveSentTime();
+  }
+
+  /**
+   * Process up to chunkSize dirty directives and blocks.  Directives go
+   * first, since rescanning them dirties the blocks they cover.
+   *
+   * @return true if dirty entries remain
+   */
+  private boolean rescanDirty() {
+    final long now = new Date().getTime();
+    int budget = chunkSize;
+    for (Iterator<Long> it = dirtyDirectives.iterator();
+         it.hasNext() && budget > 0; budget--) {
+      long directiveId = it.next();
+      it.remove();
+      rescanDirtyDirective(directiveId, now);
+    }
+    if (budget > 0 && !dirtyBlocks.isEmpty()) {
+      removeOverCapacityPendingCached();
+      for (Iterator<Long> it = dirtyBlocks.iterator();
+           it.hasNext() && budget > 0; budget--) {
+        long blockId = it.next();
+        it.remove();
+        rescanDirtyBlock(blockId, now);
+      }
+      blockManager.getDatanodeManager().resetLastCachingDirectiveSentTime();
+    }
+    return !dirtyDirectives.isEmpty() || !dirtyBlocks.isEmpty();
+  }
+
+  /**
+   * Recompute the statistics and covered blocks of a changed directive.
+   * Blocks it covered before and after the change are marked dirty.
+   */
+  private void rescanDirtyDirective(long directiveId, long now) {
+    scannedDirectives++;
+    Set<Long> blockIds = directiveBlocks.remove(directiveId);
+    if (blockIds != null) {
+      for (Long blockId : blockIds) {
+        Set<Long> directiveIds = blockDirectives.get(blockId);
+        if (directiveIds != null) {
+          directiveIds.remove(directiveId);
+          if (directiveIds.isEmpty()) {
+            blockDirectives.remove(blockId);
+          }
+        }
+      }
+      dirtyBlocks.addAll(blockIds);
+    }
+    CacheDirective directive = cacheManager.getCacheDirective(directiveId);
+    if (directive == null) {
+      LOG.debug("Directive {}: removed since the last scan", directiveId);
+      return;
+    }
+    // Back the previous results out of the pool before counting again
+    directive.addBytesNeeded(-directive.getBytesNeeded());
+    directive.addBytesCached(-directive.getBytesCached());
+    directive.addFilesNeeded(-directive.getFilesNeeded());
+    directive.addFilesCached(-directive.getFilesCached());
+    rescanCacheDirective(directive, now);
+    blockIds = directiveBlocks.get(directiveId);
+    if (blockIds != null) {
+      dirtyBlocks.addAll(blockIds);
+    }
+  }
+
+  /**
+   * Set the replication of a dirty block from the directives covering it,
+   * then schedule caching or uncaching like a full scan would.
+   */
+  private void rescanDirtyBlock(long blockId, long now) {
+    scannedBlocks++;
+    short replication = 0;
+    Set<Long> directiveIds = blockDirectives.get(blockId);
+    if (directiveIds != null) {
+      for (Long directiveId : directiveIds) {
+        CacheDirective directive = cacheManager.getCacheDirective(directiveId);
+        if (directive == null || (directive.getExpiryTime() > 0 &&
+            directive.getExpiryTime() <= now)) {
+          continue;
+        }
+        if (directive.getReplication() > replication) {
+          replication = directive.getReplication();
+        }
+      }
+    }
+    CachedBlock cblock =
+        cachedBlocks.get(new CachedBlock(blockId, (short)0, false));
+    if (cblock == null) {
+      if (replication == 0) {
+        return;
+      }
+      cblock = new CachedBlock(blockId, replication, mark);
+      cachedBlocks.put(cblock);
+    } else {
+      cblock.setReplicationAndMark(replication, mark);
+    }
+    if (rescanCachedBlock(cblock)) {
+      cachedBlocks.remove(cblock);
+    }
+  }
+
+  private void addDirectiveBlock(long directiveId, long blockId) {
+    Set<Long> blockIds = directiveBlocks.get(directiveId);
+    if (blockIds == null) {
+      blockIds = new HashSet<Long>();
+      directiveBlocks.put(directiveId, blockIds);
+    }
+    blockIds.add(blockId);
+    Set<Long> directiveIds = blockDirectives.get(blockId);
+    if (directiveIds == null) {
+      directiveIds = new HashSet<Long>(2);
+      blockDirectives.put(blockId, directiveIds);
+    }
+    directiveIds.add(directiveId);
   }
 
   private void resetStatistics() {
@@ -320,44 +575,54 @@ private void resetStatistics() {
    * what cache replication factor each block should have.
    */
   private void rescanCacheDirectives() {
-    FSDirectory fsDir = namesystem.getFSDirectory();
     final long now = new Date().getTime();
     for (CacheDirective directive : cacheManager.getCacheDirectives()) {
       scannedDirectives++;
-      // Skip processing this entry if it has expired
-      if (directive.getExpiryTime() > 0 && directive.getExpiryTime() <= now) {
-        LOG.debug("Directive {}: the directive expired at {} (now = {})",
-             directive.getId(), directive.getExpiryTime(), now);
-        continue;
-      }
-      String path = directive.getPath();
-      INode node;
-      try {
-        node = fsDir.getINode(path, DirOp.READ);
-      } catch (IOException e) {
-        // We don't cache through symlinks or invalid paths
-        LOG.debug("Directive {}: Failed to resolve path {} ({})",
-            directive.getId(), path, e.getMessage());
-        continue;
-      }
-      if (node == null)  {
-        LOG.debug("Directive {}: No inode found at {}", directive.getId(),
-            path);
-      } else if (node.isDirectory()) {
-        INodeDirectory dir = node.asDirectory();
-        ReadOnlyList<INode> children = dir
-            .getChildrenList(Snapshot.CURRENT_STATE_ID);
-        for (INode child : children) {
-          if (child.isFile()) {
-            rescanFile(directive, child.asFile());
-          }
+      rescanCacheDirective(directive, now);
+    }
+  }
+
+  /**
+   * Apply a CacheDirective to the file or directory at its path.
+   *
+   * @param directive The CacheDirective to apply.
+   * @param now The current time, to check for expiry.
+   */
+  private void rescanCacheDirective(CacheDirective directive, long now) {
+    FSDirectory fsDir = namesystem.getFSDirectory();
+    // Skip processing this entry if it has expired
+    if (directive.getExpiryTime() > 0 && directive.getExpiryTime() <= now) {
+      LOG.debug("Directive {}: the directive expired at {} (now = {})",
+           directive.getId(), directive.getExpiryTime(), now);
+      return;
+    }
+    String path = directive.getPath();
+    INode node;
+    try {
+      node = fsDir.getINode(path, DirOp.READ);
+    } catch (IOException e) {
+      // We don't cache through symlinks or invalid paths
+      LOG.debug("Directive {}: Failed to resolve path {} ({})",
+          directive.getId(), path, e.getMessage());
+      return;
+    }
+    if (node == null)  {
+      LOG.debug("Directive {}: No inode found at {}", directive.getId(),
+          path);
+    } else if (node.isDirectory()) {
+      INodeDirectory dir = node.asDirectory();
+      ReadOnlyList<INode> children = dir
+          .getChildrenList(Snapshot.CURRENT_STATE_ID);
+      for (INode child : children) {
+        if (child.isFile()) {
+          rescanFile(directive, child.asFile());
         }
-      } else if (node.isFile()) {
-        rescanFile(directive, node.asFile());
-      } else {
-        LOG.debug("Directive {}: ignoring non-directive, non-file inode {} ",
-            directive.getId(), node);
       }
+    } else if (node.isFile()) {
+      rescanFile(directive, node.asFile());
+    } else {
+      LOG.debug("Directive {}: ignoring non-directive, non-file inode {} ",
+          directive.getId(), node);
     }
   }
   
@@ -439,6 +704,9 @@ private void rescanFile(CacheDirective directive, INodeFile file) {
           ocblock.setReplicationAndMark(directive.getReplication(), mark);
         }
       }
+      if (incremental) {
+        addDirectiveBlock(directive.getId(), block.getBlockId());
+      }
       LOG.trace("Directive {}: setting replication for block {} to {}",
           directive.getId(), blockInfo, ocblock.getReplication());
     }
@@ -490,7 +758,21 @@ private String findReasonForNotCaching(CachedBlock cblock,
    * Blocks that are over-replicated should be removed from Datanodes.
    */
   private void rescanCachedBlockMap() {
-    // Remove pendingCached blocks that will make DN out-of-capacity.
+    removeOverCapacityPendingCached();
+    for (Iterator<CachedBlock> cbIter = cachedBlocks.iterator();
+        cbIter.hasNext(); ) {
+      scannedBlocks++;
+      CachedBlock cblock = cbIter.next();
+      if (rescanCachedBlock(cblock)) {
+        cbIter.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove pendingCached blocks that will make DN out-of-capacity.
+   */
+  private void removeOverCapacityPendingCached() {
     Set<DatanodeDescriptor> datanodes =
         blockManager.getDatanodeManager().getDatanodes();
     for (DatanodeDescriptor dn : datanodes) {
@@ -518,92 +800,98 @@ private void rescanCachedBlockMap() {
         }
       }
     }
-    for (Iterator<CachedBlock> cbIter = cachedBlocks.iterator();
-        cbIter.hasNext(); ) {
-      scannedBlocks++;
-      CachedBlock cblock = cbIter.next();
-      List<DatanodeDescriptor> pendingCached =
-          cblock.getDatanodes(Type.PENDING_CACHED);
-      List<DatanodeDescriptor> cached =
-          cblock.getDatanodes(Type.CACHED);
-      List<DatanodeDescriptor> pendingUncached =
-          cblock.getDatanodes(Type.PENDING_UNCACHED);
-      // Remove nodes from PENDING_UNCACHED if they were actually uncached.
-      for (Iterator<DatanodeDescriptor> iter = pendingUncached.iterator();
+  }
+
+  /**
+   * Assign new Datanodes to an under-replicated cached block, or remove it
+   * from Datanodes if it is over-replicated.
+   *
+   * @return true if nothing more needs to be done with the block, so it can
+   *         be removed from the cached block map
+   */
+  private boolean rescanCachedBlock(CachedBlock cblock) {
+    List<DatanodeDescriptor> pendingCached =
+        cblock.getDatanodes(Type.PENDING_CACHED);
+    List<DatanodeDescriptor> cached =
+        cblock.getDatanodes(Type.CACHED);
+    List<DatanodeDescriptor> pendingUncached =
+        cblock.getDatanodes(Type.PENDING_UNCACHED);
+    // Remove nodes from PENDING_UNCACHED if they were actually uncached.
+    for (Iterator<DatanodeDescriptor> iter = pendingUncached.iterator();
+        iter.hasNext(); ) {
+      DatanodeDescriptor datanode = iter.next();
+      if (!cblock.isInList(datanode.getCached())) {
+        LOG.trace("Block {}: removing from PENDING_UNCACHED for node {} "
+            + "because the DataNode uncached it.", cblock.getBlockId(),
+            datanode.getDatanodeUuid());
+        datanode.getPendingUncached().remove(cblock);
+        iter.remove();
+      }
+    }
+    BlockInfo blockInfo = blockManager.
+          getStoredBlock(new Block(cblock.getBlockId()));
+    String reason = findReasonForNotCaching(cblock, blockInfo);
+    int neededCached = 0;
+    if (reason != null) {
+      LOG.trace("Block {}: can't cache block because it is {}",
+          cblock.getBlockId(), reason);
+    } else {
+      neededCached = cblock.getReplication();
+    }
+    int numCached = cached.size();
+    if (numCached >= neededCached) {
+      // If we have enough replicas, drop all pending cached.
+      for (Iterator<DatanodeDescriptor> iter = pendingCached.iterator();
           iter.hasNext(); ) {
         DatanodeDescriptor datanode = iter.next();
-        if (!cblock.isInList(datanode.getCached())) {
-          LOG.trace("Block {}: removing from PENDING_UNCACHED for node {} "
-              + "because the DataNode uncached it.", cblock.getBlockId(),
-              datanode.getDatanodeUuid());
-          datanode.getPendingUncached().remove(cblock);
-          iter.remove();
-        }
-      }
-      BlockInfo blockInfo = blockManager.
-            getStoredBlock(new Block(cblock.getBlockId()));
-      String reason = findReasonForNotCaching(cblock, blockInfo);
-      int neededCached = 0;
-      if (reason != null) {
-        LOG.trace("Block {}: can't cache block because it is {}",
-            cblock.getBlockId(), reason);
-      } else {
-        neededCached = cblock.getReplication();
-      }
-      int numCached = cached.size();
-      if (numCached >= neededCached) {
-        // If we have enough replicas, drop all pending cached.
-        for (Iterator<DatanodeDescriptor> iter = pendingCached.iterator();
-            iter.hasNext(); ) {
-          DatanodeDescriptor datanode = iter.next();
-          datanode.getPendingCached().remove(cblock);
-          iter.remove();
-          LOG.trace("Block {}: removing from PENDING_CACHED for node {} "
-                  + "because we already have {} cached replicas and we only" +
-                  " need {}",
-              cblock.getBlockId(), datanode.getDatanodeUuid(), numCached,
-              neededCached
-          );
-        }
-      }
-      if (numCached < neededCached) {
-        // If we don't have enough replicas, drop all pending uncached.
-        for (Iterator<DatanodeDescriptor> iter = pendingUncached.iterator();
-            iter.hasNext(); ) {
-          DatanodeDescriptor datanode = iter.next();
-          datanode.getPendingUncached().remove(cblock);
-          iter.remove();
-          LOG.trace("Block {}: removing from PENDING_UNCACHED for node {} "
-                  + "because we only have {} cached replicas and we need " +
-                  "{}", cblock.getBlockId(), datanode.getDatanodeUuid(),
-              numCached, neededCached
-          );
-        }
-      }
-      int neededUncached = numCached -
-          (pendingUncached.size() + neededCached);
-      if (neededUncached > 0) {
-        addNewPendingUncached(neededUncached, cblock, cached,
-            pendingUncached);
-      } else {
-        int additionalCachedNeeded = neededCached -
-            (numCached + pendingCached.size());
-        if (additionalCachedNeeded > 0) {
-          addNewPendingCached(additionalCachedNeeded, cblock, cached,
-              pendingCached);
-        }
+        datanode.getPendingCached().remove(cblock);
+        iter.remove();
+        LOG.trace("Block {}: removing from PENDING_CACHED for node {} "
+                + "because we already have {} cached replicas and we only" +
+                " need {}",
+            cblock.getBlockId(), datanode.getDatanodeUuid(), numCached,
+            neededCached
+        );
       }
-      if ((neededCached == 0) &&
-          pendingUncached.isEmpty() &&
-          pendingCached.isEmpty()) {
-        // we have nothing more to do with this block.
-        LOG.trace("Block {}: removing from cachedBlocks, since neededCached "
-                + "== 0, and pendingUncached and pendingCached are empty.",
-            cblock.getBlockId()
+    }
+    if (numCached < neededCached) {
+      // If we don't have enough replicas, drop all pending uncached.
+      for (Iterator<DatanodeDescriptor> iter = pendingUncached.iterator();
+          iter.hasNext(); ) {
+        DatanodeDescriptor datanode = iter.next();
+        datanode.getPendingUncached().remove(cblock);
+        iter.remove();
+        LOG.trace("Block {}: removing from PENDING_UNCACHED for node {} "
+                + "because we only have {} cached replicas and we need " +
+                "{}", cblock.getBlockId(), datanode.getDatanodeUuid(),
+            numCached, neededCached
         );
-        cbIter.remove();
       }
     }
+    int neededUncached = numCached -
+        (pendingUncached.size() + neededCached);
+    if (neededUncached > 0) {
+      addNewPendingUncached(neededUncached, cblock, cached,
+          pendingUncached);
+    } else {
+      int additionalCachedNeeded = neededCached -
+          (numCached + pendingCached.size());
+      if (additionalCachedNeeded > 0) {
+        addNewPendingCached(additionalCachedNeeded, cblock, cached,
+            pendingCached);
+      }
+    }
+    if ((neededCached == 0) &&
+        pendingUncached.isEmpty() &&
+        pendingCached.isEmpty()) {
+      // we have nothing more to do with this block.
+      LOG.trace("Block {}: removing from cachedBlocks, since neededCached "
+              + "== 0, and pendingUncached and pendingCached are empty.",
+          cblock.getBlockId()
+      );
+      return true;
+    }
+    return false;
   }
 
   /**
@@ -49,6 +49,7 @@
 import org.apache.hadoop.hdfs.protocolPB.DatanodeProtocolClientSideTranslatorPB;
 import org.apache.hadoop.hdfs.server.common.IncorrectVersionException;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.protocol.BlockReadCounts;
 import org.apache.hadoop.hdfs.server.protocol.BlockReportContext;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
@@ -63,6 +64,7 @@
 import org.apache.hadoop.hdfs.server.protocol.VolumeFailureSummary;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RpcNoSuchMethodException;
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.VersionInfo;
@@ -91,6 +93,8 @@ class BPServiceActor implements Runnable {
   final BPOfferService bpos;
   
   volatile long lastCacheReport = 0;
+  /** Cleared when the NameNode does not support block read reports. */
+  private boolean blockReadReportSupported = true;
   private final Scheduler scheduler;
 
   Thread bpThread;
@@ -471,6 +475,39 @@ DatanodeCommand cacheReport() throws IOException {
     return cmd;
   }
 
+  /**
+   * Send reads of blocks served since the last report to the NameNode.
+   * Only the actor of the active NameNode drains the counters, so reads are
+   * reported once.  Counts are dropped if the RPC fails.
+   */
+  void reportBlockReads() {
+    BlockReadCounters counters = dn.getBlockReadCounters();
+    if (counters == null || state != HAServiceState.ACTIVE) {
+      return;
+    }
+    String bpid = bpos.getBlockPoolId();
+    BlockReadCounts counts = counters.drain(bpid);
+    if (counts == null || !blockReadReportSupported) {
+      // Drained anyway so that the counters are not kept at their cap
+      return;
+    }
+    try {
+      bpNamenode.reportBlockReads(bpRegistration, bpid, counts);
+    } catch (RemoteException re) {
+      if (RpcNoSuchMethodException.class.getName()
+          .equals(re.getClassName())) {
+        LOG.info(nnAddr + " does not support block read reports, disabling");
+        blockReadReportSupported = false;
+      } else {
+        LOG.warn("Failed to report reads of " + counts.size()
+            + " block(s) to " + nnAddr, re);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to report reads of " + counts.size()
+          + " block(s) to " + nnAddr, e);
+    }
+  }
+
   private int calculateBlockReportPBSize(
       boolean useBlocksBuffer, StorageBlockReport[] reports) {
     int reportSize = 0;
@@ -686,6 +723,9 @@ private void offerService() throws Exception {
           ibrManager.sendIBRs(bpNamenode, bpRegistration,
               bpos.getBlockPoolId());
         }
+        if (sendHeartbeat) {
+          reportBlockReads();
+        }
 
         List<DatanodeCommand> cmds = null;
         boolean forceFullBr =
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.server.protocol.BlockReadCounts;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Counts reads served by this DataNode per block, between two reports to the
+ * NameNode.  Counters of each block pool live in an open-addressing table
+ * keyed by block ID so that recording a read does not allocate.
+ */
+@InterfaceAudience.Private
+class BlockReadCounters {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int maxBlocks;
+  private final Map<String, PoolCounters> pools = new HashMap<>();
+
+  /**
+   * @param maxBlocks number of distinct blocks tracked per block pool between
+   *                  two reports; reads of further blocks are dropped.
+   */
+  BlockReadCounters(int maxBlocks) {
+    this.maxBlocks = maxBlocks;
+  }
+
+  /**
+   * Record one read of a block.
+   * @param bytes number of bytes sent, 0 if unknown.
+   */
+  void record(String bpid, long blockId, long bytes) {
+    PoolCounters pool;
+    synchronized (pools) {
+      pool = pools.get(bpid);
+      if (pool == null) {
+        pool = new PoolCounters();
+        pools.put(bpid, pool);
+      }
+    }
+    pool.add(blockId, bytes);
+  }
+
+  /**
+   * Return the counters of a block pool and reset them.
+   * @return null if no block of the pool was read since the last call.
+   */
+  BlockReadCounts drain(String bpid) {
+    PoolCounters pool;
+    synchronized (pools) {
+      pool = pools.get(bpid);
+    }
+    return pool == null ? null : pool.drain();
+  }
+
+  @VisibleForTesting
+  long getDropped(String bpid) {
+    PoolCounters pool;
+    synchronized (pools) {
+      pool = pools.get(bpid);
+    }
+    return pool == null ? 0 : pool.dropped;
+  }
+
+  private class PoolCounters {
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private long[] reads = new long[INITIAL_CAPACITY];
+    private long[] bytes = new long[INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int size = 0;
+    private long dropped = 0;
+
+    synchronized void add(long blockId, long n) {
+      int i = indexOf(keys, used, blockId);
+      if (!used[i]) {
+        if (size >= maxBlocks) {
+          dropped++;
+          return;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+          resize(keys.length * 2);
+          i = indexOf(keys, used, blockId);
+        }
+        used[i] = true;
+        keys[i] = blockId;
+        size++;
+      }
+      reads[i]++;
+      bytes[i] += n;
+    }
+
+    synchronized BlockReadCounts drain() {
+      if (size == 0) {
+        return null;
+      }
+      long[] ids = new long[size];
+      long[] numReads = new long[size];
+      long[] bytesRead = new long[size];
+      int j = 0;
+      for (int i = 0; i < keys.length; i++) {
+        if (used[i]) {
+          ids[j] = keys[i];
+          numReads[j] = reads[i];
+          bytesRead[j] = bytes[i];
+          j++;
+        }
+      }
+      if (keys.length > INITIAL_CAPACITY * 4 && size * 8 < keys.length) {
+        // Shrink after a burst so that a quiet node does not keep big tables.
+        keys = new long[INITIAL_CAPACITY];
+        reads = new long[INITIAL_CAPACITY];
+        bytes = new long[INITIAL_CAPACITY];
+        used = new boolean[INITIAL_CAPACITY];
+      } else {
+        Arrays.fill(used, false);
+        Arrays.fill(reads, 0);
+        Arrays.fill(bytes, 0);
+      }
+      size = 0;
+      return new BlockReadCounts(ids, numReads, bytesRead);
+    }
+
+    private void resize(int capacity) {
+      long[] newKeys = new long[capacity];
+      long[] newReads = new long[capacity];
+      long[] newBytes = new long[capacity];
+      boolean[] newUsed = new boolean[capacity];
+      for (int i = 0; i < keys.length; i++) {
+        if (used[i]) {
+          int k = indexOf(newKeys, newUsed, keys[i]);
+          newUsed[k] = true;
+          newKeys[k] = keys[i];
+          newReads[k] = reads[i];
+          newBytes[k] = bytes[i];
+        }
+      }
+      keys = newKeys;
+      reads = newReads;
+      bytes = newBytes;
+      used = newUsed;
+    }
+  }
+
+  private static int indexOf(long[] keys, boolean[] used, long key) {
+    int mask = keys.length - 1;
+    long h = key * 0x9E3779B97F4A7C15L;
+    int i = (int) (h ^ (h >>> 32)) & mask;
+    while (used[i] && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+}
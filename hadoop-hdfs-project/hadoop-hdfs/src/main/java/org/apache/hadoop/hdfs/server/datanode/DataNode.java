@@ -337,6 +337,7 @@ public static InetSocketAddress createSocketAddr(String target) {
   DataNodeMetrics metrics;
   @Nullable
   private DataNodePeerMetrics peerMetrics;
+  private BlockReadCounters blockReadCounters;
   private DataNodeDiskMetrics diskMetrics;
   private InetSocketAddress streamingAddr;
   
@@ -1415,6 +1416,13 @@ void startDataNode(List<StorageLocation> dataDirectories,
     peerMetrics = dnConf.peerStatsEnabled ?
         DataNodePeerMetrics.create(getConf(), getDisplayName()) : null;
     metrics.getJvmMetrics().setPauseMonitor(pauseMonitor);
+    if (getConf().getBoolean(
+        DFSConfigKeys.DFS_DATANODE_BLOCK_READ_REPORT_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_BLOCK_READ_REPORT_ENABLED_DEFAULT)) {
+      blockReadCounters = new BlockReadCounters(getConf().getInt(
+          DFSConfigKeys.DFS_DATANODE_BLOCK_READ_REPORT_MAX_BLOCKS_KEY,
+          DFSConfigKeys.DFS_DATANODE_BLOCK_READ_REPORT_MAX_BLOCKS_DEFAULT));
+    }
 
     ecWorker = new ErasureCodingWorker(getConf(), this);
     blockRecoveryWorker = new BlockRecoveryWorker(this);
@@ -1830,6 +1838,13 @@ public DataNodePeerMetrics getPeerMetrics() {
     return peerMetrics;
   }
 
+  /**
+   * @return per block read counters, null if block read reports are disabled.
+   */
+  BlockReadCounters getBlockReadCounters() {
+    return blockReadCounters;
+  }
+
   /** Ensure the authentication method is kerberos */
   private void checkKerberosAuthMethod(String msg) throws IOException {
     // User invoking the call must be same as the datanode user
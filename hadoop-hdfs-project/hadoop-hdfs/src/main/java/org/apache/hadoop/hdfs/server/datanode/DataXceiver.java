@@ -346,6 +346,13 @@ private void collectThreadLocalStates() {
     }
   }
 
+  private void recordBlockRead(ExtendedBlock blk, long bytes) {
+    BlockReadCounters counters = datanode.getBlockReadCounters();
+    if (counters != null) {
+      counters.record(blk.getBlockPoolId(), blk.getBlockId(), bytes);
+    }
+  }
+
   @Override
   public void requestShortCircuitFds(final ExtendedBlock blk,
       final Token<BlockTokenIdentifier> token,
@@ -412,6 +419,8 @@ public void requestShortCircuitFds(final ExtendedBlock blk,
                     "Not verifying " + slotId);
         }
         success = true;
+        // Bytes read through the passed descriptors are not visible here.
+        recordBlockRead(blk, 0);
       }
     } finally {
       if ((!success) && (registeredSlotId != null)) {
@@ -629,6 +638,7 @@ public void readBlock(final ExtendedBlock block,
       datanode.metrics.incrBytesRead((int) read);
       datanode.metrics.incrBlocksRead();
       datanode.metrics.incrTotalReadTime(duration);
+      recordBlockRead(block, read);
     } catch ( SocketException ignored ) {
       if (LOG.isTraceEnabled()) {
         LOG.trace(dnR + ":Ignoring exception while serving " + block + " to " +
@@ -25,6 +25,12 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LIST_CACHE_POOLS_NUM_RESPONSES_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_FULL_RESCAN_INTERVAL_MS;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_FULL_RESCAN_INTERVAL_MS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_CHUNK_SIZE;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_CHUNK_SIZE_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_ENABLED;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_ENABLED_DEFAULT;
 
 import java.io.DataInput;
 import java.io.DataOutputStream;
@@ -34,10 +40,12 @@
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.locks.ReentrantLock;
@@ -159,6 +167,23 @@ public final class CacheManager {
    */
   private final long scanIntervalMs;
 
+  /**
+   * True if rescans between full rescans only process changed directives
+   * and blocks.
+   */
+  private final boolean incrementalRescan;
+
+  /**
+   * Dirty directives or blocks handled per FSN lock hold in an incremental
+   * rescan.
+   */
+  private final int incrementalRescanChunkSize;
+
+  /**
+   * Interval between full rescans when rescans are incremental.
+   */
+  private final long fullRescanIntervalMs;
+
   /**
    * All cached blocks.
    */
@@ -203,6 +228,15 @@ public PersistState(CacheManagerSection section,
     scanIntervalMs = conf.getLong(
         DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS,
         DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS_DEFAULT);
+    incrementalRescan = conf.getBoolean(
+        DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_ENABLED,
+        DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_ENABLED_DEFAULT);
+    incrementalRescanChunkSize = conf.getInt(
+        DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_CHUNK_SIZE,
+        DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_CHUNK_SIZE_DEFAULT);
+    fullRescanIntervalMs = conf.getLong(
+        DFS_NAMENODE_PATH_BASED_CACHE_FULL_RESCAN_INTERVAL_MS,
+        DFS_NAMENODE_PATH_BASED_CACHE_FULL_RESCAN_INTERVAL_MS_DEFAULT);
     float cachedBlocksPercent = conf.getFloat(
           DFS_NAMENODE_PATH_BASED_CACHE_BLOCK_MAP_ALLOCATION_PERCENT,
           DFS_NAMENODE_PATH_BASED_CACHE_BLOCK_MAP_ALLOCATION_PERCENT_DEFAULT);
@@ -233,7 +267,8 @@ public void startMonitorThread() {
     try {
       if (this.monitor == null) {
         this.monitor = new CacheReplicationMonitor(namesystem, this,
-            scanIntervalMs, crmLock);
+            scanIntervalMs, crmLock, incrementalRescan,
+            incrementalRescanChunkSize, fullRescanIntervalMs);
         this.monitor.start();
       }
     } finally {
@@ -276,6 +311,14 @@ public Collection<CacheDirective> getCacheDirectives() {
     assert namesystem.hasReadLock();
     return Collections.unmodifiableCollection(directivesById.values());
   }
+
+  /**
+   * @return the CacheDirective with the given ID, or null if there is none.
+   */
+  public CacheDirective getCacheDirective(long id) {
+    assert namesystem.hasReadLock();
+    return directivesById.get(id);
+  }
   
   @VisibleForTesting
   public GSet<CachedBlock, CachedBlock> getCachedBlocks() {
@@ -495,7 +538,7 @@ private void addInternal(CacheDirective directive, CachePool pool) {
     directive.addBytesNeeded(stats.getBytesNeeded());
     directive.addFilesNeeded(directive.getFilesNeeded());
 
-    setNeedsRescan();
+    setNeedsRescan(directive.getId());
   }
 
   /**
@@ -661,12 +704,14 @@ private void removeInternal(CacheDirective directive)
     final CachePool pool = directive.getPool();
     directive.addBytesNeeded(-directive.getBytesNeeded());
     directive.addFilesNeeded(-directive.getFilesNeeded());
+    directive.addBytesCached(-directive.getBytesCached());
+    directive.addFilesCached(-directive.getFilesCached());
 
     directivesById.remove(directive.getId());
     pool.getDirectiveList().remove(directive);
     assert directive.getPool() == null;
 
-    setNeedsRescan();
+    setNeedsRescan(directive.getId());
   }
 
   public void removeDirective(long id, FSPermissionChecker pc)
@@ -825,7 +870,7 @@ public void modifyCachePool(CachePoolInfo info)
         bld.append(prefix).append("set limit to " + info.getLimit());
         prefix = "; ";
         // New limit changes stats, need to set needs refresh
-        setNeedsRescan();
+        setNeedsFullRescan();
       }
       if (info.getDefaultReplication() != null) {
         final short defaultReplication = info.getDefaultReplication();
@@ -878,7 +923,7 @@ public void removeCachePool(String poolName)
         directivesById.remove(directive.getId());
         iter.remove();
       }
-      setNeedsRescan();
+      setNeedsFullRescan();
     } catch (IOException e) {
       LOG.info("removeCachePool of " + poolName + " failed: ", e);
       throw e;
@@ -975,6 +1020,13 @@ public final void processCacheReport(final DatanodeID datanodeID,
   private void processCacheReportImpl(final DatanodeDescriptor datanode,
       final List<Long> blockIds) {
     CachedBlocksList cached = datanode.getCached();
+    Set<Long> previouslyCached = null;
+    if (incrementalRescan) {
+      previouslyCached = new HashSet<Long>();
+      for (CachedBlock cachedBlock : cached) {
+        previouslyCached.add(cachedBlock.getBlockId());
+      }
+    }
     cached.clear();
     CachedBlocksList cachedList = datanode.getCached();
     CachedBlocksList pendingCachedList = datanode.getPendingCached();
@@ -1005,6 +1057,18 @@ private void processCacheReportImpl(final DatanodeDescriptor datanode,
         LOG.trace("Removed block {} from PENDING_CACHED list.", cachedBlock);
       }
     }
+    if (previouslyCached != null) {
+      // Only blocks which were cached or uncached since the last report
+      // need another look from the CacheReplicationMonitor.
+      List<Long> changed = new ArrayList<Long>();
+      for (Long blockId : blockIds) {
+        if (!previouslyCached.remove(blockId)) {
+          changed.add(blockId);
+        }
+      }
+      changed.addAll(previouslyCached);
+      setBlocksDirty(changed);
+    }
   }
 
   /**
@@ -1255,6 +1319,95 @@ private void setNeedsRescan() {
     }
   }
 
+  /**
+   * Request a rescan which revisits the given directive.
+   */
+  private void setNeedsRescan(long directiveId) {
+    crmLock.lock();
+    try {
+      if (monitor != null) {
+        monitor.setDirectiveDirty(directiveId);
+        monitor.setNeedsRescan();
+      }
+    } finally {
+      crmLock.unlock();
+    }
+  }
+
+  /**
+   * Request a full rescan, even if rescans are incremental.
+   */
+  private void setNeedsFullRescan() {
+    crmLock.lock();
+    try {
+      if (monitor != null) {
+        monitor.setNeedsFullRescan();
+        monitor.setNeedsRescan();
+      }
+    } finally {
+      crmLock.unlock();
+    }
+  }
+
+  private void setBlocksDirty(Collection<Long> blockIds) {
+    if (blockIds.isEmpty()) {
+      return;
+    }
+    crmLock.lock();
+    try {
+      if (monitor != null) {
+        monitor.setBlocksDirty(blockIds);
+      }
+    } finally {
+      crmLock.unlock();
+    }
+  }
+
+  /**
+   * Called after a file or directory was closed, appended to, renamed or
+   * deleted.  When rescans are incremental, the directives on the path, on
+   * its parent directory, and below it are revisited by the next rescan.
+   *
+   * @param path The changed path.
+   */
+  public void setPathDirty(String path) {
+    assert namesystem.hasWriteLock();
+    if (!incrementalRescan || directivesByPath.isEmpty()) {
+      return;
+    }
+    List<CacheDirective> dirty = new ArrayList<CacheDirective>();
+    List<CacheDirective> directives = directivesByPath.get(path);
+    if (directives != null) {
+      dirty.addAll(directives);
+    }
+    Path parent = new Path(path).getParent();
+    if (parent != null) {
+      directives = directivesByPath.get(parent.toUri().getPath());
+      if (directives != null) {
+        dirty.addAll(directives);
+      }
+    }
+    String prefix = path.endsWith(Path.SEPARATOR) ?
+        path : path + Path.SEPARATOR;
+    for (List<CacheDirective> below : directivesByPath.subMap(prefix, true,
+        prefix + Character.MAX_VALUE, false).values()) {
+      dirty.addAll(below);
+    }
+    if (dirty.isEmpty()) {
+      return;
+    }
+    crmLock.lock();
+    try {
+      if (monitor != null) {
+        for (CacheDirective directive : dirty) {
+          monitor.setDirectiveDirty(directive.getId());
+        }
+      }
+    } finally {
+      crmLock.unlock();
+    }
+  }
+
   @VisibleForTesting
   public Thread getCacheReplicationMonitor() {
     crmLock.lock();
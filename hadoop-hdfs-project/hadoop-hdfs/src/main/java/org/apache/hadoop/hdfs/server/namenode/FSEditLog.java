@@ -41,6 +41,7 @@
 import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.inotify.Event;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
 import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
@@ -193,6 +194,11 @@ private enum State {
    */
   private final List<URI> sharedEditsDirs;
 
+  /**
+   * Recent inotify events, null if disabled.
+   */
+  private final InotifyEventCache inotifyEventCache;
+
   /**
    * Take this lock when adding journals to or closing the JournalSet. Allows
    * us to ensure that the JournalSet isn't closed or updated underneath us
@@ -247,6 +253,12 @@ static FSEditLog newInstance(Configuration conf, NNStorage storage,
     this.editsDirs = Lists.newArrayList(editsDirs);
 
     this.sharedEditsDirs = FSNamesystem.getSharedEditsDirs(conf);
+
+    int inotifyCacheSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_INOTIFY_EVENT_CACHE_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_INOTIFY_EVENT_CACHE_SIZE_DEFAULT);
+    this.inotifyEventCache = inotifyCacheSize > 0
+        ? new InotifyEventCache(inotifyCacheSize) : null;
   }
   
   public synchronized void initJournalsForWrite() {
@@ -402,6 +414,9 @@ synchronized void close() {
           LOG.warn("Error closing journalSet", ioe);
         }
       }
+      if (inotifyEventCache != null) {
+        inotifyEventCache.clear();
+      }
       state = State.CLOSED;
     }
   }
@@ -447,6 +462,7 @@ synchronized List<FormatConfirmable> getFormatConfirmables() {
    * if a time interval has elapsed).
    */
   void logEdit(final FSEditLogOp op) {
+    final Event[] events = translateForInotify(op);
     boolean needsSync = false;
     synchronized (this) {
       assert isOpenForWrite() :
@@ -456,7 +472,7 @@ assert isOpenForWrite() :
       waitIfAutoSyncScheduled();
 
       // check if it is time to schedule an automatic sync
-      needsSync = doEditTransaction(op);
+      needsSync = doEditTransaction(op, events);
       if (needsSync) {
         isAutoSyncScheduled = true;
       }
@@ -468,9 +484,25 @@ assert isOpenForWrite() :
     }
   }
 
-  synchronized boolean doEditTransaction(final FSEditLogOp op) {
+  /**
+   * Translate the op for the inotify event cache. Done before the op is
+   * logged, so that the edit log lock is not held meanwhile.
+   * @return null if the cache is disabled or inactive
+   */
+  Event[] translateForInotify(FSEditLogOp op) {
+    return inotifyEventCache != null ? inotifyEventCache.translate(op) : null;
+  }
+
+  /**
+   * @param events the events of the op, see {@link #translateForInotify}
+   */
+  synchronized boolean doEditTransaction(final FSEditLogOp op,
+      final Event[] events) {
     long start = beginTransaction();
     op.setTransactionId(txid);
+    if (inotifyEventCache != null) {
+      inotifyEventCache.add(txid, events);
+    }
 
     try {
       editLogStream.write(op);
@@ -1463,6 +1495,13 @@ public synchronized long getSyncTxId() {
     return synctxid;
   }
 
+  /**
+   * @return the cache of recent inotify events, null if it is disabled
+   */
+  InotifyEventCache getInotifyEventCache() {
+    return inotifyEventCache;
+  }
+
 
   // sets the initial capacity of the flush buffer.
   synchronized void setOutputBufferCapacity(int size) {
@@ -29,6 +29,7 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.inotify.Event;
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.util.ExitUtil;
 import com.google.common.annotations.VisibleForTesting;
@@ -113,7 +114,7 @@ public void close() {
 
   @Override
   void logEdit(final FSEditLogOp op) {
-    Edit edit = getEditInstance(op);
+    Edit edit = getEditInstance(op, translateForInotify(op));
     threadEdit.set(edit);
     enqueueEdit(edit);
   }
@@ -135,7 +136,7 @@ public void logSync() {
   public void logSyncAll() {
     // doesn't actually log anything, just ensures that the queues are
     // drained when it returns.
-    Edit edit = new SyncEdit(this, null){
+    Edit edit = new SyncEdit(this, null, null){
       @Override
       public boolean logEdit() {
         return true;
@@ -207,14 +208,14 @@ private void terminate(Throwable t) {
     ExitUtil.terminate(1, message);
   }
 
-  private Edit getEditInstance(FSEditLogOp op) {
+  private Edit getEditInstance(FSEditLogOp op, Event[] events) {
     final Edit edit;
     final Server.Call rpcCall = Server.getCurCall().get();
     // only rpc calls not explicitly sync'ed on the log will be async.
     if (rpcCall != null && !Thread.holdsLock(this)) {
-      edit = new RpcEdit(this, op, rpcCall);
+      edit = new RpcEdit(this, op, events, rpcCall);
     } else {
-      edit = new SyncEdit(this, op);
+      edit = new SyncEdit(this, op, events);
     }
     return edit;
   }
@@ -222,15 +223,18 @@ private Edit getEditInstance(FSEditLogOp op) {
   private abstract static class Edit {
     final FSEditLog log;
     final FSEditLogOp op;
+    // inotify events of the op, translated by the calling thread
+    final Event[] events;
 
-    Edit(FSEditLog log, FSEditLogOp op) {
+    Edit(FSEditLog log, FSEditLogOp op, Event[] events) {
       this.log = log;
       this.op = op;
+      this.events = events;
     }
 
     // return whether edit log wants to sync.
     boolean logEdit() {
-      return log.doEditTransaction(op);
+      return log.doEditTransaction(op, events);
     }
 
     // wait for background thread to finish syncing.
@@ -245,8 +249,8 @@ private static class SyncEdit extends Edit {
     private boolean done = false;
     private RuntimeException syncEx;
 
-    SyncEdit(FSEditLog log, FSEditLogOp op) {
-      super(log, op);
+    SyncEdit(FSEditLog log, FSEditLogOp op, Event[] events) {
+      super(log, op, events);
       // if the log is already sync'ed (ex. log rolling), must wait on it to
       // avoid deadlock with sync thread.  the fsn lock protects against
       // logging during a roll.  else lock on this object to avoid sync
@@ -291,8 +295,9 @@ public String toString() {
   private static class RpcEdit extends Edit {
     private final Server.Call call;
 
-    RpcEdit(FSEditLog log, FSEditLogOp op, Server.Call call) {
-      super(log, op);
+    RpcEdit(FSEditLog log, FSEditLogOp op, Event[] events,
+        Server.Call call) {
+      super(log, op, events);
       this.call = call;
       call.postponeResponse();
     }
@@ -2456,6 +2456,7 @@ LastBlockWithStatus appendFile(String srcArg, String holder,
         checkNameNodeSafeMode("Cannot append to file" + srcArg);
         lbs = FSDirAppendOp.appendFile(this, srcArg, pc, holder, clientMachine,
             newBlock, logRetryCache);
+        cacheManager.setPathDirty(srcArg);
       } catch (StandbyException se) {
         skipSync = true;
         throw se;
@@ -2675,6 +2676,9 @@ boolean completeFile(final String src, String holder,
       checkNameNodeSafeMode("Cannot complete file " + src);
       success = FSDirWriteFileOp.completeFile(this, pc, src, holder, last,
                                               fileId);
+      if (success) {
+        cacheManager.setPathDirty(src);
+      }
     } finally {
       writeUnlock("completeFile");
     }
@@ -2751,6 +2755,10 @@ boolean renameTo(String src, String dst, boolean logRetryCache)
       checkOperation(OperationCategory.WRITE);
       checkNameNodeSafeMode("Cannot rename " + src);
       ret = FSDirRenameOp.renameToInt(dir, src, dst, logRetryCache);
+      if (ret.success) {
+        cacheManager.setPathDirty(src);
+        cacheManager.setPathDirty(dst);
+      }
     } catch (AccessControlException e)  {
       logAuditEvent(false, operationName, src, dst, null);
       throw e;
@@ -2775,6 +2783,8 @@ void renameTo(final String src, final String dst,
       checkOperation(OperationCategory.WRITE);
       checkNameNodeSafeMode("Cannot rename " + src);
       res = FSDirRenameOp.renameToInt(dir, src, dst, logRetryCache, options);
+      cacheManager.setPathDirty(src);
+      cacheManager.setPathDirty(dst);
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName + " (options=" +
           Arrays.toString(options) + ")", src, dst, null);
@@ -2813,6 +2823,9 @@ boolean delete(String src, boolean recursive, boolean logRetryCache)
       toRemovedBlocks = FSDirDeleteOp.delete(
           this, src, recursive, logRetryCache);
       ret = toRemovedBlocks != null;
+      if (ret) {
+        cacheManager.setPathDirty(src);
+      }
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
       throw e;
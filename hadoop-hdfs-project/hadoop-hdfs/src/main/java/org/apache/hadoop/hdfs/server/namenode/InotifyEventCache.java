@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.namenode;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.inotify.Event;
+import org.apache.hadoop.hdfs.inotify.EventBatch;
+import org.apache.hadoop.hdfs.inotify.EventBatchList;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
+
+import java.util.List;
+
+/**
+ * Ring of the inotify event batches translated from the most recently
+ * logged edits, so inotify reads near the tail of the edit log are served
+ * without reading and decoding edit log segments.
+ * <p>
+ * The cache only covers a contiguous range of txids: every op logged in the
+ * range was offered to it, including those without events. It stays empty
+ * until the first inotify read, so NameNodes without inotify readers do not
+ * pay for translating every op.
+ */
+@InterfaceAudience.Private
+public class InotifyEventCache {
+  private static final Event[] NO_EVENTS = new Event[0];
+
+  private final EventBatch[] ring;
+  private int head = 0;
+  private int size = 0;
+
+  /**
+   * First txid covered, -1 if the cache is empty.
+   */
+  private long firstTxid = -1;
+
+  /**
+   * Last txid covered, -1 if the cache is empty.
+   */
+  private long lastTxid = -1;
+
+  private volatile boolean active = false;
+
+  public InotifyEventCache(int capacity) {
+    Preconditions.checkArgument(capacity > 0,
+        "Inotify event cache capacity must be positive.");
+    this.ring = new EventBatch[capacity];
+  }
+
+  /**
+   * Start caching, called when inotify events are first read.
+   */
+  void activate() {
+    active = true;
+  }
+
+  boolean isActive() {
+    return active;
+  }
+
+  /**
+   * Events of an op about to be logged, it has no txid yet.
+   * @return null if the cache is not active
+   */
+  Event[] translate(FSEditLogOp op) {
+    if (!active) {
+      return null;
+    }
+    EventBatch batch = InotifyFSEditLogOpTranslator.translate(op);
+    return batch == null ? NO_EVENTS : batch.getEvents();
+  }
+
+  /**
+   * Offer the events of a logged op, as returned by
+   * {@link #translate(FSEditLogOp)}. Must be called for every op, in txid
+   * order.
+   */
+  void add(long txid, Event[] events) {
+    if (!active) {
+      return;
+    }
+    if (events == null) {
+      // Translated before the cache was activated, it is not covered
+      clear();
+      return;
+    }
+    add(txid, events.length == 0 ? null : new EventBatch(txid, events));
+  }
+
+  @VisibleForTesting
+  synchronized void add(long txid, EventBatch batch) {
+    if (lastTxid != -1 && txid != lastTxid + 1) {
+      // A gap, e.g. after a failover, the covered range starts again
+      clear();
+    }
+    if (firstTxid == -1) {
+      firstTxid = txid;
+    }
+    lastTxid = txid;
+    if (batch == null) {
+      return;
+    }
+    if (size == ring.length) {
+      // Drop the oldest batch, txids up to it are no longer covered
+      firstTxid = ring[head].getTxid() + 1;
+      ring[head] = null;
+      head = (head + 1) % ring.length;
+      size--;
+    }
+    ring[(head + size) % ring.length] = batch;
+    size++;
+  }
+
+  synchronized void clear() {
+    for (int i = 0; i < ring.length; i++) {
+      ring[i] = null;
+    }
+    head = 0;
+    size = 0;
+    firstTxid = -1;
+    lastTxid = -1;
+  }
+
+  /**
+   * Read the events from txid on, in the same form as a read from the edit
+   * log.
+   *
+   * @param txid first txid to read
+   * @param syncTxid last txid known to be synced, no later events are read
+   * @param maxEvents stop after the batch which reaches this many events
+   * @param filter null to return all events
+   * @return null if txid is not covered by the cache
+   */
+  synchronized EventBatchList read(long txid, long syncTxid, int maxEvents,
+      EventFilter filter) {
+    if (firstTxid == -1 || txid < firstTxid || txid > lastTxid + 1) {
+      return null;
+    }
+    List<EventBatch> batches = Lists.newArrayList();
+    long upTo = Math.min(lastTxid, syncTxid);
+    if (txid > upTo) {
+      return new EventBatchList(batches, -1, -1, syncTxid);
+    }
+    long readTo = upTo;
+    int totalEvents = 0;
+    for (int i = firstIndexFrom(txid); i < size; i++) {
+      EventBatch batch = ring[(head + i) % ring.length];
+      if (batch.getTxid() > upTo) {
+        break;
+      }
+      if (filter != null) {
+        batch = filter.filter(batch);
+        if (batch == null) {
+          continue;
+        }
+      }
+      batches.add(batch);
+      totalEvents += batch.getEvents().length;
+      if (totalEvents >= maxEvents) {
+        readTo = batch.getTxid();
+        break;
+      }
+    }
+    return new EventBatchList(batches, txid, readTo, syncTxid);
+  }
+
+  /**
+   * @return the position of the first batch with a txid not before txid
+   */
+  private int firstIndexFrom(long txid) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (ring[(head + mid) % ring.length].getTxid() < txid) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  @VisibleForTesting
+  synchronized long getFirstTxid() {
+    return firstTxid;
+  }
+
+  @VisibleForTesting
+  synchronized long getLastTxid() {
+    return lastTxid;
+  }
+}
@@ -37,6 +37,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -86,8 +87,10 @@
 import org.apache.hadoop.hdfs.HDFSPolicyProvider;
 import org.apache.hadoop.hdfs.inotify.EventBatch;
 import org.apache.hadoop.hdfs.inotify.EventBatchList;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.protocol.AclException;
 import org.apache.hadoop.hdfs.protocol.AlreadyBeingCreatedException;
+import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
@@ -104,6 +107,7 @@
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.FSLimitException;
 import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.hdfs.protocol.FileReadVolume;
 import org.apache.hadoop.hdfs.protocol.FilesAccessInfo;
 import org.apache.hadoop.hdfs.protocol.FilesInfo;
 import org.apache.hadoop.hdfs.protocol.LastBlockWithStatus;
@@ -141,6 +145,7 @@
 import org.apache.hadoop.hdfs.security.token.block.DataEncryptionKey;
 import org.apache.hadoop.hdfs.security.token.block.ExportedBlockKeys;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManagerFaultInjector;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
@@ -150,6 +155,7 @@
 import org.apache.hadoop.hdfs.server.namenode.NameNode.OperationCategory;
 import org.apache.hadoop.hdfs.server.namenode.metrics.FileAccessMetrics;
 import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.protocol.BlockReadCounts;
 import org.apache.hadoop.hdfs.server.protocol.BlockReportContext;
 import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
@@ -256,21 +262,80 @@ public class NameNodeRpcServer implements NamenodeProtocols {
   private final String minimumDataNodeVersion;
 
   private List<FileAccessEvent> accessEvents = new ArrayList<>();
+  /**
+   * Block reads reported by DataNodes, resolved to files when the access
+   * info is fetched.
+   */
+  private List<BlockReadCounts> blockReads = new ArrayList<>();
+  private int numPendingBlockReads = 0;
+  private final int maxPendingBlockReads;
 
   @Override
   public FilesAccessInfo getFilesAccessInfo() throws IOException {
+    List<FileAccessEvent> events;
+    List<BlockReadCounts> reads;
     synchronized (accessEvents) {
-      FilesAccessInfo ret = new FilesAccessInfo(accessEvents);
-      this.accessEvents.clear();
-      return ret;
+      events = new ArrayList<>(accessEvents);
+      accessEvents.clear();
+      reads = blockReads;
+      blockReads = new ArrayList<>();
+      numPendingBlockReads = 0;
+    }
+    return new FilesAccessInfo(events, resolveBlockReads(reads));
+  }
+
+  /**
+   * Sum up block reads per file, all reports are resolved under one read
+   * lock. Blocks deleted since they were reported are skipped.
+   */
+  private List<FileReadVolume> resolveBlockReads(List<BlockReadCounts> reads) {
+    if (reads.isEmpty()) {
+      return Collections.emptyList();
+    }
+    // {numReads, bytesRead} per file
+    Map<Long, long[]> perFile = new HashMap<>();
+    Map<Long, String> paths = new HashMap<>();
+    final BlockManager bm = namesystem.getBlockManager();
+    namesystem.readLock();
+    try {
+      for (BlockReadCounts counts : reads) {
+        long[] blockIds = counts.getBlockIds();
+        for (int i = 0; i < blockIds.length; i++) {
+          BlockInfo stored = bm.getStoredBlock(new Block(blockIds[i]));
+          if (stored == null || stored.isDeleted()) {
+            continue;
+          }
+          long bcId = stored.getBlockCollectionId();
+          long[] volume = perFile.get(bcId);
+          if (volume == null) {
+            INodeFile file = namesystem.getBlockCollection(bcId);
+            if (file == null) {
+              continue;
+            }
+            paths.put(bcId, file.getFullPathName());
+            volume = new long[2];
+            perFile.put(bcId, volume);
+          }
+          volume[0] += counts.getNumReads()[i];
+          volume[1] += counts.getBytesRead()[i];
+        }
+      }
+    } finally {
+      namesystem.readUnlock("resolveBlockReads");
+    }
+    List<FileReadVolume> volumes = new ArrayList<>(perFile.size());
+    for (Map.Entry<Long, long[]> e : perFile.entrySet()) {
+      volumes.add(new FileReadVolume(paths.get(e.getKey()),
+          e.getValue()[0], e.getValue()[1]));
     }
+    return volumes;
   }
 
   @Override
   public FilesInfo getFilesInfo(String[] filePaths, int infoType,
       boolean expandDir, boolean includeDir) throws IOException {
     int types = infoType & FilesInfo.ALL;
-    FilesInfo info = new FilesInfo(types);
+    FilesInfo info = new FilesInfo(types, filePaths.length);
     if (types == 0 || filePaths.length == 0) {
       return info;
     }
@@ -544,6 +609,9 @@ public NameNodeRpcServer(Configuration conf, NameNode nn)
     minimumDataNodeVersion = conf.get(
         DFSConfigKeys.DFS_NAMENODE_MIN_SUPPORTED_DATANODE_VERSION_KEY,
         DFSConfigKeys.DFS_NAMENODE_MIN_SUPPORTED_DATANODE_VERSION_DEFAULT);
+    maxPendingBlockReads = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_READ_REPORT_MAX_PENDING_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_READ_REPORT_MAX_PENDING_DEFAULT);
 
     // Set terse exception whose stack trace won't be logged
     clientRpcServer.addTerseExceptions(SafeModeException.class,
@@ -1559,6 +1627,29 @@ public DatanodeCommand cacheReport(DatanodeRegistration nodeReg,
     return null;
   }
 
+  @Override // DatanodeProtocol
+  public void reportBlockReads(DatanodeRegistration nodeReg,
+      String poolId, BlockReadCounts counts) throws IOException {
+    checkNNStartup();
+    verifyRequest(nodeReg);
+    if (blockStateChangeLog.isDebugEnabled()) {
+      blockStateChangeLog.debug("*BLOCK* NameNode.reportBlockReads: "
+           + "from " + nodeReg + " " + counts.size() + " blocks");
+    }
+    // Queued as is, the namesystem lock is taken once per fetch of the
+    // access info rather than once per report
+    synchronized (accessEvents) {
+      if (numPendingBlockReads + counts.size() > maxPendingBlockReads) {
+        LOG.debug("Drop reads of {} block(s) from {}, {} block reads "
+            + "pending already", counts.size(), nodeReg,
+            numPendingBlockReads);
+        return;
+      }
+      blockReads.add(counts);
+      numPendingBlockReads += counts.size();
+    }
+  }
+
   @Override // DatanodeProtocol
   public void blockReceivedAndDeleted(final DatanodeRegistration nodeReg,
       String poolId, StorageReceivedDeletedBlocks[] receivedAndDeletedBlocks)
@@ -2197,6 +2288,12 @@ private static FSEditLogOp readOp(EditLogInputStream elis)
 
   @Override // ClientProtocol
   public EventBatchList getEditsFromTxid(long txid) throws IOException {
+    return getEditsFromTxid(txid, null);
+  }
+
+  @Override // ClientProtocol
+  public EventBatchList getEditsFromTxid(long txid, EventFilter filter)
+      throws IOException {
     checkNNStartup();
     namesystem.checkOperation(OperationCategory.READ); // only active
     namesystem.checkSuperuserPrivilege();
@@ -2225,6 +2322,20 @@ public EventBatchList getEditsFromTxid(long txid) throws IOException {
       return new EventBatchList(batches, firstSeenTxid, maxSeenTxid, syncTxid);
     }
 
+    // Readers close to the tail are served from memory. Before anything is
+    // synced we can't tell which cached txns are committed, so go to disk.
+    InotifyEventCache cache = log.getInotifyEventCache();
+    if (cache != null) {
+      cache.activate();
+      if (syncTxid > 0) {
+        EventBatchList cached =
+            cache.read(txid, syncTxid, maxEventsPerRPC, filter);
+        if (cached != null) {
+          return cached;
+        }
+      }
+    }
+
     Collection<EditLogInputStream> streams = null;
     try {
       streams = log.selectInputStreams(txid, 0, null, readInProgress);
@@ -2253,6 +2364,9 @@ public EventBatchList getEditsFromTxid(long txid) throws IOException {
           }
 
           EventBatch eventBatch = InotifyFSEditLogOpTranslator.translate(op);
+          if (eventBatch != null && filter != null) {
+            eventBatch = filter.filter(eventBatch);
+          }
           if (eventBatch != null) {
             batches.add(eventBatch);
             totalEvents += eventBatch.getEvents().length;
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.protocol;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+/**
+ * Reads of blocks served by a Datanode since its previous report.
+ *
+ * The three arrays are parallel: the i-th block was read numReads[i] times,
+ * for a total of bytesRead[i] bytes.  Bytes read through short-circuit
+ * local reads are not seen by the Datanode and are not included.
+ */
+@InterfaceAudience.Private
+public class BlockReadCounts {
+  private final long[] blockIds;
+  private final long[] numReads;
+  private final long[] bytesRead;
+
+  public BlockReadCounts(long[] blockIds, long[] numReads, long[] bytesRead) {
+    if (blockIds.length != numReads.length
+        || blockIds.length != bytesRead.length) {
+      throw new IllegalArgumentException("Mismatched block read count arrays");
+    }
+    this.blockIds = blockIds;
+    this.numReads = numReads;
+    this.bytesRead = bytesRead;
+  }
+
+  public int size() {
+    return blockIds.length;
+  }
+
+  public long[] getBlockIds() {
+    return blockIds;
+  }
+
+  public long[] getNumReads() {
+    return numReads;
+  }
+
+  public long[] getBytesRead() {
+    return bytesRead;
+  }
+}
@@ -166,6 +166,19 @@ public DatanodeCommand blockReport(DatanodeRegistration registration,
   public DatanodeCommand cacheReport(DatanodeRegistration registration,
       String poolId, List<Long> blockIds) throws IOException;
 
+  /**
+   * reportBlockReads() tells the NameNode how often each block of the given
+   * block pool was read from this DataNode since the previous call.  It is
+   * sent on the heartbeat cadence and only when there were reads.
+   *
+   * @param registration The datanode registration.
+   * @param poolId       The block pool ID for the blocks.
+   * @param counts       Reads per block since the previous report.
+   * @throws IOException
+   */
+  public void reportBlockReads(DatanodeRegistration registration,
+      String poolId, BlockReadCounts counts) throws IOException;
+
   /**
    * blockReceivedAndDeleted() allows the DataNode to tell the NameNode about
    * recently-received and -deleted block data. 
@@ -20,12 +20,17 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.hdfs.protocol.FileReadVolume;
 import org.apache.hadoop.hdfs.protocol.FilesAccessInfo;
 import org.apache.hadoop.hdfs.protocol.NNEvent;
+import org.apache.hadoop.hdfs.server.protocol.BlockReadCounts;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
@@ -155,4 +160,93 @@ public void testMultiAccessMultiFilesMultiRounds() throws IOException {
       cluster.shutdown();
     }
   }
+
+  @Test(timeout=60000)
+  public void testReadVolumes() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_DATANODE_BLOCK_READ_REPORT_ENABLED_KEY, true);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/readvolume");
+      DFSTestUtil.createFile(fs, file, 4096, (short) 1, 0);
+      int numReads = 3;
+      for (int i = 0; i < numReads; i++) {
+        DFSTestUtil.readFileBuffer(fs, file);
+      }
+
+      long reads = 0;
+      long bytes = 0;
+      while (reads < numReads) {
+        cluster.triggerHeartbeats();
+        Thread.sleep(100);
+        for (FileReadVolume volume
+            : fs.dfs.getFilesAccessInfo().getFileReadVolumes()) {
+          assertEquals(file.toString(), volume.getPath());
+          reads += volume.getNumReads();
+          bytes += volume.getBytesRead();
+        }
+      }
+      assertEquals(numReads, reads);
+      assertTrue(bytes >= numReads * 4096L);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testPendingBlockReadsCapped() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_READ_REPORT_MAX_PENDING_KEY, 2);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file1 = new Path("/readvolume1");
+      Path file2 = new Path("/readvolume2");
+      DFSTestUtil.createFile(fs, file1, 1024, (short) 1, 0);
+      DFSTestUtil.createFile(fs, file2, 1024, (short) 1, 0);
+      long b1 = DFSTestUtil.getFirstBlock(fs, file1).getBlockId();
+      long b2 = DFSTestUtil.getFirstBlock(fs, file2).getBlockId();
+      String bpid = cluster.getNamesystem().getBlockPoolId();
+      DatanodeRegistration reg =
+          cluster.getDataNodes().get(0).getDNRegistrationForBP(bpid);
+      NamenodeProtocols nn = cluster.getNameNodeRpc();
+
+      nn.reportBlockReads(reg, bpid, new BlockReadCounts(
+          new long[] {b1}, new long[] {1}, new long[] {100}));
+      // Beyond the cap, dropped
+      nn.reportBlockReads(reg, bpid, new BlockReadCounts(
+          new long[] {b1, b2}, new long[] {1, 1}, new long[] {100, 100}));
+      nn.reportBlockReads(reg, bpid, new BlockReadCounts(
+          new long[] {b2}, new long[] {2}, new long[] {200}));
+      Map<String, FileReadVolume> volumes = getReadVolumes(fs);
+      assertEquals(2, volumes.size());
+      assertEquals(1, volumes.get(file1.toString()).getNumReads());
+      assertEquals(100, volumes.get(file1.toString()).getBytesRead());
+      assertEquals(2, volumes.get(file2.toString()).getNumReads());
+      assertEquals(200, volumes.get(file2.toString()).getBytesRead());
+
+      // Pending reads are drained by the fetch
+      nn.reportBlockReads(reg, bpid, new BlockReadCounts(
+          new long[] {b1, b2}, new long[] {1, 1}, new long[] {100, 100}));
+      assertEquals(2, getReadVolumes(fs).size());
+      assertTrue(getReadVolumes(fs).isEmpty());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  private Map<String, FileReadVolume> getReadVolumes(DistributedFileSystem fs)
+      throws IOException {
+    Map<String, FileReadVolume> ret = new HashMap<>();
+    for (FileReadVolume volume
+        : fs.dfs.getFilesAccessInfo().getFileReadVolumes()) {
+      ret.put(volume.getPath(), volume);
+    }
+    return ret;
+  }
 }
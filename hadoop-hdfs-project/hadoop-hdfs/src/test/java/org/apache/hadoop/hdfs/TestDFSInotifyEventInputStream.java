@@ -29,6 +29,7 @@
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.inotify.Event;
 import org.apache.hadoop.hdfs.inotify.EventBatch;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.inotify.MissingEventsException;
 import org.apache.hadoop.hdfs.qjournal.MiniQJMHACluster;
 import org.apache.hadoop.hdfs.server.namenode.FSEditLogOpCodes;
@@ -40,6 +41,8 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -523,4 +526,42 @@ public void run() {
       cluster.shutdown();
     }
   }
+
+  @Test(timeout = 120000)
+  public void testFilteredStream() throws IOException, MissingEventsException {
+    Configuration conf = new HdfsConfiguration();
+    MiniQJMHACluster cluster = new MiniQJMHACluster.Builder(conf).build();
+
+    try {
+      cluster.getDfsCluster().waitActive();
+      cluster.getDfsCluster().transitionToActive(0);
+      DFSClient client = new DFSClient(cluster.getDfsCluster().getNameNode(0)
+          .getNameNodeAddress(), conf);
+      // the filter travels to the NameNode through getEditsFromTxid
+      DFSInotifyEventInputStream eis = client.getInotifyEventStream(
+          client.getNamenode().getCurrentEditLogTxid(),
+          new EventFilter(Collections.singletonList("/a/"),
+              Arrays.asList(Event.EventType.CREATE)));
+      client.mkdirs("/a", null, false);
+      client.mkdirs("/b", null, false);
+      client.mkdirs("/ab", null, false);
+      client.mkdirs("/b/c", null, false);
+      client.mkdirs("/a/c", null, false);
+      client.delete("/a/c", false);
+      client.mkdirs("/a/d", null, false);
+
+      String[] expected = {"/a", "/a/c", "/a/d"};
+      for (String path : expected) {
+        EventBatch batch = waitForNextEvents(eis);
+        Assert.assertEquals(1, batch.getEvents().length);
+        Assert.assertEquals(Event.EventType.CREATE,
+            batch.getEvents()[0].getEventType());
+        Assert.assertEquals(path,
+            ((Event.CreateEvent) batch.getEvents()[0]).getPath());
+      }
+      Assert.assertNull(eis.poll());
+    } finally {
+      cluster.shutdown();
+    }
+  }
 }
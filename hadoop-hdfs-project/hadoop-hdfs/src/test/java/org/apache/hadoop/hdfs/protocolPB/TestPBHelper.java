@@ -25,6 +25,7 @@
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -40,6 +41,7 @@
 import org.apache.hadoop.fs.permission.AclEntryType;
 import org.apache.hadoop.fs.permission.AclStatus;
 import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.FsServerDefaults;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
@@ -53,6 +55,11 @@
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo.DatanodeInfoBuilder;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo.AdminStates;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.hdfs.protocol.FileReadVolume;
+import org.apache.hadoop.hdfs.protocol.FilesAccessInfo;
+import org.apache.hadoop.hdfs.protocol.FilesInfo;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockCommandProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockECReconstructionCommandProto;
@@ -984,4 +991,74 @@ public void testErasureCodingPolicyMissingOptionalFields() throws Exception {
       GenericTestUtils.assertExceptionContains("Missing", e);
     }
   }
+
+  @Test
+  public void testConvertFilesInfo() {
+    int types = FilesInfo.LENGTH | FilesInfo.BLOCK_REPLICATION
+        | FilesInfo.OWNER | FilesInfo.GROUP | FilesInfo.FILEID;
+    FilesInfo info = new FilesInfo(types, 1);
+    String[] paths = {"/a/f1", "/a/f2", "/b/c/f3", "/f4"};
+    for (int i = 0; i < paths.length; i++) {
+      info.addPath(paths[i]);
+      info.addValue(FilesInfo.ALL, new HdfsFileStatus(1024L * i, false,
+          (short) (i + 1), 128L, 0, 0, new FsPermission((short) 0644),
+          "user" + (i % 2), "group", new byte[0], new byte[0], 16385 + i, 0,
+          null, (byte) 0, null));
+    }
+    HdfsProtos.FilesInfoProto proto = PBHelperClient.convert(info);
+    // Both files of /a share one parent
+    assertEquals(3, proto.getPaths().getParentsCount());
+    assertEquals(3, proto.getUserNamesCount());
+    assertEquals(0, proto.getModificationTimeCount());
+
+    FilesInfo info2 = PBHelperClient.convert(proto);
+    assertEquals(types, info2.getVaildItems());
+    assertEquals(paths.length, info2.size());
+    assertEquals(Arrays.asList(paths), info2.getAllPaths());
+    for (int i = 0; i < paths.length; i++) {
+      assertEquals(1024L * i, info2.getLengths()[i]);
+      assertEquals(i + 1, info2.getBlockReplications()[i]);
+      assertEquals("user" + (i % 2), info2.getOwners()[i]);
+      assertEquals("group", info2.getGroups()[i]);
+      assertEquals(16385 + i, info2.getFileIds()[i]);
+    }
+    assertEquals(Arrays.asList(0L, 1024L, 2048L, 3072L), info2.getLength());
+    assertTrue(info2.getModificationTime().isEmpty());
+    assertTrue(info2.getModificationTimes() == null);
+  }
+
+  @Test
+  public void testConvertFilesAccessInfo() {
+    List<FileAccessEvent> events = Arrays.asList(
+        new FileAccessEvent("/a/f1", "", 1000L),
+        new FileAccessEvent("/a/f2", "u1", 1500L),
+        new FileAccessEvent("/a/f1", "", 1400L),
+        new FileAccessEvent("/b/f3", "u1", 3000L),
+        new FileAccessEvent("/b/f3", null, 3100L));
+    List<FileReadVolume> volumes = Arrays.asList(
+        new FileReadVolume("/a/f1", 2, 4096),
+        new FileReadVolume("/c/f5", 1, 100));
+    HdfsProtos.FilesAccessInfoProto proto =
+        PBHelperClient.convert(new FilesAccessInfo(events, volumes));
+    assertEquals(4, proto.getPaths().getNamesCount());
+    assertEquals(2, proto.getUsersCount());
+
+    FilesAccessInfo info = PBHelperClient.convert(proto);
+    List<FileAccessEvent> events2 = info.getFileAccessEvents();
+    assertEquals(events.size(), events2.size());
+    for (int i = 0; i < events.size(); i++) {
+      assertEquals(events.get(i).getPath(), events2.get(i).getPath());
+      assertEquals(events.get(i).getUser(), events2.get(i).getUser());
+      assertEquals(events.get(i).getTimestamp(),
+          events2.get(i).getTimestamp());
+    }
+    assertSame(events2.get(0).getPath(), events2.get(2).getPath());
+    // Unknown user stays unknown rather than becoming ""
+    assertNull(events2.get(4).getUser());
+    List<FileReadVolume> volumes2 = info.getFileReadVolumes();
+    assertEquals(2, volumes2.size());
+    assertEquals("/c/f5", volumes2.get(1).getPath());
+    assertEquals(2, volumes2.get(0).getNumReads());
+    assertEquals(4096, volumes2.get(0).getBytesRead());
+  }
 }
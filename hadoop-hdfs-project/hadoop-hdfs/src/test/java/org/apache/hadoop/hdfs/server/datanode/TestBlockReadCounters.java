@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.hdfs.server.protocol.BlockReadCounts;
+import org.junit.Test;
+
+/**
+ * Test the per block read counters reported to the NameNode.
+ */
+public class TestBlockReadCounters {
+  private static final String BPID = "BP-1";
+
+  @Test
+  public void testRecordAndDrain() {
+    BlockReadCounters counters = new BlockReadCounters(100000);
+    assertNull(counters.drain(BPID));
+
+    // Enough blocks to make the table grow several times
+    int numBlocks = 5000;
+    for (int i = 0; i < numBlocks; i++) {
+      counters.record(BPID, 1073741825L + i, 100);
+      if (i % 2 == 0) {
+        counters.record(BPID, 1073741825L + i, 50);
+      }
+    }
+    counters.record("BP-2", 1073741825L, 10);
+
+    BlockReadCounts counts = counters.drain(BPID);
+    assertEquals(numBlocks, counts.size());
+    Map<Long, Integer> index = new HashMap<>();
+    for (int i = 0; i < counts.size(); i++) {
+      index.put(counts.getBlockIds()[i], i);
+    }
+    for (int i = 0; i < numBlocks; i++) {
+      int j = index.get(1073741825L + i);
+      assertEquals(i % 2 == 0 ? 2 : 1, counts.getNumReads()[j]);
+      assertEquals(i % 2 == 0 ? 150 : 100, counts.getBytesRead()[j]);
+    }
+
+    // Counters are reset by drain, other pools are untouched
+    assertNull(counters.drain(BPID));
+    counters.record(BPID, 1073741825L, 1);
+    counts = counters.drain(BPID);
+    assertEquals(1, counts.size());
+    assertEquals(1, counts.getNumReads()[0]);
+    assertEquals(1, counters.drain("BP-2").size());
+  }
+
+  @Test
+  public void testMaxBlocks() {
+    BlockReadCounters counters = new BlockReadCounters(2);
+    counters.record(BPID, 1, 10);
+    counters.record(BPID, 2, 10);
+    counters.record(BPID, 3, 10);
+    counters.record(BPID, 1, 10);
+    assertEquals(1, counters.getDropped(BPID));
+    BlockReadCounts counts = counters.drain(BPID);
+    assertEquals(2, counts.size());
+
+    counters.record(BPID, 3, 10);
+    assertEquals(1, counters.drain(BPID).size());
+  }
+}
@@ -1541,4 +1541,67 @@ public void testNoLookupsWhenNotUsed() throws Exception {
     cm.setCachedLocations(locations);
     Mockito.verifyZeroInteractions(locations);
   }
+
+  /**
+   * Tests that incremental rescans pick up directive and namespace changes
+   * without waiting for a full rescan.
+   */
+  @Test(timeout=120000)
+  public void testIncrementalRescan() throws Exception {
+    cluster.shutdown();
+    conf = createCachingConf();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_ENABLED,
+        true);
+    conf.setInt(
+        DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_INCREMENTAL_RESCAN_CHUNK_SIZE,
+        1);
+    conf.setLong(
+        DFSConfigKeys.DFS_NAMENODE_PATH_BASED_CACHE_FULL_RESCAN_INTERVAL_MS,
+        3600000L);
+    cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(NUM_DATANODES).build();
+    cluster.waitActive();
+    dfs = cluster.getFileSystem();
+    proto = cluster.getNameNodeRpc();
+    namenode = cluster.getNameNode();
+
+    final String pool = "incrementalPool";
+    dfs.addCachePool(new CachePoolInfo(pool));
+    final int numBlocksPerFile = 2;
+    dfs.mkdir(new Path("/inc"), FsPermission.getDirDefault());
+    FileSystemTestHelper.createFile(dfs, new Path("/inc/a"), numBlocksPerFile,
+        (int)BLOCK_SIZE, (short)3, false);
+    long id = dfs.addCacheDirective(
+        new CacheDirectiveInfo.Builder().
+          setPath(new Path("/inc")).
+          setReplication((short)2).
+          setPool(pool).
+          build());
+    waitForCachedBlocks(namenode, 2, 4, "testIncrementalRescan:0");
+
+    // Closing a new file in the cached directory dirties the directive
+    FileSystemTestHelper.createFile(dfs, new Path("/inc/b"), numBlocksPerFile,
+        (int)BLOCK_SIZE, (short)3, false);
+    waitForCachedBlocks(namenode, 4, 8, "testIncrementalRescan:1");
+
+    dfs.delete(new Path("/inc/a"), false);
+    waitForCachedBlocks(namenode, 2, 4, "testIncrementalRescan:2");
+
+    dfs.modifyCacheDirective(new CacheDirectiveInfo.Builder().
+        setId(id).
+        setReplication((short)1).
+        build());
+    waitForCachedBlocks(namenode, 2, 2, "testIncrementalRescan:3");
+    waitForCacheDirectiveStats(dfs,
+        numBlocksPerFile * BLOCK_SIZE, numBlocksPerFile * BLOCK_SIZE,
+        1, 1,
+        new CacheDirectiveInfo.Builder().
+            setPath(new Path("/inc")).
+            build(),
+        "testIncrementalRescan:3:directive");
+
+    dfs.removeCacheDirective(id);
+    waitForCachedBlocks(namenode, 0, 0, "testIncrementalRescan:4");
+  }
 }
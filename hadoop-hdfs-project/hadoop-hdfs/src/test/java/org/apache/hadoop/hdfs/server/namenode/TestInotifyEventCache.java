@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import org.apache.hadoop.hdfs.inotify.Event;
+import org.apache.hadoop.hdfs.inotify.EventBatch;
+import org.apache.hadoop.hdfs.inotify.EventBatchList;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TestInotifyEventCache {
+
+  private static EventBatch unlink(long txid, String path) {
+    return new EventBatch(txid, new Event[] {
+        new Event.UnlinkEvent.Builder().path(path).timestamp(txid).build() });
+  }
+
+  private static EventBatch close(long txid, String path) {
+    return new EventBatch(txid, new Event[] {
+        new Event.CloseEvent(path, 0, txid) });
+  }
+
+  @Test
+  public void testRead() {
+    InotifyEventCache cache = new InotifyEventCache(10);
+    Assert.assertNull(cache.read(1, 10, 100, null));
+    for (long txid = 1; txid <= 5; txid++) {
+      // Ops without events still advance the covered range
+      cache.add(txid, txid % 2 == 0 ? null : unlink(txid, "/f" + txid));
+    }
+    Assert.assertEquals(1, cache.getFirstTxid());
+    Assert.assertEquals(5, cache.getLastTxid());
+
+    EventBatchList list = cache.read(2, 5, 100, null);
+    Assert.assertEquals(2, list.getBatches().size());
+    Assert.assertEquals(3, list.getBatches().get(0).getTxid());
+    Assert.assertEquals(2, list.getFirstTxid());
+    Assert.assertEquals(5, list.getLastTxid());
+
+    // Events after the sync txid are not returned yet
+    list = cache.read(1, 3, 100, null);
+    Assert.assertEquals(2, list.getBatches().size());
+    Assert.assertEquals(3, list.getLastTxid());
+    Assert.assertEquals(3, list.getSyncTxid());
+
+    // Nothing new
+    list = cache.read(6, 5, 100, null);
+    Assert.assertTrue(list.getBatches().isEmpty());
+    Assert.assertEquals(-1, list.getFirstTxid());
+
+    Assert.assertNull(cache.read(7, 5, 100, null));
+  }
+
+  @Test
+  public void testMaxEvents() {
+    InotifyEventCache cache = new InotifyEventCache(10);
+    for (long txid = 1; txid <= 5; txid++) {
+      cache.add(txid, unlink(txid, "/f" + txid));
+    }
+    EventBatchList list = cache.read(1, 5, 2, null);
+    Assert.assertEquals(2, list.getBatches().size());
+    Assert.assertEquals(2, list.getLastTxid());
+    list = cache.read(list.getLastTxid() + 1, 5, 2, null);
+    Assert.assertEquals(3, list.getFirstTxid());
+    Assert.assertEquals(4, list.getLastTxid());
+  }
+
+  @Test
+  public void testEvictionAndGap() {
+    InotifyEventCache cache = new InotifyEventCache(3);
+    for (long txid = 1; txid <= 5; txid++) {
+      cache.add(txid, unlink(txid, "/f" + txid));
+    }
+    Assert.assertEquals(3, cache.getFirstTxid());
+    Assert.assertNull(cache.read(2, 5, 100, null));
+    Assert.assertEquals(3, cache.read(3, 5, 100, null).getBatches().size());
+
+    cache.add(10, unlink(10, "/f10"));
+    Assert.assertEquals(10, cache.getFirstTxid());
+    Assert.assertEquals(10, cache.getLastTxid());
+    Assert.assertNull(cache.read(5, 10, 100, null));
+  }
+
+  @Test
+  public void testFilter() {
+    InotifyEventCache cache = new InotifyEventCache(10);
+    cache.add(1, unlink(1, "/a/f1"));
+    cache.add(2, close(2, "/a/f2"));
+    cache.add(3, unlink(3, "/b/f3"));
+    cache.add(4, close(4, "/ab/f4"));
+
+    EventFilter byPath = new EventFilter(
+        Collections.singletonList("/a/"), null);
+    EventBatchList list = cache.read(1, 4, 100, byPath);
+    Assert.assertEquals(2, list.getBatches().size());
+    Assert.assertEquals(2, list.getBatches().get(1).getTxid());
+    // Filtered batches still count as read
+    Assert.assertEquals(4, list.getLastTxid());
+
+    EventFilter byType = new EventFilter(null,
+        Arrays.asList(Event.EventType.CLOSE));
+    list = cache.read(1, 4, 100, byType);
+    Assert.assertEquals(2, list.getBatches().size());
+    Assert.assertEquals(4, list.getBatches().get(1).getTxid());
+  }
+
+  @Test
+  public void testTranslateBeforeLogging() {
+    InotifyEventCache cache = new InotifyEventCache(10);
+    FSEditLogOp.OpInstanceCache ops = new FSEditLogOp.OpInstanceCache();
+    FSEditLogOp delete = FSEditLogOp.DeleteOp.getInstance(ops)
+        .setPath("/f1").setTimestamp(1);
+    FSEditLogOp genstamp = FSEditLogOp.SetGenstampV2Op.getInstance(ops)
+        .setGenerationStamp(1000);
+
+    // Nothing is translated nor cached until the first read
+    Assert.assertNull(cache.translate(delete));
+    cache.add(1, (Event[]) null);
+    Assert.assertEquals(-1, cache.getFirstTxid());
+
+    cache.activate();
+    cache.add(2, cache.translate(delete));
+    Assert.assertEquals(0, cache.translate(genstamp).length);
+    cache.add(3, cache.translate(genstamp));
+    Assert.assertEquals(2, cache.getFirstTxid());
+    Assert.assertEquals(3, cache.getLastTxid());
+    EventBatchList list = cache.read(2, 3, 100, null);
+    Assert.assertEquals(1, list.getBatches().size());
+    EventBatch batch = list.getBatches().get(0);
+    Assert.assertEquals(2, batch.getTxid());
+    Assert.assertEquals("/f1",
+        ((Event.UnlinkEvent) batch.getEvents()[0]).getPath());
+
+    // An op translated before the activation is not covered
+    cache.add(4, (Event[]) null);
+    Assert.assertEquals(-1, cache.getFirstTxid());
+    cache.add(5, cache.translate(delete));
+    Assert.assertEquals(5, cache.getFirstTxid());
+    Assert.assertNull(cache.read(4, 5, 100, null));
+  }
+}
@@ -64,6 +64,7 @@ compareexpr
 timeintvalexpr
     : '(' timeintvalexpr ')'                                #tieCurves
     | TIMEINTVALCONST                                       #tieConst
+    | id                                                    #tieId
     | timepointexpr '-' timepointexpr                       #tieTpExpr
     | timeintvalexpr ('-' | '+') timeintvalexpr             #tieTiExpr
     ;
@@ -112,6 +113,9 @@ command
     | 'uncachefile'
     | 'movefile' STRING
     | 'archive'
+    | 'ecfile' STRING
+    | 'compact'
+    | 'setreplication' LONG
     ;
 
 id
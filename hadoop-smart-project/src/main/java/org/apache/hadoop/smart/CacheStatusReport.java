@@ -24,90 +24,103 @@
 import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
-import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
 import org.apache.hadoop.smart.actions.CacheStatus;
+import org.apache.hadoop.smart.fetcher.StorageInfoFetcher;
 
 /**
  * Created by cc on 17-3-1.
  */
 public class CacheStatusReport {
-  private Configuration conf;
-  private Map<String, List<CacheStatus.cacheFileInfo>> reportMap;
-  private Map<String, CacheStatus.nodeCacheInfo> dnCacheReportMap;
+  private DFSClient dfsClient;
+  private StorageInfoFetcher storageInfoFetcher;
 
-  public CacheStatusReport() {
-    conf = new Configuration();
-    reportMap = new HashMap<>();
+  public CacheStatusReport() throws IOException {
+    this(new DFSClient(new Configuration()));
+  }
+
+  public CacheStatusReport(DFSClient dfsClient) {
+    this(dfsClient, null);
+  }
+
+  /**
+   * DataNode cache usage is served from the fetcher if it has fetched any.
+   */
+  public CacheStatusReport(DFSClient dfsClient,
+      StorageInfoFetcher storageInfoFetcher) {
+    this.dfsClient = dfsClient;
+    this.storageInfoFetcher = storageInfoFetcher;
   }
 
   /**
    * getCacheStatusReport : Get a CacheStatus report
    */
   public CacheStatus getCacheStatusReport() throws IOException {
-    DFSClient dfsClient = new DFSClient(conf);
+    CacheStatus fetched = storageInfoFetcher != null
+        ? storageInfoFetcher.getCacheStatus() : null;
     CacheStatus cacheStatus = new CacheStatus();
-    long cacheCapacity;
-    long cacheUsed;
-    long cacheRemaining;
-    float cacheUsedPercentage;
+    if (fetched != null) {
+      cacheStatus.setCacheCapacityTotal(fetched.getCacheCapacityTotal());
+      cacheStatus.setCacheUsedTotal(fetched.getCacheUsedTotal());
+      cacheStatus.setCacheRemainingTotal(fetched.getCacheRemainingTotal());
+      cacheStatus.setCacheUsedPercentageTotal(
+          fetched.getCacheUsedPercentageTotal());
+      cacheStatus.setdnCacheStatusMap(fetched.getdnCacheStatusMap());
+    } else {
+      getDatanodeCacheStatus(cacheStatus);
+    }
+
+    //get the cacheStatusMap
+    Map<String, List<CacheStatus.cacheFileInfo>> reportMap = new HashMap<>();
+    RemoteIterator<CacheDirectiveEntry> it = dfsClient.listCacheDirectives(
+        new CacheDirectiveInfo.Builder().build());
+    while (it.hasNext()) {
+      CacheDirectiveInfo info = it.next().getInfo();
+      List<CacheStatus.cacheFileInfo> list = reportMap.get(info.getPool());
+      if (list == null) {
+        list = new ArrayList<>();
+        reportMap.put(info.getPool(), list);
+      }
+      CacheStatus.cacheFileInfo cacheFileInfo = cacheStatus.new cacheFileInfo();
+      cacheFileInfo.setFilePath(info.getPath().toUri().getPath());
+      cacheFileInfo.setRepliNum(info.getReplication());
+      list.add(cacheFileInfo);
+    }
+    cacheStatus.setCacheStatusMap(reportMap);
+    return cacheStatus;
+  }
+
+  private void getDatanodeCacheStatus(CacheStatus cacheStatus)
+      throws IOException {
     long cacheCapacityTotal = 0;
     long cacheUsedTotal = 0;
     long cacheRemaTotal = 0;
-    float cacheUsedPerTotal = 0;
-    CacheStatus.nodeCacheInfo nodeCacheInfo = null;
-    int len = dfsClient.getDatanodeStorageReport(HdfsConstants.DatanodeReportType.LIVE).length;
-    DatanodeStorageReport dnStorageReport;
+    Map<String, CacheStatus.nodeCacheInfo> dnCacheReportMap = new HashMap<>();
+    DatanodeInfo[] dns =
+        dfsClient.datanodeReport(HdfsConstants.DatanodeReportType.LIVE);
     //get info from each dataNode
-    for (int i = 0; i < len; i++) {
-      dnStorageReport = dfsClient.getDatanodeStorageReport(HdfsConstants.
-              DatanodeReportType.LIVE)[i];
-      cacheCapacity = dnStorageReport.getDatanodeInfo().getCacheCapacity();
-      cacheUsed = dnStorageReport.getDatanodeInfo().getCacheUsed();
-      cacheRemaining = dnStorageReport.getDatanodeInfo().getCacheRemaining();
-      cacheUsedPercentage = dnStorageReport.getDatanodeInfo().getCacheUsedPercent();
-      nodeCacheInfo.setCacheCapacity(cacheCapacity);
-      nodeCacheInfo.setCacheUsed(cacheUsed);
-      nodeCacheInfo.setCacheRemaining(cacheRemaining);
-      nodeCacheInfo.setCacheUsedPercentage(cacheUsedPercentage);
-      //Each host name cannot be equal
-      dnCacheReportMap.put(dnStorageReport.getDatanodeInfo().getHostName(), nodeCacheInfo);
+    for (DatanodeInfo dn : dns) {
+      CacheStatus.nodeCacheInfo nodeCacheInfo = new CacheStatus.nodeCacheInfo();
+      nodeCacheInfo.setCacheCapacity(dn.getCacheCapacity());
+      nodeCacheInfo.setCacheUsed(dn.getCacheUsed());
+      nodeCacheInfo.setCacheRemaining(dn.getCacheRemaining());
+      nodeCacheInfo.setCacheUsedPercentage(dn.getCacheUsedPercent());
+      dnCacheReportMap.put(dn.getXferAddr(), nodeCacheInfo);
       //summary
-      cacheCapacityTotal += cacheCapacity;
-      cacheUsedTotal += cacheUsed;
-      cacheRemaTotal += cacheRemaining;
-      cacheUsedPerTotal += cacheUsedPercentage;
+      cacheCapacityTotal += dn.getCacheCapacity();
+      cacheUsedTotal += dn.getCacheUsed();
+      cacheRemaTotal += dn.getCacheRemaining();
     }
     cacheStatus.setCacheCapacityTotal(cacheCapacityTotal);
     cacheStatus.setCacheUsedTotal(cacheUsedTotal);
     cacheStatus.setCacheRemainingTotal(cacheRemaTotal);
-    cacheStatus.setCacheUsedPercentageTotal(cacheUsedPerTotal);
-    //get the cacheStatusMap
-    String poolName;
-    String path;
-    Short replication;
-    CacheStatus.cacheFileInfo cacheFileInfo = null;
-    while (dfsClient.listCacheDirectives(null).hasNext()) {
-      poolName = dfsClient.listCacheDirectives(null).next().getInfo().getPool();
-      path = dfsClient.listCacheDirectives(null).next().getInfo().getPath().toString();
-      replication = dfsClient.listCacheDirectives(null).next().getInfo().getReplication();
-      if (reportMap.containsKey(poolName)) {
-        List<CacheStatus.cacheFileInfo> list = reportMap.get(poolName);
-        cacheFileInfo.setFilePath(path);
-        cacheFileInfo.setRepliNum(replication);
-        list.add(cacheFileInfo);
-        reportMap.put(poolName, list);
-      } else {
-        cacheFileInfo.setFilePath(path);
-        cacheFileInfo.setRepliNum(replication);
-        List<CacheStatus.cacheFileInfo> list = new ArrayList<>();
-        list.add(cacheFileInfo);
-        reportMap.put(poolName, list);
-      }
-    }
-    cacheStatus.setCacheStatusMap(reportMap);
+    cacheStatus.setCacheUsedPercentageTotal(cacheCapacityTotal == 0 ? 0
+        : cacheUsedTotal * 100.0f / cacheCapacityTotal);
     cacheStatus.setdnCacheStatusMap(dnCacheReportMap);
-    return cacheStatus;
   }
-}
\ No newline at end of file
+}
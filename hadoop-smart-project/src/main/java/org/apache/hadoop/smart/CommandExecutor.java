@@ -17,10 +17,21 @@
  */
 package org.apache.hadoop.smart;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSClient;
 import org.apache.hadoop.smart.actions.*;
+import org.apache.hadoop.smart.agent.AgentManager;
+import org.apache.hadoop.smart.cache.CacheManager;
+import org.apache.hadoop.smart.federation.MountTable;
+import org.apache.hadoop.smart.federation.NamespaceMount;
+import org.apache.hadoop.smart.fetcher.StorageInfoFetcher;
 import org.apache.hadoop.smart.mover.MoverPool;
+import org.apache.hadoop.smart.protocol.ListingPage;
+import org.apache.hadoop.smart.replication.ReplicationController;
+import org.apache.hadoop.smart.sql.CommandFilter;
 import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.apache.hadoop.smart.utils.JsonUtil;
 import org.apache.hadoop.util.Daemon;
@@ -47,6 +58,7 @@ public class CommandExecutor implements Runnable, ModuleSequenceProto {
   private CommandPool execThreadPool;
   private DBAdapter adapter;
   private MoverPool moverPool;
+  private AgentManager agentManager;
   private SmartServer ssm;
   private boolean running;
 
@@ -61,6 +73,28 @@ public CommandExecutor(SmartServer ssm, Configuration conf) {
     }
     execThreadPool = CommandPool.getInstance();
     running = false;
+    if (conf.getBoolean(SmartConfigureKeys.DFS_SSM_AGENT_ENABLED_KEY,
+        SmartConfigureKeys.DFS_SSM_AGENT_ENABLED_DEFAULT)) {
+      agentManager = new AgentManager(AgentManager.parseActionTypes(
+          conf.getTrimmedStrings(SmartConfigureKeys.DFS_SSM_AGENT_ACTIONS_KEY,
+              SmartConfigureKeys.DFS_SSM_AGENT_ACTIONS_DEFAULT.split(","))),
+          conf.getLong(SmartConfigureKeys.DFS_SSM_AGENT_EXPIRE_INTERVAL_KEY,
+              SmartConfigureKeys.DFS_SSM_AGENT_EXPIRE_INTERVAL_DEFAULT),
+          new AgentManager.Listener() {
+            @Override
+            public void onCommandFinished(CommandInfo cmd,
+                CommandState state) {
+              new Callback().complete(cmd.getCid(), cmd.getRid(), state);
+            }
+          });
+    }
+  }
+
+  /**
+   * @return null if agents are not enabled
+   */
+  public AgentManager getAgentManager() {
+    return agentManager;
   }
 
   public boolean init(DBAdapter adapter) throws IOException {
@@ -129,6 +163,9 @@ public void join() throws IOException {
   public void run() {
     while (running) {
       try {
+        if (agentManager != null) {
+          executeLocally(agentManager.expireAgents());
+        }
         // control the commands that executed concurrently
         if (execThreadPool.size() <= 5) {  // TODO: use configure value
           Command toExec = schedule();
@@ -155,6 +192,7 @@ public synchronized long submitCommand(CommandInfo cmd) throws IOException {
       if (adapter.insertCommandTable(cmd)) {
         cmdsAll.put(cmd.getCid(), cmd);
         cmdsInState.get(CommandState.PENDING.getValue()).add(cmd.getCid());
+        publishCommandState(cmd.getCid(), cmd.getRid(), CommandState.PENDING);
         return cmd.getCid();
       }
     } catch (SQLException e) {
@@ -177,26 +215,87 @@ public CommandInfo getCommandInfo(long cid) throws IOException {
     return null;
   }
 
-  public List<CommandInfo> listCommandsInfo(long rid,
-      CommandState commandState) throws IOException {
-    List<CommandInfo> retInfos = new ArrayList<>();
-    // Get from DB
+  public CompactFileInfo getCompactFileInfo(String path) throws IOException {
+    try {
+      return adapter.getCompactFileInfo(path);
+    } catch (SQLException e) {
+      LOG.error(e.getMessage());
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * List a page of commands after prevCid. Filters are evaluated by the
+   * metastore on the persisted state and on the cached state of commands
+   * in flight, whose state in the metastore lags behind.
+   */
+  public ListingPage<CommandInfo> listCommandsInfo(CommandFilter filter,
+      long prevCid, int limit) throws IOException {
+    List<CommandInfo> rows;
     try {
-      if (rid != -1)
-        retInfos.addAll(adapter.getCommandsTableItem(null, String.format("= %d", rid), commandState));
-      else
-        retInfos.addAll(adapter.getCommandsTableItem(null, null, commandState));
-    } catch (SQLException e){
+      rows = adapter.listCommands(filter, prevCid, limit + 1);
+    } catch (SQLException e) {
       LOG.error(e.getMessage());
       throw new IOException(e);
     }
-    // Get from Cache if commandState != CommandState.PENDING
-    if(commandState != CommandState.PENDING) {
-      for(CommandInfo cmdinfo : cmdsAll.values())
-        if(cmdinfo.getState() == commandState && cmdinfo.getRid() == rid)
-          retInfos.add(cmdinfo);
+    synchronized (this) {
+      return mergePage(rows, cmdsAll, filter, prevCid, limit);
+    }
+  }
+
+  /**
+   * Merge the rows listed from the metastore with the cached commands in
+   * the cid range they cover.
+   * @param rows at most limit + 1 rows after prevCid matching the filter
+   */
+  @VisibleForTesting
+  static ListingPage<CommandInfo> mergePage(List<CommandInfo> rows,
+      Map<Long, CommandInfo> cached, CommandFilter filter, long prevCid,
+      int limit) {
+    boolean hasMore = rows.size() > limit;
+    // Cids up to the bound are all covered by the rows
+    long bound = hasMore ? rows.get(limit - 1).getCid() : Long.MAX_VALUE;
+    TreeMap<Long, CommandInfo> merged = new TreeMap<>();
+    long lastRowCid = prevCid;
+    for (CommandInfo row : rows) {
+      if (row.getCid() > bound) {
+        break;
+      }
+      lastRowCid = row.getCid();
+      CommandInfo info = cached.get(row.getCid());
+      merged.put(row.getCid(), info == null ? row : info);
+    }
+    for (CommandInfo info : cached.values()) {
+      if (info.getCid() > prevCid && info.getCid() <= bound) {
+        merged.put(info.getCid(), info);
+      }
+    }
+    List<CommandInfo> retInfos =
+        new ArrayList<>(Math.min(merged.size(), limit));
+    long lastCid = prevCid;
+    for (CommandInfo info : merged.values()) {
+      // The cached state may have moved out of the filter
+      if (filter != null && !filter.matches(info)) {
+        continue;
+      }
+      if (retInfos.size() == limit) {
+        return new ListingPage<>(retInfos, true, lastCid);
+      }
+      retInfos.add(info);
+      lastCid = info.getCid();
+    }
+    return new ListingPage<>(retInfos, hasMore,
+        hasMore ? bound : Math.max(lastCid, lastRowCid));
+  }
+
+  public Map<CommandState, Long> getCommandsSummary(CommandFilter filter)
+      throws IOException {
+    try {
+      return adapter.getCommandsSummary(filter);
+    } catch (SQLException e) {
+      LOG.error(e.getMessage());
+      throw new IOException(e);
     }
-    return retInfos;
   }
 
   public void activateCommand(long cid) throws IOException {
@@ -209,6 +308,7 @@ public void activateCommand(long cid) throws IOException {
       return;
     cmdinfo.setState(CommandState.PENDING);
     addToPending(cmdinfo);
+    publishCommandState(cid, cmdinfo.getRid(), CommandState.PENDING);
   }
 
   public void disableCommand(long cid) throws IOException {
@@ -224,6 +324,9 @@ public void disableCommand(long cid) throws IOException {
         removeFromExecuting(cid, cmdinfo.getRid(), cmdinfo.getState());
         // Kill thread
         execThreadPool.deleteCommand(cid);
+        if (agentManager != null) {
+          agentManager.cancel(cid);
+        }
       } else {
         // Remove from Pending queue
         cmdsInState.get(CommandState.PENDING.getValue()).remove(cid);
@@ -231,21 +334,27 @@ public void disableCommand(long cid) throws IOException {
       // Mark as cancelled, this status will be update to DB
       // in next batch update
       statusCache.add(new CmdTuple(cid, cmdinfo.getRid(), CommandState.DISABLED));
+      publishCommandState(cid, cmdinfo.getRid(), CommandState.DISABLED);
     }
   }
 
   public void deleteCommand(long cid) throws IOException {
+    long rid = -1;
     // Delete from DB
     // Remove from Cache
     if(cmdsAll.containsKey(cid)) {
       // Command is finished, then return
       CommandInfo cmdinfo = cmdsAll.get(cid);
+      rid = cmdinfo.getRid();
       // Disable this command in cache
       if (inExecutingList(cid)) {
         // Remove from Executing queue
         removeFromExecuting(cid, cmdinfo.getRid(), cmdinfo.getState());
         // Kill thread
         execThreadPool.deleteCommand(cid);
+        if (agentManager != null) {
+          agentManager.cancel(cid);
+        }
       } else if(inUpdateCache(cid)) {
         RemoveFromUpdateCache(cid);
       } else {
@@ -261,6 +370,11 @@ public void deleteCommand(long cid) throws IOException {
     } catch (SQLException e) {
       throw new IOException(e);
     }
+    ssm.getStateChangeBus().publishCommandDeleted(cid, rid);
+  }
+
+  private void publishCommandState(long cid, long rid, CommandState state) {
+    ssm.getStateChangeBus().publishCommandState(cid, rid, state);
   }
 
   private void addToPending(CommandInfo cmdinfo) throws IOException {
@@ -330,28 +444,123 @@ private synchronized Command schedule() {
     }
     // TODO Update FIFO
     // Currently only get and run the first cmd
-    long curr = cmdsPending.iterator().next();
-    Command ret = getCommandFromCmdInfo(cmdsAll.get(curr));
-    cmdsPending.remove(curr);
-    cmdsExecuting.add(curr);
-    ret.setState(CommandState.EXECUTING);
-    return ret;
+    while (cmdsPending.size() != 0) {
+      long curr = cmdsPending.iterator().next();
+      cmdsPending.remove(curr);
+      cmdsExecuting.add(curr);
+      publishCommandState(curr, cmdsAll.get(curr).getRid(),
+          CommandState.EXECUTING);
+      if (dispatchToAgents(cmdsAll.get(curr))) {
+        // Its state comes back with the heartbeats of agent
+        continue;
+      }
+      Command ret = getCommandFromCmdInfo(cmdsAll.get(curr));
+      ret.setState(CommandState.EXECUTING);
+      return ret;
+    }
+    return null;
+  }
+
+  /**
+   * Hand the command to agents if they can execute it, the path in it is
+   * made local to the namespace holding the file.
+   */
+  private boolean dispatchToAgents(CommandInfo info) {
+    if (agentManager == null) {
+      return false;
+    }
+    Map<String, String> parameters =
+        JsonUtil.toStringStringMap(info.getParameters());
+    String path = parameters.get("_FILE_PATH_");
+    DFSClient client = ssm.getDFSClient();
+    MountTable mountTable = ssm.getMountTable();
+    NamespaceMount mount = mountTable == null ? null : mountTable.resolve(path);
+    if (mount != null) {
+      client = mount.getClient();
+      parameters.put("_FILE_PATH_", mount.toLocalPath(path));
+      parameters.put("_NAMENODE_", mount.getUri().toString());
+    }
+    return agentManager.dispatch(new CommandInfo(info.getCid(), info.getRid(),
+        info.getActionType(), CommandState.EXECUTING,
+        JsonUtil.toJsonString(parameters), info.getGenerateTime(),
+        info.getStateChangedTime()), client);
+  }
+
+  /**
+   * Execute commands left by agents in SSM server.
+   */
+  private synchronized void executeLocally(List<CommandInfo> cmds) {
+    for (CommandInfo cmd : cmds) {
+      CommandInfo info = cmdsAll.get(cmd.getCid());
+      if (info == null) {
+        continue;
+      }
+      Command toExec = getCommandFromCmdInfo(info);
+      toExec.setState(CommandState.EXECUTING);
+      toExec.setScheduleToExecuteTime(Time.now());
+      execThreadPool.execute(toExec);
+    }
+  }
+
+  private CacheManager getCacheManager(NamespaceMount mount) {
+    StatesManager statesManager = ssm.getStatesManager();
+    return statesManager == null ? null
+        : statesManager.getCacheManager(mount);
+  }
+
+  private StorageInfoFetcher getStorageInfoFetcher(NamespaceMount mount) {
+    StatesManager statesManager = ssm.getStatesManager();
+    return statesManager == null ? null
+        : statesManager.getStorageInfoFetcher(mount);
+  }
+
+  private ReplicationController getReplicationController(
+      NamespaceMount mount) {
+    StatesManager statesManager = ssm.getStatesManager();
+    return statesManager == null ? null
+        : statesManager.getReplicationController(mount);
   }
 
   private Command getCommandFromCmdInfo(CommandInfo cmdinfo) {
     ActionBase[] actions = new ActionBase[10];
     Map<String, String> jsonParameters = JsonUtil.toStringStringMap(cmdinfo.getParameters());
-    String[] args = {jsonParameters.get("_FILE_PATH_")};
+    // Actions run against the namespace holding the file
+    String path = jsonParameters.get("_FILE_PATH_");
+    DFSClient client = ssm.getDFSClient();
+    MountTable mountTable = ssm.getMountTable();
+    NamespaceMount mount = mountTable == null ? null : mountTable.resolve(path);
+    if (mount != null) {
+      client = mount.getClient();
+      path = mount.toLocalPath(path);
+    }
+    String[] args = {path};
     // New action
     String storagePolicy = jsonParameters.get("_STORAGE_POLICY_");
     ActionBase current;
     if(cmdinfo.getActionType().getValue() == ActionType.CacheFile.getValue()) {
-      current = new MoveToCache(ssm.getDFSClient(), ssm.getConf());
+      current = new MoveToCache(client, ssm.getConf(),
+          getCacheManager(mount));
+    } else if(cmdinfo.getActionType().getValue() == ActionType.UncacheFile.getValue()) {
+      current = new UncacheFile(client, ssm.getConf(),
+          getCacheManager(mount));
+    } else if(cmdinfo.getActionType().getValue() == ActionType.ConvertToEC.getValue()) {
+      current = new ECFile(client, ssm.getConf(),
+          jsonParameters.get("_EC_POLICY_"));
+    } else if(cmdinfo.getActionType().getValue() == ActionType.ConvertToReplica.getValue()) {
+      current = new ECFile(client, ssm.getConf(), null);
+    } else if(cmdinfo.getActionType().getValue() == ActionType.Compact.getValue()) {
+      current = new CompactFile(client, ssm.getConf(), adapter);
+    } else if(cmdinfo.getActionType().getValue() == ActionType.SetReplication.getValue()) {
+      current = new SetReplication(client, ssm.getConf(),
+          Short.parseShort(jsonParameters.get("_REPLICATION_")),
+          getReplicationController(mount));
     } else if(cmdinfo.getActionType().getValue()  == ActionType.MoveFile.getValue()) {
-      current = new MoveFile(ssm.getDFSClient(), ssm.getConf(), storagePolicy);
+      current = new MoveFile(client, ssm.getConf(), storagePolicy,
+          getStorageInfoFetcher(mount));
     } else {
       // Default Action
-      current = new MoveFile(ssm.getDFSClient(), ssm.getConf(), storagePolicy);
+      current = new MoveFile(client, ssm.getConf(), storagePolicy,
+          getStorageInfoFetcher(mount));
     }
     current.initial(args);
     actions[0] = current;
@@ -387,16 +596,22 @@ public synchronized void batchCommandStatusUpdate() {
     LOG.info("INFO Number of Actions = " + cmdsAll.size());
     if(statusCache.size() == 0)
       return;
-    for(Iterator<CmdTuple> iter = statusCache.iterator();iter.hasNext();) {
-      CmdTuple ct = iter.next();
+    List<CmdTuple> flushed = new ArrayList<>(statusCache);
+    Map<Long, CommandState> states = new LinkedHashMap<>();
+    for (CmdTuple ct : flushed) {
+      states.put(ct.cid, ct.state);
+    }
+    try {
+      adapter.updateCommandsStatus(states);
+    } catch (SQLException e) {
+      // Kept in the cache and written again on next flush
+      LOG.error("Failed to update the status of " + states.size()
+          + " commands", e);
+      return;
+    }
+    for (CmdTuple ct : flushed) {
       cmdsAll.remove(ct.cid);
-      try {
-        adapter.updateCommandStatus(ct.cid, ct.rid, ct.state);
-      } catch (SQLException e) {
-        // TODO: handle this isssue
-        LOG.error(e.getMessage());
-      }
-      iter.remove();
+      statusCache.remove(ct);
     }
   }
 
@@ -428,6 +643,7 @@ public void complete(long cid, long rid, CommandState state) {
         statusCache.add(new CmdTuple(cid, rid, state));
         removeFromExecuting(cid, rid, state);
         execThreadPool.deleteCommand(cid);
+        publishCommandState(cid, rid, state);
     }
   }
 }
@@ -23,7 +23,14 @@
 public class SmartConfigureKeys {
   public final static String DFS_SSM_ENABLED_KEY = "dfs.smart.enabled";
 
+  // Comma separated NameNode URIs, one per namespace of a federation
   public final static String DFS_SSM_NAMENODE_RPCSERVER_KEY = "dfs.smart.namenode.rpcserver";
+  // Comma separated mount points, one for each of the NameNodes above
+  public final static String DFS_SSM_NAMESPACE_MOUNTS_KEY = "dfs.smart.namespace.mounts";
+  // Comma separated paths, only inotify events under them are fetched from
+  // the NameNodes. Empty for the whole namespace.
+  public final static String DFS_SSM_INOTIFY_PATH_PREFIXES_KEY =
+      "dfs.smart.inotify.path.prefixes";
 
   //ssm
   public final static String DFS_SSM_RPC_ADDRESS_KEY = "dfs.smart.rpc-address";
@@ -33,4 +40,195 @@ public class SmartConfigureKeys {
   public final static String DFS_SSM_HTTPS_ADDRESS_KEY = "dfs.smart.https-address";
 
   public final static String DFS_SSM_DEFAULT_DB_URL_KEY = "dfs.smart.default.db.url";
+
+  // File heat
+  public final static String DFS_SSM_HEAT_HALFLIFE_KEY = "dfs.smart.heat.halflife.ms";
+  public final static long DFS_SSM_HEAT_HALFLIFE_DEFAULT = 60 * 60 * 1000L;
+  public final static String DFS_SSM_HEAT_SNAPSHOT_INTERVAL_KEY =
+      "dfs.smart.heat.snapshot.interval.ms";
+  public final static long DFS_SSM_HEAT_SNAPSHOT_INTERVAL_DEFAULT = 60 * 1000L;
+
+  // Storage report
+  public final static String DFS_SSM_STORAGE_REPORT_INTERVAL_KEY =
+      "dfs.smart.storage.report.interval.ms";
+  public final static long DFS_SSM_STORAGE_REPORT_INTERVAL_DEFAULT = 30 * 1000L;
+
+  // Erasure coding conversion
+  public final static String DFS_SSM_EC_REWRITE_THREADS_KEY =
+      "dfs.smart.ec.rewrite.threads";
+  public final static int DFS_SSM_EC_REWRITE_THREADS_DEFAULT = 4;
+
+  // Small file compaction
+  public final static String DFS_SSM_COMPACT_CONTAINER_SIZE_KEY =
+      "dfs.smart.compact.container.size";
+  public final static long DFS_SSM_COMPACT_CONTAINER_SIZE_DEFAULT =
+      256 * 1024 * 1024L;
+
+  // Cache manager
+  public final static String DFS_SSM_CACHE_POLICY_KEY = "dfs.smart.cache.policy";
+  public final static String DFS_SSM_CACHE_POLICY_DEFAULT = "LFU";
+  public final static String DFS_SSM_CACHE_MAX_USED_RATIO_KEY =
+      "dfs.smart.cache.max.used.ratio";
+  public final static float DFS_SSM_CACHE_MAX_USED_RATIO_DEFAULT = 0.9f;
+  public final static String DFS_SSM_CACHE_FLUSH_INTERVAL_KEY =
+      "dfs.smart.cache.flush.interval.ms";
+  public final static long DFS_SSM_CACHE_FLUSH_INTERVAL_DEFAULT = 1000L;
+
+  // Source of file access events, 'rpc' or 'auditlog'
+  public final static String DFS_SSM_ACCESS_EVENT_SOURCE_KEY =
+      "dfs.smart.access.event.source";
+  public final static String DFS_SSM_ACCESS_EVENT_SOURCE_DEFAULT = "rpc";
+  public final static String DFS_SSM_AUDIT_LOG_PATH_KEY =
+      "dfs.smart.audit.log.path";
+  public final static String DFS_SSM_AUDIT_LOG_POLL_INTERVAL_KEY =
+      "dfs.smart.audit.log.poll.interval.ms";
+  public final static long DFS_SSM_AUDIT_LOG_POLL_INTERVAL_DEFAULT = 1000L;
+
+  // Keep access counts in one partitioned table instead of a table per
+  // time window, only supported with MySQL
+  public final static String DFS_SSM_ACCESS_HISTORY_PARTITIONED_KEY =
+      "dfs.smart.access.history.partitioned";
+  public final static boolean DFS_SSM_ACCESS_HISTORY_PARTITIONED_DEFAULT =
+      false;
+
+  // Access sequence prefetch
+  public final static String DFS_SSM_PREFETCH_ENABLED_KEY =
+      "dfs.smart.prefetch.enabled";
+  public final static boolean DFS_SSM_PREFETCH_ENABLED_DEFAULT = false;
+  public final static String DFS_SSM_PREFETCH_WINDOW_KEY =
+      "dfs.smart.prefetch.window.ms";
+  // Longer than the delay of access events plus the cache flush interval
+  public final static long DFS_SSM_PREFETCH_WINDOW_DEFAULT = 15000L;
+  public final static String DFS_SSM_PREFETCH_CONFIDENCE_KEY =
+      "dfs.smart.prefetch.confidence";
+  public final static float DFS_SSM_PREFETCH_CONFIDENCE_DEFAULT = 0.6f;
+  public final static String DFS_SSM_PREFETCH_MAX_FILES_KEY =
+      "dfs.smart.prefetch.max.files";
+  public final static int DFS_SSM_PREFETCH_MAX_FILES_DEFAULT = 1000000;
+
+  // Replication controller
+  public final static String DFS_SSM_REPLICATION_MAX_EXTRA_BYTES_KEY =
+      "dfs.smart.replication.max.extra.bytes";
+  public final static long DFS_SSM_REPLICATION_MAX_EXTRA_BYTES_DEFAULT =
+      100 * 1024 * 1024 * 1024L;
+  public final static String DFS_SSM_REPLICATION_BANDWIDTH_KEY =
+      "dfs.smart.replication.bandwidth";
+  public final static long DFS_SSM_REPLICATION_BANDWIDTH_DEFAULT =
+      64 * 1024 * 1024L;
+  public final static String DFS_SSM_REPLICATION_COOL_HEAT_KEY =
+      "dfs.smart.replication.cool.heat";
+  public final static float DFS_SSM_REPLICATION_COOL_HEAT_DEFAULT = 1.0f;
+  public final static String DFS_SSM_REPLICATION_CHECK_INTERVAL_KEY =
+      "dfs.smart.replication.check.interval.ms";
+  public final static long DFS_SSM_REPLICATION_CHECK_INTERVAL_DEFAULT = 5000L;
+
+  // Bandwidth of block moves made by movers, in bytes per second
+  public final static String DFS_SSM_MOVER_DATANODE_BANDWIDTH_KEY =
+      "dfs.smart.mover.datanode.bandwidth";
+  public final static long DFS_SSM_MOVER_DATANODE_BANDWIDTH_DEFAULT =
+      100 * 1024 * 1024L;
+  // Followed by the storage type moved to, e.g. 'ARCHIVE', not limited if 0
+  public final static String DFS_SSM_MOVER_STORAGE_BANDWIDTH_PREFIX =
+      "dfs.smart.mover.storage.bandwidth.";
+  // Part of the bandwidth only moves to faster storage types can use
+  public final static String DFS_SSM_MOVER_RESERVED_RATIO_KEY =
+      "dfs.smart.mover.reserved.ratio";
+  public final static float DFS_SSM_MOVER_RESERVED_RATIO_DEFAULT = 0.2f;
+
+  // Number of files sampled to estimate a rule
+  public final static String DFS_SSM_RULE_ESTIMATE_SAMPLE_SIZE_KEY =
+      "dfs.smart.rule.estimate.sample.size";
+  public final static int DFS_SSM_RULE_ESTIMATE_SAMPLE_SIZE_DEFAULT = 10000;
+
+  // Listings of rules and commands
+  public final static String DFS_SSM_LIST_MAX_PAGE_SIZE_KEY =
+      "dfs.smart.list.max.page.size";
+  public final static int DFS_SSM_LIST_MAX_PAGE_SIZE_DEFAULT = 1000;
+
+  // Events of rules and commands buffered for each web client, the oldest
+  // are dropped when a client falls behind
+  public final static String DFS_SSM_HTTP_EVENT_BUFFER_SIZE_KEY =
+      "dfs.smart.http.event.buffer.size";
+  public final static int DFS_SSM_HTTP_EVENT_BUFFER_SIZE_DEFAULT = 1000;
+
+  // Metastore writer, used when the database is accessed through a pool
+  public final static String DFS_SSM_METASTORE_WRITER_ENABLED_KEY =
+      "dfs.smart.metastore.writer.enabled";
+  public final static boolean DFS_SSM_METASTORE_WRITER_ENABLED_DEFAULT = true;
+  public final static String DFS_SSM_METASTORE_WRITER_MAX_BATCH_KEY =
+      "dfs.smart.metastore.writer.max.batch";
+  public final static int DFS_SSM_METASTORE_WRITER_MAX_BATCH_DEFAULT = 256;
+
+  // Agents executing commands out of SSM server
+  public final static String DFS_SSM_AGENT_ENABLED_KEY =
+      "dfs.smart.agent.enabled";
+  public final static boolean DFS_SSM_AGENT_ENABLED_DEFAULT = false;
+  public final static String DFS_SSM_AGENT_ACTIONS_KEY =
+      "dfs.smart.agent.actions";
+  public final static String DFS_SSM_AGENT_ACTIONS_DEFAULT =
+      "ConvertToEC,ConvertToReplica";
+  public final static String DFS_SSM_AGENT_HEARTBEAT_INTERVAL_KEY =
+      "dfs.smart.agent.heartbeat.interval.ms";
+  public final static long DFS_SSM_AGENT_HEARTBEAT_INTERVAL_DEFAULT = 3000L;
+  public final static String DFS_SSM_AGENT_EXPIRE_INTERVAL_KEY =
+      "dfs.smart.agent.expire.interval.ms";
+  public final static long DFS_SSM_AGENT_EXPIRE_INTERVAL_DEFAULT = 30000L;
+  public final static String DFS_SSM_AGENT_SLOTS_KEY = "dfs.smart.agent.slots";
+  public final static int DFS_SSM_AGENT_SLOTS_DEFAULT = 4;
+  public final static String DFS_SSM_AGENT_HOST_KEY = "dfs.smart.agent.host";
+
+  // Throttling of the calls to NameNode
+  public final static String DFS_SSM_NAMENODE_GOVERNOR_ENABLED_KEY =
+      "dfs.smart.namenode.governor.enabled";
+  public final static boolean DFS_SSM_NAMENODE_GOVERNOR_ENABLED_DEFAULT = true;
+  // Followed by the name of ClientProtocol method, e.g. 'getListing'
+  public final static String DFS_SSM_NAMENODE_GOVERNOR_RATE_PREFIX =
+      "dfs.smart.namenode.governor.rate.";
+  public final static String DFS_SSM_NAMENODE_GOVERNOR_RATE_DEFAULT_KEY =
+      "dfs.smart.namenode.governor.rate.default";
+  public final static double DFS_SSM_NAMENODE_GOVERNOR_RATE_DEFAULT = 1000;
+  // NameNode http addresses to read load from, in the order of RPC servers
+  public final static String DFS_SSM_NAMENODE_GOVERNOR_HTTP_ADDRESSES_KEY =
+      "dfs.smart.namenode.governor.http.addresses";
+  public final static String DFS_SSM_NAMENODE_GOVERNOR_CHECK_INTERVAL_KEY =
+      "dfs.smart.namenode.governor.check.interval.ms";
+  public final static long DFS_SSM_NAMENODE_GOVERNOR_CHECK_INTERVAL_DEFAULT =
+      5000L;
+  public final static String DFS_SSM_NAMENODE_GOVERNOR_MAX_QUEUE_TIME_KEY =
+      "dfs.smart.namenode.governor.max.queue.time.ms";
+  public final static double DFS_SSM_NAMENODE_GOVERNOR_MAX_QUEUE_TIME_DEFAULT =
+      20;
+  public final static String
+      DFS_SSM_NAMENODE_GOVERNOR_MAX_PROCESSING_TIME_KEY =
+      "dfs.smart.namenode.governor.max.processing.time.ms";
+  public final static double
+      DFS_SSM_NAMENODE_GOVERNOR_MAX_PROCESSING_TIME_DEFAULT = 50;
+
+  // Active and standby SSMs, the standby replays the journal of metastore
+  // changes kept on HDFS by the active one
+  public final static String DFS_SSM_HA_ENABLED_KEY = "dfs.smart.ha.enabled";
+  public final static boolean DFS_SSM_HA_ENABLED_DEFAULT = false;
+  public final static String DFS_SSM_HA_JOURNAL_DIR_KEY =
+      "dfs.smart.ha.journal.dir";
+  public final static String DFS_SSM_HA_JOURNAL_DIR_DEFAULT =
+      "/system/ssm.journal";
+  public final static String DFS_SSM_HA_JOURNAL_SEGMENT_SIZE_KEY =
+      "dfs.smart.ha.journal.segment.size";
+  public final static long DFS_SSM_HA_JOURNAL_SEGMENT_SIZE_DEFAULT =
+      64 * 1024 * 1024L;
+  public final static String DFS_SSM_HA_HEARTBEAT_INTERVAL_KEY =
+      "dfs.smart.ha.heartbeat.interval.ms";
+  public final static long DFS_SSM_HA_HEARTBEAT_INTERVAL_DEFAULT = 1000L;
+  public final static String DFS_SSM_HA_TAIL_INTERVAL_KEY =
+      "dfs.smart.ha.tail.interval.ms";
+  public final static long DFS_SSM_HA_TAIL_INTERVAL_DEFAULT = 200L;
+  // The standby takes over once the journal is silent for this long
+  public final static String DFS_SSM_HA_FAILOVER_TIMEOUT_KEY =
+      "dfs.smart.ha.failover.timeout.ms";
+  public final static long DFS_SSM_HA_FAILOVER_TIMEOUT_DEFAULT = 10000L;
+  // The journal is truncated after each checkpoint of the metastore
+  public final static String DFS_SSM_HA_CHECKPOINT_INTERVAL_KEY =
+      "dfs.smart.ha.checkpoint.interval.ms";
+  public final static long DFS_SSM_HA_CHECKPOINT_INTERVAL_DEFAULT =
+      3600 * 1000L;
 }
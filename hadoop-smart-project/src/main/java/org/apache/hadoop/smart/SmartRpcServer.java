@@ -23,24 +23,36 @@
 import org.apache.hadoop.ipc.ProtobufRpcEngine;
 import org.apache.hadoop.ipc.RPC;
 import org.apache.hadoop.ipc.RetriableException;
+import org.apache.hadoop.smart.agent.AgentManager;
+import org.apache.hadoop.smart.protocol.AgentHeartbeatResponse;
+import org.apache.hadoop.smart.protocol.AgentSmartProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProtocol;
 import org.apache.hadoop.smart.protocol.ClientSmartProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProtocol;
+import org.apache.hadoop.smart.protocol.ListingPage;
 import org.apache.hadoop.smart.protocol.SmartServiceState;
+import org.apache.hadoop.smart.protocolPB.AgentSmartProtocolPB;
+import org.apache.hadoop.smart.protocolPB.AgentSmartProtocolServerSideTranslatorPB;
 import org.apache.hadoop.smart.protocolPB.ClientSmartProtocolPB;
 import org.apache.hadoop.smart.protocolPB.ClientSmartProtocolServerSideTranslatorPB;
+import org.apache.hadoop.smart.rule.RuleEstimate;
 import org.apache.hadoop.smart.rule.RuleInfo;
 import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.CommandFilter;
 import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Implements the rpc calls.
  * TODO: Implement statistics for SSM rpc server
  */
-public class SmartRpcServer implements ClientSmartProtocol {
+public class SmartRpcServer implements ClientSmartProtocol,
+    AgentSmartProtocol {
   protected SmartServer ssm;
   protected Configuration conf;
   protected final InetSocketAddress clientRpcAddress;
@@ -75,6 +87,15 @@ public SmartRpcServer(SmartServer ssm, Configuration conf) throws IOException {
 
     DFSUtil.addPBProtocol(conf, ClientSmartProtocolPB.class,
         clientSmartPbService, clientRpcServer);
+
+    // Agents are served by the same server
+    RPC.setProtocolEngine(conf, AgentSmartProtocolPB.class,
+        ProtobufRpcEngine.class);
+    BlockingService agentSmartPbService = AgentSmartProto.agentProtoService
+        .newReflectiveBlockingService(
+            new AgentSmartProtocolServerSideTranslatorPB(this));
+    DFSUtil.addPBProtocol(conf, AgentSmartProtocolPB.class,
+        agentSmartPbService, clientRpcServer);
   }
 
   private InetSocketAddress getRpcServerAddress() {
@@ -112,6 +133,15 @@ public void join() throws InterruptedException {
     }
   }
 
+  /**
+   * Limit of a listing page, bounded to keep responses small.
+   */
+  private int getPageSize(int limit) {
+    int max = conf.getInt(SmartConfigureKeys.DFS_SSM_LIST_MAX_PAGE_SIZE_KEY,
+        SmartConfigureKeys.DFS_SSM_LIST_MAX_PAGE_SIZE_DEFAULT);
+    return limit <= 0 ? max : Math.min(limit, max);
+  }
+
   @Override
   public SmartServiceState getServiceState() {
     return ssm.getSSMServiceState();
@@ -135,6 +165,12 @@ public void checkRule(String rule) throws IOException {
     ssm.getRuleManager().checkRule(rule);
   }
 
+  @Override
+  public RuleEstimate estimateRule(String rule) throws IOException {
+    checkIfActive();
+    return ssm.getRuleManager().estimateRule(rule);
+  }
+
   @Override
   public RuleInfo getRuleInfo(long ruleId) throws IOException {
     checkIfActive();
@@ -142,9 +178,10 @@ public RuleInfo getRuleInfo(long ruleId) throws IOException {
   }
 
   @Override
-  public List<RuleInfo> listRulesInfo() throws IOException {
+  public ListingPage<RuleInfo> listRulesInfo(long pageToken, int limit)
+      throws IOException {
     checkIfActive();
-    return ssm.getRuleManager().listRulesInfo();
+    return ssm.getRuleManager().listRulesInfo(pageToken, getPageSize(limit));
   }
 
   @Override
@@ -172,9 +209,18 @@ public CommandInfo getCommandInfo(long commandID) throws IOException {
   }
 
   @Override
-  public List<CommandInfo> listCommandInfo(long rid, CommandState commandState) throws IOException {
+  public ListingPage<CommandInfo> listCommandInfo(CommandFilter filter,
+      long pageToken, int limit) throws IOException {
     checkIfActive();
-    return ssm.getCommandExecutor().listCommandsInfo(rid, commandState);
+    return ssm.getCommandExecutor().listCommandsInfo(filter, pageToken,
+        getPageSize(limit));
+  }
+
+  @Override
+  public Map<CommandState, Long> getCommandsSummary(CommandFilter filter)
+      throws IOException {
+    checkIfActive();
+    return ssm.getCommandExecutor().getCommandsSummary(filter);
   }
 
   @Override
@@ -194,4 +240,34 @@ public void deleteCommand(long commandID) throws IOException {
     checkIfActive();
     ssm.getCommandExecutor().deleteCommand(commandID);
   }
+
+  @Override
+  public CompactFileInfo getCompactFileInfo(String path) throws IOException {
+    checkIfActive();
+    return ssm.getCommandExecutor().getCompactFileInfo(path);
+  }
+
+  private AgentManager getAgentManager() throws IOException {
+    AgentManager manager = ssm.getCommandExecutor().getAgentManager();
+    if (manager == null) {
+      throw new IOException("Agents not enabled, see "
+          + SmartConfigureKeys.DFS_SSM_AGENT_ENABLED_KEY);
+    }
+    return manager;
+  }
+
+  @Override
+  public long registerAgent(String host, int numSlots) throws IOException {
+    checkIfActive();
+    return getAgentManager().registerAgent(host, numSlots);
+  }
+
+  @Override
+  public AgentHeartbeatResponse agentHeartbeat(long agentId,
+      Map<Long, CommandState> finished, Set<Long> running, int numFreeSlots)
+      throws IOException {
+    checkIfActive();
+    return getAgentManager().agentHeartbeat(agentId, finished, running,
+        numFreeSlots);
+  }
 }
@@ -34,6 +34,11 @@
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.StartupOption;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.smart.event.StateChangeBus;
+import org.apache.hadoop.smart.federation.MountTable;
+import org.apache.hadoop.smart.ha.JournalTailer;
+import org.apache.hadoop.smart.ha.MetaStoreCheckpointer;
+import org.apache.hadoop.smart.ha.MetaStoreJournal;
 import org.apache.hadoop.smart.protocol.SmartServiceState;
 import org.apache.hadoop.smart.rule.RuleManager;
 import org.apache.hadoop.smart.sql.DBAdapter;
@@ -42,6 +47,7 @@
 import org.apache.hadoop.smart.utils.GenericOptionsParser;
 import org.apache.hadoop.smart.web.SmartHttpServer;
 import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +75,11 @@ public class SmartServer {
   private SmartRpcServer rpcServer;
   private Configuration conf;
   private DistributedFileSystem fs = null;
+  private MountTable mountTable = null;
+  private DBAdapter dbAdapter = null;
+  private MetaStoreJournal journal = null;
+  private MetaStoreCheckpointer checkpointer = null;
+  private final StateChangeBus stateChangeBus = new StateChangeBus();
   private OutputStream outSSMIdFile;
   private List<ModuleSequenceProto> modules = new ArrayList<>();
   static final Path SSM_ID_PATH = new Path("/system/ssm.id");
@@ -100,6 +111,13 @@ public CommandExecutor getCommandExecutor() {
     return commandExecutor;
   }
 
+  /**
+   * State transitions of rules and commands are published here.
+   */
+  public StateChangeBus getStateChangeBus() {
+    return stateChangeBus;
+  }
+
   /**
    * Create SSM instance and launch the daemon threads.
    *
@@ -200,26 +218,28 @@ public static void main(String[] args) {
    * @throws Exception
    */
   public void runSSMDaemons() throws Exception {
-    String nnRpcAddr = conf.get(
-        SmartConfigureKeys.DFS_SSM_NAMENODE_RPCSERVER_KEY);
-    if (nnRpcAddr == null) {
-      throw new IOException("Can not find NameNode RPC server address. "
-          + "Please configure it through '"
-          + SmartConfigureKeys.DFS_SSM_NAMENODE_RPCSERVER_KEY + "'.");
-    }
-    URI rpcURL = new URI(nnRpcAddr);
+    // The first NameNode hosts the running mark of SSM
+    URI rpcURL = MountTable.getNameNodeUris(conf)[0];
     this.fs = (DistributedFileSystem) FileSystem.get(rpcURL, conf);
-    outSSMIdFile = checkAndMarkRunning();
-    if (outSSMIdFile == null) {
-      // Exit if there is another one running.
-      throw new IOException("Another SmartServer is running");
+    if (conf.getBoolean(SmartConfigureKeys.DFS_SSM_HA_ENABLED_KEY,
+        SmartConfigureKeys.DFS_SSM_HA_ENABLED_DEFAULT)) {
+      outSSMIdFile = runAsStandby(fs, createDBAdapter());
+    } else {
+      outSSMIdFile = checkAndMarkRunning();
+      if (outSSMIdFile == null) {
+        // Exit if there is another one running.
+        throw new IOException("Another SmartServer is running");
+      }
     }
 
     // Init and start RPC server and REST server
     rpcServer.start();
     httpServer.start();
 
-    DBAdapter dbAdapter = getDBAdapter();
+    this.mountTable = MountTable.load(conf);
+    if (dbAdapter == null) {
+      this.dbAdapter = getDBAdapter();
+    }
 
     for (ModuleSequenceProto m : modules) {
       m.init(dbAdapter);
@@ -247,6 +267,28 @@ public void stop() throws Exception {
     }
     httpServer.stop();
     rpcServer.stop();
+    stopMetaStore();
+    if (mountTable != null) {
+      mountTable.close();
+    }
+  }
+
+  /**
+   * Stop the writer of the metastore and its journal.
+   */
+  @VisibleForTesting
+  void stopMetaStore() {
+    if (checkpointer != null) {
+      checkpointer.stop();
+      checkpointer = null;
+    }
+    if (dbAdapter != null) {
+      dbAdapter.stopWriter();
+    }
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
   }
 
   /**
@@ -275,6 +317,16 @@ public void shutdown() {
   }
 
   public DBAdapter getDBAdapter() throws Exception {
+    DBAdapter adapter = createDBAdapter();
+    if (conf.getBoolean(
+        SmartConfigureKeys.DFS_SSM_METASTORE_WRITER_ENABLED_KEY,
+        SmartConfigureKeys.DFS_SSM_METASTORE_WRITER_ENABLED_DEFAULT)) {
+      adapter.startWriter(getWriterMaxBatchSize());
+    }
+    return adapter;
+  }
+
+  private DBAdapter createDBAdapter() throws Exception {
     String fileName = "druid.xml";
     URL urlPoolConf = getClass().getResource(fileName);
     if (urlPoolConf != null) {
@@ -291,6 +343,83 @@ public DBAdapter getDBAdapter() throws Exception {
     return new DBAdapter(conn);
   }
 
+  private int getWriterMaxBatchSize() {
+    return conf.getInt(
+        SmartConfigureKeys.DFS_SSM_METASTORE_WRITER_MAX_BATCH_KEY,
+        SmartConfigureKeys.DFS_SSM_METASTORE_WRITER_MAX_BATCH_DEFAULT);
+  }
+
+  /**
+   * Replay the metastore journal of the active SmartServer while there is
+   * one. Once its journal is silent for longer than the failover timeout,
+   * its lock file and journal are taken over through lease recovery, this
+   * server then goes on as the active one with the replayed metastore.
+   * Without an active one, the journal is replayed and continued at once.
+   *
+   * @return the lock file marking this server as the running one
+   */
+  @VisibleForTesting
+  OutputStream runAsStandby(DistributedFileSystem fs, DBAdapter adapter)
+      throws Exception {
+    this.fs = fs;
+    this.dbAdapter = adapter;
+    if (!dbAdapter.isPooled() || !conf.getBoolean(
+        SmartConfigureKeys.DFS_SSM_METASTORE_WRITER_ENABLED_KEY,
+        SmartConfigureKeys.DFS_SSM_METASTORE_WRITER_ENABLED_DEFAULT)) {
+      throw new IOException("SmartServer HA requires a metastore pool "
+          + "with the metastore writer enabled");
+    }
+    Path journalDir = new Path(conf.get(
+        SmartConfigureKeys.DFS_SSM_HA_JOURNAL_DIR_KEY,
+        SmartConfigureKeys.DFS_SSM_HA_JOURNAL_DIR_DEFAULT));
+    long tailInterval = conf.getLong(
+        SmartConfigureKeys.DFS_SSM_HA_TAIL_INTERVAL_KEY,
+        SmartConfigureKeys.DFS_SSM_HA_TAIL_INTERVAL_DEFAULT);
+    long failoverTimeout = conf.getLong(
+        SmartConfigureKeys.DFS_SSM_HA_FAILOVER_TIMEOUT_KEY,
+        SmartConfigureKeys.DFS_SSM_HA_FAILOVER_TIMEOUT_DEFAULT);
+    JournalTailer tailer = new JournalTailer(fs, journalDir, dbAdapter);
+    tailer.format();
+
+    OutputStream out = checkAndMarkRunning();
+    if (out == null) {
+      LOG.info("Another SmartServer is running, standing by");
+    }
+    long lastProgress = Time.monotonicNow();
+    while (out == null) {
+      if (tailer.tail() > 0) {
+        lastProgress = Time.monotonicNow();
+      } else if (Time.monotonicNow() - lastProgress > failoverTimeout) {
+        LOG.warn("No metastore change from the active SmartServer in "
+            + failoverTimeout + " ms, taking over");
+        try {
+          fs.recoverLease(SSM_ID_PATH);
+          out = checkAndMarkRunning();
+        } catch (IOException e) {
+          LOG.warn("Failed to take over the lock of SmartServer, retrying", e);
+        }
+        if (out != null) {
+          break;
+        }
+      }
+      Thread.sleep(tailInterval);
+    }
+
+    journal = new MetaStoreJournal(fs, journalDir,
+        conf.getLong(SmartConfigureKeys.DFS_SSM_HA_JOURNAL_SEGMENT_SIZE_KEY,
+            SmartConfigureKeys.DFS_SSM_HA_JOURNAL_SEGMENT_SIZE_DEFAULT),
+        conf.getLong(SmartConfigureKeys.DFS_SSM_HA_HEARTBEAT_INTERVAL_KEY,
+            SmartConfigureKeys.DFS_SSM_HA_HEARTBEAT_INTERVAL_DEFAULT));
+    tailer.takeOver(journal);
+    dbAdapter.startWriter(getWriterMaxBatchSize(), journal);
+    checkpointer = new MetaStoreCheckpointer(fs, journalDir, dbAdapter,
+        journal, conf.getLong(
+            SmartConfigureKeys.DFS_SSM_HA_CHECKPOINT_INTERVAL_KEY,
+            SmartConfigureKeys.DFS_SSM_HA_CHECKPOINT_INTERVAL_DEFAULT));
+    checkpointer.start();
+    return out;
+  }
+
   public Connection getDBConnection() throws Exception {
     String dburi = getDBUri();
     LOG.info("Database file URI = " + dburi);
@@ -336,6 +465,13 @@ public DFSClient getDFSClient() {
     return fs.getClient();
   }
 
+  /**
+   * Namespaces SSM manages, available once daemons are running.
+   */
+  public MountTable getMountTable() {
+    return mountTable;
+  }
+
   private OutputStream checkAndMarkRunning() throws IOException {
     try {
       if (fs.exists(SSM_ID_PATH)) {
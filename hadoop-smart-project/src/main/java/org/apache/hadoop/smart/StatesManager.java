@@ -18,34 +18,59 @@
 package org.apache.hadoop.smart;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
+import org.apache.hadoop.smart.cache.AccessSequencePredictor;
+import org.apache.hadoop.smart.cache.CacheEvictionPolicy;
+import org.apache.hadoop.smart.cache.CacheManager;
+import org.apache.hadoop.smart.cache.LfuEvictionPolicy;
+import org.apache.hadoop.smart.cache.LruEvictionPolicy;
+import org.apache.hadoop.smart.federation.MountTable;
+import org.apache.hadoop.smart.federation.NamespaceMount;
 import org.apache.hadoop.smart.fetcher.AccessCountFetcher;
+import org.apache.hadoop.smart.fetcher.AccessEventSource;
+import org.apache.hadoop.smart.fetcher.AuditLogAccessEventSource;
 import org.apache.hadoop.smart.fetcher.InotifyEventFetcher;
+import org.apache.hadoop.smart.fetcher.StorageInfoFetcher;
+import org.apache.hadoop.smart.replication.ReplicationController;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.apache.hadoop.smart.sql.tables.AccessCountTable;
 import org.apache.hadoop.smart.sql.tables.AccessCountTableManager;
+import org.apache.hadoop.smart.sql.tables.AccessHistoryTable;
+import org.apache.hadoop.smart.sql.tables.FileHeatTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
- * Polls metrics and events from NameNode
+ * Polls metrics and events from NameNode, one fetcher pipeline for each
+ * namespace in the mount table.
  */
 public class StatesManager implements ModuleSequenceProto {
   private SmartServer ssm;
   private Configuration conf;
-  private DFSClient client;
+  private MountTable mountTable;
   private ScheduledExecutorService executorService;
   private AccessCountTableManager accessCountTableManager;
-  private InotifyEventFetcher inotifyEventFetcher;
-  private AccessCountFetcher accessCountFetcher;
+  private List<InotifyEventFetcher> inotifyEventFetchers = new ArrayList<>();
+  private List<AccessEventSource> accessEventSources = new ArrayList<>();
+  private FileHeatTracker fileHeatTracker;
+  // Managers of each namespace, indexed by namespace id
+  private List<CacheManager> cacheManagers = new ArrayList<>();
+  private List<ReplicationController> replicationControllers =
+      new ArrayList<>();
+  private List<StorageInfoFetcher> storageInfoFetchers = new ArrayList<>();
+  private AccessSequencePredictor sequencePredictor;
   public static final Logger LOG = LoggerFactory.getLogger(StatesManager.class);
 
   public StatesManager(SmartServer ssm, Configuration conf) {
@@ -59,16 +84,62 @@ public StatesManager(SmartServer ssm, Configuration conf) {
    */
   public boolean init(DBAdapter dbAdapter) throws IOException {
     LOG.info("Initializing ...");
-    String nnUri = conf.get(SmartConfigureKeys.DFS_SSM_NAMENODE_RPCSERVER_KEY);
-    try {
-      this.client = new DFSClient(new URI(nnUri), conf);
-    } catch (URISyntaxException e) {
-      throw new IOException(e);
+    this.mountTable = ssm.getMountTable();
+    this.executorService = Executors.newScheduledThreadPool(
+        2 + 5 * mountTable.getMounts().size());
+    this.accessCountTableManager = new AccessCountTableManager(dbAdapter,
+        executorService, isAccessHistoryPartitioned(dbAdapter));
+    this.fileHeatTracker = new FileHeatTracker(dbAdapter,
+        conf.getLong(SmartConfigureKeys.DFS_SSM_HEAT_HALFLIFE_KEY,
+            SmartConfigureKeys.DFS_SSM_HEAT_HALFLIFE_DEFAULT));
+    this.fileHeatTracker.load();
+    this.accessCountTableManager.setFileHeatTracker(fileHeatTracker);
+    int numMounts = mountTable.getMounts().size();
+    for (NamespaceMount mount : mountTable.getMounts()) {
+      // Table 'storages' holds the DataNodes of the default namespace
+      StorageInfoFetcher storageInfoFetcher = new StorageInfoFetcher(
+          mount.getClient(), mount.getId() == 0 ? dbAdapter : null,
+          executorService,
+          conf.getLong(SmartConfigureKeys.DFS_SSM_STORAGE_REPORT_INTERVAL_KEY,
+              SmartConfigureKeys.DFS_SSM_STORAGE_REPORT_INTERVAL_DEFAULT));
+      storageInfoFetchers.add(storageInfoFetcher);
+      cacheManagers.add(new CacheManager(mount, createCacheEvictionPolicy(),
+          conf.getFloat(SmartConfigureKeys.DFS_SSM_CACHE_MAX_USED_RATIO_KEY,
+              SmartConfigureKeys.DFS_SSM_CACHE_MAX_USED_RATIO_DEFAULT),
+          storageInfoFetcher));
+      // Namespaces share the DataNodes, so do the budget and bandwidth
+      replicationControllers.add(new ReplicationController(mount,
+          fileHeatTracker,
+          conf.getLong(
+              SmartConfigureKeys.DFS_SSM_REPLICATION_MAX_EXTRA_BYTES_KEY,
+              SmartConfigureKeys.DFS_SSM_REPLICATION_MAX_EXTRA_BYTES_DEFAULT)
+              / numMounts,
+          conf.getLong(SmartConfigureKeys.DFS_SSM_REPLICATION_BANDWIDTH_KEY,
+              SmartConfigureKeys.DFS_SSM_REPLICATION_BANDWIDTH_DEFAULT)
+              / numMounts,
+          conf.getFloat(SmartConfigureKeys.DFS_SSM_REPLICATION_COOL_HEAT_KEY,
+              SmartConfigureKeys.DFS_SSM_REPLICATION_COOL_HEAT_DEFAULT)));
+    }
+    if (conf.getBoolean(SmartConfigureKeys.DFS_SSM_PREFETCH_ENABLED_KEY,
+        SmartConfigureKeys.DFS_SSM_PREFETCH_ENABLED_DEFAULT)) {
+      this.sequencePredictor = new AccessSequencePredictor(mountTable,
+          cacheManagers, getPrefetchWindow(),
+          conf.getFloat(SmartConfigureKeys.DFS_SSM_PREFETCH_CONFIDENCE_KEY,
+              SmartConfigureKeys.DFS_SSM_PREFETCH_CONFIDENCE_DEFAULT),
+          conf.getInt(SmartConfigureKeys.DFS_SSM_PREFETCH_MAX_FILES_KEY,
+              SmartConfigureKeys.DFS_SSM_PREFETCH_MAX_FILES_DEFAULT));
+      this.accessCountTableManager.setAccessSequencePredictor(
+          sequencePredictor);
+    }
+    createAccessEventSources(dbAdapter);
+    Collection<String> inotifyPrefixes = conf.getTrimmedStringCollection(
+        SmartConfigureKeys.DFS_SSM_INOTIFY_PATH_PREFIXES_KEY);
+    for (NamespaceMount mount : mountTable.getMounts()) {
+      EventFilter filter = inotifyPrefixes.isEmpty() ? null
+          : InotifyEventFetcher.createFilter(mount, inotifyPrefixes);
+      inotifyEventFetchers.add(
+          new InotifyEventFetcher(mount, dbAdapter, executorService, filter));
     }
-    this.executorService = Executors.newScheduledThreadPool(4);
-    this.accessCountTableManager = new AccessCountTableManager(dbAdapter, executorService);
-    this.accessCountFetcher = new AccessCountFetcher(client, accessCountTableManager, executorService);
-    this.inotifyEventFetcher = new InotifyEventFetcher(client, dbAdapter, executorService);
     LOG.info("Initialized.");
     return true;
   }
@@ -78,20 +149,58 @@ public boolean init(DBAdapter dbAdapter) throws IOException {
    */
   public boolean start() throws IOException, InterruptedException {
     LOG.info("Starting ...");
-    this.inotifyEventFetcher.start();
-    this.accessCountFetcher.start();
+    startInotifyEventFetchers();
+    for (AccessEventSource source : accessEventSources) {
+      source.start();
+    }
+    for (StorageInfoFetcher fetcher : storageInfoFetchers) {
+      fetcher.start();
+    }
+    this.fileHeatTracker.start(executorService,
+        conf.getLong(SmartConfigureKeys.DFS_SSM_HEAT_SNAPSHOT_INTERVAL_KEY,
+            SmartConfigureKeys.DFS_SSM_HEAT_SNAPSHOT_INTERVAL_DEFAULT));
+    for (CacheManager cacheManager : cacheManagers) {
+      cacheManager.start(executorService,
+          conf.getLong(SmartConfigureKeys.DFS_SSM_CACHE_FLUSH_INTERVAL_KEY,
+              SmartConfigureKeys.DFS_SSM_CACHE_FLUSH_INTERVAL_DEFAULT));
+    }
+    for (ReplicationController controller : replicationControllers) {
+      controller.start(executorService, conf.getLong(
+          SmartConfigureKeys.DFS_SSM_REPLICATION_CHECK_INTERVAL_KEY,
+          SmartConfigureKeys.DFS_SSM_REPLICATION_CHECK_INTERVAL_DEFAULT));
+    }
     LOG.info("Started. ");
     return true;
   }
 
   public void stop() throws IOException {
     LOG.info("Stopping ...");
-    if (inotifyEventFetcher != null) {
-      this.inotifyEventFetcher.stop();
+    for (InotifyEventFetcher fetcher : inotifyEventFetchers) {
+      fetcher.stop();
+    }
+
+    for (AccessEventSource source : accessEventSources) {
+      source.stop();
+    }
+
+    for (StorageInfoFetcher fetcher : storageInfoFetchers) {
+      fetcher.stop();
+    }
+
+    for (CacheManager cacheManager : cacheManagers) {
+      cacheManager.stop();
+    }
+
+    for (ReplicationController controller : replicationControllers) {
+      controller.stop();
+    }
+
+    if (fileHeatTracker != null) {
+      this.fileHeatTracker.stop();
     }
 
-    if (accessCountFetcher != null) {
-      this.accessCountFetcher.stop();
+    if (sequencePredictor != null) {
+      LOG.info(sequencePredictor.getReport());
     }
     LOG.info("Stopped.");
   }
@@ -105,6 +214,178 @@ public List<AccessCountTable> getTablesInLast(long timeInMills) throws SQLExcept
     return this.accessCountTableManager.getTables(timeInMills);
   }
 
+  /**
+   * @return null if a table is created for each window of access counts
+   */
+  public AccessHistoryTable getAccessHistoryTable() {
+    return accessCountTableManager == null ? null
+        : accessCountTableManager.getHistoryTable();
+  }
+
+  private boolean isAccessHistoryPartitioned(DBAdapter dbAdapter)
+      throws IOException {
+    if (!conf.getBoolean(
+        SmartConfigureKeys.DFS_SSM_ACCESS_HISTORY_PARTITIONED_KEY,
+        SmartConfigureKeys.DFS_SSM_ACCESS_HISTORY_PARTITIONED_DEFAULT)) {
+      return false;
+    }
+    try {
+      if (dbAdapter.isMySQL()) {
+        return true;
+      }
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+    LOG.warn(SmartConfigureKeys.DFS_SSM_ACCESS_HISTORY_PARTITIONED_KEY
+        + " is only supported with MySQL, ignored.");
+    return false;
+  }
+
+  public FileHeatTracker getFileHeatTracker() {
+    return fileHeatTracker;
+  }
+
+  /**
+   * @return cache manager of the default namespace
+   */
+  public CacheManager getCacheManager() {
+    return getCacheManager(null);
+  }
+
+  /**
+   * @param mount the default namespace if null
+   */
+  public CacheManager getCacheManager(NamespaceMount mount) {
+    return get(cacheManagers, mount);
+  }
+
+  public StorageInfoFetcher getStorageInfoFetcher() {
+    return getStorageInfoFetcher(null);
+  }
+
+  public StorageInfoFetcher getStorageInfoFetcher(NamespaceMount mount) {
+    return get(storageInfoFetchers, mount);
+  }
+
+  public MountTable getMountTable() {
+    return mountTable;
+  }
+
+  public ReplicationController getReplicationController() {
+    return getReplicationController(null);
+  }
+
+  public ReplicationController getReplicationController(
+      NamespaceMount mount) {
+    return get(replicationControllers, mount);
+  }
+
+  private static <T> T get(List<T> perMount, NamespaceMount mount) {
+    int id = mount == null ? 0 : mount.getId();
+    return id < perMount.size() ? perMount.get(id) : null;
+  }
+
+  /**
+   * @return null if prefetch is not enabled
+   */
+  public AccessSequencePredictor getAccessSequencePredictor() {
+    return sequencePredictor;
+  }
+
+  /**
+   * Initial namespace fetches run concurrently, each start returns once
+   * the namespace is loaded into the metastore.
+   */
+  private void startInotifyEventFetchers()
+      throws IOException, InterruptedException {
+    if (inotifyEventFetchers.size() == 1) {
+      inotifyEventFetchers.get(0).start();
+      return;
+    }
+    ExecutorService starter =
+        Executors.newFixedThreadPool(inotifyEventFetchers.size());
+    try {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (final InotifyEventFetcher fetcher : inotifyEventFetchers) {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            fetcher.start();
+            return null;
+          }
+        });
+      }
+      for (Future<Void> future : starter.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } finally {
+      starter.shutdown();
+    }
+  }
+
+  /**
+   * Window of the access sequence predictor, it has to cover the delay from
+   * an access to the prefetch of its successor.
+   */
+  private long getPrefetchWindow() {
+    long window = conf.getLong(SmartConfigureKeys.DFS_SSM_PREFETCH_WINDOW_KEY,
+        SmartConfigureKeys.DFS_SSM_PREFETCH_WINDOW_DEFAULT);
+    String source = conf.get(SmartConfigureKeys.DFS_SSM_ACCESS_EVENT_SOURCE_KEY,
+        SmartConfigureKeys.DFS_SSM_ACCESS_EVENT_SOURCE_DEFAULT);
+    long delay = source.equalsIgnoreCase("auditlog")
+        ? conf.getLong(SmartConfigureKeys.DFS_SSM_AUDIT_LOG_POLL_INTERVAL_KEY,
+            SmartConfigureKeys.DFS_SSM_AUDIT_LOG_POLL_INTERVAL_DEFAULT)
+        : AccessCountFetcher.DEFAULT_INTERVAL;
+    delay += conf.getLong(SmartConfigureKeys.DFS_SSM_CACHE_FLUSH_INTERVAL_KEY,
+        SmartConfigureKeys.DFS_SSM_CACHE_FLUSH_INTERVAL_DEFAULT);
+    if (window <= delay) {
+      LOG.warn("Prefetch window " + window + "ms is not longer than the "
+          + "delay of access events and cache requests, set to "
+          + 2 * delay + "ms.");
+      window = 2 * delay;
+    }
+    return window;
+  }
+
+  private void createAccessEventSources(DBAdapter dbAdapter)
+      throws IOException {
+    String source = conf.get(SmartConfigureKeys.DFS_SSM_ACCESS_EVENT_SOURCE_KEY,
+        SmartConfigureKeys.DFS_SSM_ACCESS_EVENT_SOURCE_DEFAULT);
+    if (source.equalsIgnoreCase("rpc")) {
+      for (NamespaceMount mount : mountTable.getMounts()) {
+        accessEventSources.add(new AccessCountFetcher(mount,
+            accessCountTableManager, executorService));
+      }
+      return;
+    } else if (source.equalsIgnoreCase("auditlog")) {
+      String path = conf.get(SmartConfigureKeys.DFS_SSM_AUDIT_LOG_PATH_KEY);
+      if (path == null) {
+        throw new IOException("Audit log path not configured through '"
+            + SmartConfigureKeys.DFS_SSM_AUDIT_LOG_PATH_KEY + "'.");
+      }
+      // The audit log is that of the default namespace
+      accessEventSources.add(new AuditLogAccessEventSource(path,
+          accessCountTableManager, dbAdapter, executorService,
+          conf.getLong(SmartConfigureKeys.DFS_SSM_AUDIT_LOG_POLL_INTERVAL_KEY,
+              SmartConfigureKeys.DFS_SSM_AUDIT_LOG_POLL_INTERVAL_DEFAULT)));
+      return;
+    }
+    throw new IOException("Unknown access event source: " + source);
+  }
+
+  private CacheEvictionPolicy createCacheEvictionPolicy() throws IOException {
+    String policy = conf.get(SmartConfigureKeys.DFS_SSM_CACHE_POLICY_KEY,
+        SmartConfigureKeys.DFS_SSM_CACHE_POLICY_DEFAULT);
+    if (policy.equalsIgnoreCase("LRU")) {
+      return new LruEvictionPolicy(fileHeatTracker);
+    } else if (policy.equalsIgnoreCase("LFU")) {
+      return new LfuEvictionPolicy(fileHeatTracker);
+    }
+    throw new IOException("Unknown cache eviction policy: " + policy);
+  }
+
   /**
    * RuleManger uses this function to subscribe events interested.
    * StatesManager poll these events from NN or generate these events.
@@ -32,7 +32,9 @@ public enum ActionType {
   ConvertToReplica(8),
   Distcp(9),
   DiskBalance(10),
-  BalanceCluster(11);
+  BalanceCluster(11),
+  Compact(12),          // Pack small file into a container file
+  SetReplication(13);   // Change replication of file
 
   private final int value;
 
@@ -26,7 +26,7 @@
 public class CacheStatus {
   // the key named cachePoolName
   private Map<String, List<cacheFileInfo>> cacheStatusMap;
-  //cache for each node information,the key means Datanote host name
+  //cache for each node information, the key is DataNode transfer address
   private Map<String, nodeCacheInfo> dnCacheStatusMap;
   private long cacheCapacityTotal;
   private long cacheUsedTotal;
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.actions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSInputStream;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
+import org.apache.hadoop.smart.sql.DBAdapter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pack a small file into a container file of its directory.
+ *
+ * The data is appended to the container, the fid -> (container, offset,
+ * length) mapping is committed to the metastore and only then the original
+ * file is removed. Readers going through SmartClient see either the
+ * original file or the mapping, never a partial state.
+ */
+public class CompactFile extends ActionBase {
+    private static final Logger LOG = LoggerFactory.getLogger(CompactFile.class);
+
+    public static final String CONTAINER_PREFIX = ".ssm_container_";
+
+    // Appends to the same directory are serialized
+    private static final Map<String, Object> dirLocks =
+        new ConcurrentHashMap<>();
+
+    private String fileName;
+    private Configuration conf;
+    private DBAdapter adapter;
+
+    public CompactFile(DFSClient client, Configuration conf,
+        DBAdapter adapter) {
+        super(client);
+        this.conf = conf;
+        this.adapter = adapter;
+        this.actionType = ActionType.Compact;
+    }
+
+    public ActionBase initial(String[] args) {
+        this.fileName = args[0];
+        return this;
+    }
+
+    /**
+     * Execute an action.
+     * @return null.
+     */
+    public UUID execute() {
+        LOG.info("Action starts at " + new Date(System.currentTimeMillis())
+            + " : " + fileName + " -> compact");
+        try {
+            compact();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    public static boolean isContainer(String path) {
+        return new Path(path).getName().startsWith(CONTAINER_PREFIX);
+    }
+
+    private void compact() throws IOException {
+        HdfsFileStatus status = dfsClient.getFileInfo(fileName);
+        if (status == null || status.isDir() || isContainer(fileName)) {
+            LOG.warn("File " + fileName + " not exists or not compactable,"
+                + " skipped.");
+            return;
+        }
+        long maxSize = conf.getLong(
+            SmartConfigureKeys.DFS_SSM_COMPACT_CONTAINER_SIZE_KEY,
+            SmartConfigureKeys.DFS_SSM_COMPACT_CONTAINER_SIZE_DEFAULT);
+        if (status.getLen() > maxSize) {
+            LOG.warn("File " + fileName + " larger than a container, skipped.");
+            return;
+        }
+
+        String dir = new Path(fileName).getParent().toUri().getPath();
+        Object lock = dirLocks.get(dir);
+        if (lock == null) {
+            dirLocks.putIfAbsent(dir, new Object());
+            lock = dirLocks.get(dir);
+        }
+        synchronized (lock) {
+            String container = chooseContainer(dir, status.getLen(), maxSize);
+            long offset = append(container, status);
+            HdfsFileStatus now = dfsClient.getFileInfo(fileName);
+            if (now == null || now.getFileId() != status.getFileId()
+                || now.getLen() != status.getLen()
+                || now.getModificationTime() != status.getModificationTime()) {
+                // The appended bytes are left unreferenced in the container
+                throw new IOException("File " + fileName
+                    + " changed during compaction");
+            }
+            try {
+                adapter.insertCompactFile(new CompactFileInfo(
+                    status.getFileId(), fileName, container, offset,
+                    status.getLen()));
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+            dfsClient.delete(fileName, false);
+        }
+    }
+
+    /**
+     * Choose the first container of the directory with enough room left.
+     */
+    private String chooseContainer(String dir, long length, long maxSize)
+        throws IOException {
+        for (int i = 0; ; i++) {
+            String container = new Path(dir, CONTAINER_PREFIX + i)
+                .toUri().getPath();
+            HdfsFileStatus s = dfsClient.getFileInfo(container);
+            if (s == null || s.getLen() + length <= maxSize) {
+                return container;
+            }
+        }
+    }
+
+    /**
+     * Append file content to the container.
+     * @return offset of the content in container
+     */
+    private long append(String container, HdfsFileStatus status)
+        throws IOException {
+        int bufSize = conf.getInt(DFSConfigKeys.IO_FILE_BUFFER_SIZE_KEY,
+            DFSConfigKeys.IO_FILE_BUFFER_SIZE_DEFAULT);
+        HdfsFileStatus cs = dfsClient.getFileInfo(container);
+        long offset = cs == null ? 0 : cs.getLen();
+        OutputStream out = cs == null
+            ? dfsClient.create(container, true)
+            : dfsClient.append(container, bufSize,
+                EnumSet.of(CreateFlag.APPEND), null, null);
+        DFSInputStream in = dfsClient.open(fileName);
+        try {
+            byte[] buf = new byte[bufSize];
+            long remaining = status.getLen();
+            while (remaining > 0) {
+                int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (n < 0) {
+                    throw new IOException("Unexpected EOF of " + fileName);
+                }
+                out.write(buf, 0, n);
+                remaining -= n;
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.actions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.XAttrSetFlag;
+import org.apache.hadoop.fs.permission.AclStatus;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSInputStream;
+import org.apache.hadoop.hdfs.DFSOutputStream;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+import org.apache.hadoop.hdfs.protocol.AclException;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Convert a file to the given erasure coding policy, or back to replication.
+ *
+ * The file is rewritten into a temporary file with the target layout,
+ * reading the source with several parallel positional reads. The copy is
+ * read back and its checksum compared with the one of the source data,
+ * then it replaces the source by an atomic rename if the source has not
+ * been modified meanwhile. A replicated source is opened for append while
+ * it is checked and replaced, so that nobody can write it in between.
+ * Striped files can not be appended, they only change by being replaced,
+ * which the file id check catches.
+ *
+ * Owner, times, permission, ACLs and xattrs are copied to the new file.
+ * The new file has a new inode id, so SSM state kept by fid, such as
+ * access counts and heat, starts over for it.
+ */
+public class ECFile extends ActionBase {
+    private static final Logger LOG = LoggerFactory.getLogger(ECFile.class);
+
+    // Policy name used in rules to convert back to replication
+    public static final String REPLICATION = "replication";
+    public static final String TMP_DIR = "/system/ssm/ec-tmp";
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private String fileName;
+    private Configuration conf;
+    private String ecPolicy;
+
+    /**
+     * @param ecPolicy name of the erasure coding policy, null for replication
+     */
+    public ECFile(DFSClient client, Configuration conf, String ecPolicy) {
+        super(client);
+        this.conf = conf;
+        this.ecPolicy = ecPolicy;
+        this.actionType = ecPolicy == null ? ActionType.ConvertToReplica
+            : ActionType.ConvertToEC;
+    }
+
+    public ActionBase initial(String[] args) {
+        this.fileName = args[0];
+        return this;
+    }
+
+    /**
+     * Execute an action.
+     * @return null.
+     */
+    public UUID execute() {
+        LOG.info("Action starts at " + new Date(System.currentTimeMillis())
+            + " : " + fileName + " -> "
+            + (ecPolicy == null ? REPLICATION : ecPolicy));
+        try {
+            convert();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    private void convert() throws IOException {
+        HdfsFileStatus status = dfsClient.getFileInfo(fileName);
+        if (status == null || status.isDir()) {
+            LOG.warn("File " + fileName + " not exists, skipped.");
+            return;
+        }
+        if (!dfsClient.isFileClosed(fileName)) {
+            LOG.warn("File " + fileName + " is being written, skipped.");
+            return;
+        }
+        ErasureCodingPolicy current = status.getErasureCodingPolicy();
+        if ((current == null && ecPolicy == null)
+            || (current != null && current.getName().equals(ecPolicy))) {
+            return;
+        }
+
+        short replication = current != null
+            ? (short) conf.getInt(DFSConfigKeys.DFS_REPLICATION_KEY,
+                DFSConfigKeys.DFS_REPLICATION_DEFAULT)
+            : status.getReplication();
+        String tmp = TMP_DIR + "/" + status.getFileId() + "_"
+            + System.currentTimeMillis();
+        dfsClient.mkdirs(TMP_DIR, null, true);
+        try {
+            long crc = copy(status, tmp, replication);
+            if (checksum(tmp) != crc) {
+                throw new IOException("Checksum mismatch after rewriting "
+                    + fileName);
+            }
+            checkUnchanged(status);
+            copyMetadata(status, tmp);
+            replace(status, tmp);
+        } finally {
+            if (dfsClient.getFileInfo(tmp) != null) {
+                dfsClient.delete(tmp, false);
+            }
+        }
+    }
+
+    private void checkUnchanged(HdfsFileStatus status) throws IOException {
+        HdfsFileStatus now = dfsClient.getFileInfo(fileName);
+        if (now == null || now.getFileId() != status.getFileId()
+            || now.getLen() != status.getLen()
+            || now.getModificationTime() != status.getModificationTime()) {
+            throw new IOException("File " + fileName
+                + " changed during conversion");
+        }
+    }
+
+    private void copyMetadata(HdfsFileStatus status, String dest)
+        throws IOException {
+        dfsClient.setOwner(dest, status.getOwner(), status.getGroup());
+        Map<String, byte[]> xattrs = dfsClient.getXAttrs(fileName);
+        for (Map.Entry<String, byte[]> xattr : xattrs.entrySet()) {
+            dfsClient.setXAttr(dest, xattr.getKey(), xattr.getValue(),
+                EnumSet.of(XAttrSetFlag.CREATE, XAttrSetFlag.REPLACE));
+        }
+        AclStatus acl;
+        try {
+            acl = dfsClient.getAclStatus(fileName);
+        } catch (AclException e) {
+            // ACLs disabled
+            acl = null;
+        }
+        if (acl != null && !acl.getEntries().isEmpty()) {
+            dfsClient.modifyAclEntries(dest, acl.getEntries());
+            // The group bits of the permission are the ACL mask
+            dfsClient.setPermission(dest, status.getPermission());
+        }
+        dfsClient.setTimes(dest, status.getModificationTime(),
+            status.getAccessTime());
+    }
+
+    /**
+     * Replace the source with the new file if the source is unchanged.
+     */
+    private void replace(HdfsFileStatus status, String tmp)
+        throws IOException {
+        HdfsDataOutputStream lease = null;
+        if (status.getErasureCodingPolicy() == null) {
+            lease = dfsClient.append(fileName,
+                conf.getInt(DFSConfigKeys.IO_FILE_BUFFER_SIZE_KEY,
+                    DFSConfigKeys.IO_FILE_BUFFER_SIZE_DEFAULT),
+                EnumSet.of(CreateFlag.APPEND), null, null);
+        }
+        boolean replaced = false;
+        try {
+            checkUnchanged(status);
+            dfsClient.rename(tmp, fileName, Options.Rename.OVERWRITE);
+            replaced = true;
+        } finally {
+            if (lease != null) {
+                try {
+                    lease.close();
+                } catch (IOException e) {
+                    // Expected once replaced, as the source inode is gone
+                    if (replaced) {
+                        LOG.debug("Close replaced file " + fileName, e);
+                    } else {
+                        LOG.warn("Failed to close " + fileName, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the file with parallel reads and sequential write.
+     * @return CRC32 of the data copied
+     */
+    private long copy(HdfsFileStatus status, String dest, short replication)
+        throws IOException {
+        int threads = conf.getInt(SmartConfigureKeys.DFS_SSM_EC_REWRITE_THREADS_KEY,
+            SmartConfigureKeys.DFS_SSM_EC_REWRITE_THREADS_DEFAULT);
+        final long length = status.getLen();
+        final DFSInputStream in = dfsClient.open(fileName);
+        DFSOutputStream out = dfsClient.create(dest, status.getPermission(),
+            EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE), true,
+            replication, status.getBlockSize(), null,
+            conf.getInt(DFSConfigKeys.IO_FILE_BUFFER_SIZE_KEY,
+                DFSConfigKeys.IO_FILE_BUFFER_SIZE_DEFAULT),
+            null, null, ecPolicy);
+        ExecutorService readers = Executors.newFixedThreadPool(threads);
+        CRC32 crc = new CRC32();
+        try {
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            long next = 0;
+            long written = 0;
+            while (written < length) {
+                while (pending.size() < threads && next < length) {
+                    final long pos = next;
+                    final int len = (int) Math.min(CHUNK_SIZE, length - pos);
+                    pending.add(readers.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            byte[] buf = new byte[len];
+                            in.readFully(pos, buf, 0, len);
+                            return buf;
+                        }
+                    }));
+                    next += len;
+                }
+                byte[] buf = pending.poll().get();
+                crc.update(buf, 0, buf.length);
+                out.write(buf);
+                written += buf.length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            readers.shutdownNow();
+            out.close();
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    private long checksum(String file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[64 * 1024];
+        DFSInputStream in = dfsClient.open(file);
+        try {
+            int n;
+            while ((n = in.read(buf, 0, buf.length)) > 0) {
+                crc.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+}
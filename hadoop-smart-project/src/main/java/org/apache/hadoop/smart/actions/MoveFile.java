@@ -18,8 +18,13 @@
 package org.apache.hadoop.smart.actions;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
+import org.apache.hadoop.smart.fetcher.StorageInfoFetcher;
 import org.apache.hadoop.smart.mover.MoverPool;
+import org.apache.hadoop.smart.sql.StorageCapacity;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,12 +40,19 @@ public class MoveFile extends ActionBase {
     public String storagePolicy;
     private String fileName;
     private Configuration conf;
+    private StorageInfoFetcher storageInfoFetcher;
 
     public MoveFile(DFSClient client, Configuration conf, String storagePolicy) {
+        this(client, conf, storagePolicy, null);
+    }
+
+    public MoveFile(DFSClient client, Configuration conf, String storagePolicy,
+        StorageInfoFetcher storageInfoFetcher) {
         super(client);
         this.conf = conf;
         this.actionType = ActionType.MoveFile;
         this.storagePolicy = storagePolicy;
+        this.storageInfoFetcher = storageInfoFetcher;
     }
 
     public ActionBase initial(String[] args) {
@@ -61,6 +73,11 @@ private UUID runMove(String fileName) {
         // TODO check if storagePolicy is the same
         LOG.info("Action starts at " + new Date(System.currentTimeMillis())
             + " : " + fileName + " -> " + storagePolicy);
+        if (!hasFreeSpace()) {
+            LOG.warn("No free space of storage policy " + storagePolicy
+                + " in cluster, move of " + fileName + " skipped.");
+            return null;
+        }
         try {
             dfsClient.setStoragePolicy(fileName, storagePolicy);
         } catch (Exception e) {
@@ -69,5 +86,28 @@ private UUID runMove(String fileName) {
         return MoverPool.getInstance().createMoverAction(fileName);
     }
 
+    /**
+     * Check the last storage report to see if any storage type of the
+     * policy has free space left.
+     */
+    private boolean hasFreeSpace() {
+        if (storageInfoFetcher == null
+            || storageInfoFetcher.getLastFetchTime() == 0) {
+            return true;
+        }
+        BlockStoragePolicy policy = BlockStoragePolicySuite
+            .createDefaultSuite().getPolicy(storagePolicy);
+        if (policy == null) {
+            return true;
+        }
+        for (StorageType t : policy.getStorageTypes()) {
+            StorageCapacity c = storageInfoFetcher.getStorageCapacity(t.name());
+            if (c != null && c.getFree() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 
 }
\ No newline at end of file
@@ -26,6 +26,7 @@
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
 import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
 import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
+import org.apache.hadoop.smart.cache.CacheManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,12 +45,19 @@ public class MoveToCache extends ActionBase {
     private String fileName;
     private Configuration conf;
     private LinkedBlockingQueue<String> actionEvents;
-    private final String SSMPOOL = "SSMPool";
+    private CacheManager cacheManager;
+    private final String SSMPOOL = CacheManager.SSMPOOL;
 
     public MoveToCache(DFSClient client, Configuration conf) {
+        this(client, conf, null);
+    }
+
+    public MoveToCache(DFSClient client, Configuration conf,
+        CacheManager cacheManager) {
         super(client);
         this.dfsClient = client;
         this.conf = conf;
+        this.cacheManager = cacheManager;
         this.actionType = ActionType.CacheFile;
         this.actionEvents = new LinkedBlockingQueue<String>();
     }
@@ -81,6 +89,15 @@ public void addActionEvent(String fileName) {
     }
 
     private void runCache(String fileName) {
+        if (cacheManager != null) {
+            // Admitted and batched by cache manager, wait for the outcome
+            try {
+                cacheManager.cacheFileAndWait(fileName);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
         createPool();
         if (isCached(fileName)) {
             return;
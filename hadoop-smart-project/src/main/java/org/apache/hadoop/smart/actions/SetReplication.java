@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.actions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.smart.replication.ReplicationController;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Set replication of file Action
+ */
+public class SetReplication extends ActionBase {
+    private static final Logger LOG =
+        LoggerFactory.getLogger(SetReplication.class);
+
+    private String fileName;
+    private Configuration conf;
+    private short replication;
+    private ReplicationController controller;
+
+    public SetReplication(DFSClient client, Configuration conf,
+        short replication) {
+        this(client, conf, replication, null);
+    }
+
+    /**
+     * @param controller if not null, the change is admitted and paced by it
+     */
+    public SetReplication(DFSClient client, Configuration conf,
+        short replication, ReplicationController controller) {
+        super(client);
+        this.conf = conf;
+        this.replication = replication;
+        this.controller = controller;
+        this.actionType = ActionType.SetReplication;
+    }
+
+    public ActionBase initial(String[] args) {
+        this.fileName = args[0];
+        return this;
+    }
+
+    /**
+     * Execute an action.
+     * @return null.
+     */
+    public UUID execute() {
+        LOG.info("Action starts at " + new Date(System.currentTimeMillis())
+            + " : " + fileName + " -> replication " + replication);
+        if (controller != null) {
+            // Admitted and paced by the controller, wait for the outcome
+            try {
+                controller.setReplicationAndWait(fileName, replication);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        }
+        try {
+            dfsClient.setReplication(fileName, replication);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.actions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
+import org.apache.hadoop.smart.cache.CacheManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Remove file from cache Action
+ */
+public class UncacheFile extends ActionBase {
+    private static final Logger LOG = LoggerFactory.getLogger(UncacheFile.class);
+
+    private String fileName;
+    private Configuration conf;
+    private CacheManager cacheManager;
+
+    public UncacheFile(DFSClient client, Configuration conf) {
+        this(client, conf, null);
+    }
+
+    public UncacheFile(DFSClient client, Configuration conf,
+        CacheManager cacheManager) {
+        super(client);
+        this.conf = conf;
+        this.cacheManager = cacheManager;
+        this.actionType = ActionType.UncacheFile;
+    }
+
+    public ActionBase initial(String[] args) {
+        this.fileName = args[0];
+        return this;
+    }
+
+    /**
+     * Execute an action.
+     * @return null.
+     */
+    public UUID execute() {
+        LOG.info("Action starts at " + new Date(System.currentTimeMillis())
+            + " : " + fileName + " -> uncache");
+        if (cacheManager != null) {
+            try {
+                cacheManager.uncacheFileAndWait(fileName);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        }
+        CacheDirectiveInfo filter = new CacheDirectiveInfo.Builder()
+            .setPath(new Path(fileName)).setPool(CacheManager.SSMPOOL).build();
+        try {
+            RemoteIterator<CacheDirectiveEntry> directiveEntries =
+                dfsClient.listCacheDirectives(filter);
+            while (directiveEntries.hasNext()) {
+                dfsClient.removeCacheDirective(
+                    directiveEntries.next().getInfo().getId());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+}
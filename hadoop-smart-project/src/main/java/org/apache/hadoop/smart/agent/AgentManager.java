@@ -0,0 +1,347 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.agent;
+
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.protocol.AgentHeartbeatResponse;
+import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.utils.JsonUtil;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the agents registered and dispatches commands to them.
+ *
+ * Commands are handed out in heartbeats, those having a replica of their
+ * first block on the host of the agent go first. An agent missing
+ * heartbeats longer than the expire interval is dropped, the commands it
+ * was running are dispatched again.
+ *
+ * Each hand out of a command gets a new epoch. Agents report commands by
+ * epoch, so a report about a command dispatched again since is ignored,
+ * and a command the agent runs under an epoch not known any more is
+ * cancelled on it.
+ */
+public class AgentManager {
+  // Commands looked at for locality per free slot of an agent
+  private static final int LOCALITY_SCAN_FACTOR = 4;
+
+  private final Set<ActionType> actionTypes;
+  private final long expireInterval;
+  private final Listener listener;
+
+  private long nextAgentId = 1;
+  // Started from the clock so that epochs of a restarted server differ
+  // from those handed out before
+  private long nextEpoch = Time.now();
+  private final Map<Long, AgentInfo> agents = new HashMap<>();
+  private final LinkedList<AgentCommand> unassigned = new LinkedList<>();
+
+  public static final Logger LOG = LoggerFactory.getLogger(AgentManager.class);
+
+  /**
+   * Notified when an agent reports a command finished.
+   */
+  public interface Listener {
+    void onCommandFinished(CommandInfo cmd, CommandState state);
+  }
+
+  public AgentManager(Collection<ActionType> actionTypes, long expireInterval,
+      Listener listener) {
+    this.actionTypes = new HashSet<>(actionTypes);
+    this.expireInterval = expireInterval;
+    this.listener = listener;
+  }
+
+  /**
+   * Parse the action types given in configuration, unknown ones and the
+   * ones agents can not run skipped.
+   */
+  public static List<ActionType> parseActionTypes(String[] names) {
+    List<ActionType> ret = new ArrayList<>();
+    for (String name : names) {
+      ActionType type = ActionType.fromName(name.trim());
+      if (type == null) {
+        if (!name.trim().isEmpty()) {
+          LOG.warn("Unknown action type for agents: " + name);
+        }
+      } else if (!SmartAgent.SUPPORTED_ACTIONS.contains(type)) {
+        LOG.warn("Action type " + type + " is run by SSM server only");
+      } else {
+        ret.add(type);
+      }
+    }
+    return ret;
+  }
+
+  private static class AgentInfo {
+    private final long id;
+    private final String host;
+    private final int numSlots;
+    private long lastHeartbeat;
+    // Keyed by dispatch epoch
+    private final Map<Long, AgentCommand> running = new LinkedHashMap<>();
+
+    AgentInfo(long id, String host, int numSlots) {
+      this.id = id;
+      this.host = host;
+      this.numSlots = numSlots;
+      this.lastHeartbeat = Time.monotonicNow();
+    }
+
+    @Override
+    public String toString() {
+      return "Agent-" + id + "@" + host;
+    }
+  }
+
+  private static class AgentCommand {
+    private final CommandInfo info;
+    private final DFSClient client;
+    // Hosts holding the first block, null if not looked up yet
+    private volatile Set<String> hosts;
+
+    AgentCommand(CommandInfo info, DFSClient client) {
+      this.info = info;
+      this.client = client;
+    }
+
+    /**
+     * Look up where the first block is, called out of the manager lock.
+     */
+    void resolveHosts() {
+      Set<String> ret = new HashSet<>();
+      String path = JsonUtil.toStringStringMap(info.getParameters())
+          .get("_FILE_PATH_");
+      if (client != null && path != null) {
+        try {
+          LocatedBlocks blocks = client.getLocatedBlocks(path, 0, 1);
+          if (blocks != null && !blocks.getLocatedBlocks().isEmpty()) {
+            LocatedBlock block = blocks.getLocatedBlocks().get(0);
+            for (DatanodeInfo dn : block.getLocations()) {
+              ret.add(dn.getHostName());
+              ret.add(dn.getIpAddr());
+            }
+          }
+        } catch (IOException e) {
+          LOG.debug("Get locations of " + path + " error", e);
+        }
+      }
+      hosts = ret;
+    }
+
+    boolean isLocalTo(String host) {
+      Set<String> h = hosts;
+      return h != null && h.contains(host);
+    }
+  }
+
+  public synchronized long registerAgent(String host, int numSlots) {
+    AgentInfo agent = new AgentInfo(nextAgentId++, host, numSlots);
+    agents.put(agent.id, agent);
+    LOG.info(agent + " registered with " + numSlots + " slots");
+    return agent.id;
+  }
+
+  /**
+   * Queue the command for agents if they can execute it.
+   * @param client used to find out where the data of the command is
+   * @return false if the command has to be executed by SSM server
+   */
+  public synchronized boolean dispatch(CommandInfo cmd, DFSClient client) {
+    if (agents.isEmpty() || !actionTypes.contains(cmd.getActionType())) {
+      return false;
+    }
+    unassigned.add(new AgentCommand(cmd, client));
+    return true;
+  }
+
+  /**
+   * Take the finished commands reported and assign new ones to the agent.
+   * @param finished final states of the commands finished by epoch
+   * @param running epochs of the commands still running on the agent
+   */
+  public AgentHeartbeatResponse agentHeartbeat(long agentId,
+      Map<Long, CommandState> finished, Set<Long> running, int numFreeSlots)
+      throws IOException {
+    // Block locations are looked up before taking the lock, the commands
+    // dispatched in between just go without locality
+    for (AgentCommand cmd : getUnresolved(
+        numFreeSlots * LOCALITY_SCAN_FACTOR)) {
+      cmd.resolveHosts();
+    }
+
+    Map<Long, CommandInfo> commands = new LinkedHashMap<>();
+    List<Long> cancelled = new ArrayList<>();
+    Map<CommandInfo, CommandState> done = new LinkedHashMap<>();
+    synchronized (this) {
+      AgentInfo agent = agents.get(agentId);
+      if (agent == null) {
+        throw new IOException("Agent " + agentId
+            + " not registered or expired");
+      }
+      agent.lastHeartbeat = Time.monotonicNow();
+      for (Map.Entry<Long, CommandState> entry : finished.entrySet()) {
+        AgentCommand cmd = agent.running.remove(entry.getKey());
+        if (cmd != null) {
+          done.put(cmd.info, entry.getValue());
+        }
+      }
+      for (long epoch : running) {
+        if (!agent.running.containsKey(epoch)) {
+          cancelled.add(epoch);
+        }
+      }
+      int n = Math.min(numFreeSlots, agent.numSlots - agent.running.size());
+      for (AgentCommand cmd : take(agent, n)) {
+        long epoch = nextEpoch++;
+        agent.running.put(epoch, cmd);
+        commands.put(epoch, cmd.info);
+      }
+    }
+    if (!cancelled.isEmpty()) {
+      LOG.info("Agent " + agentId + " told to cancel " + cancelled.size()
+          + " commands no longer its own");
+    }
+    // Out of the lock, the listener may call back into the manager
+    for (Map.Entry<CommandInfo, CommandState> entry : done.entrySet()) {
+      listener.onCommandFinished(entry.getKey(), entry.getValue());
+    }
+    return new AgentHeartbeatResponse(commands, cancelled);
+  }
+
+  private synchronized List<AgentCommand> getUnresolved(int max) {
+    List<AgentCommand> ret = new ArrayList<>();
+    Iterator<AgentCommand> it = unassigned.iterator();
+    for (int i = 0; i < max && it.hasNext(); i++) {
+      AgentCommand cmd = it.next();
+      if (cmd.hosts == null) {
+        ret.add(cmd);
+      }
+    }
+    return ret;
+  }
+
+  private List<AgentCommand> take(AgentInfo agent, int n) {
+    List<AgentCommand> ret = new ArrayList<>();
+    if (n <= 0) {
+      return ret;
+    }
+    // Local ones first among the commands at the head of queue
+    int scanned = 0;
+    for (Iterator<AgentCommand> it = unassigned.iterator();
+        it.hasNext() && ret.size() < n
+            && scanned < n * LOCALITY_SCAN_FACTOR; scanned++) {
+      AgentCommand cmd = it.next();
+      if (cmd.isLocalTo(agent.host)) {
+        it.remove();
+        ret.add(cmd);
+      }
+    }
+    while (ret.size() < n && !unassigned.isEmpty()) {
+      ret.add(unassigned.removeFirst());
+    }
+    return ret;
+  }
+
+  /**
+   * Drop the agents missing heartbeats, their commands are dispatched
+   * again.
+   * @return commands to be executed by SSM server as no agent is left
+   */
+  public synchronized List<CommandInfo> expireAgents() {
+    long now = Time.monotonicNow();
+    for (Iterator<AgentInfo> it = agents.values().iterator(); it.hasNext();) {
+      AgentInfo agent = it.next();
+      if (now - agent.lastHeartbeat > expireInterval) {
+        it.remove();
+        LOG.warn(agent + " expired, dispatch its " + agent.running.size()
+            + " commands again");
+        // Retried ahead of those never dispatched
+        List<AgentCommand> retries = new ArrayList<>(agent.running.values());
+        for (int i = retries.size() - 1; i >= 0; i--) {
+          unassigned.addFirst(retries.get(i));
+        }
+      }
+    }
+    List<CommandInfo> ret = new ArrayList<>();
+    if (agents.isEmpty()) {
+      for (AgentCommand cmd : unassigned) {
+        ret.add(cmd.info);
+      }
+      unassigned.clear();
+    }
+    return ret;
+  }
+
+  /**
+   * Forget the command, a later report about it is ignored and the agent
+   * running it is told to stop in its next heartbeat.
+   */
+  public synchronized void cancel(long cid) {
+    for (Iterator<AgentCommand> it = unassigned.iterator(); it.hasNext();) {
+      if (it.next().info.getCid() == cid) {
+        it.remove();
+        return;
+      }
+    }
+    for (AgentInfo agent : agents.values()) {
+      for (Iterator<AgentCommand> it = agent.running.values().iterator();
+          it.hasNext();) {
+        if (it.next().info.getCid() == cid) {
+          it.remove();
+          return;
+        }
+      }
+    }
+  }
+
+  public synchronized int getNumAgents() {
+    return agents.size();
+  }
+
+  public synchronized int getNumUnassigned() {
+    return unassigned.size();
+  }
+
+  public synchronized int getNumRunning() {
+    int n = 0;
+    for (AgentInfo agent : agents.values()) {
+      n += agent.running.size();
+    }
+    return n;
+  }
+}
@@ -0,0 +1,320 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.agent;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.ipc.ProtobufRpcEngine;
+import org.apache.hadoop.ipc.RPC;
+import org.apache.hadoop.smart.Command;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.SmartConfiguration;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.smart.actions.ActionBase;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.actions.ECFile;
+import org.apache.hadoop.smart.actions.MoveFile;
+import org.apache.hadoop.smart.federation.MountTable;
+import org.apache.hadoop.smart.mover.MoverPool;
+import org.apache.hadoop.smart.protocol.AgentHeartbeatResponse;
+import org.apache.hadoop.smart.protocol.AgentSmartProtocol;
+import org.apache.hadoop.smart.protocolPB.AgentSmartProtocolClientSideTranslatorPB;
+import org.apache.hadoop.smart.protocolPB.AgentSmartProtocolPB;
+import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.utils.JsonUtil;
+import org.apache.hadoop.util.Daemon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Agent executing commands of SSM server on the host it runs, so that
+ * data moved by the commands does not have to pass through SSM server.
+ *
+ * The agent registers itself and then heartbeats the server, reporting
+ * the commands finished and taking new ones for its free slots. It
+ * registers again if the server has expired it, the commands it was
+ * running then are cancelled as the server tells so.
+ */
+public class SmartAgent implements Runnable {
+  // Actions needing no state kept by SSM server. Cache and replication
+  // changes are admitted by the server's CacheManager and
+  // ReplicationController, so they are not run by agents.
+  static final Set<ActionType> SUPPORTED_ACTIONS = EnumSet.of(
+      ActionType.ConvertToEC, ActionType.ConvertToReplica,
+      ActionType.MoveFile);
+
+  private final Configuration conf;
+  private final AgentSmartProtocol server;
+  private final String host;
+  private final int numSlots;
+  private final long heartbeatInterval;
+  private final ExecutorService executor;
+  // Running commands by dispatch epoch
+  private final Map<Long, Task> tasks = new HashMap<>();
+  // Finished but not reported yet, by dispatch epoch
+  private final Map<Long, CommandState> finished = new LinkedHashMap<>();
+  private final Map<String, DFSClient> clients = new HashMap<>();
+  private long agentId = -1;
+  private volatile boolean running = false;
+  private Daemon thread;
+
+  public static final Logger LOG = LoggerFactory.getLogger(SmartAgent.class);
+
+  public SmartAgent(Configuration conf, AgentSmartProtocol server,
+      String host) {
+    this.conf = conf;
+    this.server = server;
+    this.host = host;
+    this.numSlots = conf.getInt(SmartConfigureKeys.DFS_SSM_AGENT_SLOTS_KEY,
+        SmartConfigureKeys.DFS_SSM_AGENT_SLOTS_DEFAULT);
+    this.heartbeatInterval = conf.getLong(
+        SmartConfigureKeys.DFS_SSM_AGENT_HEARTBEAT_INTERVAL_KEY,
+        SmartConfigureKeys.DFS_SSM_AGENT_HEARTBEAT_INTERVAL_DEFAULT);
+    this.executor = Executors.newFixedThreadPool(numSlots,
+        new Daemon.DaemonFactory());
+    MoverPool.getInstance().init(conf);
+  }
+
+  public void start() {
+    running = true;
+    thread = new Daemon(this);
+    thread.setName("SmartAgent@" + host);
+    thread.start();
+  }
+
+  public void stop() {
+    running = false;
+    if (thread != null) {
+      thread.interrupt();
+      thread = null;
+    }
+    executor.shutdownNow();
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public synchronized long getAgentId() {
+    return agentId;
+  }
+
+  public synchronized int getNumRunning() {
+    return tasks.size();
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        heartbeat();
+      } catch (IOException e) {
+        LOG.warn("Agent " + host + " heartbeat error, register again", e);
+      }
+      try {
+        Thread.sleep(heartbeatInterval);
+      } catch (InterruptedException e) {
+        if (!running) {
+          break;
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void heartbeat() throws IOException {
+    long id;
+    Map<Long, CommandState> reports;
+    Set<Long> runningEpochs;
+    synchronized (this) {
+      if (agentId < 0) {
+        agentId = server.registerAgent(host, numSlots);
+        LOG.info("Agent " + host + " registered as " + agentId);
+      }
+      id = agentId;
+      reports = new LinkedHashMap<>(finished);
+      finished.clear();
+      runningEpochs = new HashSet<>(tasks.keySet());
+    }
+    AgentHeartbeatResponse r;
+    try {
+      r = server.agentHeartbeat(id, reports, runningEpochs,
+          numSlots - runningEpochs.size());
+    } catch (IOException e) {
+      synchronized (this) {
+        agentId = -1;
+        // Reported again, they are ignored if the server has dropped them
+        reports.putAll(finished);
+        finished.clear();
+        finished.putAll(reports);
+      }
+      throw e;
+    }
+    synchronized (this) {
+      for (long epoch : r.getCancelled()) {
+        Task task = tasks.remove(epoch);
+        if (task != null) {
+          LOG.info("Agent " + host + " cancel " + task.cmd);
+          task.cancel();
+        }
+      }
+      for (Map.Entry<Long, CommandInfo> entry : r.getCommands().entrySet()) {
+        Task task = new Task(entry.getKey(), entry.getValue());
+        tasks.put(task.epoch, task);
+        task.future = executor.submit(task);
+      }
+    }
+  }
+
+  /**
+   * A command dispatched to the agent under the epoch.
+   */
+  private class Task implements Runnable {
+    private final long epoch;
+    private final CommandInfo cmd;
+    private volatile Command command;
+    private volatile boolean cancelled = false;
+    private Future<?> future;
+
+    Task(long epoch, CommandInfo cmd) {
+      this.epoch = epoch;
+      this.cmd = cmd;
+    }
+
+    @Override
+    public void run() {
+      CommandState state = execute(this);
+      synchronized (SmartAgent.this) {
+        // Not reported if cancelled, the server has given it up
+        if (tasks.remove(epoch) != null) {
+          finished.put(epoch, state);
+        }
+      }
+    }
+
+    void cancel() {
+      cancelled = true;
+      Command c = command;
+      if (c != null) {
+        c.stop();
+      }
+      if (future != null) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private CommandState execute(Task task) {
+    CommandInfo cmd = task.cmd;
+    try {
+      Map<String, String> parameters =
+          JsonUtil.toStringStringMap(cmd.getParameters());
+      ActionBase action = createAction(cmd.getActionType(), parameters);
+      if (action == null) {
+        LOG.warn("Agent " + host + " can not execute " + cmd);
+        return CommandState.CANCELLED;
+      }
+      action.initial(new String[] {parameters.get("_FILE_PATH_")});
+      Command command = new Command(new ActionBase[] {action}, null);
+      command.setId(cmd.getCid());
+      command.setRuleId(cmd.getRid());
+      task.command = command;
+      if (task.cancelled) {
+        return CommandState.CANCELLED;
+      }
+      command.runActions();
+      return CommandState.DONE;
+    } catch (Exception e) {
+      LOG.error("Agent " + host + " execute " + cmd + " error", e);
+      return CommandState.CANCELLED;
+    }
+  }
+
+  /**
+   * @return null if the action can not be executed by agents
+   */
+  @VisibleForTesting
+  ActionBase createAction(ActionType type, Map<String, String> parameters)
+      throws IOException {
+    if (!SUPPORTED_ACTIONS.contains(type)) {
+      return null;
+    }
+    DFSClient client = getClient(parameters.get("_NAMENODE_"));
+    switch (type) {
+      case ConvertToEC:
+        return new ECFile(client, conf, parameters.get("_EC_POLICY_"));
+      case ConvertToReplica:
+        return new ECFile(client, conf, null);
+      case MoveFile:
+        return new MoveFile(client, conf,
+            parameters.get("_STORAGE_POLICY_"));
+      default:
+        return null;
+    }
+  }
+
+  private synchronized DFSClient getClient(String namenode)
+      throws IOException {
+    URI uri = namenode != null
+        ? URI.create(namenode) : MountTable.getNameNodeUris(conf)[0];
+    DFSClient client = clients.get(uri.toString());
+    if (client == null) {
+      client = new DFSClient(uri, conf);
+      clients.put(uri.toString(), client);
+    }
+    return client;
+  }
+
+  public static AgentSmartProtocol createProxy(Configuration conf)
+      throws IOException {
+    String[] strings = conf.get(SmartConfigureKeys.DFS_SSM_RPC_ADDRESS_KEY,
+        SmartConfigureKeys.DFS_SSM_RPC_ADDRESS_DEFAULT).split(":");
+    InetSocketAddress address = new InetSocketAddress(
+        strings[strings.length - 2],
+        Integer.parseInt(strings[strings.length - 1]));
+    RPC.setProtocolEngine(conf, AgentSmartProtocolPB.class,
+        ProtobufRpcEngine.class);
+    AgentSmartProtocolPB proxy = RPC.getProxy(
+        AgentSmartProtocolPB.class, 1, address, conf);
+    return new AgentSmartProtocolClientSideTranslatorPB(proxy);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = new SmartConfiguration();
+    String host = conf.get(SmartConfigureKeys.DFS_SSM_AGENT_HOST_KEY,
+        InetAddress.getLocalHost().getHostName());
+    SmartAgent agent = new SmartAgent(conf, createProxy(conf), host);
+    agent.start();
+    agent.thread.join();
+  }
+}
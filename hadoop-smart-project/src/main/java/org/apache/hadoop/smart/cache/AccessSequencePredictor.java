@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.smart.federation.MountTable;
+import org.apache.hadoop.smart.federation.NamespaceMount;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Learns which file is read next in a directory and prefetches it into
+ * cache.
+ *
+ * For each file the most frequent successors, that is files of the same
+ * directory accessed within the succession window after it, are counted
+ * in a fixed number of slots. When a file is accessed and one of its
+ * successors has been seen often enough, the successor is requested to be
+ * cached ahead of its first read.
+ *
+ * Accesses reach the predictor some time after they happened, so the
+ * window has to be longer than the delay of the access events plus that
+ * of cache requests for a prefetch to be useful. A prediction is a hit
+ * only if the file is read after the prefetch was issued.
+ */
+public class AccessSequencePredictor {
+  static final int SUCCESSOR_SLOTS = 4;
+  static final int MIN_SUPPORT = 3;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int NONE = -1;
+
+  private final MountTable mountTable;
+  // Cache manager of each namespace, indexed by namespace id
+  private final List<CacheManager> cacheManagers;
+  private final long window;
+  private final double confidence;
+  private final int maxFiles;
+
+  private final Map<String, Integer> fileIds = new HashMap<>();
+  private String[] paths = new String[INITIAL_CAPACITY];
+  // Successors of file i are in slots [i * SUCCESSOR_SLOTS, (i + 1) * ...)
+  private int[] successors = newSuccessors(INITIAL_CAPACITY);
+  private int[] successorCounts = new int[INITIAL_CAPACITY * SUCCESSOR_SLOTS];
+  private int[] totalCounts = new int[INITIAL_CAPACITY];
+  // Time the prefetch of the file was issued, 0 if not predicted
+  private long[] predictedTimes = new long[INITIAL_CAPACITY];
+
+  private final Map<String, Integer> dirIds = new HashMap<>();
+  private int[] dirLastFiles = new int[INITIAL_CAPACITY];
+  private long[] dirLastTimes = new long[INITIAL_CAPACITY];
+
+  private long numPredictions;
+  private long numHits;
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(AccessSequencePredictor.class);
+
+  /**
+   * @param window max time between two accesses to be a succession
+   * @param confidence min ratio of the successions of a file to a
+   *                   successor for it to be prefetched
+   * @param maxFiles files tracked at most, tables are reset beyond
+   */
+  public AccessSequencePredictor(CacheManager cacheManager, long window,
+      double confidence, int maxFiles) {
+    this(null, Collections.singletonList(cacheManager), window, confidence,
+        maxFiles);
+  }
+
+  /**
+   * Prefetches go to the cache manager of the namespace holding the file.
+   * @param mountTable paths are not translated if null
+   */
+  public AccessSequencePredictor(MountTable mountTable,
+      List<CacheManager> cacheManagers, long window, double confidence,
+      int maxFiles) {
+    this.mountTable = mountTable;
+    this.cacheManagers = cacheManagers;
+    this.window = window;
+    this.confidence = confidence;
+    this.maxFiles = maxFiles;
+  }
+
+  private static int[] newSuccessors(int capacity) {
+    int[] ret = new int[capacity * SUCCESSOR_SLOTS];
+    Arrays.fill(ret, NONE);
+    return ret;
+  }
+
+  /**
+   * Account a file access, accesses are expected in time order.
+   */
+  public void onAccess(String path, long time) {
+    onAccess(path, time, System.currentTimeMillis());
+  }
+
+  /**
+   * @param time time of the access
+   * @param now time the access is handled, later than time by the delay
+   *            of the access events
+   */
+  @VisibleForTesting
+  synchronized void onAccess(String path, long time, long now) {
+    if ((fileIds.size() >= maxFiles && !fileIds.containsKey(path))
+        || dirIds.size() >= maxFiles) {
+      LOG.info("Reset access successions of " + fileIds.size()
+          + " files. " + getReport());
+      reset();
+    }
+    int id = fileId(path);
+    // Reads before the prefetch was issued are neither hits nor misses
+    if (predictedTimes[id] != 0 && time >= predictedTimes[id]) {
+      if (time - predictedTimes[id] <= window) {
+        numHits++;
+      }
+      predictedTimes[id] = 0;
+    }
+
+    int dir = dirId(getDir(path));
+    int last = dirLastFiles[dir];
+    if (last != NONE && last != id && time - dirLastTimes[dir] <= window) {
+      addSuccession(last, id);
+    }
+    dirLastFiles[dir] = id;
+    dirLastTimes[dir] = time;
+
+    int next = predict(id);
+    if (next != NONE && (predictedTimes[next] == 0
+        || now - predictedTimes[next] > window)) {
+      predictedTimes[next] = now;
+      numPredictions++;
+      prefetch(paths[next]);
+    }
+  }
+
+  private void prefetch(String path) {
+    CacheManager cacheManager = cacheManagers.get(0);
+    if (mountTable != null) {
+      NamespaceMount mount = mountTable.resolve(path);
+      if (mount == null) {
+        return;
+      }
+      cacheManager = cacheManagers.get(mount.getId());
+      path = mount.toLocalPath(path);
+    }
+    if (cacheManager != null && !cacheManager.isCached(path)) {
+      cacheManager.cacheFile(path);
+    }
+  }
+
+  /**
+   * Most likely successor of the file if confident enough.
+   */
+  private int predict(int id) {
+    if (totalCounts[id] < MIN_SUPPORT) {
+      return NONE;
+    }
+    int best = NONE;
+    int bestCount = 0;
+    for (int i = id * SUCCESSOR_SLOTS; i < (id + 1) * SUCCESSOR_SLOTS; i++) {
+      if (successors[i] != NONE && successorCounts[i] > bestCount) {
+        best = successors[i];
+        bestCount = successorCounts[i];
+      }
+    }
+    return bestCount >= confidence * totalCounts[id] ? best : NONE;
+  }
+
+  /**
+   * Count a succession, replacing the least frequent successor when all
+   * the slots are used.
+   */
+  private void addSuccession(int from, int to) {
+    totalCounts[from]++;
+    int min = NONE;
+    for (int i = from * SUCCESSOR_SLOTS; i < (from + 1) * SUCCESSOR_SLOTS;
+         i++) {
+      if (successors[i] == to) {
+        successorCounts[i]++;
+        return;
+      }
+      if (min == NONE || successorCounts[i] < successorCounts[min]) {
+        min = i;
+      }
+    }
+    successors[min] = to;
+    successorCounts[min] = 1;
+  }
+
+  private int fileId(String path) {
+    Integer id = fileIds.get(path);
+    if (id != null) {
+      return id;
+    }
+    id = fileIds.size();
+    if (id == paths.length) {
+      int capacity = paths.length * 2;
+      paths = Arrays.copyOf(paths, capacity);
+      int[] s = newSuccessors(capacity);
+      System.arraycopy(successors, 0, s, 0, successors.length);
+      successors = s;
+      successorCounts = Arrays.copyOf(successorCounts,
+          capacity * SUCCESSOR_SLOTS);
+      totalCounts = Arrays.copyOf(totalCounts, capacity);
+      predictedTimes = Arrays.copyOf(predictedTimes, capacity);
+    }
+    fileIds.put(path, id);
+    paths[id] = path;
+    return id;
+  }
+
+  private int dirId(String dir) {
+    Integer id = dirIds.get(dir);
+    if (id != null) {
+      return id;
+    }
+    id = dirIds.size();
+    if (id == dirLastFiles.length) {
+      int capacity = dirLastFiles.length * 2;
+      dirLastFiles = Arrays.copyOf(dirLastFiles, capacity);
+      dirLastTimes = Arrays.copyOf(dirLastTimes, capacity);
+    }
+    dirIds.put(dir, id);
+    dirLastFiles[id] = NONE;
+    return id;
+  }
+
+  private static String getDir(String path) {
+    int idx = path.lastIndexOf('/');
+    return idx <= 0 ? "/" : path.substring(0, idx);
+  }
+
+  private void reset() {
+    fileIds.clear();
+    dirIds.clear();
+    paths = new String[INITIAL_CAPACITY];
+    successors = newSuccessors(INITIAL_CAPACITY);
+    successorCounts = new int[INITIAL_CAPACITY * SUCCESSOR_SLOTS];
+    totalCounts = new int[INITIAL_CAPACITY];
+    predictedTimes = new long[INITIAL_CAPACITY];
+    dirLastFiles = new int[INITIAL_CAPACITY];
+    dirLastTimes = new long[INITIAL_CAPACITY];
+  }
+
+  public synchronized int getNumFiles() {
+    return fileIds.size();
+  }
+
+  public synchronized long getNumPredictions() {
+    return numPredictions;
+  }
+
+  /**
+   * Number of predicted files read within the window after the prefetch
+   * was issued.
+   */
+  public synchronized long getNumHits() {
+    return numHits;
+  }
+
+  public synchronized double getHitRate() {
+    return numPredictions == 0 ? 0 : (double) numHits / numPredictions;
+  }
+
+  public synchronized String getReport() {
+    return String.format("Prefetch predictions: %d, hits: %d, hit rate: "
+        + "%.2f%%", numPredictions, numHits, getHitRate() * 100);
+  }
+}
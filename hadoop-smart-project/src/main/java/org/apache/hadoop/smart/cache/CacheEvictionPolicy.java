@@ -0,0 +1,33 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.cache;
+
+/**
+ * Decides which of the cached files should be evicted first and whether a
+ * file is worth caching in place of them.
+ */
+public interface CacheEvictionPolicy {
+  /**
+   * Get the value of keeping the file in cache, files with lower scores
+   * are evicted first.
+   *
+   * @param fid id of the file
+   * @param now current time
+   */
+  double getScore(long fid, long now);
+}
@@ -0,0 +1,447 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.cache;
+
+import org.apache.hadoop.fs.CacheFlag;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
+import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.DatanodeReportType;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.smart.actions.CacheStatus;
+import org.apache.hadoop.smart.federation.NamespaceMount;
+import org.apache.hadoop.smart.fetcher.StorageInfoFetcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages the HDFS cache directives of SSM.
+ *
+ * Directives of pool 'SSMPool' are mirrored in memory so that cache and
+ * uncache requests need no NameNode RPC to be checked. Requests are queued
+ * and applied in batches: removals first, then additions admitted against
+ * the cache capacity of live DataNodes, evicting the files with the lowest
+ * scores given by the eviction policy when needed. A request stays queued
+ * until it is applied, rejected or has failed a few times, so that a
+ * failing RPC does not lose the requests behind it.
+ */
+public class CacheManager {
+  public static final String SSMPOOL = "SSMPool";
+  // Times a request is tried before it is reported as failed
+  private static final int MAX_REQUEST_ATTEMPTS = 3;
+
+  private final NamespaceMount mount;
+  private final DFSClient client;
+  private final CacheEvictionPolicy policy;
+  private final float maxUsedRatio;
+  private final StorageInfoFetcher storageInfoFetcher;
+
+  // path -> directive of SSMPool
+  private final Map<String, CachedEntry> directives = new HashMap<>();
+  // path -> latest request for the file
+  private final LinkedHashMap<String, Request> pendingRequests =
+      new LinkedHashMap<>();
+  private long cacheCapacity;
+  private long bytesPinned;
+  private boolean initialized = false;
+  private ScheduledFuture flushFuture;
+
+  public static final Logger LOG = LoggerFactory.getLogger(CacheManager.class);
+
+  public CacheManager(DFSClient client, CacheEvictionPolicy policy,
+      float maxUsedRatio) {
+    this(client, policy, maxUsedRatio, null);
+  }
+
+  /**
+   * @param storageInfoFetcher if not null, cache capacity of DataNodes is
+   *                           got from it instead of NameNode
+   */
+  public CacheManager(DFSClient client, CacheEvictionPolicy policy,
+      float maxUsedRatio, StorageInfoFetcher storageInfoFetcher) {
+    this(NamespaceMount.root(client), policy, maxUsedRatio,
+        storageInfoFetcher);
+  }
+
+  /**
+   * Manage the cache of the namespace, paths are local to it while files
+   * are scored by their global ids.
+   */
+  public CacheManager(NamespaceMount mount, CacheEvictionPolicy policy,
+      float maxUsedRatio, StorageInfoFetcher storageInfoFetcher) {
+    this.mount = mount;
+    this.client = mount.getClient();
+    this.policy = policy;
+    this.maxUsedRatio = maxUsedRatio;
+    this.storageInfoFetcher = storageInfoFetcher;
+  }
+
+  /**
+   * Create SSMPool if not exists and load its directives.
+   */
+  public synchronized void init() throws IOException {
+    createPool();
+    directives.clear();
+    bytesPinned = 0;
+    CacheDirectiveInfo filter =
+        new CacheDirectiveInfo.Builder().setPool(SSMPOOL).build();
+    RemoteIterator<CacheDirectiveEntry> it = client.listCacheDirectives(filter);
+    while (it.hasNext()) {
+      CacheDirectiveEntry entry = it.next();
+      String path = entry.getInfo().getPath().toUri().getPath();
+      HdfsFileStatus status = client.getFileInfo(path);
+      long fid = status == null ? 0 : mount.toGlobalFid(status.getFileId());
+      addEntry(new CachedEntry(path, entry.getInfo().getId(), fid,
+          entry.getStats().getBytesNeeded()));
+    }
+    initialized = true;
+    LOG.info("Loaded " + directives.size() + " cache directives.");
+  }
+
+  private void createPool() throws IOException {
+    RemoteIterator<CachePoolEntry> poolEntries = client.listCachePools();
+    while (poolEntries.hasNext()) {
+      if (poolEntries.next().getInfo().getPoolName().equals(SSMPOOL)) {
+        return;
+      }
+    }
+    client.addCachePool(new CachePoolInfo(SSMPOOL));
+  }
+
+  /**
+   * Request to cache a file, applied on next flush.
+   */
+  public synchronized void cacheFile(String path) {
+    addRequest(new Request(path, true));
+  }
+
+  /**
+   * Request to uncache a file, applied on next flush.
+   */
+  public synchronized void uncacheFile(String path) {
+    addRequest(new Request(path, false));
+  }
+
+  /**
+   * Request to cache a file and wait until the request is applied.
+   *
+   * @throws IOException if the file was not admitted, does not exist or
+   * the directive could not be added
+   */
+  public synchronized void cacheFileAndWait(String path)
+      throws IOException, InterruptedException {
+    waitFor(addRequest(new Request(path, true)));
+  }
+
+  /**
+   * Request to uncache a file and wait until the request is applied.
+   */
+  public synchronized void uncacheFileAndWait(String path)
+      throws IOException, InterruptedException {
+    waitFor(addRequest(new Request(path, false)));
+  }
+
+  private Request addRequest(Request request) {
+    Request old = pendingRequests.remove(request.path);
+    if (old != null) {
+      complete(old, "superseded by a later request");
+    }
+    pendingRequests.put(request.path, request);
+    return request;
+  }
+
+  private void waitFor(Request request)
+      throws IOException, InterruptedException {
+    while (!request.done) {
+      wait();
+    }
+    if (request.failure != null) {
+      throw new IOException("Failed to " + (request.cache ? "cache "
+          : "uncache ") + request.path + ": " + request.failure);
+    }
+  }
+
+  /**
+   * @param failure null if the request succeeded
+   */
+  private void complete(Request request, String failure) {
+    request.failure = failure;
+    request.done = true;
+    notifyAll();
+  }
+
+  /**
+   * Whether the file is cached or going to be cached by SSM.
+   */
+  public synchronized boolean isCached(String path) {
+    Request pending = pendingRequests.get(path);
+    return pending != null ? pending.cache : directives.containsKey(path);
+  }
+
+  public synchronized int getNumCachedFiles() {
+    return directives.size();
+  }
+
+  public synchronized int getNumPendingRequests() {
+    return pendingRequests.size();
+  }
+
+  public synchronized long getCacheCapacity() {
+    return cacheCapacity;
+  }
+
+  public synchronized long getBytesPinned() {
+    return bytesPinned;
+  }
+
+  /**
+   * Apply all the pending requests. A request is dequeued once it is
+   * applied or rejected, if an RPC fails the requests not applied yet stay
+   * queued for the next flush.
+   */
+  public synchronized void flush() throws IOException {
+    if (!initialized) {
+      init();
+    }
+    if (pendingRequests.isEmpty()) {
+      return;
+    }
+    List<Request> requests = new ArrayList<>(pendingRequests.values());
+    Request current = null;
+    int removed = 0;
+    int added = 0;
+    int rejected = 0;
+    try {
+      for (Request req : requests) {
+        if (req.cache) {
+          continue;
+        }
+        current = req;
+        CachedEntry entry = directives.get(req.path);
+        if (entry != null) {
+          removeDirective(entry);
+          removed++;
+        }
+        dequeue(req, null);
+      }
+
+      refreshCapacity();
+      long limit = (long) (cacheCapacity * maxUsedRatio);
+      long now = System.currentTimeMillis();
+      PriorityQueue<CachedEntry> victims = null;
+      for (Request req : requests) {
+        if (!req.cache) {
+          continue;
+        }
+        current = req;
+        String path = req.path;
+        if (directives.containsKey(path)) {
+          dequeue(req, null);
+          continue;
+        }
+        HdfsFileStatus status = client.getFileInfo(path);
+        if (status == null) {
+          dequeue(req, "file does not exist");
+          continue;
+        }
+        CachedEntry entry = new CachedEntry(path, 0,
+            mount.toGlobalFid(status.getFileId()), status.getLen());
+        entry.score = policy.getScore(entry.fid, now);
+        if (bytesPinned + entry.bytes > limit) {
+          if (victims == null) {
+            victims = new PriorityQueue<>();
+            for (CachedEntry e : directives.values()) {
+              e.score = policy.getScore(e.fid, now);
+              victims.add(e);
+            }
+          }
+          if (!evict(victims, entry, limit)) {
+            rejected++;
+            dequeue(req, "not admitted for lack of cache capacity");
+            continue;
+          }
+        }
+        entry.id = client.addCacheDirective(new CacheDirectiveInfo.Builder()
+            .setPath(new Path(path)).setPool(SSMPOOL).build(),
+            EnumSet.noneOf(CacheFlag.class));
+        addEntry(entry);
+        added++;
+        dequeue(req, null);
+      }
+    } catch (IOException e) {
+      if (current != null && ++current.attempts >= MAX_REQUEST_ATTEMPTS) {
+        dequeue(current, e.getMessage());
+      }
+      throw e;
+    } finally {
+      if (LOG.isDebugEnabled() || rejected > 0) {
+        LOG.info("Cache directives flushed: " + added + " added, " + removed
+            + " removed, " + rejected + " rejected for lack of capacity, "
+            + pendingRequests.size() + " pending, " + bytesPinned + "/"
+            + cacheCapacity + " bytes pinned.");
+      }
+    }
+  }
+
+  private void dequeue(Request request, String failure) {
+    pendingRequests.remove(request.path);
+    complete(request, failure);
+  }
+
+  /**
+   * Evict files scored lower than the candidate until it fits.
+   * @return false if there is no room for the candidate
+   */
+  private boolean evict(PriorityQueue<CachedEntry> victims,
+      CachedEntry candidate, long limit) throws IOException {
+    long freeable = 0;
+    for (CachedEntry e : victims) {
+      if (e.score >= candidate.score || !directives.containsKey(e.path)) {
+        continue;
+      }
+      freeable += e.bytes;
+    }
+    if (bytesPinned - freeable + candidate.bytes > limit) {
+      return false;
+    }
+    while (bytesPinned + candidate.bytes > limit) {
+      CachedEntry victim = victims.poll();
+      if (!directives.containsKey(victim.path)) {
+        continue;
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Evict " + victim.path + " from cache for "
+            + candidate.path);
+      }
+      removeDirective(victim);
+    }
+    return true;
+  }
+
+  private void refreshCapacity() throws IOException {
+    CacheStatus status = storageInfoFetcher != null
+        ? storageInfoFetcher.getCacheStatus() : null;
+    if (status != null) {
+      cacheCapacity = status.getCacheCapacityTotal();
+      return;
+    }
+    long capacity = 0;
+    for (DatanodeInfo dn : client.datanodeReport(DatanodeReportType.LIVE)) {
+      capacity += dn.getCacheCapacity();
+    }
+    cacheCapacity = capacity;
+  }
+
+  private void addEntry(CachedEntry entry) {
+    directives.put(entry.path, entry);
+    bytesPinned += entry.bytes;
+  }
+
+  private void removeDirective(CachedEntry entry) throws IOException {
+    client.removeCacheDirective(entry.id);
+    directives.remove(entry.path);
+    bytesPinned -= entry.bytes;
+  }
+
+  public void start(ScheduledExecutorService service, long interval) {
+    this.flushFuture = service.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          flush();
+        } catch (Throwable t) {
+          LOG.error("Flush cache requests error", t);
+          // Mirror may diverge from NameNode, reload it
+          synchronized (CacheManager.this) {
+            initialized = false;
+          }
+        }
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    if (flushFuture != null) {
+      flushFuture.cancel(false);
+      flushFuture = null;
+      try {
+        flush();
+      } catch (IOException e) {
+        LOG.error("Flush cache requests error", e);
+      }
+      synchronized (this) {
+        for (Request req : pendingRequests.values()) {
+          complete(req, "cache manager stopped");
+        }
+        pendingRequests.clear();
+      }
+    }
+  }
+
+  private static class Request {
+    private final String path;
+    // true to cache, false to uncache
+    private final boolean cache;
+    private int attempts;
+    private boolean done;
+    private String failure;
+
+    Request(String path, boolean cache) {
+      this.path = path;
+      this.cache = cache;
+    }
+  }
+
+  private static class CachedEntry implements Comparable<CachedEntry> {
+    private final String path;
+    private long id;
+    // Global id of the file, 0 if it does not exist
+    private final long fid;
+    private final long bytes;
+    private double score;
+
+    CachedEntry(String path, long id, long fid, long bytes) {
+      this.path = path;
+      this.id = id;
+      this.fid = fid;
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int compareTo(CachedEntry other) {
+      return Double.compare(score, other.score);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.cache;
+
+import org.apache.hadoop.smart.sql.tables.FileHeatTracker;
+
+/**
+ * Evict the least recently accessed file first.
+ */
+public class LruEvictionPolicy implements CacheEvictionPolicy {
+  private final FileHeatTracker tracker;
+
+  public LruEvictionPolicy(FileHeatTracker tracker) {
+    this.tracker = tracker;
+  }
+
+  @Override
+  public double getScore(long fid, long now) {
+    return tracker == null ? 0 : tracker.getLastAccessTime(fid);
+  }
+}
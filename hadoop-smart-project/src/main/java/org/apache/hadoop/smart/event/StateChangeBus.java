@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.event;
+
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Deliver state transitions of rules and commands to the subscribers.
+ * Listeners are called on the thread publishing the event, so they must
+ * hand the event off without blocking; buffering and dropping for slow
+ * consumers are up to each subscriber.
+ */
+public class StateChangeBus {
+  static final Logger LOG = LoggerFactory.getLogger(StateChangeBus.class);
+
+  public interface Listener {
+    void onEvent(StateChangeEvent event);
+  }
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private long seq = 0;
+
+  public void subscribe(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void unsubscribe(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public int getNumSubscribers() {
+    return listeners.size();
+  }
+
+  /**
+   * @return sequence number of the last event published
+   */
+  public synchronized long getLastSeq() {
+    return seq;
+  }
+
+  public void publishRuleState(RuleInfo info) {
+    publish(StateChangeEvent.Type.RULE_STATE, info);
+  }
+
+  public void publishRuleChecked(RuleInfo info) {
+    publish(StateChangeEvent.Type.RULE_CHECKED, info);
+  }
+
+  public void publishCommandState(long cid, long rid, CommandState state) {
+    publish(StateChangeEvent.Type.COMMAND_STATE, rid, cid, state.toString(),
+        0, 0);
+  }
+
+  public void publishCommandDeleted(long cid, long rid) {
+    publish(StateChangeEvent.Type.COMMAND_DELETED, rid, cid, null, 0, 0);
+  }
+
+  private void publish(StateChangeEvent.Type type, RuleInfo info) {
+    publish(type, info.getId(), -1, info.getState().toString(),
+        info.getNumChecked(), info.getNumCmdsGen());
+  }
+
+  // Numbering and delivery under one lock keep events in sequence
+  private synchronized void publish(StateChangeEvent.Type type, long ruleId,
+      long cid, String state, long numChecked, long numCmdsGen) {
+    StateChangeEvent event = new StateChangeEvent(++seq, Time.now(), type,
+        ruleId, cid, state, numChecked, numCmdsGen);
+    for (Listener listener : listeners) {
+      try {
+        listener.onEvent(event);
+      } catch (RuntimeException e) {
+        LOG.error("Failed to deliver " + event, e);
+      }
+    }
+  }
+}
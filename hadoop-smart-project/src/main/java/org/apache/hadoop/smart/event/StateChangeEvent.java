@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.event;
+
+/**
+ * A state transition of a rule or a command, as pushed to web clients.
+ * Events are numbered in the order they are published so that a client
+ * can tell when it missed some and has to list again.
+ */
+public class StateChangeEvent {
+  public enum Type {
+    RULE_STATE,     // rule submitted, activated, disabled, deleted, finished
+    RULE_CHECKED,   // one check of a rule done, commands may be generated
+    COMMAND_STATE,  // command submitted, executing or completed
+    COMMAND_DELETED
+  }
+
+  private final long seq;
+  private final long time;
+  private final Type type;
+  private final long ruleId;
+  private final long cid;
+  private final String state;
+  private final long numChecked;
+  private final long numCmdsGen;
+
+  public StateChangeEvent(long seq, long time, Type type, long ruleId,
+      long cid, String state, long numChecked, long numCmdsGen) {
+    this.seq = seq;
+    this.time = time;
+    this.type = type;
+    this.ruleId = ruleId;
+    this.cid = cid;
+    this.state = state;
+    this.numChecked = numChecked;
+    this.numCmdsGen = numCmdsGen;
+  }
+
+  public long getSeq() {
+    return seq;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public long getRuleId() {
+    return ruleId;
+  }
+
+  /**
+   * @return -1 for events of rules
+   */
+  public long getCid() {
+    return cid;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public long getNumChecked() {
+    return numChecked;
+  }
+
+  public long getNumCmdsGen() {
+    return numCmdsGen;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("StateChangeEvent{seq=%d, time=%d, type=%s, "
+        + "ruleId=%d, cid=%d, state=%s, numChecked=%d, numCmdsGen=%d}",
+        seq, time, type, ruleId, cid, state, numChecked, numCmdsGen);
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.federation;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.smart.governor.NameNodeGovernor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Namespaces SSM is attached to, keyed by mount point. A single NameNode is
+ * mounted at root so that paths and file ids stay as they are in HDFS.
+ */
+public class MountTable {
+  private final List<NamespaceMount> mounts;
+  public static final Logger LOG = LoggerFactory.getLogger(MountTable.class);
+
+  public MountTable(List<NamespaceMount> mounts) {
+    if (mounts.isEmpty()) {
+      throw new IllegalArgumentException("No namespace to mount");
+    }
+    Set<String> mountPoints = new HashSet<>();
+    for (int i = 0; i < mounts.size(); i++) {
+      NamespaceMount mount = mounts.get(i);
+      if (mount.getId() != i) {
+        throw new IllegalArgumentException("Namespace " + mount
+            + " is expected to have id " + i);
+      }
+      if (!mountPoints.add(mount.getMountPoint())) {
+        throw new IllegalArgumentException("Mount point "
+            + mount.getMountPoint() + " is used more than once");
+      }
+    }
+    this.mounts = Collections.unmodifiableList(new ArrayList<>(mounts));
+  }
+
+  /**
+   * Create a client for every NameNode listed in
+   * {@link SmartConfigureKeys#DFS_SSM_NAMENODE_RPCSERVER_KEY}, calls of the
+   * clients are throttled by a {@link NameNodeGovernor} unless disabled.
+   */
+  public static MountTable load(Configuration conf) throws IOException {
+    URI[] uris = getNameNodeUris(conf);
+    String[] mountPoints = getMountPoints(uris,
+        conf.getTrimmedStrings(SmartConfigureKeys.DFS_SSM_NAMESPACE_MOUNTS_KEY));
+    boolean governed = conf.getBoolean(
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_ENABLED_KEY,
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_ENABLED_DEFAULT);
+    String[] httpAddresses = conf.getTrimmedStrings(
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_HTTP_ADDRESSES_KEY);
+    List<NamespaceMount> mounts = new ArrayList<>(uris.length);
+    for (int i = 0; i < uris.length; i++) {
+      DFSClient client;
+      if (governed) {
+        String httpAddress = i < httpAddresses.length ? httpAddresses[i]
+            : (i == 0 ? conf.getTrimmed(
+                DFSConfigKeys.DFS_NAMENODE_HTTP_ADDRESS_KEY) : null);
+        client = new NameNodeGovernor(uris[i], conf, httpAddress)
+            .createClient();
+      } else {
+        client = new DFSClient(uris[i], conf);
+      }
+      mounts.add(new NamespaceMount(i, uris[i], mountPoints[i], client));
+      LOG.info("Mounted " + mounts.get(i));
+    }
+    return new MountTable(mounts);
+  }
+
+  public static URI[] getNameNodeUris(Configuration conf) throws IOException {
+    String[] values = conf.getTrimmedStrings(
+        SmartConfigureKeys.DFS_SSM_NAMENODE_RPCSERVER_KEY);
+    if (values.length == 0) {
+      throw new IOException("Can not find NameNode RPC server address. "
+          + "Please configure it through '"
+          + SmartConfigureKeys.DFS_SSM_NAMENODE_RPCSERVER_KEY + "'.");
+    }
+    URI[] uris = new URI[values.length];
+    try {
+      for (int i = 0; i < values.length; i++) {
+        uris[i] = new URI(values[i]);
+      }
+    } catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+    return uris;
+  }
+
+  /**
+   * Mount points of the given NameNodes. Without explicit configuration a
+   * single NameNode is mounted at root and each of several NameNodes under
+   * its host name, e.g. hdfs://ns1 at /ns1.
+   */
+  static String[] getMountPoints(URI[] uris, String[] configured)
+      throws IOException {
+    if (configured.length != 0) {
+      if (configured.length != uris.length) {
+        throw new IOException(configured.length + " mount points configured"
+            + " through '" + SmartConfigureKeys.DFS_SSM_NAMESPACE_MOUNTS_KEY
+            + "' for " + uris.length + " NameNodes.");
+      }
+      return configured;
+    }
+    if (uris.length == 1) {
+      return new String[] {NamespaceMount.ROOT};
+    }
+    String[] mountPoints = new String[uris.length];
+    for (int i = 0; i < uris.length; i++) {
+      mountPoints[i] = NamespaceMount.ROOT + uris[i].getHost();
+    }
+    return mountPoints;
+  }
+
+  public List<NamespaceMount> getMounts() {
+    return mounts;
+  }
+
+  public NamespaceMount getDefault() {
+    return mounts.get(0);
+  }
+
+  public NamespaceMount get(int namespaceId) {
+    return namespaceId < mounts.size() ? mounts.get(namespaceId) : null;
+  }
+
+  public NamespaceMount getByFid(long fid) {
+    return get(NamespaceMount.getNamespaceId(fid));
+  }
+
+  /**
+   * The namespace with the longest mount point containing the path.
+   * @return null if the path is under no mount point
+   */
+  public NamespaceMount resolve(String globalPath) {
+    if (globalPath == null) {
+      return null;
+    }
+    NamespaceMount best = null;
+    for (NamespaceMount mount : mounts) {
+      if (mount.contains(globalPath) && (best == null
+          || mount.getMountPoint().length() > best.getMountPoint().length())) {
+        best = mount;
+      }
+    }
+    return best;
+  }
+
+  public boolean isFederated() {
+    return mounts.size() > 1;
+  }
+
+  public void close() {
+    for (NamespaceMount mount : mounts) {
+      if (mount.getClient() != null) {
+        try {
+          mount.getClient().close();
+        } catch (IOException e) {
+          LOG.error("Failed to close client of " + mount, e);
+        }
+      }
+    }
+  }
+}
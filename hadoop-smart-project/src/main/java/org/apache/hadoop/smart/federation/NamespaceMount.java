@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.federation;
+
+import org.apache.hadoop.hdfs.DFSClient;
+
+import java.net.URI;
+
+/**
+ * One namespace SSM is attached to. Paths of the namespace are kept in the
+ * metastore under its mount point, file ids carry the namespace id in their
+ * high bits so that ids of different namespaces never collide.
+ */
+public class NamespaceMount {
+  public static final int NSID_SHIFT = 48;
+  public static final int MAX_NSID = (1 << 15) - 1;
+  private static final long LOCAL_FID_MASK = (1L << NSID_SHIFT) - 1;
+  public static final String ROOT = "/";
+
+  private final int id;
+  private final URI uri;
+  private final String mountPoint;
+  private final DFSClient client;
+
+  public NamespaceMount(int id, URI uri, String mountPoint, DFSClient client) {
+    if (id < 0 || id > MAX_NSID) {
+      throw new IllegalArgumentException("Invalid namespace id: " + id);
+    }
+    if (!mountPoint.startsWith(ROOT)
+        || (mountPoint.length() > 1 && mountPoint.endsWith(ROOT))) {
+      throw new IllegalArgumentException("Invalid mount point: " + mountPoint);
+    }
+    this.id = id;
+    this.uri = uri;
+    this.mountPoint = mountPoint;
+    this.client = client;
+  }
+
+  /**
+   * The only namespace of a non-federated deployment, mounted at root.
+   */
+  public static NamespaceMount root(DFSClient client) {
+    return new NamespaceMount(0, null, ROOT, client);
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public URI getUri() {
+    return uri;
+  }
+
+  public String getMountPoint() {
+    return mountPoint;
+  }
+
+  public DFSClient getClient() {
+    return client;
+  }
+
+  public boolean isRoot() {
+    return mountPoint.equals(ROOT);
+  }
+
+  public boolean contains(String globalPath) {
+    return isRoot() || globalPath.equals(mountPoint)
+        || globalPath.startsWith(mountPoint + ROOT);
+  }
+
+  public String toGlobalPath(String localPath) {
+    if (isRoot()) {
+      return localPath;
+    }
+    return localPath.equals(ROOT) ? mountPoint : mountPoint + localPath;
+  }
+
+  public String toLocalPath(String globalPath) {
+    if (!contains(globalPath)) {
+      throw new IllegalArgumentException(globalPath
+          + " is not under mount point " + mountPoint);
+    }
+    if (isRoot()) {
+      return globalPath;
+    }
+    return globalPath.length() == mountPoint.length()
+        ? ROOT : globalPath.substring(mountPoint.length());
+  }
+
+  public long toGlobalFid(long localFid) {
+    return ((long) id << NSID_SHIFT) | (localFid & LOCAL_FID_MASK);
+  }
+
+  public static int getNamespaceId(long fid) {
+    return (int) (fid >>> NSID_SHIFT);
+  }
+
+  public static long getLocalFid(long fid) {
+    return fid & LOCAL_FID_MASK;
+  }
+
+  @Override
+  public String toString() {
+    return "ns" + id + "(" + (uri == null ? "" : uri + " ") + "-> "
+        + mountPoint + ")";
+  }
+}
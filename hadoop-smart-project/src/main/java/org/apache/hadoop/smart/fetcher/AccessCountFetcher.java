@@ -18,17 +18,24 @@
 package org.apache.hadoop.smart.fetcher;
 
 import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.hdfs.protocol.FileReadVolume;
 import org.apache.hadoop.hdfs.protocol.FilesAccessInfo;
+import org.apache.hadoop.smart.federation.NamespaceMount;
+import org.apache.hadoop.smart.governor.NameNodeGovernor;
+import org.apache.hadoop.smart.governor.NameNodePriority;
 import org.apache.hadoop.smart.sql.tables.AccessCountTableManager;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
-public class AccessCountFetcher {
-  private static final Long DEFAULT_INTERVAL = 5 * 1000L;
+public class AccessCountFetcher implements AccessEventSource {
+  public static final long DEFAULT_INTERVAL = 5 * 1000L;
   private final ScheduledExecutorService scheduledExecutorService;
   private final Long fetchInterval;
   private ScheduledFuture scheduledFuture;
@@ -46,11 +53,22 @@ public AccessCountFetcher(Long fetchInterval, DFSClient client,
 
   public AccessCountFetcher(Long fetchInterval, DFSClient client,
       AccessCountTableManager manager, ScheduledExecutorService service) {
+    this(fetchInterval, NamespaceMount.root(client), manager, service);
+  }
+
+  public AccessCountFetcher(NamespaceMount mount,
+      AccessCountTableManager manager, ScheduledExecutorService service) {
+    this(DEFAULT_INTERVAL, mount, manager, service);
+  }
+
+  public AccessCountFetcher(Long fetchInterval, NamespaceMount mount,
+      AccessCountTableManager manager, ScheduledExecutorService service) {
     this.fetchInterval = fetchInterval;
-    this.fetchTask = new FetchTask(client, manager);
+    this.fetchTask = new FetchTask(mount, manager);
     this.scheduledExecutorService = service;
   }
 
+  @Override
   public void start() {
     Long current = System.currentTimeMillis();
     Long toWait = fetchInterval - (current % fetchInterval);
@@ -58,6 +76,7 @@ public void start() {
         fetchTask, toWait, fetchInterval, TimeUnit.MILLISECONDS);
   }
 
+  @Override
   public void stop() {
     if (scheduledFuture != null) {
       this.scheduledFuture.cancel(false);
@@ -65,22 +84,61 @@ public void stop() {
   }
 
   private static class FetchTask implements Runnable {
-    private final DFSClient client;
+    private final NamespaceMount mount;
     private final AccessCountTableManager manager;
 
-    public FetchTask(DFSClient client, AccessCountTableManager manager) {
-      this.client = client;
+    public FetchTask(NamespaceMount mount, AccessCountTableManager manager) {
+      this.mount = mount;
       this.manager = manager;
     }
 
     @Override
     public void run() {
+      NameNodePriority prev =
+          NameNodeGovernor.setPriority(NameNodePriority.ACCESS);
+      try {
+        fetch();
+      } finally {
+        NameNodeGovernor.setPriority(prev);
+      }
+    }
+
+    private void fetch() {
       try {
-        FilesAccessInfo fileAccess = client.getFilesAccessInfo();
-        this.manager.onAccessEventsArrived(fileAccess.getFileAccessEvents());
+        FilesAccessInfo fileAccess = mount.getClient().getFilesAccessInfo();
+        this.manager.onAccessEventsArrived(
+            toGlobal(fileAccess.getFileAccessEvents()));
+        if (!fileAccess.getFileReadVolumes().isEmpty()) {
+          this.manager.onReadVolumesArrived(
+              toGlobalVolumes(fileAccess.getFileReadVolumes()));
+        }
       } catch (IOException e) {
         e.printStackTrace();
       }
     }
+
+    private List<FileAccessEvent> toGlobal(List<FileAccessEvent> events) {
+      if (mount.isRoot()) {
+        return events;
+      }
+      List<FileAccessEvent> ret = new ArrayList<>(events.size());
+      for (FileAccessEvent e : events) {
+        ret.add(new FileAccessEvent(mount.toGlobalPath(e.getPath()),
+            e.getUser(), e.getTimestamp()));
+      }
+      return ret;
+    }
+
+    private List<FileReadVolume> toGlobalVolumes(List<FileReadVolume> volumes) {
+      if (mount.isRoot()) {
+        return volumes;
+      }
+      List<FileReadVolume> ret = new ArrayList<>(volumes.size());
+      for (FileReadVolume v : volumes) {
+        ret.add(new FileReadVolume(mount.toGlobalPath(v.getPath()),
+            v.getNumReads(), v.getBytesRead()));
+      }
+      return ret;
+    }
   }
 }
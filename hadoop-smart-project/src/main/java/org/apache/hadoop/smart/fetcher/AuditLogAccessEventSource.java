@@ -0,0 +1,430 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.fetcher;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.tables.AccessCountTableManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Get file access events by tailing the audit log of NameNode, so that
+ * no NameNode change or RPC polling is needed.
+ *
+ * Successful 'cmd=open' lines of the default audit log layout are parsed
+ * directly from the read buffer, only the path is turned into a String.
+ * The log file is reopened from its beginning when it is rotated or
+ * truncated, after the remaining lines of the former one are read.
+ * The offset reached is saved in metastore, tailing resumes from it on
+ * restart if the log file has not been rotated meanwhile.
+ */
+public class AuditLogAccessEventSource implements AccessEventSource {
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // yyyy-MM-dd HH:mm:ss,SSS
+  private static final int TIMESTAMP_LENGTH = 23;
+  private static final byte[] ALLOWED = bytes("allowed=true\t");
+  private static final byte[] CMD_OPEN = bytes("\tcmd=open\t");
+  private static final byte[] SRC = bytes("\tsrc=");
+
+  private final Path logPath;
+  private final AccessCountTableManager manager;
+  private final DBAdapter adapter;
+  private final ScheduledExecutorService service;
+  private final long interval;
+  private final TimeZone timeZone;
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private FileChannel channel;
+  private Object fileKey;
+  private boolean skipToEnd = true;
+  private long savedOffset = -1;
+  // Start of the hour of the last timestamp parsed
+  private int cachedHour = -1;
+  private long cachedHourMillis;
+  private long numEvents;
+  private ScheduledFuture future;
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(AuditLogAccessEventSource.class);
+
+  public AuditLogAccessEventSource(String logPath,
+      AccessCountTableManager manager, DBAdapter adapter,
+      ScheduledExecutorService service, long interval) {
+    this(logPath, manager, adapter, service, interval, TimeZone.getDefault());
+  }
+
+  /**
+   * @param adapter where the offset is saved, not saved if null
+   * @param timeZone time zone of the timestamps written in log
+   */
+  public AuditLogAccessEventSource(String logPath,
+      AccessCountTableManager manager, DBAdapter adapter,
+      ScheduledExecutorService service, long interval, TimeZone timeZone) {
+    this.logPath = Paths.get(logPath);
+    this.manager = manager;
+    this.adapter = adapter;
+    this.service = service;
+    this.interval = interval;
+    this.timeZone = timeZone;
+  }
+
+  private static byte[] bytes(String str) {
+    return str.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void start() {
+    future = service.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          poll();
+        } catch (Throwable t) {
+          LOG.error("Tail audit log " + logPath + " error", t);
+          closeChannel();
+        }
+      }
+    }, 0, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    if (future != null) {
+      future.cancel(false);
+      future = null;
+    }
+    closeChannel();
+  }
+
+  public synchronized long getNumEvents() {
+    return numEvents;
+  }
+
+  /**
+   * Offset in the log file of the next line to parse.
+   */
+  public synchronized long getOffset() throws IOException {
+    return channel == null ? 0 : channel.position() - buffer.position();
+  }
+
+  /**
+   * Read the lines appended since last poll.
+   */
+  @VisibleForTesting
+  synchronized void poll() throws IOException {
+    List<FileAccessEvent> events = new ArrayList<>();
+    if (channel == null && !openChannel()) {
+      return;
+    }
+    readAvailable(events);
+    if (isRotated()) {
+      LOG.info("Audit log " + logPath + " rotated at offset " + getOffset());
+      readAvailable(events);
+      closeChannel();
+      skipToEnd = false;
+      if (openChannel()) {
+        readAvailable(events);
+      }
+    }
+    if (!events.isEmpty()) {
+      numEvents += events.size();
+      manager.onAccessEventsArrived(events);
+    }
+    saveOffset();
+  }
+
+  private void saveOffset() throws IOException {
+    if (adapter == null || channel == null) {
+      return;
+    }
+    long offset = getOffset();
+    if (offset == savedOffset) {
+      return;
+    }
+    try {
+      adapter.updateAuditLogOffset(logPath.toString(),
+          String.valueOf(fileKey), offset);
+      savedOffset = offset;
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private boolean openChannel() throws IOException {
+    if (!Files.exists(logPath)) {
+      return false;
+    }
+    channel = FileChannel.open(logPath, StandardOpenOption.READ);
+    fileKey = Files.readAttributes(logPath, BasicFileAttributes.class)
+        .fileKey();
+    if (skipToEnd) {
+      // Only accesses happened after start are of interest, unless the
+      // file was being tailed before
+      Long offset = loadOffset();
+      channel.position(offset != null && offset <= channel.size()
+          ? offset : channel.size());
+      skipToEnd = false;
+    }
+    buffer.clear();
+    return true;
+  }
+
+  private Long loadOffset() throws IOException {
+    if (adapter == null) {
+      return null;
+    }
+    try {
+      return adapter.getAuditLogOffset(logPath.toString(),
+          String.valueOf(fileKey));
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private synchronized void closeChannel() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOG.error("Close audit log " + logPath + " error", e);
+      }
+      channel = null;
+      fileKey = null;
+    }
+  }
+
+  private boolean isRotated() throws IOException {
+    if (!Files.exists(logPath)) {
+      // Renamed but not created again yet
+      return false;
+    }
+    BasicFileAttributes attrs =
+        Files.readAttributes(logPath, BasicFileAttributes.class);
+    if (fileKey != null && !fileKey.equals(attrs.fileKey())) {
+      return true;
+    }
+    return attrs.size() < channel.position();
+  }
+
+  private void readAvailable(List<FileAccessEvent> events)
+      throws IOException {
+    while (channel.read(buffer) > 0) {
+      byte[] buf = buffer.array();
+      int end = buffer.position();
+      int lineStart = 0;
+      for (int i = 0; i < end; i++) {
+        if (buf[i] == '\n') {
+          parseLine(buf, lineStart, i, events);
+          lineStart = i + 1;
+        }
+      }
+      if (lineStart == 0 && end == buf.length) {
+        LOG.warn("Skip audit log line longer than " + buf.length + " bytes");
+        lineStart = end;
+      }
+      // Keep the incomplete line for next read
+      System.arraycopy(buf, lineStart, buf, 0, end - lineStart);
+      buffer.position(end - lineStart);
+    }
+  }
+
+  /**
+   * Parse a line of audit log, [start, end), an event is added to the list
+   * if it is a successful open.
+   */
+  public void parseLine(byte[] buf, int start, int end,
+      List<FileAccessEvent> events) {
+    if (end - start <= TIMESTAMP_LENGTH) {
+      return;
+    }
+    int allowed = indexOf(buf, start + TIMESTAMP_LENGTH, end, ALLOWED);
+    if (allowed < 0) {
+      return;
+    }
+    int cmd = indexOf(buf, allowed + ALLOWED.length - 1, end, CMD_OPEN);
+    if (cmd < 0) {
+      return;
+    }
+    int src = indexOf(buf, cmd + CMD_OPEN.length - 1, end, SRC);
+    if (src < 0) {
+      return;
+    }
+    long time = parseTime(buf, start);
+    if (time < 0) {
+      return;
+    }
+    int srcStart = src + SRC.length;
+    int srcEnd = srcStart;
+    boolean escaped = false;
+    while (srcEnd < end && buf[srcEnd] != '\t') {
+      escaped |= buf[srcEnd] == '\\';
+      srcEnd++;
+    }
+    String path = new String(buf, srcStart, srcEnd - srcStart,
+        StandardCharsets.UTF_8);
+    if (escaped) {
+      path = unescape(path);
+    }
+    events.add(new FileAccessEvent(path, time));
+  }
+
+  /**
+   * Reverse the escapeJava done by the audit logger on paths, that is
+   * backslash, double quote, control characters and characters beyond
+   * ASCII. Other backslashes are kept.
+   */
+  @VisibleForTesting
+  static String unescape(String str) {
+    StringBuilder sb = new StringBuilder(str.length());
+    int i = 0;
+    while (i < str.length()) {
+      char c = str.charAt(i);
+      if (c != '\\' || i + 1 == str.length()) {
+        sb.append(c);
+        i++;
+        continue;
+      }
+      char next = str.charAt(i + 1);
+      switch (next) {
+        case '\\':
+        case '"':
+          sb.append(next);
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'u':
+          int code = hex(str, i + 2);
+          if (code >= 0) {
+            sb.append((char) code);
+            i += 6;
+            continue;
+          }
+          sb.append(c).append(next);
+          break;
+        default:
+          sb.append(c).append(next);
+          break;
+      }
+      i += 2;
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return -1 if not 4 hex digits
+   */
+  private static int hex(String str, int start) {
+    if (start + 4 > str.length()) {
+      return -1;
+    }
+    int ret = 0;
+    for (int i = start; i < start + 4; i++) {
+      int d = Character.digit(str.charAt(i), 16);
+      if (d < 0) {
+        return -1;
+      }
+      ret = ret * 16 + d;
+    }
+    return ret;
+  }
+
+  private static int indexOf(byte[] buf, int from, int end, byte[] pattern) {
+    int last = end - pattern.length;
+    outer:
+    for (int i = from; i <= last; i++) {
+      for (int j = 0; j < pattern.length; j++) {
+        if (buf[i + j] != pattern[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  /**
+   * @return -1 if not a timestamp
+   */
+  private long parseTime(byte[] buf, int start) {
+    int year = digits(buf, start, 4);
+    int month = digits(buf, start + 5, 2);
+    int day = digits(buf, start + 8, 2);
+    int hour = digits(buf, start + 11, 2);
+    int minute = digits(buf, start + 14, 2);
+    int second = digits(buf, start + 17, 2);
+    int millis = digits(buf, start + 20, 3);
+    if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0
+        || second < 0 || millis < 0) {
+      return -1;
+    }
+    int key = ((year * 100 + month) * 100 + day) * 100 + hour;
+    if (key != cachedHour) {
+      Calendar calendar = Calendar.getInstance(timeZone);
+      calendar.clear();
+      calendar.set(year, month - 1, day, hour, 0, 0);
+      cachedHourMillis = calendar.getTimeInMillis();
+      cachedHour = key;
+    }
+    return cachedHourMillis + minute * 60000L + second * 1000L + millis;
+  }
+
+  private static int digits(byte[] buf, int start, int len) {
+    int ret = 0;
+    for (int i = start; i < start + len; i++) {
+      int d = buf[i] - '0';
+      if (d < 0 || d > 9) {
+        return -1;
+      }
+      ret = ret * 10 + d;
+    }
+    return ret;
+  }
+}
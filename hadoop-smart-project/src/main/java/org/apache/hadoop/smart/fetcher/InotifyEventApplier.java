@@ -20,7 +20,9 @@
 import org.apache.hadoop.hdfs.DFSClient;
 import org.apache.hadoop.hdfs.inotify.Event;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.smart.federation.NamespaceMount;
 import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.TableGenerations;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -35,31 +37,57 @@
 public class InotifyEventApplier {
   private final DBAdapter adapter;
   private DFSClient client;
+  private final NamespaceMount mount;
 
   public InotifyEventApplier(DBAdapter adapter, DFSClient client) {
+    this(adapter, NamespaceMount.root(client));
+  }
+
+  public InotifyEventApplier(DBAdapter adapter, NamespaceMount mount) {
     this.adapter = adapter;
-    this.client = client;
+    this.client = mount.getClient();
+    this.mount = mount;
   }
 
   public void apply(List<Event> events) throws IOException, SQLException {
     List<String> statements = new ArrayList<>();
+    boolean compactFilesChanged = false;
     for (Event event : events) {
-      String statement = getSqlStatement(event);
+      // Status of the created inode, fetched once for all the statements
+      HdfsFileStatus status = event.getEventType() == Event.EventType.CREATE
+          ? client.getFileInfo(((Event.CreateEvent) event).getPath()) : null;
+      // Run before the statement of the event as it reads table 'files'
+      List<String> compactStatements = getCompactFilesSql(event, status);
+      if (!compactStatements.isEmpty()) {
+        statements.addAll(compactStatements);
+        compactFilesChanged = true;
+      }
+      String statement = getSqlStatement(event, status);
       if (statement != null && !statement.isEmpty()){
         statements.add(statement);
       }
     }
-    this.adapter.execute(statements);
+    if (statements.isEmpty()) {
+      return;
+    }
+    try {
+      this.adapter.execute(statements);
+    } finally {
+      this.adapter.bumpGeneration(TableGenerations.FILES);
+      if (compactFilesChanged) {
+        this.adapter.bumpGeneration(TableGenerations.COMPACT_FILES);
+      }
+    }
   }
 
   public void apply(Event[] events) throws IOException, SQLException {
     this.apply(Arrays.asList(events));
   }
 
-  private String getSqlStatement(Event event) throws IOException {
+  private String getSqlStatement(Event event, HdfsFileStatus status) {
     switch (event.getEventType()) {
       case CREATE:
-        return this.getCreateSql((Event.CreateEvent)event);
+        return this.getCreateSql((Event.CreateEvent)event, status);
       case CLOSE:
         return this.getCloseSql((Event.CloseEvent)event);
       case TRUNCATE:
@@ -76,15 +104,68 @@ private String getSqlStatement(Event event) throws IOException {
     return "";
   }
 
+  /**
+   * Keep table 'compact_files' in line with the namespace. A compacted file
+   * no longer exists in HDFS, its row is dropped once another file takes
+   * its path or its directory is deleted, and moved with its directory.
+   * Compaction deletes the original file itself, so a row is only dropped
+   * for a file at its path if that file has another fid.
+   *
+   * @param status status of the inode created by a CREATE event
+   */
+  private List<String> getCompactFilesSql(Event event,
+      HdfsFileStatus status) {
+    List<String> statements = new ArrayList<>();
+    switch (event.getEventType()) {
+      case CREATE:
+        Event.CreateEvent create = (Event.CreateEvent) event;
+        if (status != null) {
+          statements.add(String.format(
+              "DELETE FROM compact_files WHERE path = '%s' AND fid <> %s;",
+              mount.toGlobalPath(create.getPath()),
+              mount.toGlobalFid(status.getFileId())));
+        }
+        break;
+      case RENAME:
+        Event.RenameEvent rename = (Event.RenameEvent) event;
+        String src = mount.toGlobalPath(rename.getSrcPath());
+        String dst = mount.toGlobalPath(rename.getDstPath());
+        statements.add(String.format(
+            "DELETE FROM compact_files WHERE path = '%s' AND EXISTS "
+                + "(SELECT 1 FROM files WHERE files.path = '%s' "
+                + "AND files.fid <> compact_files.fid);",
+            dst, src));
+        statements.add(String.format(
+            "UPDATE compact_files SET path = replace(path, '%s/', '%s/'), "
+                + "container = replace(container, '%s/', '%s/') "
+                + "WHERE path LIKE '%s/%%';",
+            src, dst, src, dst, src));
+        break;
+      case UNLINK:
+        String path = mount.toGlobalPath(
+            ((Event.UnlinkEvent) event).getPath());
+        statements.add(String.format(
+            "DELETE FROM compact_files WHERE path LIKE '%s/%%' "
+                + "OR (path = '%s' AND EXISTS (SELECT 1 FROM files "
+                + "WHERE files.path = '%s' "
+                + "AND files.fid <> compact_files.fid));",
+            path, path, path));
+        break;
+      default:
+        break;
+    }
+    return statements;
+  }
+
   //Todo: times and ec policy id, etc.
-  private String getCreateSql(Event.CreateEvent createEvent) throws IOException {
-    HdfsFileStatus fileStatus = client.getFileInfo(createEvent.getPath());
+  private String getCreateSql(Event.CreateEvent createEvent,
+      HdfsFileStatus fileStatus) {
     boolean isDir = createEvent.getiNodeType() == Event.CreateEvent.INodeType.DIRECTORY;
     return String.format(
         "INSERT INTO `files` (path, fid, block_replication, "
             + "block_size, is_dir, permission) VALUES ('%s', %s, %s, %s, %s, %s);",
-        createEvent.getPath(),
-        fileStatus.getFileId(),
+        mount.toGlobalPath(createEvent.getPath()),
+        mount.toGlobalFid(fileStatus.getFileId()),
         createEvent.getReplication(),
         createEvent.getDefaultBlockSize(),
         isDir ? 1 : 0,
@@ -95,20 +176,23 @@ private String getCreateSql(Event.CreateEvent createEvent) throws IOException {
   private String getCloseSql(Event.CloseEvent closeEvent) {
     return String.format(
         "UPDATE files SET length = %s, modification_time = %s WHERE path = '%s';",
-        closeEvent.getFileSize(), closeEvent.getTimestamp(), closeEvent.getPath());
+        closeEvent.getFileSize(), closeEvent.getTimestamp(),
+        mount.toGlobalPath(closeEvent.getPath()));
   }
 
   //Todo: should update mtime? atime?
   private String getTruncateSql(Event.TruncateEvent truncateEvent) {
     return String.format(
         "UPDATE files SET length = %s, modification_time = %s WHERE path = '%s';",
-        truncateEvent.getFileSize(), truncateEvent.getTimestamp(), truncateEvent.getPath());
+        truncateEvent.getFileSize(), truncateEvent.getTimestamp(),
+        mount.toGlobalPath(truncateEvent.getPath()));
   }
 
   private String getRenameSql(Event.RenameEvent renameEvent) {
     return String.format(
         "UPDATE files SET path = replace(path, '%s', '%s');",
-        renameEvent.getSrcPath(), renameEvent.getDstPath());
+        mount.toGlobalPath(renameEvent.getSrcPath()),
+        mount.toGlobalPath(renameEvent.getDstPath()));
   }
 
   private String getMetaDataUpdateSql(Event.MetadataUpdateEvent metadataUpdateEvent) {
@@ -118,18 +202,20 @@ private String getMetaDataUpdateSql(Event.MetadataUpdateEvent metadataUpdateEven
             "UPDATE files SET modification_time = %s, access_time = %s WHERE path = '%s';",
             metadataUpdateEvent.getMtime(),
             metadataUpdateEvent.getAtime(),
-            metadataUpdateEvent.getPath());
+            mount.toGlobalPath(metadataUpdateEvent.getPath()));
       case OWNER:
         //Todo
         break;
       case PERMS:
         return String.format(
             "UPDATE files SET permission = %s WHERE path = '%s';",
-            metadataUpdateEvent.getPerms().toShort(), metadataUpdateEvent.getPath());
+            metadataUpdateEvent.getPerms().toShort(),
+            mount.toGlobalPath(metadataUpdateEvent.getPath()));
       case REPLICATION:
         return String.format(
             "UPDATE files SET block_replication = %s WHERE path = '%s';",
-            metadataUpdateEvent.getReplication(), metadataUpdateEvent.getPath());
+            metadataUpdateEvent.getReplication(),
+            mount.toGlobalPath(metadataUpdateEvent.getPath()));
       case XATTRS:
         //Todo
         break;
@@ -145,6 +231,7 @@ private String getAppendSql(Event.AppendEvent appendEvent) {
   }
 
   private String getUnlinkSql(Event.UnlinkEvent unlinkEvent) {
-    return String.format("DELETE FROM files WHERE path LIKE '%s%%';", unlinkEvent.getPath());
+    return String.format("DELETE FROM files WHERE path LIKE '%s%%';",
+        mount.toGlobalPath(unlinkEvent.getPath()));
   }
 }
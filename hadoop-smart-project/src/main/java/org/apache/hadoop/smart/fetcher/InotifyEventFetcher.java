@@ -21,7 +21,11 @@
 import org.apache.hadoop.hdfs.DFSClient;
 import org.apache.hadoop.hdfs.DFSInotifyEventInputStream;
 import org.apache.hadoop.hdfs.inotify.EventBatch;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.inotify.MissingEventsException;
+import org.apache.hadoop.smart.federation.NamespaceMount;
+import org.apache.hadoop.smart.governor.NameNodeGovernor;
+import org.apache.hadoop.smart.governor.NameNodePriority;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.apache.hadoop.smart.utils.EventBatchSerializer;
 import org.slf4j.Logger;
@@ -30,6 +34,10 @@
 import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -37,9 +45,12 @@
 
 public class InotifyEventFetcher {
   private final DFSClient client;
+  private final NamespaceMount mount;
   private final NamespaceFetcher nameSpaceFetcher;
   private final ScheduledExecutorService scheduledExecutorService;
   private final InotifyEventApplier applier;
+  private final DBAdapter adapter;
+  private final EventFilter filter;
   private ScheduledFuture inotifyFetchFuture;
   private ScheduledFuture fetchAndApplyFuture;
   private EventApplyTask eventApplyTask;
@@ -55,27 +66,65 @@ public InotifyEventFetcher(DFSClient client, DBAdapter adapter,
 
   public InotifyEventFetcher(DFSClient client, DBAdapter adapter,
       ScheduledExecutorService service, InotifyEventApplier applier) {
-    this.client = client;
+    this(NamespaceMount.root(client), adapter, service, applier);
+  }
+
+  public InotifyEventFetcher(NamespaceMount mount, DBAdapter adapter,
+      ScheduledExecutorService service) {
+    this(mount, adapter, service, (EventFilter) null);
+  }
+
+  public InotifyEventFetcher(NamespaceMount mount, DBAdapter adapter,
+      ScheduledExecutorService service, EventFilter filter) {
+    this(mount, adapter, service, new InotifyEventApplier(adapter, mount),
+        filter);
+  }
+
+  public InotifyEventFetcher(NamespaceMount mount, DBAdapter adapter,
+      ScheduledExecutorService service, InotifyEventApplier applier) {
+    this(mount, adapter, service, applier, null);
+  }
+
+  public InotifyEventFetcher(NamespaceMount mount, DBAdapter adapter,
+      ScheduledExecutorService service, InotifyEventApplier applier,
+      EventFilter filter) {
+    this.client = mount.getClient();
+    this.mount = mount;
     this.applier = applier;
+    this.adapter = adapter;
+    this.filter = filter;
     this.scheduledExecutorService = service;
-    this.nameSpaceFetcher = new NamespaceFetcher(client, adapter, service);
+    // The namespace is fetched under the same prefixes as the events
+    this.nameSpaceFetcher = new NamespaceFetcher(mount, adapter, service,
+        filter == null
+            ? Collections.<String>emptyList() : filter.getPathPrefixes());
   }
 
   public void start() throws IOException, InterruptedException {
+    Long lastTxid = getLastTxid();
+    if (lastTxid != null) {
+      // Already in the metastore, e.g. replayed by a standby SSM
+      LOG.info("Resume fetching namespace " + mount
+          + " from edit log txid = " + lastTxid);
+      startFetchAndApply(lastTxid);
+      return;
+    }
     this.inotifyFile = new File("/tmp/inotify" + new Random().nextLong());
     this.queueFile = new QueueFile(inotifyFile);
     long startId = this.client.getNamenode().getCurrentEditLogTxid();
-    LOG.info("Start fetching namespace with current edit log txid = " + startId);
+    LOG.info("Start fetching namespace " + mount
+        + " with current edit log txid = " + startId);
     this.nameSpaceFetcher.startFetch();
     this.inotifyFetchFuture = scheduledExecutorService.scheduleAtFixedRate(
-        new InotifyFetchTask(queueFile, client, startId), 0, 100, TimeUnit.MILLISECONDS);
+        new InotifyFetchTask(queueFile, client, startId, filter), 0, 100,
+        TimeUnit.MILLISECONDS);
     this.eventApplyTask = new EventApplyTask(nameSpaceFetcher, applier, queueFile, startId);
 
     LOG.info("Start apply iNotify events.");
     eventApplyTask.start();
 
     this.waitNameSpaceFetcherFinished();
-    LOG.info("Name space fetch finished.");
+    LOG.info("Name space fetch of " + mount + " finished.");
   }
 
   private void waitNameSpaceFetcherFinished() throws InterruptedException, IOException {
@@ -85,12 +134,63 @@ private void waitNameSpaceFetcherFinished() throws InterruptedException, IOExcep
     this.inotifyFetchFuture.cancel(false);
     this.nameSpaceFetcher.stop();
     this.queueFile.close();
-    InotifyFetchAndApplyTask fetchAndApplyTask =
-      new InotifyFetchAndApplyTask(client, applier, lastId);
+    try {
+      adapter.updateInotifyTxid(mount.getId(), lastId);
+    } catch (SQLException e) {
+      LOG.error("Failed to record edit log txid of " + mount, e);
+    }
+    startFetchAndApply(lastId);
+  }
+
+  private void startFetchAndApply(long startId) throws IOException {
+    InotifyFetchAndApplyTask fetchAndApplyTask = new InotifyFetchAndApplyTask(
+        client, applier, startId, adapter, mount.getId(), filter);
     this.fetchAndApplyFuture = scheduledExecutorService.scheduleAtFixedRate(
       fetchAndApplyTask, 0, 100, TimeUnit.MILLISECONDS);
   }
 
+  /**
+   * @return null if the namespace has not been fetched into the metastore
+   */
+  private Long getLastTxid() {
+    try {
+      return adapter.getInotifyTxid(mount.getId());
+    } catch (SQLException e) {
+      LOG.error("Failed to get edit log txid of " + mount
+          + ", fetching the whole namespace", e);
+      return null;
+    }
+  }
+
+  /**
+   * Filter for the events of a namespace under the given metastore paths.
+   *
+   * @return null if the whole namespace is covered
+   */
+  public static EventFilter createFilter(NamespaceMount mount,
+      Collection<String> globalPrefixes) {
+    List<String> localPrefixes = new ArrayList<>();
+    for (String prefix : globalPrefixes) {
+      if (prefix.length() > 1 && prefix.endsWith(NamespaceMount.ROOT)) {
+        prefix = prefix.substring(0, prefix.length() - 1);
+      }
+      if (prefix.equals(NamespaceMount.ROOT)
+          || prefix.equals(mount.getMountPoint())
+          || mount.getMountPoint().startsWith(prefix + NamespaceMount.ROOT)) {
+        return null;
+      }
+      if (mount.contains(prefix)) {
+        localPrefixes.add(mount.toLocalPath(prefix));
+      }
+    }
+    if (localPrefixes.isEmpty()) {
+      LOG.warn("None of " + globalPrefixes + " is under " + mount
+          + ", fetching all its events");
+      return null;
+    }
+    return new EventFilter(localPrefixes, null);
+  }
+
   public void stop() {
     if (inotifyFile != null) {
       this.inotifyFile.delete();
@@ -107,13 +207,26 @@ private static class InotifyFetchTask implements Runnable {
     private final QueueFile queueFile;
     private DFSInotifyEventInputStream inotifyEventInputStream;
 
-    public InotifyFetchTask(QueueFile queueFile, DFSClient client, long startId) throws IOException {
+    public InotifyFetchTask(QueueFile queueFile, DFSClient client,
+        long startId, EventFilter filter) throws IOException {
       this.queueFile = queueFile;
-      this.inotifyEventInputStream = client.getInotifyEventStream(startId);
+      this.inotifyEventInputStream = filter == null
+          ? client.getInotifyEventStream(startId)
+          : client.getInotifyEventStream(startId, filter);
     }
 
     @Override
     public void run() {
+      NameNodePriority prev =
+          NameNodeGovernor.setPriority(NameNodePriority.INOTIFY);
+      try {
+        fetch();
+      } finally {
+        NameNodeGovernor.setPriority(prev);
+      }
+    }
+
+    private void fetch() {
       try {
         EventBatch eventBatch = inotifyEventInputStream.poll();
         while (eventBatch != null) {
@@ -142,6 +255,8 @@ public EventApplyTask(NamespaceFetcher namespaceFetcher, InotifyEventApplier app
 
     @Override
     public void run() {
+      // Runs in its own thread, no need to restore the priority
+      NameNodeGovernor.setPriority(NameNodePriority.INOTIFY);
       try {
         while (!Thread.currentThread().isInterrupted()) {
           if (!namespaceFetcher.fetchFinished()) {
@@ -20,7 +20,11 @@
 import org.apache.hadoop.hdfs.DFSClient;
 import org.apache.hadoop.hdfs.DFSInotifyEventInputStream;
 import org.apache.hadoop.hdfs.inotify.EventBatch;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.inotify.MissingEventsException;
+import org.apache.hadoop.smart.governor.NameNodeGovernor;
+import org.apache.hadoop.smart.governor.NameNodePriority;
+import org.apache.hadoop.smart.sql.DBAdapter;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -29,24 +33,63 @@
 public class InotifyFetchAndApplyTask implements Runnable {
   private final AtomicLong lastId;
   private final InotifyEventApplier applier;
+  private final DBAdapter adapter;
+  private final int nsid;
   private DFSInotifyEventInputStream inotifyEventInputStream;
 
   public InotifyFetchAndApplyTask(DFSClient client, InotifyEventApplier applier, long startId)
       throws IOException {
+    this(client, applier, startId, null, 0);
+  }
+
+  /**
+   * The last applied txid is recorded in the metastore for the namespace,
+   * if an adapter is given, so that fetching can resume from it.
+   */
+  public InotifyFetchAndApplyTask(DFSClient client, InotifyEventApplier applier,
+      long startId, DBAdapter adapter, int nsid) throws IOException {
+    this(client, applier, startId, adapter, nsid, null);
+  }
+
+  /**
+   * Only events accepted by the filter are sent by the NameNode, all events
+   * if it is null.
+   */
+  public InotifyFetchAndApplyTask(DFSClient client, InotifyEventApplier applier,
+      long startId, DBAdapter adapter, int nsid, EventFilter filter)
+      throws IOException {
     this.applier = applier;
+    this.adapter = adapter;
+    this.nsid = nsid;
     this.lastId = new AtomicLong(startId);
-    this.inotifyEventInputStream = client.getInotifyEventStream(startId);
+    this.inotifyEventInputStream = filter == null
+        ? client.getInotifyEventStream(startId)
+        : client.getInotifyEventStream(startId, filter);
   }
 
   @Override
   public void run() {
+    NameNodePriority prev =
+        NameNodeGovernor.setPriority(NameNodePriority.INOTIFY);
     try {
+      fetchAndApply();
+    } finally {
+      NameNodeGovernor.setPriority(prev);
+    }
+  }
+
+  private void fetchAndApply() {
+    try {
+      long startId = lastId.get();
       EventBatch eventBatch = inotifyEventInputStream.poll();
       while (eventBatch != null) {
         this.applier.apply(eventBatch.getEvents());
         this.lastId.getAndSet(eventBatch.getTxid());
         eventBatch = inotifyEventInputStream.poll();
       }
+      if (adapter != null && lastId.get() != startId) {
+        adapter.updateInotifyTxid(nsid, lastId.get());
+      }
     } catch (IOException | MissingEventsException | SQLException e) {
       e.printStackTrace();
     }
@@ -17,9 +17,13 @@
  */
 package org.apache.hadoop.smart.fetcher;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.hdfs.DFSClient;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.smart.federation.NamespaceMount;
+import org.apache.hadoop.smart.governor.NameNodeGovernor;
+import org.apache.hadoop.smart.governor.NameNodePriority;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.apache.hadoop.smart.sql.FileStatusInternal;
 import org.slf4j.Logger;
@@ -29,7 +33,9 @@
 import java.sql.SQLException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
@@ -67,12 +73,72 @@ public NamespaceFetcher(DFSClient client, DBAdapter adapter, long fetchInterval)
 
   public NamespaceFetcher(DFSClient client, DBAdapter adapter, long fetchInterval,
       ScheduledExecutorService service) {
-    this.fetchTask = new FetchTask(client);
+    this(NamespaceMount.root(client), adapter, fetchInterval, service);
+  }
+
+  public NamespaceFetcher(NamespaceMount mount, DBAdapter adapter,
+      ScheduledExecutorService service) {
+    this(mount, adapter, DEFAULT_INTERVAL, service);
+  }
+
+  public NamespaceFetcher(NamespaceMount mount, DBAdapter adapter,
+      long fetchInterval, ScheduledExecutorService service) {
+    this(mount, adapter, fetchInterval, service,
+        Collections.<String>emptyList());
+  }
+
+  /**
+   * @param roots local paths of the subtrees to fetch, the whole namespace
+   *              if empty
+   */
+  public NamespaceFetcher(NamespaceMount mount, DBAdapter adapter,
+      ScheduledExecutorService service, Collection<String> roots) {
+    this(mount, adapter, DEFAULT_INTERVAL, service, roots);
+  }
+
+  public NamespaceFetcher(NamespaceMount mount, DBAdapter adapter,
+      long fetchInterval, ScheduledExecutorService service,
+      Collection<String> roots) {
+    this.fetchTask = new FetchTask(mount, getRoots(roots));
     this.consumer = new FileStatusConsumer(adapter, fetchTask);
     this.fetchInterval = fetchInterval;
     this.scheduledExecutorService = service;
   }
 
+  /**
+   * Directories to start fetching from, those under another one are left
+   * out.
+   */
+  @VisibleForTesting
+  static List<String> getRoots(Collection<String> paths) {
+    List<String> sorted = new ArrayList<>();
+    for (String path : paths) {
+      if (path.length() > 1 && path.endsWith(NamespaceMount.ROOT)) {
+        path = path.substring(0, path.length() - 1);
+      }
+      sorted.add(path);
+    }
+    if (sorted.isEmpty() || sorted.contains(NamespaceMount.ROOT)) {
+      return Collections.singletonList(NamespaceMount.ROOT);
+    }
+    // Paths sort after the paths they are under
+    Collections.sort(sorted);
+    List<String> roots = new ArrayList<>();
+    for (String path : sorted) {
+      boolean nested = false;
+      for (String root : roots) {
+        if (path.equals(root) || path.startsWith(root + NamespaceMount.ROOT)) {
+          nested = true;
+          break;
+        }
+      }
+      if (!nested) {
+        roots.add(path);
+      }
+    }
+    return roots;
+  }
+
   public void startFetch() throws IOException {
     this.fetchTaskFuture = this.scheduledExecutorService.scheduleAtFixedRate(
         fetchTask, 0, fetchInterval, TimeUnit.MILLISECONDS);
@@ -96,9 +162,9 @@ public void stop() {
 
   private static class FetchTask implements Runnable {
     private final static int DEFAULT_BATCH_SIZE = 20;
-    private final static String ROOT = "/";
     private final HdfsFileStatus[] EMPTY_STATUS = new HdfsFileStatus[0];
     private final DFSClient client;
+    private final NamespaceMount mount;
     // Deque for Breadth-First-Search
     private ArrayDeque<String> deque;
     // Queue for outer-consumer to fetch file status
@@ -109,16 +175,27 @@ private static class FetchTask implements Runnable {
     private long lastUpdateTime = System.currentTimeMillis();
     private long startTime = lastUpdateTime;
 
-    public FetchTask(DFSClient client) {
+    public FetchTask(NamespaceMount mount, Collection<String> roots) {
       this.deque = new ArrayDeque<>();
       this.batches = new LinkedBlockingDeque<>();
       this.currentBatch = new FileStatusInternalBatch(DEFAULT_BATCH_SIZE);
-      this.client = client;
-      this.deque.add(ROOT);
+      this.client = mount.getClient();
+      this.mount = mount;
+      this.deque.addAll(roots);
     }
 
     @Override
     public void run() {
+      NameNodePriority prev =
+          NameNodeGovernor.setPriority(NameNodePriority.BOOTSTRAP);
+      try {
+        fetch();
+      } finally {
+        NameNodeGovernor.setPriority(prev);
+      }
+    }
+
+    private void fetch() {
       if (LOG.isDebugEnabled()) {
         long curr = System.currentTimeMillis();
         if (curr - lastUpdateTime >= 2000) {
@@ -156,8 +233,9 @@ public void run() {
       try {
         HdfsFileStatus status = client.getFileInfo(parent);
         if (status != null && status.isDir()) {
-          FileStatusInternal internal = new FileStatusInternal(status);
-          internal.setPath(parent);
+          FileStatusInternal internal = new FileStatusInternal(status, "",
+              mount.toGlobalFid(status.getFileId()));
+          internal.setPath(mount.toGlobalPath(parent));
           this.addFileStatus(internal);
           numDirectoriesFetched++;
           HdfsFileStatus[] children = this.listStatus(parent);
@@ -165,7 +243,10 @@ public void run() {
             if (child.isDir()) {
               this.deque.add(child.getFullName(parent));
             } else {
-              this.addFileStatus(new FileStatusInternal(child, parent));
+              FileStatusInternal file = new FileStatusInternal(child,
+                  parent, mount.toGlobalFid(child.getFileId()));
+              file.setPath(mount.toGlobalPath(file.getPath()));
+              this.addFileStatus(file);
               numFilesFetched++;
             }
           }
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.fetcher;
+
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.DatanodeReportType;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
+import org.apache.hadoop.hdfs.server.protocol.StorageReport;
+import org.apache.hadoop.smart.actions.CacheStatus;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.StorageCapacity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically takes one storage report of all live DataNodes from NameNode,
+ * keeps the capacity and usage of each storage type and of DataNode cache in
+ * memory, and writes the changed ones into table 'storages'.
+ */
+public class StorageInfoFetcher {
+  // Type of DataNode cache memory in table 'storages'
+  public static final String CACHE_STORAGE_TYPE = "CACHE";
+
+  private final DFSClient client;
+  private final DBAdapter adapter;
+  private final ScheduledExecutorService scheduledExecutorService;
+  private final long fetchInterval;
+  private ScheduledFuture scheduledFuture;
+
+  // Rows of table 'storages' as last written
+  private final Map<String, StorageCapacity> storagesWritten = new HashMap<>();
+  private volatile Map<String, StorageCapacity> storages =
+      Collections.emptyMap();
+  private volatile Map<String, Map<String, StorageCapacity>> dnStorages =
+      Collections.emptyMap();
+  private volatile CacheStatus cacheStatus = null;
+  private volatile long lastFetchTime = 0;
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(StorageInfoFetcher.class);
+
+  public StorageInfoFetcher(DFSClient client, DBAdapter adapter,
+      ScheduledExecutorService service, long fetchInterval) {
+    this.client = client;
+    this.adapter = adapter;
+    this.scheduledExecutorService = service;
+    this.fetchInterval = fetchInterval;
+  }
+
+  public void start() {
+    this.scheduledFuture = scheduledExecutorService.scheduleAtFixedRate(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              fetch();
+            } catch (Throwable t) {
+              LOG.error("Fetch storage info error", t);
+            }
+          }
+        }, 0, fetchInterval, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    if (scheduledFuture != null) {
+      this.scheduledFuture.cancel(false);
+    }
+  }
+
+  /**
+   * Take a storage report and update the info kept.
+   */
+  public synchronized void fetch() throws IOException, SQLException {
+    DatanodeStorageReport[] reports =
+        client.getDatanodeStorageReport(DatanodeReportType.LIVE);
+    Map<String, long[]> typeTotals = new HashMap<>();
+    Map<String, Map<String, StorageCapacity>> dns = new HashMap<>();
+    Map<String, CacheStatus.nodeCacheInfo> dnCaches = new HashMap<>();
+    long cacheCapacity = 0;
+    long cacheUsed = 0;
+    long cacheRemaining = 0;
+
+    for (DatanodeStorageReport report : reports) {
+      DatanodeInfo dn = report.getDatanodeInfo();
+      Map<String, long[]> dnTotals = new HashMap<>();
+      for (StorageReport r : report.getStorageReports()) {
+        if (r.isFailed()) {
+          continue;
+        }
+        StorageType type = r.getStorage().getStorageType();
+        add(dnTotals, type.name(), r.getCapacity(), r.getRemaining());
+        add(typeTotals, type.name(), r.getCapacity(), r.getRemaining());
+      }
+      dns.put(dn.getXferAddr(), toCapacities(dnTotals));
+
+      CacheStatus.nodeCacheInfo info = new CacheStatus.nodeCacheInfo();
+      info.setCacheCapacity(dn.getCacheCapacity());
+      info.setCacheUsed(dn.getCacheUsed());
+      info.setCacheRemaining(dn.getCacheRemaining());
+      info.setCacheUsedPercentage(dn.getCacheUsedPercent());
+      dnCaches.put(dn.getXferAddr(), info);
+      cacheCapacity += dn.getCacheCapacity();
+      cacheUsed += dn.getCacheUsed();
+      cacheRemaining += dn.getCacheRemaining();
+    }
+    add(typeTotals, CACHE_STORAGE_TYPE, cacheCapacity, cacheRemaining);
+
+    CacheStatus status = new CacheStatus();
+    status.setCacheCapacityTotal(cacheCapacity);
+    status.setCacheUsedTotal(cacheUsed);
+    status.setCacheRemainingTotal(cacheRemaining);
+    status.setCacheUsedPercentageTotal(cacheCapacity == 0 ? 0
+        : cacheUsed * 100.0f / cacheCapacity);
+    status.setdnCacheStatusMap(dnCaches);
+    status.setCacheStatusMap(
+        new HashMap<String, List<CacheStatus.cacheFileInfo>>());
+
+    Map<String, StorageCapacity> total = toCapacities(typeTotals);
+    // Storage types no longer available
+    for (String type : storagesWritten.keySet()) {
+      if (!total.containsKey(type)) {
+        total.put(type, new StorageCapacity(type, 0L, 0L));
+      }
+    }
+    this.storages = total;
+    this.dnStorages = dns;
+    this.cacheStatus = status;
+    this.lastFetchTime = System.currentTimeMillis();
+    writeStorages(total);
+  }
+
+  /**
+   * Only write the rows changed since last write.
+   */
+  private void writeStorages(Map<String, StorageCapacity> total)
+      throws SQLException {
+    if (adapter == null) {
+      return;
+    }
+    List<StorageCapacity> toInsert = new ArrayList<>();
+    int updated = 0;
+    for (StorageCapacity c : total.values()) {
+      StorageCapacity old = storagesWritten.get(c.getType());
+      if (old != null && old.getCapacity().equals(c.getCapacity())
+          && old.getFree().equals(c.getFree())) {
+        continue;
+      }
+      // Row may have been written by last run of SSM
+      if (adapter.updateStoragesTable(c.getType(),
+          c.getCapacity(), c.getFree())) {
+        updated++;
+        storagesWritten.put(c.getType(), c);
+      } else {
+        toInsert.add(c);
+      }
+    }
+    if (toInsert.size() > 0) {
+      adapter.insertStoragesTable(
+          toInsert.toArray(new StorageCapacity[toInsert.size()]));
+      for (StorageCapacity c : toInsert) {
+        storagesWritten.put(c.getType(), c);
+      }
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Storages table: " + updated + " updated, "
+          + toInsert.size() + " inserted.");
+    }
+  }
+
+  private static void add(Map<String, long[]> totals, String type,
+      long capacity, long free) {
+    long[] v = totals.get(type);
+    if (v == null) {
+      v = new long[2];
+      totals.put(type, v);
+    }
+    v[0] += capacity;
+    v[1] += free;
+  }
+
+  private static Map<String, StorageCapacity> toCapacities(
+      Map<String, long[]> totals) {
+    Map<String, StorageCapacity> ret = new HashMap<>();
+    for (Map.Entry<String, long[]> e : totals.entrySet()) {
+      ret.put(e.getKey(), new StorageCapacity(e.getKey(),
+          e.getValue()[0], e.getValue()[1]));
+    }
+    return ret;
+  }
+
+  public long getLastFetchTime() {
+    return lastFetchTime;
+  }
+
+  /**
+   * Capacity and free space of a storage type in the cluster.
+   * @return null if there is no such type of storage
+   */
+  public StorageCapacity getStorageCapacity(String type) {
+    return storages.get(type);
+  }
+
+  public Map<String, StorageCapacity> getStorageCapacities() {
+    return storages;
+  }
+
+  /**
+   * Capacity and free space of each storage type on each DataNode,
+   * keyed by DataNode transfer address.
+   */
+  public Map<String, Map<String, StorageCapacity>> getDatanodeStorages() {
+    return dnStorages;
+  }
+
+  /**
+   * Cache usage of the cluster and each DataNode, the directives are not
+   * included.
+   * @return null if not fetched yet
+   */
+  public CacheStatus getCacheStatus() {
+    return cacheStatus;
+  }
+}
@@ -0,0 +1,283 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.governor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.ipc.RPC;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.util.Daemon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Throttles the calls SSM makes to a NameNode.
+ *
+ * Every ClientProtocol method has a token bucket, its rate is scaled down
+ * by half each time NameNode is found busy, i.e. the average RPC queue or
+ * processing time read from NameNode JMX is above the limit, and back up
+ * step by step once it is not. Calls whose {@link NameNodePriority} is
+ * low are paused while the scale is below the minimum of the priority.
+ * The priority is that of the calling thread, set through
+ * {@link #setPriority(NameNodePriority)}.
+ */
+public class NameNodeGovernor implements Runnable {
+  static final double MIN_SCALE = 0.05;
+  static final double SCALE_STEP = 0.1;
+  // Time to sleep before checking again if a paused call can go on
+  private static final long PAUSE_INTERVAL = 100;
+
+  private static final ThreadLocal<NameNodePriority> PRIORITY =
+      new ThreadLocal<NameNodePriority>() {
+        @Override
+        protected NameNodePriority initialValue() {
+          return NameNodePriority.ACTION;
+        }
+      };
+
+  private final URI uri;
+  private final Configuration conf;
+  private final String httpAddress;
+  private final long checkInterval;
+  private final double maxQueueTime;
+  private final double maxProcessingTime;
+  private final double defaultRate;
+  private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  private volatile double scale = 1.0;
+  private volatile boolean running = false;
+  private Daemon monitor;
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(NameNodeGovernor.class);
+
+  /**
+   * @param httpAddress of the NameNode to read its load from, throttled
+   *                    with fixed rates if null
+   */
+  public NameNodeGovernor(URI uri, Configuration conf, String httpAddress) {
+    this.uri = uri;
+    this.conf = conf;
+    this.httpAddress = httpAddress;
+    this.checkInterval = conf.getLong(
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_CHECK_INTERVAL_KEY,
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_CHECK_INTERVAL_DEFAULT);
+    this.maxQueueTime = conf.getDouble(
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_MAX_QUEUE_TIME_KEY,
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_MAX_QUEUE_TIME_DEFAULT);
+    this.maxProcessingTime = conf.getDouble(
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_MAX_PROCESSING_TIME_KEY,
+        SmartConfigureKeys
+            .DFS_SSM_NAMENODE_GOVERNOR_MAX_PROCESSING_TIME_DEFAULT);
+    this.defaultRate = conf.getDouble(
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_RATE_DEFAULT_KEY,
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_RATE_DEFAULT);
+  }
+
+  /**
+   * Set the priority of NameNode calls made by current thread.
+   * @return the priority before
+   */
+  public static NameNodePriority setPriority(NameNodePriority priority) {
+    NameNodePriority prev = PRIORITY.get();
+    PRIORITY.set(priority);
+    return prev;
+  }
+
+  public static NameNodePriority getPriority() {
+    return PRIORITY.get();
+  }
+
+  /**
+   * Start reading the load of NameNode, if its address is known.
+   */
+  public void start() {
+    if (httpAddress == null || running) {
+      return;
+    }
+    running = true;
+    monitor = new Daemon(this);
+    monitor.setName("NameNodeGovernor@" + uri.getAuthority());
+    monitor.start();
+  }
+
+  public void stop() {
+    running = false;
+    if (monitor != null) {
+      monitor.interrupt();
+      monitor = null;
+    }
+  }
+
+  /**
+   * A client whose calls to NameNode are throttled by this governor, it
+   * stops the governor when closed.
+   */
+  public DFSClient createClient() throws IOException {
+    DFSClient client = new DFSClient(uri, conf, null,
+        new DFSClient.NameNodeProxyWrapper() {
+          @Override
+          public ClientProtocol wrap(ClientProtocol namenode) {
+            return (ClientProtocol) Proxy.newProxyInstance(
+                ClientProtocol.class.getClassLoader(),
+                new Class[] {ClientProtocol.class}, new Handler(namenode));
+          }
+        });
+    start();
+    return client;
+  }
+
+  /**
+   * Wait until a call of the operation is allowed.
+   */
+  public void acquire(String operation) throws InterruptedIOException {
+    NameNodePriority priority = getPriority();
+    try {
+      while (scale < priority.getMinScale()) {
+        Thread.sleep(PAUSE_INTERVAL);
+      }
+      TokenBucket bucket = getBucket(operation);
+      if (bucket != null) {
+        bucket.acquire(scale);
+      }
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted waiting for "
+          + operation + " to " + uri);
+    }
+  }
+
+  /**
+   * @return null if calls of the operation are not limited
+   */
+  private TokenBucket getBucket(String operation) {
+    TokenBucket bucket = buckets.get(operation);
+    if (bucket == null) {
+      double rate = conf.getDouble(
+          SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_RATE_PREFIX + operation,
+          defaultRate);
+      if (rate <= 0) {
+        return null;
+      }
+      buckets.put(operation, new TokenBucket(rate));
+      bucket = buckets.get(operation);
+    }
+    return bucket;
+  }
+
+  public double getScale() {
+    return scale;
+  }
+
+  /**
+   * Adjust the scale of rates to the latest load of NameNode.
+   * @param queueTime average time calls wait in queue, in ms
+   * @param processingTime average time to process a call, in ms
+   */
+  @VisibleForTesting
+  synchronized void onLoad(double queueTime, double processingTime) {
+    double prev = scale;
+    if (queueTime > maxQueueTime || processingTime > maxProcessingTime) {
+      scale = Math.max(MIN_SCALE, scale / 2);
+    } else {
+      scale = Math.min(1.0, scale + SCALE_STEP);
+    }
+    if (scale != prev) {
+      LOG.info(String.format("NameNode %s queue time %.1f ms, processing "
+          + "time %.1f ms, scale of rates %.2f -> %.2f", uri, queueTime,
+          processingTime, prev, scale));
+    }
+  }
+
+  @Override
+  public void run() {
+    int port = uri.getPort() < 0
+        ? HdfsClientConfigKeys.DFS_NAMENODE_RPC_PORT_DEFAULT : uri.getPort();
+    String query = (httpAddress.startsWith("http") ? "" : "http://")
+        + httpAddress + "/jmx?qry=Hadoop:service=NameNode,name="
+        + "RpcActivityForPort" + port;
+    ObjectMapper mapper = new ObjectMapper();
+    while (running) {
+      try {
+        InputStream in = new URL(query).openStream();
+        try {
+          JsonNode bean = mapper.readTree(in).path("beans").path(0);
+          if (bean.has("RpcQueueTimeAvgTime")) {
+            onLoad(bean.get("RpcQueueTimeAvgTime").asDouble(),
+                bean.get("RpcProcessingTimeAvgTime").asDouble());
+          }
+        } finally {
+          in.close();
+        }
+      } catch (Exception e) {
+        LOG.debug("Read load of NameNode " + uri + " error", e);
+      }
+      try {
+        Thread.sleep(checkInterval);
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Passes calls to NameNode once allowed by the governor.
+   */
+  private class Handler implements InvocationHandler, Closeable {
+    private final ClientProtocol namenode;
+
+    Handler(ClientProtocol namenode) {
+      this.namenode = namenode;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable {
+      if (method.getDeclaringClass() != Object.class) {
+        acquire(method.getName());
+      }
+      try {
+        return method.invoke(namenode, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    @Override
+    public void close() {
+      stop();
+      RPC.stopProxy(namenode);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.governor;
+
+/**
+ * Priority of NameNode calls made by SSM. When NameNode gets busy, calls
+ * of lower priority are paused first.
+ */
+public enum NameNodePriority {
+  INOTIFY(0.0),     // keeping metastore in sync with namespace
+  ACCESS(0.1),      // fetching file accesses
+  BOOTSTRAP(0.25),  // fetching the whole namespace
+  ACTION(0.5);      // executing commands and the rest
+
+  // Calls are paused while throttling scale is below it
+  private final double minScale;
+
+  NameNodePriority(double minScale) {
+    this.minScale = minScale;
+  }
+
+  public double getMinScale() {
+    return minScale;
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.governor;
+
+/**
+ * Permits refilled at a given rate, up to the number of one second.
+ */
+public class TokenBucket {
+  private final double rate;
+  private double tokens;
+  private long lastRefill;
+  private long numWaits = 0;
+
+  /**
+   * @param rate permits per second at full scale
+   */
+  public TokenBucket(double rate) {
+    this.rate = rate;
+    this.tokens = Math.max(1, rate);
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Take a permit, waiting for it if none is left.
+   * @param scale fraction of the rate in effect
+   */
+  public void acquire(double scale) throws InterruptedException {
+    while (true) {
+      long wait;
+      synchronized (this) {
+        double effectiveRate = rate * scale;
+        long now = System.nanoTime();
+        tokens = Math.min(Math.max(1, effectiveRate),
+            tokens + (now - lastRefill) * effectiveRate / 1e9);
+        lastRefill = now;
+        if (tokens >= 1) {
+          tokens -= 1;
+          return;
+        }
+        numWaits++;
+        wait = (long) Math.ceil((1 - tokens) * 1000 / effectiveRate);
+      }
+      Thread.sleep(Math.max(1, wait));
+    }
+  }
+
+  public double getRate() {
+    return rate;
+  }
+
+  /**
+   * Times callers had to wait for a permit.
+   */
+  public synchronized long getNumWaits() {
+    return numWaits;
+  }
+}
@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.ha;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.MetaStoreChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Replays the metastore journal of the active SSM on the local metastore,
+ * following the segment being written. The replay starts on an empty
+ * metastore from the latest checkpoint, or from the first segment if there
+ * is none. A replay falling behind the truncation of the journal starts
+ * over from the new checkpoint.
+ */
+public class JournalTailer {
+  static final Logger LOG = LoggerFactory.getLogger(JournalTailer.class);
+
+  private final DistributedFileSystem fs;
+  private final Path dir;
+  private final DBAdapter adapter;
+  // 0 until the first segment is found
+  private long segmentId = 0;
+  private long offset = 0;
+  private long numRecords = 0;
+  private long numChanges = 0;
+  private long lastTimestamp = 0;
+
+  public JournalTailer(DistributedFileSystem fs, Path dir, DBAdapter adapter) {
+    this.fs = fs;
+    this.dir = dir;
+    this.adapter = adapter;
+  }
+
+  /**
+   * Empty the local metastore and load the latest checkpoint, the journal
+   * is then replayed from the segment it was taken at.
+   */
+  public void format() throws IOException {
+    while (true) {
+      try {
+        adapter.formatDataBase();
+      } catch (SQLException e) {
+        throw new IOException("Failed to format metastore", e);
+      }
+      segmentId = 0;
+      offset = 0;
+      List<Long> checkpoints = MetaStoreJournal.listCheckpoints(fs, dir);
+      if (checkpoints.isEmpty()) {
+        return;
+      }
+      long id = checkpoints.get(checkpoints.size() - 1);
+      Path checkpoint = MetaStoreJournal.getCheckpointPath(dir, id);
+      int n;
+      try {
+        n = readSegment(checkpoint);
+      } catch (FileNotFoundException e) {
+        LOG.info(checkpoint + " was replaced by a newer checkpoint");
+        continue;
+      }
+      LOG.info("Loaded " + n + " records of metastore checkpoint "
+          + checkpoint);
+      segmentId = id;
+      offset = 0;
+      return;
+    }
+  }
+
+  /**
+   * Apply the records written since the last call.
+   * @return number of records read, heartbeats included
+   */
+  public int tail() throws IOException {
+    int n = 0;
+    boolean reloaded = false;
+    while (true) {
+      if (segmentId == 0) {
+        List<Long> segments = MetaStoreJournal.listSegments(fs, dir);
+        if (segments.isEmpty()) {
+          return n;
+        }
+        segmentId = segments.get(0);
+        offset = 0;
+      }
+      Path segment = MetaStoreJournal.getSegmentPath(dir, segmentId);
+      boolean closed;
+      try {
+        // Checked before reading, so that a closed segment is read to its end
+        closed = fs.isFileClosed(segment);
+        n += readSegment(segment);
+      } catch (FileNotFoundException e) {
+        if (reloaded) {
+          throw e;
+        }
+        // Deleted by a checkpoint taken since
+        LOG.info(segment + " was truncated, reloading the metastore");
+        format();
+        reloaded = true;
+        continue;
+      }
+      if (!closed) {
+        return n;
+      }
+      Long next = getNextSegment();
+      if (next == null) {
+        return n;
+      }
+      segmentId = next;
+      offset = 0;
+    }
+  }
+
+  /**
+   * Fence the former active SSM by recovering the lease of its last
+   * segment, apply the rest of the journal and continue it with a new
+   * segment of the given journal.
+   */
+  public void takeOver(MetaStoreJournal journal)
+      throws IOException, InterruptedException {
+    while (true) {
+      List<Long> segments = MetaStoreJournal.listSegments(fs, dir);
+      long lastId = 0;
+      if (!segments.isEmpty()) {
+        lastId = segments.get(segments.size() - 1);
+        Path last = MetaStoreJournal.getSegmentPath(dir, lastId);
+        while (!fs.recoverLease(last)) {
+          LOG.info("Waiting for the lease of " + last + " to be recovered");
+          Thread.sleep(1000);
+        }
+      }
+      tail();
+      try {
+        journal.start(lastId + 1);
+        LOG.info("Metastore journal taken over: " + getReport());
+        return;
+      } catch (FileAlreadyExistsException e) {
+        // The former active rolled to a new segment in the meantime
+        LOG.warn("Segment " + (lastId + 1) + " created by the former active "
+            + "SmartServer, recovering it");
+      }
+    }
+  }
+
+  private Long getNextSegment() throws IOException {
+    for (long id : MetaStoreJournal.listSegments(fs, dir)) {
+      if (id > segmentId) {
+        return id;
+      }
+    }
+    return null;
+  }
+
+  private int readSegment(Path segment) throws IOException {
+    int n = 0;
+    FSDataInputStream in = fs.open(segment);
+    try {
+      // Records flushed by the writer so far, the last one may be partial
+      long length = in instanceof HdfsDataInputStream
+          ? ((HdfsDataInputStream) in).getVisibleLength()
+          : fs.getFileStatus(segment).getLen();
+      in.seek(offset);
+      while (length - offset >= 4) {
+        int size = in.readInt();
+        if (length - offset - 4 < size) {
+          break;
+        }
+        byte[] record = new byte[size];
+        in.readFully(record);
+        apply(segment, record);
+        offset += 4 + size;
+        n++;
+      }
+    } finally {
+      in.close();
+    }
+    return n;
+  }
+
+  private void apply(Path segment, byte[] record) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    long timestamp = in.readLong();
+    List<MetaStoreChange> changes = MetaStoreChange.readAll(in);
+    if (!changes.isEmpty()) {
+      try {
+        adapter.applyChanges(changes);
+      } catch (SQLException e) {
+        // The local metastore diverged from the active one
+        throw new IOException("Failed to apply record of " + segment
+            + " at offset " + offset, e);
+      }
+      numChanges += changes.size();
+    }
+    lastTimestamp = timestamp;
+    numRecords++;
+  }
+
+  public long getSegmentId() {
+    return segmentId;
+  }
+
+  public long getNumRecords() {
+    return numRecords;
+  }
+
+  public long getNumChanges() {
+    return numChanges;
+  }
+
+  /**
+   * Time the last applied record was written by the active SSM.
+   */
+  public long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  public String getReport() {
+    return String.format("segment = %d, offset = %d, records = %d, "
+        + "changes = %d, last record time = %d", segmentId, offset,
+        numRecords, numChanges, lastTimestamp);
+  }
+}
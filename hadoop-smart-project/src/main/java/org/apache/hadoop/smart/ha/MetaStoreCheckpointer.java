@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.ha;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.MetaStoreChange;
+import org.apache.hadoop.smart.sql.MetaStoreWriter;
+import org.apache.hadoop.smart.sql.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes checkpoints of the metastore of the active SSM so that the
+ * journal does not grow forever. The journal is rolled on the writer
+ * thread, where a read snapshot of the metastore is opened: the snapshot
+ * holds all changes of the segments before the new one. It is dumped as
+ * journal records to a checkpoint named after the new segment, the older
+ * segments and checkpoints are deleted afterwards.
+ */
+public class MetaStoreCheckpointer implements Runnable {
+  static final Logger LOG =
+      LoggerFactory.getLogger(MetaStoreCheckpointer.class);
+  // Rows of a table in one checkpoint record
+  private static final int ROWS_PER_RECORD = 1000;
+
+  private final FileSystem fs;
+  private final Path dir;
+  private final DBAdapter adapter;
+  private final MetaStoreJournal journal;
+  private final long interval;
+  private volatile boolean running = false;
+  private Thread thread;
+
+  public MetaStoreCheckpointer(FileSystem fs, Path dir, DBAdapter adapter,
+      MetaStoreJournal journal, long interval) {
+    this.fs = fs;
+    this.dir = dir;
+    this.adapter = adapter;
+    this.journal = journal;
+    this.interval = interval;
+  }
+
+  public void start() {
+    running = true;
+    thread = new Thread(this, "MetaStoreCheckpointer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public void stop() {
+    running = false;
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      thread = null;
+    }
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        Thread.sleep(interval);
+      } catch (InterruptedException e) {
+        break;
+      }
+      try {
+        checkpoint();
+      } catch (IOException e) {
+        // Retried at the next interval, the journal is kept until then
+        LOG.error("Failed to checkpoint the metastore", e);
+      }
+    }
+  }
+
+  /**
+   * Write a checkpoint of the metastore and delete the journal it covers.
+   * @return id of the checkpoint, that of the first segment not covered
+   */
+  public long checkpoint() throws IOException {
+    final Connection[] snapshot = new Connection[1];
+    try {
+      long id = adapter.getWriter().execute(
+          new MetaStoreWriter.Mutation<Long>() {
+            @Override
+            public Long apply() throws SQLException {
+              // Applied again alone if the batch it was part of failed
+              closeSnapshot(snapshot);
+              long segmentId;
+              try {
+                segmentId = journal.roll();
+              } catch (IOException e) {
+                throw new SQLException("Failed to roll the journal", e);
+              }
+              // Changes committed from now on are in the new segment
+              snapshot[0] = adapter.openSnapshot();
+              return segmentId;
+            }
+          });
+      write(snapshot[0], id);
+      journal.truncate(id);
+      LOG.info("Metastore checkpoint written at segment " + id);
+      return id;
+    } catch (SQLException e) {
+      throw new IOException("Failed to read metastore snapshot", e);
+    } finally {
+      closeSnapshot(snapshot);
+    }
+  }
+
+  private void closeSnapshot(Connection[] snapshot) {
+    if (snapshot[0] != null) {
+      try {
+        adapter.closeSnapshot(snapshot[0]);
+      } catch (SQLException e) {
+        LOG.error("Failed to close metastore snapshot", e);
+      }
+      snapshot[0] = null;
+    }
+  }
+
+  private void write(Connection conn, long id)
+      throws IOException, SQLException {
+    Path path = MetaStoreJournal.getCheckpointPath(dir, id);
+    Path tmp = path.suffix(MetaStoreJournal.TMP_SUFFIX);
+    FSDataOutputStream out = fs.create(tmp, true);
+    try {
+      for (String table : Util.getTableNames(conn, "")) {
+        if (!MetaStoreJournal.isSoftState(table)) {
+          writeTable(out, conn, table);
+        }
+      }
+    } finally {
+      out.close();
+    }
+    // Only complete checkpoints are listed
+    if (!fs.rename(tmp, path)) {
+      throw new IOException("Failed to rename " + tmp + " to " + path);
+    }
+  }
+
+  private void writeTable(FSDataOutputStream out, Connection conn,
+      String table) throws IOException, SQLException {
+    List<MetaStoreChange> changes = new ArrayList<>();
+    changes.add(new MetaStoreChange("DROP TABLE IF EXISTS " + table));
+    for (String sql : Util.getCreateStatements(conn, table)) {
+      changes.add(new MetaStoreChange(sql));
+    }
+    MetaStoreJournal.writeRecord(out, changes);
+
+    Statement s = conn.createStatement();
+    try {
+      ResultSet rs = s.executeQuery("SELECT * FROM " + table);
+      int numColumns = rs.getMetaData().getColumnCount();
+      StringBuilder insert = new StringBuilder("INSERT INTO " + table
+          + " VALUES (");
+      for (int i = 0; i < numColumns; i++) {
+        insert.append(i == 0 ? "?" : ", ?");
+      }
+      String sql = insert.append(")").toString();
+      List<Object[]> rows = new ArrayList<>();
+      while (rs.next()) {
+        Object[] row = new Object[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+          row[i] = toValue(rs.getObject(i + 1));
+        }
+        rows.add(row);
+        if (rows.size() == ROWS_PER_RECORD) {
+          writeRows(out, sql, rows);
+          rows = new ArrayList<>();
+        }
+      }
+      if (!rows.isEmpty()) {
+        writeRows(out, sql, rows);
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  private void writeRows(FSDataOutputStream out, String sql,
+      List<Object[]> rows) throws IOException {
+    List<MetaStoreChange> changes = new ArrayList<>(1);
+    changes.add(new MetaStoreChange(sql, rows));
+    MetaStoreJournal.writeRecord(out, changes);
+  }
+
+  /**
+   * Convert the column values of MySQL to those a change can hold.
+   */
+  private static Object toValue(Object value) {
+    if (value instanceof BigInteger) {
+      return ((BigInteger) value).longValue();
+    } else if (value instanceof BigDecimal) {
+      BigDecimal d = (BigDecimal) value;
+      return d.scale() <= 0 ? (Object) d.longValue() : d.doubleValue();
+    } else if (value instanceof java.util.Date) {
+      return value.toString();
+    }
+    return value;
+  }
+}
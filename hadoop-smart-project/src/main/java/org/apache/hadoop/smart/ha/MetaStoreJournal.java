@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.ha;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.smart.sql.MetaStoreChange;
+import org.apache.hadoop.smart.sql.MetaStoreWriter;
+import org.apache.hadoop.smart.sql.TableGenerations;
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.ExitUtil;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Journal of the changes committed to the metastore of the active SSM, kept
+ * on HDFS in numbered segments for the standby to replay. A record holds
+ * the changes of one transaction and is flushed before the transaction is
+ * committed. Empty records are written as heartbeats when idle.
+ *
+ * A standby taking over recovers the lease of the last segment, after
+ * which this journal fails to write and the process exits.
+ *
+ * Checkpoints of the metastore are written next to the segments, see
+ * {@link MetaStoreCheckpointer}, the segments they cover are then deleted.
+ * Soft state is not journaled: the heat of files, which starts over on
+ * the SSM taking over, and the proportion views of rule checks.
+ */
+public class MetaStoreJournal implements MetaStoreWriter.ChangeLog, Runnable {
+  static final Logger LOG = LoggerFactory.getLogger(MetaStoreJournal.class);
+  private static final String SEGMENT_PREFIX = "segment_";
+  private static final String CHECKPOINT_PREFIX = "checkpoint_";
+  static final String TMP_SUFFIX = ".tmp";
+  private static final Pattern UNJOURNALED = Pattern.compile(
+      "^\\s*(CREATE|DROP)\\s+VIEW\\b|\\b"
+          + TableGenerations.FILE_HEAT + "\\b", Pattern.CASE_INSENSITIVE);
+
+  private final FileSystem fs;
+  private final Path dir;
+  private final long segmentSize;
+  private final long heartbeatInterval;
+  private long segmentId;
+  private FSDataOutputStream out;
+  private long lastWriteTime;
+  private long numRecords = 0;
+  private Daemon heartbeatThread;
+  private volatile boolean running = false;
+
+  public MetaStoreJournal(FileSystem fs, Path dir, long segmentSize,
+      long heartbeatInterval) {
+    this.fs = fs;
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    this.heartbeatInterval = heartbeatInterval;
+  }
+
+  /**
+   * Start writing the given segment, it must not exist.
+   * @throws org.apache.hadoop.fs.FileAlreadyExistsException if another
+   *         writer created the segment
+   */
+  public synchronized void start(long segmentId) throws IOException {
+    out = fs.create(getSegmentPath(dir, segmentId), false);
+    this.segmentId = segmentId;
+    lastWriteTime = Time.monotonicNow();
+    running = true;
+    heartbeatThread = new Daemon(this);
+    heartbeatThread.setName("MetaStoreJournalHeartbeat");
+    heartbeatThread.start();
+    LOG.info("Writing metastore journal from " + getSegmentPath(dir, segmentId));
+  }
+
+  @Override
+  public synchronized void append(List<MetaStoreChange> changes)
+      throws IOException {
+    if (out == null) {
+      throw new IOException("Metastore journal is not open");
+    }
+    List<MetaStoreChange> journaled = new ArrayList<>(changes.size());
+    for (MetaStoreChange change : changes) {
+      if (!UNJOURNALED.matcher(change.getSql()).find()) {
+        journaled.add(change);
+      }
+    }
+    if (journaled.isEmpty() && !changes.isEmpty()) {
+      return;
+    }
+    try {
+      writeRecord(out, journaled);
+      out.hflush();
+      lastWriteTime = Time.monotonicNow();
+      numRecords++;
+      if (out.getPos() >= segmentSize) {
+        roll();
+      }
+    } catch (IOException e) {
+      // Most likely fenced by a standby taking over, it must not go on
+      LOG.error("Failed to write metastore journal "
+          + getSegmentPath(dir, segmentId), e);
+      ExitUtil.terminate(1, "Metastore journal is not writable: " + e);
+      throw e;
+    }
+  }
+
+  /**
+   * Continue the journal with a new segment.
+   * @return id of the new segment
+   */
+  public synchronized long roll() throws IOException {
+    if (out == null) {
+      throw new IOException("Metastore journal is not open");
+    }
+    out.close();
+    out = null;
+    out = fs.create(getSegmentPath(dir, segmentId + 1), false);
+    segmentId++;
+    return segmentId;
+  }
+
+  /**
+   * Delete the segments and checkpoints older than the checkpoint taken
+   * at the given segment.
+   */
+  public void truncate(long checkpointId) throws IOException {
+    for (long id : listSegments(fs, dir)) {
+      if (id < checkpointId) {
+        fs.delete(getSegmentPath(dir, id), false);
+      }
+    }
+    for (long id : listCheckpoints(fs, dir)) {
+      if (id < checkpointId) {
+        fs.delete(getCheckpointPath(dir, id), false);
+      }
+    }
+  }
+
+  static void writeRecord(FSDataOutputStream out,
+      List<MetaStoreChange> changes) throws IOException {
+    DataOutputBuffer record = new DataOutputBuffer();
+    record.writeLong(Time.now());
+    MetaStoreChange.writeAll(record, changes);
+    out.writeInt(record.getLength());
+    out.write(record.getData(), 0, record.getLength());
+  }
+
+  /**
+   * @return whether changes of the table are left out of the journal
+   */
+  static boolean isSoftState(String table) {
+    return table.equalsIgnoreCase(TableGenerations.FILE_HEAT);
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        Thread.sleep(heartbeatInterval);
+        synchronized (this) {
+          if (running
+              && Time.monotonicNow() - lastWriteTime >= heartbeatInterval) {
+            append(Collections.<MetaStoreChange>emptyList());
+          }
+        }
+      } catch (InterruptedException e) {
+        break;
+      } catch (IOException e) {
+        break;
+      }
+    }
+  }
+
+  public void close() {
+    running = false;
+    if (heartbeatThread != null) {
+      heartbeatThread.interrupt();
+      try {
+        heartbeatThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (this) {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          LOG.error("Failed to close metastore journal", e);
+        }
+        out = null;
+      }
+    }
+    LOG.info("Metastore journal closed after " + numRecords + " records.");
+  }
+
+  public synchronized long getSegmentId() {
+    return segmentId;
+  }
+
+  public synchronized long getNumRecords() {
+    return numRecords;
+  }
+
+  public static Path getSegmentPath(Path dir, long segmentId) {
+    return new Path(dir, String.format("%s%019d", SEGMENT_PREFIX, segmentId));
+  }
+
+  /**
+   * Path of the checkpoint covering the segments before the given one.
+   */
+  public static Path getCheckpointPath(Path dir, long segmentId) {
+    return new Path(dir,
+        String.format("%s%019d", CHECKPOINT_PREFIX, segmentId));
+  }
+
+  /**
+   * Ids of the segments in the journal directory, in ascending order.
+   */
+  public static List<Long> listSegments(FileSystem fs, Path dir)
+      throws IOException {
+    return list(fs, dir, SEGMENT_PREFIX);
+  }
+
+  /**
+   * Ids of the complete checkpoints in the journal directory, in ascending
+   * order.
+   */
+  public static List<Long> listCheckpoints(FileSystem fs, Path dir)
+      throws IOException {
+    return list(fs, dir, CHECKPOINT_PREFIX);
+  }
+
+  private static List<Long> list(FileSystem fs, Path dir, String prefix)
+      throws IOException {
+    List<Long> ids = new ArrayList<>();
+    if (!fs.exists(dir)) {
+      return ids;
+    }
+    for (FileStatus status : fs.listStatus(dir)) {
+      String name = status.getPath().getName();
+      if (name.startsWith(prefix) && !name.endsWith(TMP_SUFFIX)) {
+        try {
+          ids.add(Long.parseLong(name.substring(prefix.length())));
+        } catch (NumberFormatException e) {
+          LOG.warn("Unexpected file in metastore journal: " + status.getPath());
+        }
+      }
+    }
+    Collections.sort(ids);
+    return ids;
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.mover;
+
+import org.apache.hadoop.fs.StorageType;
+
+import java.util.List;
+
+/**
+ * Classes of block moves, in the order they are served.
+ */
+public enum MovePriority {
+  // To a storage type faster than any the block is on, e.g. hot data to SSD
+  PROMOTION,
+  // Any other move, e.g. cold data to ARCHIVE
+  DEMOTION;
+
+  /**
+   * StorageType is sorted from fast to slow.
+   * @param existing storage types the block is to be moved from
+   * @param expected storage types the block is to be moved to
+   */
+  public static MovePriority of(List<StorageType> existing,
+      List<StorageType> expected) {
+    int fastestExisting = Integer.MAX_VALUE;
+    for (StorageType t : existing) {
+      fastestExisting = Math.min(fastestExisting, t.ordinal());
+    }
+    for (StorageType t : expected) {
+      if (t.ordinal() < fastestExisting) {
+        return PROMOTION;
+      }
+    }
+    return DEMOTION;
+  }
+}
@@ -0,0 +1,300 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.mover;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.util.Time;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Admits block moves of all movers in the order of {@link MovePriority},
+ * then the length of the file, within the bandwidth of the datanodes and
+ * storage types involved. Part of each bandwidth is reserved for
+ * promotions so that they are not held back by demotions.
+ */
+public class MoveScheduler {
+  // Seconds the rate of moves is averaged over
+  static final int RATE_WINDOW = 10;
+  // Longest time to wait before checking again
+  private static final long MAX_WAIT = 100;
+
+  private final long datanodeBandwidth;
+  private final double reservedRatio;
+  private final Map<String, Budget> datanodeBudgets = new HashMap<>();
+  private final Map<StorageType, Budget> storageBudgets =
+      new EnumMap<>(StorageType.class);
+  private final TreeSet<Request> waiting = new TreeSet<>();
+  private final Map<MovePriority, MoveStats> stats =
+      new EnumMap<>(MovePriority.class);
+  private long nextSeq = 0;
+
+  public MoveScheduler(Configuration conf) {
+    this.datanodeBandwidth = conf.getLong(
+        SmartConfigureKeys.DFS_SSM_MOVER_DATANODE_BANDWIDTH_KEY,
+        SmartConfigureKeys.DFS_SSM_MOVER_DATANODE_BANDWIDTH_DEFAULT);
+    this.reservedRatio = conf.getFloat(
+        SmartConfigureKeys.DFS_SSM_MOVER_RESERVED_RATIO_KEY,
+        SmartConfigureKeys.DFS_SSM_MOVER_RESERVED_RATIO_DEFAULT);
+    for (StorageType t : StorageType.values()) {
+      long bandwidth = conf.getLong(
+          SmartConfigureKeys.DFS_SSM_MOVER_STORAGE_BANDWIDTH_PREFIX + t.name(),
+          0);
+      if (bandwidth > 0) {
+        storageBudgets.put(t, new Budget(bandwidth));
+      }
+    }
+    long now = Time.monotonicNow();
+    for (MovePriority p : MovePriority.values()) {
+      stats.put(p, new MoveStats(now));
+    }
+  }
+
+  /**
+   * Wait until the move of a block is allowed.
+   * @param fileLength length of the file the block belongs to
+   * @param bytes length of the block
+   */
+  public synchronized void acquire(MovePriority priority, long fileLength,
+      DatanodeInfo source, DatanodeInfo target, StorageType targetType,
+      long bytes) throws InterruptedException {
+    Request request = new Request(priority, fileLength, nextSeq++,
+        getBudgets(source, target, targetType));
+    waiting.add(request);
+    try {
+      long wait;
+      while ((wait = tryTake(request, bytes)) > 0) {
+        wait(Math.min(wait, MAX_WAIT));
+      }
+    } finally {
+      waiting.remove(request);
+      notifyAll();
+    }
+    stats.get(priority).add(bytes, Time.monotonicNow());
+  }
+
+  private List<Budget> getBudgets(DatanodeInfo source, DatanodeInfo target,
+      StorageType targetType) {
+    List<Budget> budgets = new ArrayList<>();
+    if (datanodeBandwidth > 0) {
+      budgets.add(getDatanodeBudget(source));
+      if (!source.getDatanodeUuid().equals(target.getDatanodeUuid())) {
+        budgets.add(getDatanodeBudget(target));
+      }
+    }
+    Budget storageBudget = storageBudgets.get(targetType);
+    if (storageBudget != null) {
+      budgets.add(storageBudget);
+    }
+    return budgets;
+  }
+
+  private Budget getDatanodeBudget(DatanodeInfo datanode) {
+    Budget budget = datanodeBudgets.get(datanode.getDatanodeUuid());
+    if (budget == null) {
+      budget = new Budget(datanodeBandwidth);
+      datanodeBudgets.put(datanode.getDatanodeUuid(), budget);
+    }
+    return budget;
+  }
+
+  /**
+   * @return ms to wait before trying again, 0 if the bytes are taken
+   */
+  private long tryTake(Request request, long bytes) {
+    // Requests served before it go first if they use the same bandwidth
+    for (Request r : waiting.headSet(request)) {
+      if (r.sharesBudget(request)) {
+        return MAX_WAIT;
+      }
+    }
+    long now = Time.monotonicNow();
+    boolean promotion = request.priority == MovePriority.PROMOTION;
+    long wait = 0;
+    for (Budget budget : request.budgets) {
+      wait = Math.max(wait, budget.getWait(promotion, now));
+    }
+    if (wait > 0) {
+      return wait;
+    }
+    for (Budget budget : request.budgets) {
+      budget.take(bytes);
+    }
+    return 0;
+  }
+
+  /**
+   * Number of moves of the priority waiting to be admitted.
+   */
+  public synchronized int getQueueDepth(MovePriority priority) {
+    int depth = 0;
+    for (Request r : waiting) {
+      if (r.priority == priority) {
+        depth++;
+      }
+    }
+    return depth;
+  }
+
+  /**
+   * Bytes of the moves admitted since start.
+   */
+  public synchronized long getMovedBytes(MovePriority priority) {
+    return stats.get(priority).totalBytes;
+  }
+
+  /**
+   * Bytes of the moves admitted per second, over the last
+   * {@link #RATE_WINDOW} seconds.
+   */
+  public synchronized double getMovedBytesPerSecond(MovePriority priority) {
+    return stats.get(priority).getRate(Time.monotonicNow());
+  }
+
+  public synchronized String getReport() {
+    StringBuilder sb = new StringBuilder();
+    for (MovePriority p : MovePriority.values()) {
+      if (sb.length() > 0) {
+        sb.append(", ");
+      }
+      sb.append(String.format("%s: %.0f B/s, %d waiting", p,
+          getMovedBytesPerSecond(p), getQueueDepth(p)));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Bytes allowed to move, refilled at the bandwidth up to one second of
+   * it. A move may take more than left, the debt is paid before the next.
+   */
+  private class Budget {
+    private final long bandwidth;
+    private double bytes;
+    private long lastRefill;
+
+    Budget(long bandwidth) {
+      this.bandwidth = bandwidth;
+      this.bytes = bandwidth;
+      this.lastRefill = Time.monotonicNow();
+    }
+
+    /**
+     * @return ms until a move is allowed, 0 if it is allowed now
+     */
+    long getWait(boolean promotion, long now) {
+      bytes = Math.min(bandwidth,
+          bytes + (now - lastRefill) * (double) bandwidth / 1000);
+      lastRefill = now;
+      // The reserved part is left for promotions
+      double threshold = promotion ? 0 : bandwidth * reservedRatio;
+      if (bytes > threshold) {
+        return 0;
+      }
+      return (long) Math.ceil((threshold - bytes) * 1000 / bandwidth) + 1;
+    }
+
+    void take(long n) {
+      bytes -= n;
+    }
+  }
+
+  private static class Request implements Comparable<Request> {
+    private final MovePriority priority;
+    private final long fileLength;
+    private final long seq;
+    private final List<Budget> budgets;
+
+    Request(MovePriority priority, long fileLength, long seq,
+        List<Budget> budgets) {
+      this.priority = priority;
+      this.fileLength = fileLength;
+      this.seq = seq;
+      this.budgets = budgets;
+    }
+
+    boolean sharesBudget(Request other) {
+      for (Budget budget : budgets) {
+        if (other.budgets.contains(budget)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int compareTo(Request other) {
+      if (priority != other.priority) {
+        return priority.compareTo(other.priority);
+      }
+      if (fileLength != other.fileLength) {
+        return fileLength < other.fileLength ? -1 : 1;
+      }
+      return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+    }
+  }
+
+  /**
+   * Bytes moved in each of the last seconds.
+   */
+  private static class MoveStats {
+    private final long[] bytes = new long[RATE_WINDOW];
+    private long second;
+    private long totalBytes = 0;
+
+    MoveStats(long now) {
+      this.second = now / 1000;
+    }
+
+    void add(long n, long now) {
+      advance(now);
+      bytes[(int) (second % RATE_WINDOW)] += n;
+      totalBytes += n;
+    }
+
+    double getRate(long now) {
+      advance(now);
+      long sum = 0;
+      for (long b : bytes) {
+        sum += b;
+      }
+      return (double) sum / RATE_WINDOW;
+    }
+
+    private void advance(long now) {
+      long current = now / 1000;
+      if (current - second >= RATE_WINDOW) {
+        Arrays.fill(bytes, 0);
+        second = current;
+        return;
+      }
+      while (second < current) {
+        second++;
+        bytes[(int) (second % RATE_WINDOW)] = 0;
+      }
+    }
+  }
+}
@@ -83,6 +83,7 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
@@ -152,9 +153,17 @@ private List<Dispatcher.DDatanode.StorageGroup> getTargetStorages(StorageType t)
   private final BlockStoragePolicy[] blockStoragePolicies;
 
   private MoverStatus moverStatus;
+  // Null if moves are not scheduled along with other movers
+  private final MoveScheduler moveScheduler;
 
   Mover(NameNodeConnector nnc, Configuration conf, AtomicInteger retryCount,
         Map<Long, Set<DatanodeInfo>> excludedPinnedBlocks, MoverStatus status) {
+    this(nnc, conf, retryCount, excludedPinnedBlocks, status, null);
+  }
+
+  Mover(NameNodeConnector nnc, Configuration conf, AtomicInteger retryCount,
+        Map<Long, Set<DatanodeInfo>> excludedPinnedBlocks, MoverStatus status,
+        MoveScheduler moveScheduler) {
     final long movedWinWidth = conf.getLong(
             DFSConfigKeys.DFS_MOVER_MOVEDWINWIDTH_KEY,
             DFSConfigKeys.DFS_MOVER_MOVEDWINWIDTH_DEFAULT);
@@ -180,6 +189,7 @@ Collections.<String> emptySet(), movedWinWidth, moverThreads, 0,
             BlockStoragePolicySuite.ID_BIT_LENGTH];
     this.excludedPinnedBlocks = excludedPinnedBlocks;
     this.moverStatus = status;
+    this.moveScheduler = moveScheduler;
   }
 
   void init() throws IOException {
@@ -276,6 +286,9 @@ class Processor {
     private final DFSClient dfs;
     private final List<String> snapshottableDirs = new ArrayList<String>();
     private int movedBlocks = 0;
+    // Of the file and the block being processed
+    private long fileLength = 0;
+    private MovePriority priority = MovePriority.DEMOTION;
 
     Processor() {
       dfs = dispatcher.getDistributedFileSystem().getClient();
@@ -368,7 +381,7 @@ private void processPath(String fullPath, Result result) {
         if (children == null) {
           return;
         }
-        for (HdfsFileStatus child : children.getPartialListing()) {
+        for (HdfsFileStatus child : sortBySize(children.getPartialListing())) {
           processRecursively(fullPath, child, result);
         }
         if (children.hasMore()) {
@@ -379,6 +392,24 @@ private void processPath(String fullPath, Result result) {
       }
     }
 
+    /**
+     * Files of a listing from small to large, then directories, so that
+     * small files are done early.
+     */
+    private List<HdfsFileStatus> sortBySize(HdfsFileStatus[] listing) {
+      List<HdfsFileStatus> sorted = new ArrayList<>(Arrays.asList(listing));
+      Collections.sort(sorted, new Comparator<HdfsFileStatus>() {
+        @Override
+        public int compare(HdfsFileStatus a, HdfsFileStatus b) {
+          if (a.isDir() != b.isDir()) {
+            return a.isDir() ? 1 : -1;
+          }
+          return Long.compare(a.getLen(), b.getLen());
+        }
+      });
+      return sorted;
+    }
+
     /** @return whether the migration requires next round */
     private void processRecursively(String parent, HdfsFileStatus status,
                                     Result result) {
@@ -428,6 +459,7 @@ private void processFile(String fullPath, HdfsLocatedFileStatus status,
       }
       List<StorageType> types = policy.chooseStorageTypes(
               status.getReplication());
+      fileLength = status.getLen();
 
       final ErasureCodingPolicy ecPolicy = status.getErasureCodingPolicy();
       final LocatedBlocks locatedBlocks = status.getBlockLocations();
@@ -457,6 +489,7 @@ private void processFile(String fullPath, HdfsLocatedFileStatus status,
         final StorageTypeDiff diff = new StorageTypeDiff(types,
                 lb.getStorageTypes());
         if (!diff.removeOverlap(true)) {
+          priority = MovePriority.of(diff.existing, diff.expected);
           if (scheduleMoves4Block(diff, lb, ecPolicy)) {
             movedBlocks += 1;
             result.updateHasRemaining(diff.existing.size() > 1
@@ -547,13 +580,33 @@ boolean chooseTargetInSameNode(Dispatcher.DBlock db, Dispatcher.Source source,
         }
         final Dispatcher.PendingMove pm = source.addPendingMove(db, target);
         if (pm != null) {
-          dispatcher.executePendingMove(pm);
+          executePendingMove(pm, db, source, target);
           return true;
         }
       }
       return false;
     }
 
+    /**
+     * Execute the move once admitted by the scheduler shared by movers.
+     */
+    private void executePendingMove(Dispatcher.PendingMove pm,
+        Dispatcher.DBlock db, Dispatcher.Source source,
+        Dispatcher.DDatanode.StorageGroup target) {
+      if (moveScheduler != null) {
+        try {
+          moveScheduler.acquire(priority, fileLength, source.getDatanodeInfo(),
+              target.getDatanodeInfo(), target.getStorageType(),
+              db.getNumBytes(source));
+        } catch (InterruptedException e) {
+          // The move is already added to the dispatcher, let it go and
+          // leave the mover to stop on the interrupt
+          Thread.currentThread().interrupt();
+        }
+      }
+      dispatcher.executePendingMove(pm);
+    }
+
     boolean chooseTarget(Dispatcher.DBlock db, Dispatcher.Source source,
                          List<StorageType> targetTypes, Matcher matcher) {
       final NetworkTopology cluster = dispatcher.getCluster();
@@ -565,7 +618,7 @@ boolean chooseTarget(Dispatcher.DBlock db, Dispatcher.Source source,
                   target.getDatanodeInfo())) {
             final Dispatcher.PendingMove pm = source.addPendingMove(db, target);
             if (pm != null) {
-              dispatcher.executePendingMove(pm);
+              executePendingMove(pm, db, source, target);
               return true;
             }
           }
@@ -686,7 +739,8 @@ static private void calculateTotalSizeInPaths(FileSystem fs,
   }
 
   static int run(Map<URI, List<Path>> namenodes, Configuration conf,
-      MoverStatus status) throws IOException, InterruptedException {
+      MoverStatus status, MoveScheduler moveScheduler)
+      throws IOException, InterruptedException {
     final long sleeptime =
             conf.getTimeDuration(DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_KEY,
                     DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_DEFAULT,
@@ -725,7 +779,7 @@ static int run(Map<URI, List<Path>> namenodes, Configuration conf,
         while (iter.hasNext()) {
           NameNodeConnector nnc = iter.next();
           final Mover m = new Mover(nnc, conf, retryCount,
-                  excludedPinnedBlocks, status);
+                  excludedPinnedBlocks, status, moveScheduler);
           final ExitStatus r = m.run();
 
           if (r == ExitStatus.SUCCESS) {
@@ -765,12 +819,21 @@ public static class Cli extends Configured implements Tool {
             + "\n\t-f <local file>\ta local file containing a list of HDFS files/dirs to migrate.";
 
     private MoverStatus status;
+    private MoveScheduler moveScheduler;
 
     public Cli() {
       status = new MoverStatus(null);
     }
 
     public Cli(Status status) {
+      this(status, null);
+    }
+
+    /**
+     * @param moveScheduler to admit moves along with other movers
+     */
+    public Cli(Status status, MoveScheduler moveScheduler) {
+      this.moveScheduler = moveScheduler;
       if (status instanceof MoverStatus) {
         this.status = (MoverStatus)status;
       }
@@ -883,7 +946,7 @@ public int run(String[] args) throws Exception {
 
       try {
         final Map<URI, List<Path>> map = getNameNodePathsToMove(conf, args);
-        return Mover.run(map, conf, status);
+        return Mover.run(map, conf, status, moveScheduler);
       } catch (IOException e) {
         System.out.println(e + ".  Exiting ...");
         return ExitStatus.IO_EXCEPTION.getExitCode();
@@ -35,6 +35,8 @@ public class MoverPool {
 
   private static MoverPool instance = new MoverPool();
   private Configuration conf = new HdfsConfiguration();
+  // Shared by movers to admit their block moves
+  private MoveScheduler moveScheduler = new MoveScheduler(conf);
 
   synchronized public static MoverPool getInstance() {
     return instance;
@@ -55,6 +57,7 @@ private MoverPool() {
    */
   public void init(Configuration configuration) {
     conf = configuration;
+    moveScheduler = new MoveScheduler(conf);
     LOG.info("MoverPool is successfully started");
   }
 
@@ -80,7 +83,7 @@ class MoverProcess extends Thread {
     private UUID id;
 
     public MoverProcess(Status status, String path) {
-      this.moverClient = new Mover.Cli(status);
+      this.moverClient = new Mover.Cli(status, moveScheduler);
       this.path = path;
       this.id = status.getId();
     }
@@ -95,13 +98,18 @@ public void run() {
         LOG.info("Mover {} : Start mover at {}", id, path);
         int result = ToolRunner.run(conf, moverClient,
             new String[] {"-p", path});
-        LOG.info("Mover {} : Finish mover at {}", id, path);
+        LOG.info("Mover {} : Finish mover at {}, moves: {}", id, path,
+            moveScheduler.getReport());
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
     }
   }
 
+  public MoveScheduler getMoveScheduler() {
+    return moveScheduler;
+  }
+
   /**
    * Get the status of a certain moving event.
    * @param id the UUID of the event
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.protocol;
+
+import org.apache.hadoop.smart.sql.CommandInfo;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reply to an agent heartbeat. Every command handed out is tagged with the
+ * epoch of its dispatch, the agent presents the epoch when it reports
+ * about the command.
+ */
+public class AgentHeartbeatResponse {
+  private final Map<Long, CommandInfo> commands;
+  private final List<Long> cancelled;
+
+  public AgentHeartbeatResponse(Map<Long, CommandInfo> commands,
+      List<Long> cancelled) {
+    this.commands = commands;
+    this.cancelled = cancelled;
+  }
+
+  /**
+   * @return commands to execute keyed by their dispatch epochs
+   */
+  public Map<Long, CommandInfo> getCommands() {
+    return commands;
+  }
+
+  /**
+   * @return epochs of the commands the agent has to stop, they are not
+   *         its own anymore
+   */
+  public List<Long> getCancelled() {
+    return cancelled;
+  }
+}
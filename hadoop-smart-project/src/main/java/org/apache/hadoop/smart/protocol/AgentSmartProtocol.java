@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.protocol;
+
+import org.apache.hadoop.smart.CommandState;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Protocol between SSM server and the agents executing its commands.
+ */
+public interface AgentSmartProtocol {
+
+  /**
+   * Register an agent, it has to register again if a heartbeat fails.
+   * @param host where the agent runs, used to dispatch commands close
+   *             to the data
+   * @param numSlots number of commands the agent runs at the same time
+   * @return id of the agent
+   * @throws IOException
+   */
+  long registerAgent(String host, int numSlots) throws IOException;
+
+  /**
+   * Report the commands finished since last heartbeat and get new ones.
+   * Commands are identified by the epochs they were dispatched with, a
+   * report about a command dispatched again since then is ignored.
+   * @param agentId
+   * @param finished final states of the finished commands by epoch
+   * @param running epochs of the commands still running on the agent
+   * @param numFreeSlots max number of commands returned
+   * @return commands to execute, paths are local to the namespace given
+   *         by parameter '_NAMENODE_' if any, and the running commands
+   *         to stop
+   * @throws IOException if the agent is not registered or has expired
+   */
+  AgentHeartbeatResponse agentHeartbeat(long agentId,
+      Map<Long, CommandState> finished, Set<Long> running, int numFreeSlots)
+      throws IOException;
+}
@@ -18,12 +18,15 @@
 package org.apache.hadoop.smart.protocol;
 
 import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.rule.RuleEstimate;
 import org.apache.hadoop.smart.rule.RuleInfo;
 import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.CommandFilter;
 import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Map;
 
 public interface ClientSmartProtocol {
 
@@ -38,6 +41,15 @@ public interface ClientSmartProtocol {
    */
   void checkRule(String rule) throws IOException;
 
+  /**
+   * Estimate the files matched and the commands generated by a rule,
+   * evaluated over a sample of the files.
+   * @param rule
+   * @return
+   * @throws IOException if not valid
+   */
+  RuleEstimate estimateRule(String rule) throws IOException;
+
   /**
    * Get information about the given rule.
    * @param ruleID
@@ -47,12 +59,15 @@ public interface ClientSmartProtocol {
   RuleInfo getRuleInfo(long ruleID) throws IOException;
 
   /**
-   * List rules in SSM.
-   * TODO: maybe we can return only info about rules in certain state.
+   * List rules in SSM, one page at a time.
+   * @param pageToken {@link ListingPage#FIRST_PAGE} or the token returned
+   *                  with the previous page
+   * @param limit max number of rules returned, 0 for the server default
    * @return
    * @throws IOException
    */
-  List<RuleInfo> listRulesInfo() throws IOException;
+  ListingPage<RuleInfo> listRulesInfo(long pageToken, int limit)
+      throws IOException;
 
   /**
    * Delete a rule in SSM. if dropPendingCommands equals false then the rule
@@ -79,13 +94,25 @@ public interface ClientSmartProtocol {
   CommandInfo getCommandInfo(long commandID) throws IOException;
 
   /**
-   * List commands in SSM.
-   * @param ruleID
-   * @param commandState
-   * @return All List<CommandInfo> commandInfos that satisfy requirement
+   * List commands in SSM matching the filter, one page at a time.
+   * @param filter null to list all commands
+   * @param pageToken {@link ListingPage#FIRST_PAGE} or the token returned
+   *                  with the previous page
+   * @param limit max number of commands returned, 0 for the server default
+   * @return
    * @throws IOException
    */
-  List<CommandInfo> listCommandInfo(long ruleID, CommandState commandState) throws IOException;
+  ListingPage<CommandInfo> listCommandInfo(CommandFilter filter,
+      long pageToken, int limit) throws IOException;
+
+  /**
+   * Count commands matching the filter in each state.
+   * @param filter null to count all commands
+   * @return
+   * @throws IOException
+   */
+  Map<CommandState, Long> getCommandsSummary(CommandFilter filter)
+      throws IOException;
 
   /**
    * Get information about the given command.
@@ -112,4 +139,12 @@ public interface ClientSmartProtocol {
    */
   void deleteCommand(long commandID) throws IOException;
 
+  /**
+   * Get where a compacted small file is stored.
+   * @param path original path of the file
+   * @return null if the file is not compacted
+   * @throws IOException
+   */
+  CompactFileInfo getCompactFileInfo(String path) throws IOException;
+
 }
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.protocol;
+
+import java.util.List;
+
+/**
+ * One page of a listing. The next page is requested with
+ * {@link #getNextPageToken()} until {@link #hasMore()} turns false.
+ */
+public class ListingPage<E> {
+  public static final long FIRST_PAGE = -1L;
+
+  private final List<E> entries;
+  private final boolean hasMore;
+  private final long nextPageToken;
+
+  public ListingPage(List<E> entries, boolean hasMore, long nextPageToken) {
+    this.entries = entries;
+    this.hasMore = hasMore;
+    this.nextPageToken = nextPageToken;
+  }
+
+  public List<E> getEntries() {
+    return entries;
+  }
+
+  public boolean hasMore() {
+    return hasMore;
+  }
+
+  public long getNextPageToken() {
+    return nextPageToken;
+  }
+}
@@ -18,19 +18,30 @@
 package org.apache.hadoop.smart.protocol;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSInputStream;
 import org.apache.hadoop.ipc.ProtobufRpcEngine;
 import org.apache.hadoop.ipc.RPC;
 import org.apache.hadoop.smart.CommandState;
 import org.apache.hadoop.smart.SmartConfigureKeys;
 import org.apache.hadoop.smart.protocolPB.ClientSmartProtocolClientSideTranslatorPB;
 import org.apache.hadoop.smart.protocolPB.ClientSmartProtocolPB;
+import org.apache.hadoop.smart.rule.RuleEstimate;
 import org.apache.hadoop.smart.rule.RuleInfo;
 import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.CommandFilter;
 import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 public class SmartClient implements java.io.Closeable, ClientSmartProtocol {
   final static long VERSION = 1;
@@ -86,14 +97,46 @@ public long submitRule(String rule, RuleState initState)
     return ssm.submitRule(rule, initState);
   }
 
+  @Override
+  public RuleEstimate estimateRule(String rule) throws IOException {
+    checkOpen();
+    return ssm.estimateRule(rule);
+  }
+
   public RuleInfo getRuleInfo(long id) throws IOException {
     checkOpen();
     return ssm.getRuleInfo(id);
   }
 
+  /**
+   * All rules in SSM, fetched page by page.
+   */
   public List<RuleInfo> listRulesInfo() throws IOException {
+    List<RuleInfo> ret = new ArrayList<>();
+    RemoteIterator<RuleInfo> it = listRules();
+    while (it.hasNext()) {
+      ret.add(it.next());
+    }
+    return ret;
+  }
+
+  @Override
+  public ListingPage<RuleInfo> listRulesInfo(long pageToken, int limit)
+      throws IOException {
     checkOpen();
-    return ssm.listRulesInfo();
+    return ssm.listRulesInfo(pageToken, limit);
+  }
+
+  /**
+   * Iterate over rules, pages are fetched lazily.
+   */
+  public RemoteIterator<RuleInfo> listRules() {
+    return new PagedIterator<RuleInfo>() {
+      @Override
+      ListingPage<RuleInfo> fetch(long pageToken) throws IOException {
+        return listRulesInfo(pageToken, 0);
+      }
+    };
   }
 
   @Override
@@ -122,8 +165,30 @@ public CommandInfo getCommandInfo(long commandID) throws IOException {
   }
 
   @Override
-  public List<CommandInfo> listCommandInfo(long rid, CommandState commandState) throws IOException {
-    return null;
+  public ListingPage<CommandInfo> listCommandInfo(CommandFilter filter,
+      long pageToken, int limit) throws IOException {
+    checkOpen();
+    return ssm.listCommandInfo(filter, pageToken, limit);
+  }
+
+  /**
+   * Iterate over commands matching the filter, pages are fetched lazily.
+   */
+  public RemoteIterator<CommandInfo> listCommands(final CommandFilter filter,
+      final int pageSize) {
+    return new PagedIterator<CommandInfo>() {
+      @Override
+      ListingPage<CommandInfo> fetch(long pageToken) throws IOException {
+        return listCommandInfo(filter, pageToken, pageSize);
+      }
+    };
+  }
+
+  @Override
+  public Map<CommandState, Long> getCommandsSummary(CommandFilter filter)
+      throws IOException {
+    checkOpen();
+    return ssm.getCommandsSummary(filter);
   }
 
   @Override
@@ -137,4 +202,116 @@ public void disableCommand(long commandID) throws IOException {
   @Override
   public void deleteCommand(long commandID) throws IOException {
   }
+
+  @Override
+  public CompactFileInfo getCompactFileInfo(String path) throws IOException {
+    checkOpen();
+    return ssm.getCompactFileInfo(path);
+  }
+
+  /**
+   * Open a file for read, files packed by compaction are read from their
+   * container.
+   */
+  public InputStream open(DFSClient dfsClient, String path)
+      throws IOException {
+    CompactFileInfo info;
+    try {
+      return dfsClient.open(path);
+    } catch (FileNotFoundException e) {
+      // Compaction may have deleted the original file
+      info = getCompactFileInfo(path);
+      if (info == null) {
+        throw e;
+      }
+    }
+    return new CompactFileInputStream(
+        dfsClient.open(info.getContainerPath()), info);
+  }
+
+  /**
+   * Iterator over a paged listing, the next page is requested once the
+   * current one is consumed.
+   */
+  private static abstract class PagedIterator<E> implements RemoteIterator<E> {
+    private ListingPage<E> page;
+    private int index = 0;
+
+    abstract ListingPage<E> fetch(long pageToken) throws IOException;
+
+    @Override
+    public boolean hasNext() throws IOException {
+      // Pages may be empty when entries are filtered out on the server
+      while (page == null
+          || (index >= page.getEntries().size() && page.hasMore())) {
+        page = fetch(page == null
+            ? ListingPage.FIRST_PAGE : page.getNextPageToken());
+        index = 0;
+      }
+      return index < page.getEntries().size();
+    }
+
+    @Override
+    public E next() throws IOException {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.getEntries().get(index++);
+    }
+  }
+
+  /**
+   * Stream over the range of a container holding one compacted file.
+   */
+  private static class CompactFileInputStream extends InputStream {
+    private final DFSInputStream in;
+    private final long offset;
+    private final long length;
+    private long pos = 0;
+
+    CompactFileInputStream(DFSInputStream in, CompactFileInfo info) {
+      this.in = in;
+      this.offset = info.getOffset();
+      this.length = info.getLength();
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (pos >= length) {
+        return -1;
+      }
+      int n = in.read(offset + pos, b, off,
+          (int) Math.min(len, length - pos));
+      if (n > 0) {
+        pos += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, length - pos));
+      pos += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, length - pos);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
 }
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.protocolPB;
+
+import com.google.protobuf.ServiceException;
+import org.apache.hadoop.ipc.RPC;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.AgentHeartbeatRequestProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.AgentHeartbeatResponseProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.CommandStatusProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.DispatchedCommandProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.RegisterAgentRequestProto;
+import org.apache.hadoop.smart.protocol.AgentHeartbeatResponse;
+import org.apache.hadoop.smart.protocol.AgentSmartProtocol;
+import org.apache.hadoop.smart.sql.CommandInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class AgentSmartProtocolClientSideTranslatorPB implements
+    java.io.Closeable, AgentSmartProtocol {
+  private AgentSmartProtocolPB rpcProxy;
+
+  public AgentSmartProtocolClientSideTranslatorPB(AgentSmartProtocolPB proxy) {
+    this.rpcProxy = proxy;
+  }
+
+  @Override
+  public long registerAgent(String host, int numSlots) throws IOException {
+    try {
+      RegisterAgentRequestProto req = RegisterAgentRequestProto.newBuilder()
+          .setHost(host).setNumSlots(numSlots).build();
+      return rpcProxy.registerAgent(null, req).getAgentId();
+    } catch (ServiceException e) {
+      throw PBHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public AgentHeartbeatResponse agentHeartbeat(long agentId,
+      Map<Long, CommandState> finished, Set<Long> running, int numFreeSlots)
+      throws IOException {
+    try {
+      AgentHeartbeatRequestProto.Builder builder =
+          AgentHeartbeatRequestProto.newBuilder().setAgentId(agentId)
+              .setNumFreeSlots(numFreeSlots).addAllRunning(running);
+      for (Map.Entry<Long, CommandState> entry : finished.entrySet()) {
+        builder.addFinished(CommandStatusProto.newBuilder()
+            .setEpoch(entry.getKey()).setState(entry.getValue().getValue()));
+      }
+      AgentHeartbeatResponseProto r =
+          rpcProxy.agentHeartbeat(null, builder.build());
+      Map<Long, CommandInfo> commands = new LinkedHashMap<>();
+      for (DispatchedCommandProto proto : r.getCommandsList()) {
+        commands.put(proto.getEpoch(), PBHelper.convert(proto.getCommand()));
+      }
+      return new AgentHeartbeatResponse(commands,
+          new ArrayList<>(r.getCancelledList()));
+    } catch (ServiceException e) {
+      throw PBHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    RPC.stopProxy(rpcProxy);
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.protocolPB;
+
+import com.google.protobuf.RpcController;
+import com.google.protobuf.ServiceException;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.protocol.AgentSmartProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.AgentHeartbeatRequestProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.AgentHeartbeatResponseProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.CommandStatusProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.DispatchedCommandProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.RegisterAgentRequestProto;
+import org.apache.hadoop.smart.protocol.AgentSmartProto.RegisterAgentResponseProto;
+import org.apache.hadoop.smart.protocol.AgentHeartbeatResponse;
+import org.apache.hadoop.smart.protocol.AgentSmartProtocol;
+import org.apache.hadoop.smart.sql.CommandInfo;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class AgentSmartProtocolServerSideTranslatorPB implements
+    AgentSmartProtocolPB, AgentSmartProto.agentProtoService.BlockingInterface {
+  final private AgentSmartProtocol server;
+
+  public AgentSmartProtocolServerSideTranslatorPB(AgentSmartProtocol server) {
+    this.server = server;
+  }
+
+  @Override
+  public RegisterAgentResponseProto registerAgent(RpcController controller,
+      RegisterAgentRequestProto req) throws ServiceException {
+    try {
+      long agentId = server.registerAgent(req.getHost(), req.getNumSlots());
+      return RegisterAgentResponseProto.newBuilder()
+          .setAgentId(agentId).build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
+  @Override
+  public AgentHeartbeatResponseProto agentHeartbeat(RpcController controller,
+      AgentHeartbeatRequestProto req) throws ServiceException {
+    try {
+      Map<Long, CommandState> finished = new LinkedHashMap<>();
+      for (CommandStatusProto status : req.getFinishedList()) {
+        finished.put(status.getEpoch(),
+            CommandState.fromValue(status.getState()));
+      }
+      Set<Long> running = new HashSet<>(req.getRunningList());
+      AgentHeartbeatResponse r = server.agentHeartbeat(req.getAgentId(),
+          finished, running, req.getNumFreeSlots());
+      AgentHeartbeatResponseProto.Builder builder =
+          AgentHeartbeatResponseProto.newBuilder();
+      for (Map.Entry<Long, CommandInfo> entry : r.getCommands().entrySet()) {
+        builder.addCommands(DispatchedCommandProto.newBuilder()
+            .setEpoch(entry.getKey())
+            .setCommand(PBHelper.convert(entry.getValue())));
+      }
+      builder.addAllCancelled(r.getCancelled());
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+}
@@ -22,25 +22,40 @@
 
 
 import org.apache.hadoop.smart.protocol.ClientSmartProto.CheckRuleRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.EstimateRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.GetRuleInfoRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.GetRuleInfoResponseProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.GetServiceStateRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.CommandInfoProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.CommandStateCountProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCommandsSummaryRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.ListCommandsInfoRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.ListCommandsInfoResponseProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.ListRulesInfoRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.ListRulesInfoResponseProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.RuleInfoProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.SubmitRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.DeleteRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.ActivateRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.DisableRuleRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCompactFileInfoRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCompactFileInfoResponseProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProtocol;
+import org.apache.hadoop.smart.protocol.ListingPage;
 import org.apache.hadoop.smart.protocol.SmartServiceState;
+import org.apache.hadoop.smart.rule.RuleEstimate;
 import org.apache.hadoop.smart.rule.RuleInfo;
 import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.CommandFilter;
 import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
 import org.apache.hadoop.smart.CommandState;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ClientSmartProtocolClientSideTranslatorPB implements
     java.io.Closeable, ClientSmartProtocol {
@@ -97,20 +112,29 @@ public void checkRule(String rule) throws IOException {
   }
 
   @Override
-  public List<RuleInfo> listRulesInfo() throws IOException {
+  public RuleEstimate estimateRule(String rule) throws IOException {
+    try {
+      EstimateRuleRequestProto req = EstimateRuleRequestProto.newBuilder()
+          .setRule(rule).build();
+      return PBHelper.convert(rpcProxy.estimateRule(null, req).getResult());
+    } catch (ServiceException e) {
+      throw PBHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public ListingPage<RuleInfo> listRulesInfo(long pageToken, int limit)
+      throws IOException {
     try {
       ListRulesInfoRequestProto req = ListRulesInfoRequestProto.newBuilder()
-          .build();
-      List<RuleInfoProto> infoProtos =
-          rpcProxy.listRulesInfo(null, req).getRulesInfoList();
-      if (infoProtos == null) {
-        return null;
-      }
-      List<RuleInfo> ret = new ArrayList<>();
-      for (RuleInfoProto infoProto : infoProtos) {
+          .setPageToken(pageToken).setLimit(limit).build();
+      ListRulesInfoResponseProto r = rpcProxy.listRulesInfo(null, req);
+      List<RuleInfo> ret = new ArrayList<>(r.getRulesInfoCount());
+      for (RuleInfoProto infoProto : r.getRulesInfoList()) {
         ret.add(PBHelper.convert(infoProto));
       }
-      return ret;
+      return new ListingPage<>(ret, r.hasNextPageToken(),
+          r.getNextPageToken());
     } catch (ServiceException e) {
       throw PBHelper.getRemoteException(e);
     }
@@ -162,8 +186,46 @@ public CommandInfo getCommandInfo(long commandID) throws IOException {
   }
 
   @Override
-  public List<CommandInfo> listCommandInfo(long rid, CommandState commandState) throws IOException {
-    return null;
+  public ListingPage<CommandInfo> listCommandInfo(CommandFilter filter,
+      long pageToken, int limit) throws IOException {
+    ListCommandsInfoRequestProto.Builder builder =
+        ListCommandsInfoRequestProto.newBuilder()
+            .setPageToken(pageToken).setLimit(limit);
+    if (filter != null) {
+      builder.setFilter(PBHelper.convert(filter));
+    }
+    try {
+      ListCommandsInfoResponseProto r =
+          rpcProxy.listCommandsInfo(null, builder.build());
+      List<CommandInfo> ret = new ArrayList<>(r.getCommandsInfoCount());
+      for (CommandInfoProto infoProto : r.getCommandsInfoList()) {
+        ret.add(PBHelper.convert(infoProto));
+      }
+      return new ListingPage<>(ret, r.hasNextPageToken(),
+          r.getNextPageToken());
+    } catch (ServiceException e) {
+      throw PBHelper.getRemoteException(e);
+    }
+  }
+
+  @Override
+  public Map<CommandState, Long> getCommandsSummary(CommandFilter filter)
+      throws IOException {
+    GetCommandsSummaryRequestProto.Builder builder =
+        GetCommandsSummaryRequestProto.newBuilder();
+    if (filter != null) {
+      builder.setFilter(PBHelper.convert(filter));
+    }
+    try {
+      Map<CommandState, Long> ret = new HashMap<>();
+      for (CommandStateCountProto count : rpcProxy.getCommandsSummary(null,
+          builder.build()).getCountsList()) {
+        ret.put(CommandState.fromValue(count.getState()), count.getCount());
+      }
+      return ret;
+    } catch (ServiceException e) {
+      throw PBHelper.getRemoteException(e);
+    }
   }
 
   @Override
@@ -181,6 +243,19 @@ public void deleteCommand(long commandID) throws IOException {
 
   }
 
+  @Override
+  public CompactFileInfo getCompactFileInfo(String path) throws IOException {
+    GetCompactFileInfoRequestProto req = GetCompactFileInfoRequestProto
+        .newBuilder().setPath(path).build();
+    try {
+      GetCompactFileInfoResponseProto r =
+          rpcProxy.getCompactFileInfo(null, req);
+      return r.hasResult() ? PBHelper.convert(r.getResult()) : null;
+    } catch (ServiceException e) {
+      throw PBHelper.getRemoteException(e);
+    }
+  }
+
   /**
    * Closes this stream and releases any system resources associated
    * with it. If the stream is already closed then invoking this
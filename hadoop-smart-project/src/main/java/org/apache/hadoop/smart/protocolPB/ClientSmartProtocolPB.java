@@ -36,6 +36,10 @@
 import org.apache.hadoop.smart.protocol.ClientSmartProto.DeleteRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.ActivateRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.DisableRuleRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCommandsSummaryRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCommandsSummaryResponseProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.ListCommandsInfoRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.ListCommandsInfoResponseProto;
 
 @ProtocolInfo(protocolName = "org.apache.hadoop.ssm.protocolPB.ClientSmartProtocolPB",
     protocolVersion = 1)
@@ -65,4 +69,11 @@ ActivateRuleResponseProto activateRule(RpcController controller,
 
   DisableRuleResponseProto disableRule(RpcController controller,
       DisableRuleRequestProto req) throws ServiceException;
+
+  ListCommandsInfoResponseProto listCommandsInfo(RpcController controller,
+      ListCommandsInfoRequestProto req) throws ServiceException;
+
+  GetCommandsSummaryResponseProto getCommandsSummary(
+      RpcController controller, GetCommandsSummaryRequestProto req)
+      throws ServiceException;
 }
\ No newline at end of file
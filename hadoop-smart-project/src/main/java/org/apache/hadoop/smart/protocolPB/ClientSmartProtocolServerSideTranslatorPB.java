@@ -19,9 +19,12 @@
 
 import com.google.protobuf.RpcController;
 import com.google.protobuf.ServiceException;
+import org.apache.hadoop.smart.CommandState;
 import org.apache.hadoop.smart.protocol.ClientSmartProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.CheckRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.CheckRuleResponseProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.EstimateRuleRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.EstimateRuleResponseProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.GetRuleInfoRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.GetRuleInfoResponseProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.GetServiceStateRequestProto;
@@ -37,13 +40,25 @@
 import org.apache.hadoop.smart.protocol.ClientSmartProto.DeleteRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.ActivateRuleRequestProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.DisableRuleRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCompactFileInfoRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCompactFileInfoResponseProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.CommandStateCountProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCommandsSummaryRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.GetCommandsSummaryResponseProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.ListCommandsInfoRequestProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.ListCommandsInfoResponseProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProtocol;
+import org.apache.hadoop.smart.protocol.ListingPage;
 import org.apache.hadoop.smart.protocol.SmartServiceState;
+import org.apache.hadoop.smart.rule.RuleEstimate;
 import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class ClientSmartProtocolServerSideTranslatorPB implements
     ClientSmartProtocolPB, ClientSmartProto.protoService.BlockingInterface {
@@ -89,6 +104,18 @@ public CheckRuleResponseProto checkRule(RpcController controller,
     }
   }
 
+  @Override
+  public EstimateRuleResponseProto estimateRule(RpcController controller,
+      EstimateRuleRequestProto req) throws ServiceException {
+    try {
+      RuleEstimate estimate = server.estimateRule(req.getRule());
+      return EstimateRuleResponseProto.newBuilder()
+          .setResult(PBHelper.convert(estimate)).build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public GetRuleInfoResponseProto getRuleInfo(RpcController controller,
       GetRuleInfoRequestProto req) throws ServiceException {
@@ -105,13 +132,18 @@ public GetRuleInfoResponseProto getRuleInfo(RpcController controller,
   public ListRulesInfoResponseProto listRulesInfo(RpcController controller,
       ListRulesInfoRequestProto req) throws ServiceException {
     try {
-      List<RuleInfo> infos = server.listRulesInfo();
+      ListingPage<RuleInfo> page =
+          server.listRulesInfo(req.getPageToken(), req.getLimit());
       List<RuleInfoProto> infoProtos = new ArrayList<>();
-      for (RuleInfo info : infos) {
+      for (RuleInfo info : page.getEntries()) {
         infoProtos.add(PBHelper.convert(info));
       }
-      return ListRulesInfoResponseProto.newBuilder()
-          .addAllRulesInfo(infoProtos).build();
+      ListRulesInfoResponseProto.Builder builder =
+          ListRulesInfoResponseProto.newBuilder().addAllRulesInfo(infoProtos);
+      if (page.hasMore()) {
+        builder.setNextPageToken(page.getNextPageToken());
+      }
+      return builder.build();
     } catch (IOException e) {
       throw new ServiceException(e);
     }
@@ -149,4 +181,63 @@ public DisableRuleResponseProto disableRule(RpcController controller,
       throw new ServiceException(e);
     }
   }
-}
\ No newline at end of file
+
+  @Override
+  public GetCompactFileInfoResponseProto getCompactFileInfo(
+      RpcController controller, GetCompactFileInfoRequestProto req)
+      throws ServiceException {
+    try {
+      CompactFileInfo info = server.getCompactFileInfo(req.getPath());
+      GetCompactFileInfoResponseProto.Builder builder =
+          GetCompactFileInfoResponseProto.newBuilder();
+      if (info != null) {
+        builder.setResult(PBHelper.convert(info));
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
+  @Override
+  public ListCommandsInfoResponseProto listCommandsInfo(
+      RpcController controller, ListCommandsInfoRequestProto req)
+      throws ServiceException {
+    try {
+      ListingPage<CommandInfo> page = server.listCommandInfo(
+          req.hasFilter() ? PBHelper.convert(req.getFilter()) : null,
+          req.getPageToken(), req.getLimit());
+      ListCommandsInfoResponseProto.Builder builder =
+          ListCommandsInfoResponseProto.newBuilder();
+      for (CommandInfo info : page.getEntries()) {
+        builder.addCommandsInfo(PBHelper.convert(info));
+      }
+      if (page.hasMore()) {
+        builder.setNextPageToken(page.getNextPageToken());
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
+  @Override
+  public GetCommandsSummaryResponseProto getCommandsSummary(
+      RpcController controller, GetCommandsSummaryRequestProto req)
+      throws ServiceException {
+    try {
+      Map<CommandState, Long> counts = server.getCommandsSummary(
+          req.hasFilter() ? PBHelper.convert(req.getFilter()) : null);
+      GetCommandsSummaryResponseProto.Builder builder =
+          GetCommandsSummaryResponseProto.newBuilder();
+      for (Map.Entry<CommandState, Long> entry : counts.entrySet()) {
+        builder.addCounts(CommandStateCountProto.newBuilder()
+            .setState(entry.getKey().getValue())
+            .setCount(entry.getValue()));
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+}
@@ -19,10 +19,20 @@
 
 
 import com.google.protobuf.ServiceException;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.CommandFilterProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.CommandInfoProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.CompactFileInfoProto;
+import org.apache.hadoop.smart.protocol.ClientSmartProto.RuleEstimateProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.RuleInfoProto;
 import org.apache.hadoop.smart.protocol.ClientSmartProto.RuleStateProto;
+import org.apache.hadoop.smart.rule.RuleEstimate;
 import org.apache.hadoop.smart.rule.RuleInfo;
 import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.CommandFilter;
+import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
 
 import java.io.IOException;
 
@@ -75,4 +85,81 @@ public static RuleInfo convert(RuleInfoProto proto) {
         .setNumCmdsGen(proto.getNumCmdsGen())
         .setState(convert(proto.getRulestateProto())).build();
   }
+
+  public static RuleEstimateProto convert(RuleEstimate estimate) {
+    return RuleEstimateProto.newBuilder()
+        .setTotalFiles(estimate.getTotalFiles())
+        .setSampledFiles(estimate.getSampledFiles())
+        .setMatchedFiles(estimate.getMatchedFiles())
+        .setMatchedBytes(estimate.getMatchedBytes())
+        .setCheckTime(estimate.getCheckTime())
+        .setChecksPerHour(estimate.getChecksPerHour())
+        .setCommandsPerHour(estimate.getCommandsPerHour()).build();
+  }
+
+  public static RuleEstimate convert(RuleEstimateProto proto) {
+    return new RuleEstimate(proto.getTotalFiles(), proto.getSampledFiles(),
+        proto.getMatchedFiles(), proto.getMatchedBytes(),
+        proto.getCheckTime(), proto.getChecksPerHour(),
+        proto.getCommandsPerHour());
+  }
+
+  public static CommandInfoProto convert(CommandInfo info) {
+    return CommandInfoProto.newBuilder().setCid(info.getCid())
+        .setRid(info.getRid())
+        .setActionType(info.getActionType().getValue())
+        .setState(info.getState().getValue())
+        .setParameters(info.getParameters())
+        .setGenerateTime(info.getGenerateTime())
+        .setStateChangedTime(info.getStateChangedTime()).build();
+  }
+
+  public static CommandInfo convert(CommandInfoProto proto) {
+    return new CommandInfo(proto.getCid(), proto.getRid(),
+        ActionType.fromValue(proto.getActionType()),
+        CommandState.fromValue(proto.getState()), proto.getParameters(),
+        proto.getGenerateTime(), proto.getStateChangedTime());
+  }
+
+  public static CommandFilterProto convert(CommandFilter filter) {
+    CommandFilterProto.Builder builder = CommandFilterProto.newBuilder();
+    if (filter.getRuleId() != -1) {
+      builder.setRuleId(filter.getRuleId());
+    }
+    if (filter.getState() != null) {
+      builder.setState(filter.getState().getValue());
+    }
+    if (filter.getActionType() != null) {
+      builder.setActionType(filter.getActionType().getValue());
+    }
+    if (filter.getFromTime() != -1) {
+      builder.setFromTime(filter.getFromTime());
+    }
+    if (filter.getToTime() != -1) {
+      builder.setToTime(filter.getToTime());
+    }
+    return builder.build();
+  }
+
+  public static CommandFilter convert(CommandFilterProto proto) {
+    return new CommandFilter(proto.hasRuleId() ? proto.getRuleId() : -1,
+        proto.hasState() ? CommandState.fromValue(proto.getState()) : null,
+        proto.hasActionType()
+            ? ActionType.fromValue(proto.getActionType()) : null,
+        proto.hasFromTime() ? proto.getFromTime() : -1,
+        proto.hasToTime() ? proto.getToTime() : -1);
+  }
+
+  public static CompactFileInfoProto convert(CompactFileInfo info) {
+    return CompactFileInfoProto.newBuilder().setFid(info.getFid())
+        .setPath(info.getPath())
+        .setContainerPath(info.getContainerPath())
+        .setOffset(info.getOffset())
+        .setLength(info.getLength()).build();
+  }
+
+  public static CompactFileInfo convert(CompactFileInfoProto proto) {
+    return new CompactFileInfo(proto.getFid(), proto.getPath(),
+        proto.getContainerPath(), proto.getOffset(), proto.getLength());
+  }
 }
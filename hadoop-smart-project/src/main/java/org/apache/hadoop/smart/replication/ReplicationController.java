@@ -0,0 +1,367 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.replication;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.smart.federation.NamespaceMount;
+import org.apache.hadoop.smart.sql.tables.FileHeatTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controls the replication of read-hot files.
+ *
+ * Requests to raise the replication of a file above its original value are
+ * admitted against a cluster-wide budget of extra replica bytes and paced
+ * by a re-replication bandwidth. Boosted files are brought back to their
+ * original replication once their heat falls below the cool threshold.
+ * A request stays queued until it is applied, rejected or has failed a few
+ * times, so that a failing RPC does not lose the requests behind it.
+ */
+public class ReplicationController {
+  // Times a request is tried before it is reported as failed
+  private static final int MAX_REQUEST_ATTEMPTS = 3;
+
+  private final NamespaceMount mount;
+  private final DFSClient client;
+  private final FileHeatTracker tracker;
+  private final long maxExtraBytes;
+  private final long bandwidth;
+  private final double coolHeat;
+
+  // path -> file with replication raised by SSM
+  private final Map<String, BoostedEntry> boosted = new HashMap<>();
+  // path -> latest request for the file
+  private final LinkedHashMap<String, Request> pendingRequests =
+      new LinkedHashMap<>();
+  private long extraBytes;
+  // Bytes allowed to be re-replicated, may go negative after a large file
+  private double tokens;
+  private long lastFlushTime;
+  private ScheduledFuture flushFuture;
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(ReplicationController.class);
+
+  /**
+   * @param tracker heat of files, boosted files are never cooled if null
+   * @param maxExtraBytes max bytes of replicas above original replication
+   * @param bandwidth bytes per second of re-replication
+   * @param coolHeat heat under which boosted files get original replication
+   */
+  public ReplicationController(DFSClient client, FileHeatTracker tracker,
+      long maxExtraBytes, long bandwidth, double coolHeat) {
+    this(NamespaceMount.root(client), tracker, maxExtraBytes, bandwidth,
+        coolHeat);
+  }
+
+  /**
+   * Control the replication of files in the namespace, paths are local to
+   * it and the heat of files is looked up by their global ids.
+   */
+  public ReplicationController(NamespaceMount mount, FileHeatTracker tracker,
+      long maxExtraBytes, long bandwidth, double coolHeat) {
+    this.mount = mount;
+    this.client = mount.getClient();
+    this.tracker = tracker;
+    this.maxExtraBytes = maxExtraBytes;
+    this.bandwidth = bandwidth;
+    this.coolHeat = coolHeat;
+  }
+
+  /**
+   * Request to set the replication of a file, applied on next flush.
+   */
+  public synchronized void setReplication(String path, short replication) {
+    addRequest(new Request(path, replication));
+  }
+
+  /**
+   * Request to set the replication of a file and wait until the request is
+   * applied.
+   *
+   * @throws IOException if the file was not admitted, does not exist or its
+   * replication could not be set
+   */
+  public synchronized void setReplicationAndWait(String path,
+      short replication) throws IOException, InterruptedException {
+    Request request = addRequest(new Request(path, replication));
+    while (!request.done) {
+      wait();
+    }
+    if (request.failure != null) {
+      throw new IOException("Failed to set replication of " + path + " to "
+          + replication + ": " + request.failure);
+    }
+  }
+
+  private Request addRequest(Request request) {
+    Request old = pendingRequests.remove(request.path);
+    if (old != null) {
+      complete(old, "superseded by a later request");
+    }
+    pendingRequests.put(request.path, request);
+    return request;
+  }
+
+  /**
+   * @param failure null if the request succeeded
+   */
+  private void complete(Request request, String failure) {
+    request.failure = failure;
+    request.done = true;
+    notifyAll();
+  }
+
+  private void dequeue(Request request, String failure) {
+    pendingRequests.remove(request.path);
+    complete(request, failure);
+  }
+
+  public synchronized boolean isBoosted(String path) {
+    return boosted.containsKey(path);
+  }
+
+  public synchronized int getNumBoostedFiles() {
+    return boosted.size();
+  }
+
+  public synchronized int getNumPendingRequests() {
+    return pendingRequests.size();
+  }
+
+  public synchronized long getExtraBytes() {
+    return extraBytes;
+  }
+
+  public void flush() throws IOException {
+    flush(System.currentTimeMillis());
+  }
+
+  /**
+   * Cool down boosted files then apply pending requests. A request is
+   * dequeued once it is applied or rejected, requests out of bandwidth and
+   * the ones not tried yet when an RPC fails stay queued for the next flush.
+   */
+  @VisibleForTesting
+  synchronized void flush(long now) throws IOException {
+    if (lastFlushTime != 0) {
+      tokens = Math.min(bandwidth,
+          tokens + (double) bandwidth * (now - lastFlushTime) / 1000);
+    } else {
+      tokens = bandwidth;
+    }
+    lastFlushTime = now;
+
+    int cooled = coolDown(now);
+    if (pendingRequests.isEmpty()) {
+      if (cooled > 0) {
+        LOG.info(cooled + " files cooled down, " + extraBytes
+            + " extra replica bytes in use.");
+      }
+      return;
+    }
+    List<Request> requests = new ArrayList<>(pendingRequests.values());
+    Request current = null;
+    int raised = 0;
+    int rejected = 0;
+    try {
+      for (Request req : requests) {
+        current = req;
+        String path = req.path;
+        short target = req.replication;
+        HdfsFileStatus status = client.getFileInfo(path);
+        BoostedEntry entry = boosted.get(path);
+        if (entry != null
+            && (status == null || status.getFileId() != entry.fid)) {
+          // The boosted file is gone, its extra replicas went with it
+          remove(entry);
+          entry = null;
+        }
+        if (status == null) {
+          dequeue(req, "file does not exist");
+          continue;
+        }
+        if (status.isDir()) {
+          dequeue(req, "not a file");
+          continue;
+        }
+        short base = entry != null ? entry.base : status.getReplication();
+        short actual = status.getReplication();
+        if (target <= base) {
+          if (target != actual) {
+            client.setReplication(path, target);
+          }
+          if (entry != null) {
+            remove(entry);
+          }
+          dequeue(req, null);
+          continue;
+        }
+        long delta = (target - actual) * status.getLen();
+        if (delta <= 0) {
+          if (target != actual) {
+            client.setReplication(path, target);
+            updateEntry(entry, path, status, base, target);
+          }
+          dequeue(req, null);
+          continue;
+        }
+        if (extraBytes + delta > maxExtraBytes) {
+          rejected++;
+          dequeue(req, "not admitted for lack of replica budget");
+          continue;
+        }
+        if (tokens <= 0) {
+          // Out of bandwidth, retried on next flush unless overridden
+          continue;
+        }
+        client.setReplication(path, target);
+        tokens -= delta;
+        updateEntry(entry, path, status, base, target);
+        raised++;
+        dequeue(req, null);
+      }
+    } catch (IOException e) {
+      if (current != null && ++current.attempts >= MAX_REQUEST_ATTEMPTS) {
+        dequeue(current, e.getMessage());
+      }
+      throw e;
+    } finally {
+      if (LOG.isDebugEnabled() || rejected > 0 || raised > 0 || cooled > 0) {
+        LOG.info("Replication requests flushed: " + raised + " raised, "
+            + cooled + " cooled down, " + rejected + " rejected for lack of "
+            + "budget, " + pendingRequests.size() + " pending, " + extraBytes
+            + " extra replica bytes in use.");
+      }
+    }
+  }
+
+  private int coolDown(long now) throws IOException {
+    if (tracker == null) {
+      return 0;
+    }
+    long halfLife = tracker.getDefaultHalfLife();
+    int cooled = 0;
+    Iterator<BoostedEntry> it = boosted.values().iterator();
+    while (it.hasNext()) {
+      BoostedEntry entry = it.next();
+      if (tracker.getHeat(mount.toGlobalFid(entry.fid), halfLife, now)
+          >= coolHeat) {
+        continue;
+      }
+      HdfsFileStatus status = client.getFileInfo(entry.path);
+      if (status != null && status.getFileId() == entry.fid) {
+        client.setReplication(entry.path, entry.base);
+      }
+      extraBytes -= entry.extraBytes();
+      it.remove();
+      cooled++;
+    }
+    return cooled;
+  }
+
+  private void updateEntry(BoostedEntry entry, String path,
+      HdfsFileStatus status, short base, short target) {
+    if (entry != null) {
+      remove(entry);
+    }
+    entry = new BoostedEntry(path, status.getFileId(), status.getLen(),
+        base, target);
+    boosted.put(path, entry);
+    extraBytes += entry.extraBytes();
+  }
+
+  private void remove(BoostedEntry entry) {
+    boosted.remove(entry.path);
+    extraBytes -= entry.extraBytes();
+  }
+
+  public void start(ScheduledExecutorService service, long interval) {
+    this.flushFuture = service.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          flush();
+        } catch (Throwable t) {
+          LOG.error("Flush replication requests error", t);
+        }
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    if (flushFuture != null) {
+      flushFuture.cancel(false);
+      flushFuture = null;
+    }
+    synchronized (this) {
+      for (Request req : pendingRequests.values()) {
+        complete(req, "replication controller stopped");
+      }
+      pendingRequests.clear();
+    }
+  }
+
+  private static class Request {
+    private final String path;
+    private final short replication;
+    private int attempts;
+    private boolean done;
+    private String failure;
+
+    Request(String path, short replication) {
+      this.path = path;
+      this.replication = replication;
+    }
+  }
+
+  private static class BoostedEntry {
+    private final String path;
+    private final long fid;
+    private final long length;
+    private final short base;
+    private final short replication;
+
+    BoostedEntry(String path, long fid, long length, short base,
+        short replication) {
+      this.path = path;
+      this.fid = fid;
+      this.length = length;
+      this.base = base;
+      this.replication = replication;
+    }
+
+    long extraBytes() {
+      return (replication - base) * length;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.rule;
+
+/**
+ * What a rule is expected to do once activated, estimated by evaluating
+ * it over a sample of the files.
+ */
+public class RuleEstimate {
+  private long totalFiles;
+  private long sampledFiles;
+  private long matchedFiles;
+  private long matchedBytes;
+  private long checkTime;
+  private double checksPerHour;
+  private double commandsPerHour;
+
+  /**
+   * @param totalFiles number of files known to SSM
+   * @param sampledFiles number of files the rule is evaluated over
+   * @param matchedFiles estimated number of files matched by one check
+   * @param matchedBytes estimated length of the matched files
+   * @param checkTime time taken to check the rule over the sample, in ms
+   * @param checksPerHour times the rule is checked in an hour
+   * @param commandsPerHour commands generated in an hour at most, for the
+   *                        matched files having no command of the action
+   *                        pending, executing or done
+   */
+  public RuleEstimate(long totalFiles, long sampledFiles, long matchedFiles,
+      long matchedBytes, long checkTime, double checksPerHour,
+      double commandsPerHour) {
+    this.totalFiles = totalFiles;
+    this.sampledFiles = sampledFiles;
+    this.matchedFiles = matchedFiles;
+    this.matchedBytes = matchedBytes;
+    this.checkTime = checkTime;
+    this.checksPerHour = checksPerHour;
+    this.commandsPerHour = commandsPerHour;
+  }
+
+  public long getTotalFiles() {
+    return totalFiles;
+  }
+
+  public long getSampledFiles() {
+    return sampledFiles;
+  }
+
+  public long getMatchedFiles() {
+    return matchedFiles;
+  }
+
+  public long getMatchedBytes() {
+    return matchedBytes;
+  }
+
+  public long getCheckTime() {
+    return checkTime;
+  }
+
+  public double getChecksPerHour() {
+    return checksPerHour;
+  }
+
+  public double getCommandsPerHour() {
+    return commandsPerHour;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("RuleEstimate{matchedFiles=%d, matchedBytes=%d, "
+        + "checkTime=%dms, checksPerHour=%.1f, commandsPerHour=%.1f, "
+        + "sampled %d of %d files}", matchedFiles, matchedBytes, checkTime,
+        checksPerHour, commandsPerHour, sampledFiles, totalFiles);
+  }
+}
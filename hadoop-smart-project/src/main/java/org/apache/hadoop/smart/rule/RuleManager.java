@@ -20,13 +20,17 @@
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.smart.ModuleSequenceProto;
+import org.apache.hadoop.smart.SmartConfigureKeys;
 import org.apache.hadoop.smart.SmartServer;
 import org.apache.hadoop.smart.StatesManager;
+import org.apache.hadoop.smart.event.StateChangeBus;
+import org.apache.hadoop.smart.protocol.ListingPage;
 import org.apache.hadoop.smart.rule.parser.RuleStringParser;
 import org.apache.hadoop.smart.rule.parser.TranslateResult;
 import org.apache.hadoop.smart.rule.parser.TranslationContext;
 import org.apache.hadoop.smart.sql.CommandInfo;
 import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.ExecutionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +38,7 @@
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -55,6 +60,15 @@ public class RuleManager implements ModuleSequenceProto {
   // TODO: configurable
   public ExecutorScheduler execScheduler = new ExecutorScheduler(4);
 
+  // Time taken by rule checks, summed over all rules
+  private long numChecks = 0;
+  private long totalCheckTime = 0;
+  private long maxCheckTime = 0;
+
+  // Rule id in logs of estimations
+  private static final long ESTIMATION_RULE_ID = -1;
+  private final Object estimateLock = new Object();
+
   @VisibleForTesting
   public RuleManager(SmartServer ssm, Configuration conf, DBAdapter dbAdapter) {
     this.ssm = ssm;
@@ -95,6 +109,7 @@ public long submitRule(String rule, RuleState initState)
 
     RuleContainer container = new RuleContainer(ruleInfo, dbAdapter);
     mapRules.put(ruleInfo.getId(), container);
+    publishRuleState(container);
 
     submitRuleToScheduler(container.launchExecutor(this));
 
@@ -111,6 +126,36 @@ public void checkRule(String rule) throws IOException {
     doCheckRule(rule, null);
   }
 
+  /**
+   * Estimate the files matched and the commands generated by the rule
+   * without submitting it.
+   */
+  public RuleEstimate estimateRule(String rule) throws IOException {
+    TranslateResult tr = doCheckRule(rule, null);
+    ExecutionContext ctx = new ExecutionContext();
+    ctx.setProperty(ExecutionContext.RULE_ID, ESTIMATION_RULE_ID);
+    RuleQueryExecutor executor =
+        new RuleQueryExecutor(this, ctx, tr, dbAdapter);
+    int sampleSize = conf == null
+        ? SmartConfigureKeys.DFS_SSM_RULE_ESTIMATE_SAMPLE_SIZE_DEFAULT
+        : conf.getInt(SmartConfigureKeys.DFS_SSM_RULE_ESTIMATE_SAMPLE_SIZE_KEY,
+            SmartConfigureKeys.DFS_SSM_RULE_ESTIMATE_SAMPLE_SIZE_DEFAULT);
+    // Temporary tables of a rule translated without context share names
+    synchronized (estimateLock) {
+      try {
+        long[] count = dbAdapter.executeLongsQuery(
+            "SELECT COUNT(*) FROM files;");
+        long totalFiles = count == null ? 0 : count[0];
+        long sampleStep = Math.max(1, totalFiles / Math.max(1, sampleSize));
+        RuleEstimate estimate = executor.estimate(totalFiles, sampleStep);
+        LOG.info("Estimated rule '" + rule + "': " + estimate);
+        return estimate;
+      } catch (SQLException e) {
+        throw new IOException("Estimate rule error: " + rule, e);
+      }
+    }
+  }
+
   public DBAdapter getDbAdapter() {
     return dbAdapter;
   }
@@ -129,17 +174,20 @@ public void DeleteRule(long ruleID, boolean dropPendingCommands)
       throws IOException {
     RuleContainer container = checkIfExists(ruleID);
     container.DeleteRule();
+    publishRuleState(container);
   }
 
   public void ActivateRule(long ruleID) throws IOException {
     RuleContainer container = checkIfExists(ruleID);
     submitRuleToScheduler(container.ActivateRule(this));
+    publishRuleState(container);
   }
 
   public void DisableRule(long ruleID, boolean dropPendingCommands)
       throws IOException {
     RuleContainer container = checkIfExists(ruleID);
     container.DisableRule();
+    publishRuleState(container);
   }
 
   private RuleContainer checkIfExists(long ruleID) throws IOException {
@@ -164,10 +212,54 @@ public List<RuleInfo> listRulesInfo() throws IOException {
     return retInfos;
   }
 
+  /**
+   * List a page of rules with id greater than prevId, in ascending order.
+   */
+  public ListingPage<RuleInfo> listRulesInfo(long prevId, int limit)
+      throws IOException {
+    List<Long> ids = new ArrayList<>();
+    for (Long id : mapRules.keySet()) {
+      if (id > prevId) {
+        ids.add(id);
+      }
+    }
+    Collections.sort(ids);
+    boolean hasMore = ids.size() > limit;
+    List<RuleInfo> retInfos = new ArrayList<>(Math.min(ids.size(), limit));
+    long lastId = prevId;
+    for (Long id : ids.subList(0, Math.min(ids.size(), limit))) {
+      RuleContainer container = mapRules.get(id);
+      if (container != null) {
+        retInfos.add(container.getRuleInfo());
+      }
+      lastId = id;
+    }
+    return new ListingPage<>(retInfos, hasMore, lastId);
+  }
+
   public void updateRuleInfo(long ruleId, RuleState rs, long lastCheckTime,
       long checkedCount, int commandsGen) throws IOException {
     RuleContainer container = checkIfExists(ruleId);
     container.updateRuleInfo(rs, lastCheckTime, checkedCount, commandsGen);
+    StateChangeBus bus = getStateChangeBus();
+    if (bus != null) {
+      if (rs != null) {
+        bus.publishRuleState(container.getRuleInfo());
+      } else {
+        bus.publishRuleChecked(container.getRuleInfo());
+      }
+    }
+  }
+
+  private StateChangeBus getStateChangeBus() {
+    return ssm != null ? ssm.getStateChangeBus() : null;
+  }
+
+  private void publishRuleState(RuleContainer container) {
+    StateChangeBus bus = getStateChangeBus();
+    if (bus != null) {
+      bus.publishRuleState(container.getRuleInfo());
+    }
   }
 
   public void addNewCommands(List<CommandInfo> commands) {
@@ -196,6 +288,28 @@ public boolean isClosed() {
     return isClosed;
   }
 
+  /**
+   * Record the time taken by one check of a rule, from the query to the
+   * commands generated.
+   */
+  public synchronized void onRuleChecked(long checkTime) {
+    numChecks++;
+    totalCheckTime += checkTime;
+    maxCheckTime = Math.max(maxCheckTime, checkTime);
+  }
+
+  public synchronized long getNumChecks() {
+    return numChecks;
+  }
+
+  public synchronized long getTotalCheckTime() {
+    return totalCheckTime;
+  }
+
+  public synchronized long getMaxCheckTime() {
+    return maxCheckTime;
+  }
+
   public StatesManager getStatesManager() {
     return ssm != null ? ssm.getStatesManager() : null;
   }
@@ -18,12 +18,17 @@
 package org.apache.hadoop.smart.rule;
 
 import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.SmartConfigureKeys;
 import org.apache.hadoop.smart.rule.parser.TimeBasedScheduleInfo;
 import org.apache.hadoop.smart.rule.parser.TranslateResult;
 import org.apache.hadoop.smart.sql.CommandInfo;
 import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.DBAdapter.ScratchSession;
 import org.apache.hadoop.smart.sql.ExecutionContext;
+import org.apache.hadoop.smart.sql.TableGenerations;
 import org.apache.hadoop.smart.sql.tables.AccessCountTable;
+import org.apache.hadoop.smart.sql.tables.AccessHistoryTable;
+import org.apache.hadoop.smart.sql.tables.FileHeatTracker;
 import org.apache.hadoop.smart.utils.JsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,8 +38,11 @@
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -50,6 +58,12 @@ public class RuleQueryExecutor implements Runnable {
   private volatile boolean exited = false;
   private long exitTime;
   private Stack<String> dynamicCleanups = new Stack<>();
+  // Tables read by the rule, null if changes of some are not tracked
+  private final Set<String> readTables;
+  // Statements run last time, generations of the tables then and result
+  private List<String> lastStatements = null;
+  private Map<String, Long> lastGenerations = null;
+  private List<String> lastResult = null;
   public static final Logger LOG =
       LoggerFactory.getLogger(RuleQueryExecutor.class.getName());
 
@@ -57,6 +71,9 @@ public class RuleQueryExecutor implements Runnable {
       "\\$([a-zA-Z_]+[a-zA-Z0-9_]*)");
   private static Pattern callPattern = Pattern.compile(
       "\\$@([a-zA-Z_]+[a-zA-Z0-9_]*)\\(([a-zA-Z_][a-zA-Z0-9_]*)?\\)");
+  private static Pattern tablePattern = Pattern.compile(
+      "\\b(?:FROM|JOIN)\\s+['`\"]?([a-zA-Z_][a-zA-Z0-9_\\-]*)",
+      Pattern.CASE_INSENSITIVE);
 
 
   public RuleQueryExecutor(RuleManager ruleManager, ExecutionContext ctx,
@@ -65,6 +82,33 @@ public RuleQueryExecutor(RuleManager ruleManager, ExecutionContext ctx,
     this.ctx = ctx;
     this.tr = tr;
     this.adapter = adapter;
+    this.readTables = getReadTables(tr);
+  }
+
+  /**
+   * Tables read by the rule apart from its own temporary tables.
+   * @return null if changes of some of the tables are not tracked
+   */
+  static Set<String> getReadTables(TranslateResult tr) {
+    Set<String> tables = new HashSet<>();
+    List<String> tempTables = tr.getStaticTempTables();
+    for (String sql : tr.getSqlStatements()) {
+      if (sql.contains("$@genVirtualAccessCountTable")) {
+        tables.add(TableGenerations.ACCESS_COUNT_TABLES);
+      }
+      Matcher m = tablePattern.matcher(sql);
+      while (m.find()) {
+        String table = m.group(1);
+        if (tempTables != null && tempTables.contains(table)) {
+          continue;
+        }
+        if (!TableGenerations.isTracked(table)) {
+          return null;
+        }
+        tables.add(table);
+      }
+    }
+    return tables;
   }
 
   public TranslateResult getTranslateResult() {
@@ -102,24 +146,50 @@ private String unfoldFunctionCalls(String sql) {
   }
 
   public List<String> executeFileRuleQuery() {
-    int index = 0;
-    List<String> ret = new ArrayList<>();
+    // Taken before the queries run, changes made meanwhile show up next time
+    Map<String, Long> generations = readTables == null
+        ? null : adapter.getGenerations(readTables);
+    List<String> statements = new ArrayList<>();
     for (String sql : tr.getSqlStatements()) {
-      sql = unfoldSqlStatement(sql);
+      statements.add(unfoldSqlStatement(sql));
+    }
+
+    List<String> ret = new ArrayList<>();
+    if (generations != null && lastResult != null
+        && generations.equals(lastGenerations)
+        && statements.equals(lastStatements)) {
+      // Nothing the rule reads has changed since the last run
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Rule " + ctx.getRuleId() + " reuses last result");
+      }
+      ret.addAll(lastResult);
+    } else {
+      lastResult = null;
+      int index = 0;
+      // Temporary tables of the rule stay off the metastore writer
+      ScratchSession session = null;
       try {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Rule " + ctx.getRuleId() + " --> " + sql);
+        session = adapter.openScratchSession();
+        for (String sql : statements) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Rule " + ctx.getRuleId() + " --> " + sql);
+          }
+          if (index == tr.getRetSqlIndex()) {
+            ret = session.executeFilesPathQuery(sql);
+          } else {
+            session.execute(sql);
+          }
+          index++;
         }
-        if (index == tr.getRetSqlIndex()) {
-          ret = adapter.executeFilesPathQuery(sql);
-        } else {
-          adapter.execute(sql);
-        }
-        index++;
       } catch (SQLException e) {
         LOG.error("Rule " + ctx.getRuleId() + " exception", e);
         return null;
+      } finally {
+        closeSession(session);
       }
+      lastStatements = statements;
+      lastGenerations = generations;
+      lastResult = new ArrayList<>(ret);
     }
 
     while (!dynamicCleanups.empty()) {
@@ -133,6 +203,125 @@ public List<String> executeFileRuleQuery() {
     return ret;
   }
 
+  /**
+   * Evaluate the rule over every sampleStep-th file by fid and scale up
+   * the files matched by the ratio of total files to the files sampled.
+   * Access count tables are still built in full, sampling their windows
+   * would skew the counts. The check time is that measured on the sample.
+   * @param totalFiles number of files in table 'files'
+   */
+  public RuleEstimate estimate(long totalFiles, long sampleStep)
+      throws SQLException {
+    long offset = new Random().nextInt((int) Math.min(sampleStep,
+        Integer.MAX_VALUE));
+    long start = System.currentTimeMillis();
+    long checkTime = 0;
+    long[] matched = null;
+    List<String> matchedPaths = null;
+    ScratchSession session = adapter.openScratchSession();
+    try {
+      int index = 0;
+      for (String sql : tr.getSqlStatements()) {
+        String statement = unfoldSqlStatement(sql);
+        if (index == tr.getRetSqlIndex()) {
+          matched = session.executeLongsQuery(toSampleQuery(statement,
+              "COUNT(*), SUM(length)", sampleStep, offset));
+          checkTime = System.currentTimeMillis() - start;
+          if (matched != null && matched[0] > 0) {
+            matchedPaths = session.executeFilesPathQuery(
+                toSampleQuery(statement, "path", sampleStep, offset));
+          }
+        } else {
+          session.execute(statement);
+        }
+        index++;
+      }
+    } finally {
+      // Temporary tables of the rule are dropped with the session
+      closeSession(session);
+      while (!dynamicCleanups.empty()) {
+        try {
+          adapter.execute(dynamicCleanups.pop());
+        } catch (SQLException e) {
+          LOG.error("Rule estimation cleanup exception", e);
+        }
+      }
+    }
+
+    long[] count = adapter.executeLongsQuery("SELECT COUNT(*) FROM files "
+        + "WHERE " + sampleCondition(sampleStep, offset) + ";");
+    long sampled = count == null ? 0 : count[0];
+    double ratio = sampled == 0 ? 0 : (double) totalFiles / sampled;
+    TimeBasedScheduleInfo scheduleInfo = tr.getTbScheduleInfo();
+    double checksPerHour = scheduleInfo == null || scheduleInfo.isOneShot()
+        || scheduleInfo.getEvery() <= 0
+        ? 0 : 3600.0 * 1000 / scheduleInfo.getEvery();
+    long matchedFiles = matched == null ? 0 : Math.round(matched[0] * ratio);
+    long matchedBytes = matched == null ? 0 : Math.round(matched[1] * ratio);
+    // Files with a command of the action in flight or done are left out
+    long newFiles = matchedPaths == null ? 0 : Math.round(
+        countWithoutCommands(matchedPaths) * ratio);
+    return new RuleEstimate(totalFiles, sampled, matchedFiles, matchedBytes,
+        checkTime, checksPerHour,
+        checksPerHour == 0 ? newFiles : newFiles * checksPerHour);
+  }
+
+  private long countWithoutCommands(List<String> paths) throws SQLException {
+    Set<String> handled = new HashSet<>();
+    for (String parameters : adapter.getCommandsParameters(
+        tr.getActionType(), CommandState.PENDING, CommandState.EXECUTING,
+        CommandState.DONE)) {
+      String path = JsonUtil.toStringStringMap(parameters).get("_FILE_PATH_");
+      if (path != null) {
+        handled.add(path);
+      }
+    }
+    long ret = 0;
+    for (String path : paths) {
+      if (!handled.contains(path)) {
+        ret++;
+      }
+    }
+    return ret;
+  }
+
+  private void closeSession(ScratchSession session) {
+    if (session == null) {
+      return;
+    }
+    try {
+      session.close();
+    } catch (SQLException e) {
+      LOG.error("Rule " + ctx.getRuleId() + " cleanup exception", e);
+    }
+  }
+
+  private static String sampleCondition(long sampleStep, long offset) {
+    return "fid % " + sampleStep + " = " + offset;
+  }
+
+  /**
+   * Turn the query of matched file paths into one selecting the columns,
+   * e.g. aggregates, of the matched files among the sampled.
+   */
+  static String toSampleQuery(String sql, String columns, long sampleStep,
+      long offset) throws SQLException {
+    String prefix = "SELECT path FROM files";
+    if (!sql.startsWith(prefix)) {
+      throw new SQLException("Can not sample query: " + sql);
+    }
+    String conditions = sql.substring(prefix.length()).trim();
+    if (conditions.endsWith(";")) {
+      conditions = conditions.substring(0, conditions.length() - 1).trim();
+    }
+    String ret = "SELECT " + columns + " FROM files WHERE "
+        + sampleCondition(sampleStep, offset);
+    if (conditions.startsWith("WHERE")) {
+      ret += " AND (" + conditions.substring("WHERE".length()).trim() + ")";
+    }
+    return ret + ";";
+  }
+
   public String callFunction(String funcName, List<Object> parameters) {
     try {
       Method m = getClass().getMethod(funcName, List.class);
@@ -158,6 +347,12 @@ public String genVirtualAccessCountTable(List<Object> parameters) {
     String newTable = (String) parameters.get(1);
     Long interval = (Long)paraList.get(0);
     String countFilter = "";
+    AccessHistoryTable historyTable = getAccessHistoryTable();
+    if (historyTable != null) {
+      // Windows are rows of one table, summed up by a single range query
+      return "CREATE TABLE " + newTable + " AS "
+          + historyTable.selectSQL(getAccessCountTablesInLast(interval)) + ";";
+    }
     List<String> tableNames =
         getAccessCountTablesDuringLast(interval);
 
@@ -188,6 +383,48 @@ public String genVirtualAccessCountTable(List<Object> parameters) {
     return sqlFinal;
   }
 
+  private FileHeatTracker getFileHeatTracker() {
+    if (ruleManager == null || ruleManager.getStatesManager() == null) {
+      return null;
+    }
+    return ruleManager.getStatesManager().getFileHeatTracker();
+  }
+
+  /**
+   * Half-life used for heat property. The first time a half-life is used
+   * a snapshot is requested to make its values queryable, the default
+   * half-life is used until the snapshot is persisted.
+   */
+  public String heatHalfLife(List<Object> parameters) {
+    Long halfLife = (Long) parameters.get(0);
+    FileHeatTracker tracker = getFileHeatTracker();
+    if (tracker == null) {
+      return "" + (halfLife != null ? halfLife
+          : SmartConfigureKeys.DFS_SSM_HEAT_HALFLIFE_DEFAULT);
+    }
+    if (tracker.registerHalfLife(halfLife)) {
+      tracker.requestSnapshot();
+    }
+    return "" + tracker.resolveHalfLife(halfLife);
+  }
+
+  public String heatDecayFactor(List<Object> parameters) {
+    Long halfLife = (Long) parameters.get(0);
+    FileHeatTracker tracker = getFileHeatTracker();
+    if (tracker == null) {
+      return "1";
+    }
+    return "" + tracker.getDecayFactor(
+        tracker.resolveHalfLife(halfLife), timeNow());
+  }
+
+  /**
+   * Time of the rule check, for properties relative to now.
+   */
+  public String currentTime(List<Object> parameters) {
+    return "" + timeNow();
+  }
+
   /**
    *
    * @param lastInterval
@@ -195,11 +432,29 @@ public String genVirtualAccessCountTable(List<Object> parameters) {
    */
   private List<String> getAccessCountTablesDuringLast(long lastInterval) {
     List<String> tableNames = new ArrayList<>();
-    if (ruleManager == null || ruleManager.getStatesManager() == null) {
+    List<AccessCountTable> accTables =
+        getAccessCountTablesInLast(lastInterval);
+    if (accTables.size() == 0) {
       return tableNames;
     }
 
-    List<AccessCountTable> accTables = null;
+
+    for (AccessCountTable t : accTables) {
+      tableNames.add(t.getTableName());
+      if (t.isView()) {
+        dynamicCleanups.push("DROP VIEW " + t.getTableName() + ";");
+      }
+    }
+    return tableNames;
+  }
+
+  private List<AccessCountTable> getAccessCountTablesInLast(
+      long lastInterval) {
+    List<AccessCountTable> accTables = new ArrayList<>();
+    if (ruleManager == null || ruleManager.getStatesManager() == null) {
+      return accTables;
+    }
+
     try {
       accTables = ruleManager.getStatesManager().getTablesInLast(lastInterval);
     } catch (SQLException e) {
@@ -211,19 +466,14 @@ private List<String> getAccessCountTablesDuringLast(long lastInterval) {
       LOG.debug("Rule " + ctx.getRuleId() + " got "
           + accTables.size() + " tables.");
     }
+    return accTables;
+  }
 
-    if (accTables == null || accTables.size() == 0) {
-      return tableNames;
-    }
-
-
-    for (AccessCountTable t : accTables) {
-      tableNames.add(t.getTableName());
-      if (t.isView()) {
-        dynamicCleanups.push("DROP VIEW " + t.getTableName() + ";");
-      }
+  private AccessHistoryTable getAccessHistoryTable() {
+    if (ruleManager == null || ruleManager.getStatesManager() == null) {
+      return null;
     }
-    return tableNames;
+    return ruleManager.getStatesManager().getAccessHistoryTable();
   }
 
   /**
@@ -281,6 +531,7 @@ public void run() {
       ruleManager.updateRuleInfo(rid, null, timeNow(), 1, commands.size());
       //System.out.println(this + " -> " + System.currentTimeMillis());
       long endProcessTime = System.currentTimeMillis();
+      ruleManager.onRuleChecked(endProcessTime - startCheckTime);
 
       if (endProcessTime - startCheckTime > 3000 || LOG.isDebugEnabled()) {
         LOG.warn("Rule " + ctx.getRuleId() + " execution took "
@@ -45,6 +45,19 @@ public class File extends SmartObject {
     properties.put("blocksize",
         new Property("blocksize", ValueType.LONG,
             null, "files", "block_size", false));
+    properties.put("heat",
+        new Property("heat", ValueType.LONG,
+            Arrays.asList(ValueType.TIMEINTVAL),
+            "file_heat", "heat", false).setParamsOptional(true));
+    properties.put("numReads",
+        new Property("numReads", ValueType.LONG,
+            null, "file_read_volume", "num_reads", false));
+    properties.put("bytesRead",
+        new Property("bytesRead", ValueType.LONG,
+            null, "file_read_volume", "bytes_read", false));
+    properties.put("age",
+        new Property("age", ValueType.TIMEINTVAL,
+            null, "files", "($@currentTime() - modification_time)", false));
     properties.put("inCache",
         new Property("inCache", ValueType.BOOLEAN,
             null, "cached_files", null, false));
@@ -33,6 +33,7 @@ public class Property {
   private String tableItemName;
   private String formatTemplate;
   private boolean isGlobal;
+  private boolean paramsOptional = false;
 
   public Property(String propertyName, ValueType retType, List<ValueType> paramsTypes,
        String tableName, String tableItemName, boolean isGlobal) {
@@ -82,6 +83,18 @@ public boolean isGlobal() {
     return isGlobal;
   }
 
+  /**
+   * Parameters of the property can be omitted, default values are used then.
+   */
+  public boolean isParamsOptional() {
+    return paramsOptional;
+  }
+
+  public Property setParamsOptional(boolean paramsOptional) {
+    this.paramsOptional = paramsOptional;
+    return this;
+  }
+
   public boolean hasParameters() {
     return paramsTypes != null;
   }
@@ -122,7 +135,7 @@ public boolean equals(Property p) {
   }
 
   public String instId(List<Object> values) {
-    if (getParamsTypes() == null) {
+    if (getParamsTypes() == null || values == null) {
       return propertyName;
     }
     String ret = propertyName;
@@ -144,7 +157,7 @@ public String instId(List<Object> values) {
   }
 
   public String formatParameters(List<Object> values) {
-    if (formatTemplate == null) {
+    if (formatTemplate == null || values == null) {
       return tableItemName;
     }
 
@@ -20,6 +20,7 @@
 
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.actions.ECFile;
 import org.apache.hadoop.smart.rule.exceptions.RuleParserException;
 import org.apache.hadoop.smart.rule.objects.Property;
 import org.apache.hadoop.smart.rule.objects.PropertyRealParas;
@@ -206,6 +207,11 @@ public TreeNode visitTieConst(SmartRuleParser.TieConstContext ctx) {
     return pharseConstTimeInterval(ctx.getText());
   }
 
+  @Override
+  public TreeNode visitTieId(SmartRuleParser.TieIdContext ctx) {
+    return visit(ctx.id());
+  }
+
   // timeintvalexpr ('-' | '+') timeintvalexpr             #tieTiExpr
   @Override
   public TreeNode visitTieTiExpr(SmartRuleParser.TieTiExprContext ctx) {
@@ -234,7 +240,7 @@ public TreeNode visitIdAtt(SmartRuleParser.IdAttContext ctx) {
           + " does not have a attribute named '" + "'" + ctx.getText());
     }
 
-    if (p.getParamsTypes() != null) {
+    if (p.getParamsTypes() != null && !p.isParamsOptional()) {
       throw new RuleParserException("Should have no parameter(s) for "
           + ctx.getText());
     }
@@ -251,7 +257,7 @@ public TreeNode visitIdObjAtt(SmartRuleParser.IdObjAttContext ctx) {
       throw new RuleParserException("Object " + obj.toString()
           + " does not have a attribute named '" + "'" + ctx.ID().getText());
     }
-    if (p.getParamsTypes() != null) {
+    if (p.getParamsTypes() != null && !p.isParamsOptional()) {
       throw new RuleParserException("Should have no parameter(s) for "
           + ctx.getText());
     }
@@ -564,11 +570,27 @@ public TreeNode visitCommand(SmartRuleParser.CommandContext ctx) {
     String cmd = ctx.getChild(0).getText();
     actionType = ActionType.fromName(cmd);
     if (actionType == ActionType.MoveFile) {
-      actionParams.put("_STORAGE_POLICY_", ctx.STRING().getText());
+      actionParams.put("_STORAGE_POLICY_", unquote(ctx.STRING().getText()));
+    } else if (actionType == ActionType.SetReplication) {
+      // Size units are not accepted for replication factor
+      actionParams.put("_REPLICATION_",
+          "" + Short.parseShort(ctx.LONG().getText()));
+    } else if (cmd.equals("ecfile")) {
+      String policy = unquote(ctx.STRING().getText());
+      if (policy.equalsIgnoreCase(ECFile.REPLICATION)) {
+        actionType = ActionType.ConvertToReplica;
+      } else {
+        actionType = ActionType.ConvertToEC;
+        actionParams.put("_EC_POLICY_", policy);
+      }
     }
     return null;
   }
 
+  private String unquote(String str) {
+    return str.substring(1, str.length() - 1);
+  }
+
   public TreeNode pharseConstTimePoint(String str) {
     SimpleDateFormat ft = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     TreeNode result;
@@ -728,6 +750,20 @@ public NodeTransResult doGenerateSql(TreeNode root, String tableName)
               Arrays.asList(realParas.getValues(), virTab));
           return new NodeTransResult(virTab,
               realParas.formatParameters());
+        } else if (p.getPropertyName().equals("heat")) {
+          String rid = "";
+          if (transCtx != null) {
+            rid = transCtx.getRuleId() + "_";
+          }
+          // Persisted heat, scaled to the snapshot base time, decayed to now
+          String paraName = "HEAT_" + rid + realParas.instId();
+          Object halfLife = realParas.getValues() == null ? null
+              : realParas.getValues().get(0);
+          dynamicParameters.put(paraName, Arrays.asList(halfLife));
+          return new NodeTransResult(tableName,
+              "(COALESCE((SELECT heat FROM file_heat WHERE file_heat.fid = "
+                  + tableName + ".fid AND half_life = $@heatHalfLife("
+                  + paraName + ")), 0) * $@heatDecayFactor(" + paraName + "))");
         }
 
         return new NodeTransResult(p.getTableName(),
@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.apache.hadoop.util.ExitUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records the statements run through a connection. Those of a transaction
+ * are handed to the change log right before it is committed, the commit
+ * fails if they could not be logged. Once logged they are replayed by the
+ * standby, so failing to commit them afterwards terminates the process.
+ * Queries are not recorded.
+ */
+class ChangeRecorder implements InvocationHandler {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(ChangeRecorder.class);
+
+  private final Connection conn;
+  private final MetaStoreWriter.ChangeLog changeLog;
+  private final List<MetaStoreChange> pending = new ArrayList<>();
+
+  private ChangeRecorder(Connection conn,
+      MetaStoreWriter.ChangeLog changeLog) {
+    this.conn = conn;
+    this.changeLog = changeLog;
+  }
+
+  /**
+   * @return a connection recording the statements run on conn
+   */
+  static Connection wrap(Connection conn,
+      MetaStoreWriter.ChangeLog changeLog) {
+    return (Connection) Proxy.newProxyInstance(
+        ChangeRecorder.class.getClassLoader(),
+        new Class<?>[] {Connection.class},
+        new ChangeRecorder(conn, changeLog));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+    String name = method.getName();
+    if (method.getDeclaringClass() == Object.class) {
+      return invokeObjectMethod(proxy, method, args, conn);
+    }
+    boolean logged = false;
+    if (name.equals("commit")) {
+      logged = flush();
+    } else if (name.equals("rollback") && args == null) {
+      pending.clear();
+    } else if (name.equals("setAutoCommit") && (Boolean) args[0]
+        && !conn.getAutoCommit()) {
+      // Switching auto commit on commits the ongoing transaction
+      logged = flush();
+    }
+    Object ret;
+    try {
+      ret = invokeTarget(conn, method, args);
+    } catch (Throwable t) {
+      if (logged) {
+        // Rolling back would leave the logged changes to be replayed by
+        // the standby and logged again on retry
+        LOG.error("Failed to commit metastore changes already logged", t);
+        ExitUtil.terminate(1, "Metastore diverged from its change log: " + t);
+      }
+      throw t;
+    }
+    if (name.equals("createStatement")) {
+      return wrapStatement(Statement.class, (Statement) ret, null);
+    } else if (name.equals("prepareStatement")) {
+      return wrapStatement(PreparedStatement.class, (Statement) ret,
+          (String) args[0]);
+    }
+    return ret;
+  }
+
+  private Object wrapStatement(Class<?> type, Statement statement,
+      String sql) {
+    return Proxy.newProxyInstance(ChangeRecorder.class.getClassLoader(),
+        new Class<?>[] {type}, new StatementRecorder(statement, sql));
+  }
+
+  private void record(MetaStoreChange change) throws SQLException {
+    pending.add(change);
+    if (conn.getAutoCommit()) {
+      // Already committed, log it as soon as possible
+      flush();
+    }
+  }
+
+  /**
+   * @return true if there were changes and they were logged
+   */
+  private boolean flush() throws SQLException {
+    if (pending.isEmpty()) {
+      return false;
+    }
+    try {
+      changeLog.append(new ArrayList<>(pending));
+    } catch (IOException e) {
+      throw new SQLException("Failed to log metastore changes", e);
+    } finally {
+      pending.clear();
+    }
+    return true;
+  }
+
+  private static Object invokeTarget(Object target, Method method,
+      Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static Object invokeObjectMethod(Object proxy, Method method,
+      Object[] args, Object target) throws Throwable {
+    String name = method.getName();
+    if (name.equals("equals")) {
+      return proxy == args[0];
+    } else if (name.equals("hashCode")) {
+      return System.identityHashCode(proxy);
+    }
+    return invokeTarget(target, method, args);
+  }
+
+  /**
+   * Keeps the parameters bound to a statement until it is run.
+   */
+  private class StatementRecorder implements InvocationHandler {
+    private final Statement statement;
+    // Null for statements that are not prepared
+    private final String sql;
+    private Object[] params = new Object[0];
+    private final List<Object[]> batchRows = new ArrayList<>();
+    private final List<String> batchSqls = new ArrayList<>();
+
+    StatementRecorder(Statement statement, String sql) {
+      this.statement = statement;
+      this.sql = sql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable {
+      if (method.getDeclaringClass() == Object.class) {
+        return invokeObjectMethod(proxy, method, args, statement);
+      }
+      String name = method.getName();
+      if (sql != null && name.startsWith("set") && args != null
+          && args.length >= 2 && args[0] instanceof Integer) {
+        setParam((Integer) args[0], name.equals("setNull") ? null : args[1]);
+      } else if (name.equals("clearParameters")) {
+        params = new Object[0];
+      } else if (name.equals("addBatch")) {
+        if (args == null) {
+          batchRows.add(params.clone());
+        } else {
+          batchSqls.add((String) args[0]);
+        }
+      } else if (name.equals("clearBatch")) {
+        batchRows.clear();
+        batchSqls.clear();
+      }
+
+      Object ret = invokeTarget(statement, method, args);
+
+      if (name.equals("executeUpdate") || name.equals("executeLargeUpdate")
+          || (name.equals("execute") && !(Boolean) ret)) {
+        // A statement returning a result set is a query
+        if (args == null && sql != null) {
+          List<Object[]> rows = new ArrayList<>(1);
+          rows.add(params.clone());
+          record(new MetaStoreChange(sql, rows));
+        } else if (args != null) {
+          record(new MetaStoreChange((String) args[0]));
+        }
+      } else if (name.equals("executeBatch")
+          || name.equals("executeLargeBatch")) {
+        if (!batchRows.isEmpty()) {
+          record(new MetaStoreChange(sql, new ArrayList<>(batchRows)));
+        }
+        for (String s : batchSqls) {
+          record(new MetaStoreChange(s));
+        }
+        batchRows.clear();
+        batchSqls.clear();
+      }
+      return ret;
+    }
+
+    private void setParam(int index, Object value) {
+      if (index > params.length) {
+        params = Arrays.copyOf(params, index);
+      }
+      params[index - 1] = value;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.actions.ActionType;
+
+/**
+ * Conditions on commands to list or count. Unset conditions (-1 or null)
+ * match every command.
+ */
+public class CommandFilter {
+  private long ruleId = -1;
+  private CommandState state;
+  private ActionType actionType;
+  private long fromTime = -1;
+  private long toTime = -1;
+
+  public CommandFilter() {
+  }
+
+  /**
+   * @param fromTime inclusive lower bound of the generate time
+   * @param toTime exclusive upper bound of the generate time
+   */
+  public CommandFilter(long ruleId, CommandState state, ActionType actionType,
+      long fromTime, long toTime) {
+    this.ruleId = ruleId;
+    this.state = state;
+    this.actionType = actionType;
+    this.fromTime = fromTime;
+    this.toTime = toTime;
+  }
+
+  public long getRuleId() {
+    return ruleId;
+  }
+
+  public void setRuleId(long ruleId) {
+    this.ruleId = ruleId;
+  }
+
+  public CommandState getState() {
+    return state;
+  }
+
+  public void setState(CommandState state) {
+    this.state = state;
+  }
+
+  public ActionType getActionType() {
+    return actionType;
+  }
+
+  public void setActionType(ActionType actionType) {
+    this.actionType = actionType;
+  }
+
+  public long getFromTime() {
+    return fromTime;
+  }
+
+  public void setFromTime(long fromTime) {
+    this.fromTime = fromTime;
+  }
+
+  public long getToTime() {
+    return toTime;
+  }
+
+  public void setToTime(long toTime) {
+    this.toTime = toTime;
+  }
+
+  public boolean matches(CommandInfo info) {
+    return (ruleId == -1 || info.getRid() == ruleId)
+        && (state == null || info.getState() == state)
+        && (actionType == null || info.getActionType() == actionType)
+        && (fromTime == -1 || info.getGenerateTime() >= fromTime)
+        && (toTime == -1 || info.getGenerateTime() < toTime);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("{rid = %d, state = %s, actionType = %s, "
+        + "fromTime = %d, toTime = %d}",
+        ruleId, state, actionType, fromTime, toTime);
+  }
+}
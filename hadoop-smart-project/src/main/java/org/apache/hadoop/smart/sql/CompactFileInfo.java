@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+/**
+ * Location of a small file packed into a container file by compaction.
+ */
+public class CompactFileInfo {
+  private long fid;
+  private String path;
+  private String containerPath;
+  private long offset;
+  private long length;
+
+  public CompactFileInfo(long fid, String path, String containerPath,
+      long offset, long length) {
+    this.fid = fid;
+    this.path = path;
+    this.containerPath = containerPath;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  public long getFid() {
+    return fid;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getContainerPath() {
+    return containerPath;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("CompactFileInfo{fid=%d, path=%s, container=%s, "
+        + "offset=%d, length=%d}", fid, path, containerPath, offset, length);
+  }
+}
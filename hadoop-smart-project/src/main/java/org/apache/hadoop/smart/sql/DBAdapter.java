@@ -19,16 +19,23 @@
 
 import org.apache.curator.shaded.com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.fs.XAttr;
-import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.XAttrHelper;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.FileReadVolume;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.io.erasurecode.ECSchema;
 import org.apache.hadoop.smart.CommandState;
 import org.apache.hadoop.smart.actions.ActionType;
 import org.apache.hadoop.smart.rule.RuleInfo;
 import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.dao.CachedFileDao;
+import org.apache.hadoop.smart.sql.dao.CommandDao;
+import org.apache.hadoop.smart.sql.dao.FileDao;
+import org.apache.hadoop.smart.sql.dao.RowMapper;
+import org.apache.hadoop.smart.sql.dao.RuleDao;
+import org.apache.hadoop.smart.sql.dao.StorageDao;
 import org.apache.hadoop.smart.sql.tables.AccessCountTable;
+import org.apache.hadoop.smart.sql.tables.FileHeatTracker;
 
 import java.io.IOException;
 import java.sql.Connection;
@@ -36,12 +43,16 @@
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Operations supported for upper functions.
@@ -50,6 +61,16 @@ public class DBAdapter {
 
   private Connection connProvided = null;
   private DBPool pool = null;
+  private MetaStoreWriter writer = null;
+  private final TableGenerations generations = new TableGenerations();
+  private final StatementCache statementCache =
+      new StatementCache(StatementCache.DEFAULT_CAPACITY);
+  private final FileDao fileDao = new FileDao(statementCache);
+  private final CommandDao commandDao = new CommandDao(statementCache);
+  private final RuleDao ruleDao = new RuleDao(statementCache);
+  private final StorageDao storageDao = new StorageDao(statementCache);
+  private final CachedFileDao cachedFileDao =
+      new CachedFileDao(statementCache);
 
   private Map<Integer, String> mapOwnerIdName = null;
   private Map<Integer, String> mapGroupIdName = null;
@@ -66,16 +87,190 @@ public DBAdapter(DBPool pool) throws IOException {
     this.pool = pool;
   }
 
+  /**
+   * Route all changes through a single writer thread committing them in
+   * batches. Only supported with a connection pool, readers keep using
+   * connections of their own from the pool.
+   */
+  public synchronized void startWriter(int maxBatchSize) throws SQLException {
+    if (pool == null || writer != null) {
+      return;
+    }
+    startWriter(maxBatchSize, null);
+  }
+
+  /**
+   * Start the writer, the changes it commits are logged to changeLog.
+   */
+  public synchronized void startWriter(int maxBatchSize,
+      MetaStoreWriter.ChangeLog changeLog) throws SQLException {
+    if (pool == null || writer != null) {
+      return;
+    }
+    MetaStoreWriter w = new MetaStoreWriter(pool, maxBatchSize,
+        statementCache, changeLog);
+    w.start();
+    writer = w;
+  }
+
+  public synchronized void stopWriter() {
+    if (writer != null) {
+      writer.stop();
+      writer = null;
+    }
+  }
+
+  public MetaStoreWriter getWriter() {
+    return writer;
+  }
+
+  /**
+   * @return whether connections come from a pool, required by the writer
+   */
+  public boolean isPooled() {
+    return pool != null;
+  }
+
+  /**
+   * Open a read transaction on a connection of its own. Its reads see the
+   * metastore as it is when opened, until closed by
+   * {@link #closeSnapshot(Connection)}. Only supported with a pool.
+   */
+  public Connection openSnapshot() throws SQLException {
+    if (pool == null) {
+      throw new SQLException("Metastore snapshots require a connection pool");
+    }
+    Connection conn = pool.getConnection();
+    try {
+      conn.setAutoCommit(false);
+      // The snapshot is taken by the first read of the transaction
+      Statement s = conn.createStatement();
+      try {
+        s.executeQuery("SELECT COUNT(*) FROM rules").close();
+      } finally {
+        s.close();
+      }
+      return conn;
+    } catch (SQLException e) {
+      pool.closeConnection(conn);
+      throw e;
+    }
+  }
+
+  public void closeSnapshot(Connection conn) throws SQLException {
+    try {
+      conn.rollback();
+      conn.setAutoCommit(true);
+    } finally {
+      pool.closeConnection(conn);
+    }
+  }
+
+  /**
+   * @return whether the metastore is a MySQL database
+   */
+  public boolean isMySQL() throws SQLException {
+    Connection conn = getConnection();
+    try {
+      return "MySQL".equalsIgnoreCase(
+          conn.getMetaData().getDatabaseProductName());
+    } finally {
+      closeConnection(conn);
+    }
+  }
+
+  /**
+   * Count a change of the table made through raw statements.
+   */
+  public void bumpGeneration(String table) {
+    generations.bump(table);
+  }
+
+  /**
+   * Current generations of the given tables, see {@link TableGenerations}.
+   */
+  public Map<String, Long> getGenerations(Collection<String> tables) {
+    return generations.get(tables);
+  }
+
   public Connection getConnection() throws SQLException {
+    MetaStoreWriter w = writer;
+    if (w != null && w.isWriterThread()) {
+      return w.getConnection();
+    }
     return pool != null ? pool.getConnection() : connProvided;
   }
 
   private void closeConnection(Connection conn) throws SQLException {
+    MetaStoreWriter w = writer;
+    if (w != null && conn == w.getConnection()) {
+      return;
+    }
     if (pool != null) {
       pool.closeConnection(conn);
     }
   }
 
+  /**
+   * Apply a change, on the writer thread if there is one. Without a writer
+   * changes are serialized on this adapter.
+   */
+  private <T> T write(MetaStoreWriter.Mutation<T> mutation)
+      throws SQLException {
+    MetaStoreWriter w = writer;
+    if (w != null) {
+      return w.execute(mutation);
+    }
+    synchronized (this) {
+      return mutation.apply();
+    }
+  }
+
+  /**
+   * Apply a change of the table and count it once committed.
+   */
+  private <T> T write(String table, MetaStoreWriter.Mutation<T> mutation)
+      throws SQLException {
+    try {
+      return write(mutation);
+    } finally {
+      generations.bump(table);
+    }
+  }
+
+  /**
+   * Changes applied by the writer are committed with the rest of its batch,
+   * they don't manage transactions on their own.
+   */
+  private boolean ownsTransaction(Connection conn) {
+    MetaStoreWriter w = writer;
+    return w == null || conn != w.getConnection();
+  }
+
+  private void beginTransaction(Connection conn) throws SQLException {
+    if (ownsTransaction(conn)) {
+      conn.setAutoCommit(false);
+    }
+  }
+
+  private void commitTransaction(Connection conn) throws SQLException {
+    if (ownsTransaction(conn)) {
+      conn.commit();
+    }
+  }
+
+  private void rollbackTransaction(Connection conn) throws SQLException {
+    if (ownsTransaction(conn)) {
+      conn.rollback();
+    }
+  }
+
+  private void endTransaction(Connection conn) throws SQLException {
+    if (ownsTransaction(conn)) {
+      conn.setAutoCommit(true);
+    }
+  }
+
   private class QueryHelper {
     private String query;
     private Connection conn;
@@ -202,40 +397,22 @@ public Map<Long, Integer> getAccessCount(long startTime, long endTime,
    *
    * @param files
    */
-  public synchronized void insertFiles(FileStatusInternal[] files)
+  public void insertFiles(final FileStatusInternal[] files)
       throws SQLException {
-    updateCache();
-    Connection conn = getConnection();
-    Statement s = null;
-    try {
-      s = conn.createStatement();
-      for (int i = 0; i < files.length; i++) {
-        String sql = "INSERT INTO `files` (path, fid, length, "
-            + "block_replication,"
-            + " block_size, modification_time, access_time, is_dir, sid, oid, "
-            + "gid, permission, ec_policy_id ) "
-            + "VALUES ('" + files[i].getPath()
-            + "','" + files[i].getFileId() + "','" + files[i].getLen() + "','"
-            + files[i].getReplication() + "','" + files[i].getBlockSize()
-            + "','" + files[i].getModificationTime() + "','"
-            + files[i].getAccessTime()
-            + "','" + booleanToInt(files[i].isDir()) + "','"
-            + files[i].getStoragePolicy() + "','"
-            + getKey(mapOwnerIdName, files[i].getOwner()) + "','"
-            + getKey(mapGroupIdName, files[i].getGroup()) + "','"
-            + files[i].getPermission().toShort() + "','"
-            + getKey(mapECPolicy, files[i].getErasureCodingPolicy()) + "');";
-        s.addBatch(sql);
-      }
-      s.executeBatch();
-    } finally {
-      if (s != null) {
-        s.close();
-      }
-      if (conn != null) {
-        closeConnection(conn);
+    write(TableGenerations.FILES, new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        updateCache();
+        Connection conn = getConnection();
+        try {
+          fileDao.insert(conn, files, inverse(mapOwnerIdName),
+              inverse(mapGroupIdName), inverse(mapECPolicy));
+        } finally {
+          closeConnection(conn);
+        }
+        return null;
       }
-    }
+    });
   }
 
   private int booleanToInt(boolean b) {
@@ -251,57 +428,41 @@ private Integer getKey(Map<Integer, String> map, String value) {
     return null;
   }
 
-  private Integer getKey(Map<Integer, ErasureCodingPolicy> map,
-      ErasureCodingPolicy value) {
-    for (Integer key : map.keySet()) {
-      if (map.get(key).equals(value)) {
-        return key;
-      }
+  private static <K, V> Map<V, K> inverse(Map<K, V> map) {
+    Map<V, K> ret = new HashMap<>();
+    for (Map.Entry<K, V> e : map.entrySet()) {
+      ret.put(e.getValue(), e.getKey());
     }
-    return null;
+    return ret;
   }
 
   public HdfsFileStatus getFile(long fid) throws SQLException {
-    String sql = "SELECT * FROM files WHERE fid = " + fid;
-    QueryHelper queryHelper = new QueryHelper(sql);
+    updateCache();
+    Connection conn = getConnection();
     try {
-      ResultSet result = queryHelper.executeQuery();
-      List<HdfsFileStatus> ret = convertFilesTableItem(result);
-      return ret.size() > 0 ? ret.get(0) : null;
+      return fileDao.getByFid(conn, fid, fileStatusMapper);
     } finally {
-      queryHelper.close();
+      closeConnection(conn);
     }
   }
 
   public Map<String, Long> getFileIDs(Collection<String> paths)
       throws SQLException {
-    Map<String, Long> pathToId = new HashMap<>();
-    String in = paths.stream().map(s -> "'" + s +"'")
-        .collect(Collectors.joining(", "));
-    String sql = "SELECT fid, path FROM files WHERE path IN (" + in + ")";
-    QueryHelper queryHelper = new QueryHelper(sql);
-    ResultSet result;
+    Connection conn = getConnection();
     try {
-      result = queryHelper.executeQuery();
-      while (result.next()) {
-        pathToId.put(result.getString("path"),
-            result.getLong("fid"));
-      }
-      return pathToId;
+      return fileDao.getFileIds(conn, paths);
     } finally {
-      queryHelper.close();
+      closeConnection(conn);
     }
   }
 
   public HdfsFileStatus getFile(String path) throws SQLException {
-    String sql = "SELECT * FROM files WHERE path = \'" + path + "\'";
-    QueryHelper queryHelper = new QueryHelper(sql);
+    updateCache();
+    Connection conn = getConnection();
     try {
-      ResultSet result = queryHelper.executeQuery();
-      List<HdfsFileStatus> ret = convertFilesTableItem(result);
-      return ret.size() > 0 ? ret.get(0) : null;
+      return fileDao.getByPath(conn, path, fileStatusMapper);
     } finally {
-      queryHelper.close();
+      closeConnection(conn);
     }
   }
 
@@ -311,27 +472,21 @@ public ErasureCodingPolicy getErasureCodingPolicy(int id)
     return mapECPolicy.get(id);
   }
 
-  public void insertStoragesTable(StorageCapacity[] storages)
+  public void insertStoragesTable(final StorageCapacity[] storages)
       throws SQLException {
-    Connection conn = getConnection();
-    Statement s = null;
-    try {
-      mapStorageCapacity = null;
-      s = conn.createStatement();
-      for (int i = 0; i < storages.length; i++) {
-        String sql = "INSERT INTO `storages` (type, capacity, free) VALUES"
-            + " ('" + storages[i].getType()
-            + "','" + storages[i].getCapacity() + "','"
-            + storages[i].getFree() + "')";
-        s.addBatch(sql);
-      }
-      s.executeBatch();
-    } finally {
-      if (s != null) {
-        s.close();
+    write(TableGenerations.STORAGES, new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          mapStorageCapacity = null;
+          storageDao.insert(conn, storages);
+        } finally {
+          closeConnection(conn);
+        }
+        return null;
       }
-      closeConnection(conn);
-    }
+    });
   }
 
   public StorageCapacity getStorageCapacity(String type) throws SQLException {
@@ -339,25 +494,21 @@ public StorageCapacity getStorageCapacity(String type) throws SQLException {
     return mapStorageCapacity.get(type);
   }
 
-  public synchronized boolean updateStoragesTable(String type,
-      Long capacity, Long free) throws SQLException {
-    String sql = null;
-    String sqlPrefix = "UPDATE storages SET";
-    String sqlCapacity = (capacity != null) ? ", capacity = '"
-        + capacity + "'" : null;
-    String sqlFree = (free != null) ? ", free = '" + free + "' " : null;
-    String sqlSuffix = "WHERE type = '" + type + "';";
-    if (capacity != null || free != null) {
-      sql = sqlPrefix + sqlCapacity + sqlFree + sqlSuffix;
-      sql = sql.replaceFirst(",", "");
-    }
-    QueryHelper queryHelper = new QueryHelper(sql);
-    try {
-      mapStorageCapacity = null;
-      return queryHelper.executeUpdate() == 1;
-    } finally {
-      queryHelper.close();
-    }
+  public boolean updateStoragesTable(final String type,
+      final Long capacity, final Long free) throws SQLException {
+    return write(TableGenerations.STORAGES,
+        new MetaStoreWriter.Mutation<Boolean>() {
+      @Override
+      public Boolean apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          mapStorageCapacity = null;
+          return storageDao.update(conn, type, capacity, free);
+        } finally {
+          closeConnection(conn);
+        }
+      }
+    });
   }
 
   /**
@@ -370,35 +521,46 @@ public synchronized boolean updateStoragesTable(String type,
    */
   public List<HdfsFileStatus> convertFilesTableItem(ResultSet resultSet)
       throws SQLException {
-    List<HdfsFileStatus> ret = new LinkedList<>();
+    List<HdfsFileStatus> ret = new ArrayList<>();
     if (resultSet == null) {
       return ret;
     }
     updateCache();
 
+    FileRecord record = new FileRecord();
     while (resultSet.next()) {
-      HdfsFileStatus status = new HdfsFileStatus(
-          resultSet.getLong("length"),
-          resultSet.getBoolean("is_dir"),
-          resultSet.getShort("block_replication"),
-          resultSet.getLong("block_size"),
-          resultSet.getLong("modification_time"),
-          resultSet.getLong("access_time"),
-          new FsPermission(resultSet.getShort("permission")),
-          mapOwnerIdName.get(resultSet.getShort("oid")),
-          mapGroupIdName.get(resultSet.getShort("gid")),
-          null, // Not tracked for now
-          resultSet.getString("path").getBytes(),
-          resultSet.getLong("fid"),
-          0,    // Not tracked for now, set to 0
-          null, // Not tracked for now, set to null
-          resultSet.getByte("sid"),
-          mapECPolicy.get(resultSet.getShort("ec_policy_id")));
-      ret.add(status);
+      record.readFrom(resultSet);
+      ret.add(record.toFileStatus(mapOwnerIdName, mapGroupIdName,
+          mapECPolicy));
     }
     return ret;
   }
 
+  /**
+   * Pass the files with paths starting with the prefix to the handler.
+   * One record is refilled for every row, no status is built.
+   */
+  public void scanFiles(String pathPrefix, FileRecord.Handler handler)
+      throws SQLException {
+    Connection conn = getConnection();
+    try {
+      fileDao.scan(conn, pathPrefix, handler);
+    } finally {
+      closeConnection(conn);
+    }
+  }
+
+  private final RowMapper<HdfsFileStatus> fileStatusMapper =
+      new RowMapper<HdfsFileStatus>() {
+        @Override
+        public HdfsFileStatus map(ResultSet resultSet) throws SQLException {
+          FileRecord record = new FileRecord();
+          record.readFrom(resultSet);
+          return record.toFileStatus(mapOwnerIdName, mapGroupIdName,
+              mapECPolicy);
+        }
+      };
+
   private void updateCache() throws SQLException {
     if (mapOwnerIdName == null) {
       String sql = "SELECT * FROM owners";
@@ -512,70 +674,74 @@ private Map<Integer, String> convertToMap(ResultSet resultSet)
     return ret;
   }
 
-  public synchronized void insertCachedFiles(long fid, long fromTime,
-      long lastAccessTime, int numAccessed) throws SQLException {
-    String sql = "INSERT INTO cached_files (fid, from_time, "
-        + "last_access_time, num_accessed) VALUES (" + fid + ","
-        + fromTime + "," + lastAccessTime + ","
-        + numAccessed + ")";
-    execute(sql);
+  public void insertCachedFiles(final long fid, final long fromTime,
+      final long lastAccessTime, final int numAccessed) throws SQLException {
+    write(TableGenerations.CACHED_FILES, new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          cachedFileDao.insert(conn, new CachedFileStatus(fid, fromTime,
+              lastAccessTime, numAccessed));
+        } finally {
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
   }
 
-  public synchronized void insertCachedFiles(List<CachedFileStatus> s)
+  public void insertCachedFiles(final List<CachedFileStatus> s)
       throws SQLException {
-    Connection conn = getConnection();
-    Statement st = null;
-    try {
-      st = conn.createStatement();
-      for (CachedFileStatus c : s) {
-        String sql = "INSERT INTO cached_files (fid, from_time, "
-            + "last_access_time, num_accessed) VALUES (" + c.getFid() + ","
-            + c.getFromTime() + "," + c.getLastAccessTime() + ","
-            + c.getNumAccessed() + ")";
-        st.addBatch(sql);
-      }
-      st.executeBatch();
-    } finally {
-      if (st != null) {
-        st.close();
+    write(TableGenerations.CACHED_FILES, new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          cachedFileDao.insert(conn, s);
+        } finally {
+          closeConnection(conn);
+        }
+        return null;
       }
-      closeConnection(conn);
-    }
+    });
   }
 
-  public synchronized boolean updateCachedFiles(Long fid, Long fromTime,
-      Long lastAccessTime, Integer numAccessed) throws SQLException {
-    StringBuffer sb = new StringBuffer("UPDATE cached_files SET");
-    if (fromTime != null) {
-      sb.append(" from_time = ").append(fid).append(",");
-    }
-    if (lastAccessTime != null) {
-      sb.append(" last_access_time = ").append(lastAccessTime).append(",");
-    }
-    if (numAccessed != null) {
-      sb.append(" num_accessed = ").append(numAccessed).append(",");
-    }
-    int idx = sb.lastIndexOf(",");
-    sb.replace(idx, idx + 1, "");
-    sb.append(" WHERE fid = ").append(fid).append(";");
+  public boolean updateCachedFiles(final Long fid, final Long fromTime,
+      final Long lastAccessTime, final Integer numAccessed)
+      throws SQLException {
+    return write(TableGenerations.CACHED_FILES,
+        new MetaStoreWriter.Mutation<Boolean>() {
+      @Override
+      public Boolean apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          return cachedFileDao.update(conn, fid, fromTime, lastAccessTime,
+              numAccessed);
+        } finally {
+          closeConnection(conn);
+        }
+      }
+    });
+  }
 
-    QueryHelper queryHelper = new QueryHelper(sb.toString());
+  public List<CachedFileStatus> getCachedFileStatus() throws SQLException {
+    Connection conn = getConnection();
     try {
-      return queryHelper.executeUpdate() == 1;
+      List<CachedFileStatus> ret = cachedFileDao.getAll(conn);
+      return ret.size() == 0 ? null : ret;
     } finally {
-      queryHelper.close();
+      closeConnection(conn);
     }
   }
 
-  public List<CachedFileStatus> getCachedFileStatus() throws SQLException {
-    String sql = "SELECT * FROM cached_files";
-    return getCachedFileStatus(sql);
-  }
-
   public CachedFileStatus getCachedFileStatus(long fid) throws SQLException {
-    String sql = "SELECT * FROM cached_files WHERE fid = " + fid;
-    List<CachedFileStatus> s = getCachedFileStatus(sql);
-    return s != null ? s.get(0) : null;
+    Connection conn = getConnection();
+    try {
+      return cachedFileDao.get(conn, fid);
+    } finally {
+      closeConnection(conn);
+    }
   }
 
   public void createProportionView(AccessCountTable dest, AccessCountTable source)
@@ -596,56 +762,58 @@ public void createProportionView(AccessCountTable dest, AccessCountTable source)
     execute(sql);
   }
 
-  private List<CachedFileStatus> getCachedFileStatus(String sql)
-      throws SQLException {
-    QueryHelper queryHelper = new QueryHelper(sql);
-    List<CachedFileStatus> ret = new LinkedList<>();
-
-    try {
-      ResultSet resultSet = queryHelper.executeQuery();
-      while (resultSet.next()) {
-        CachedFileStatus f = new CachedFileStatus(
-            resultSet.getLong("fid"),
-            resultSet.getLong("from_time"),
-            resultSet.getLong("last_access_time"),
-            resultSet.getInt("num_accessed")
-        );
-        ret.add(f);
+  public int executeUpdate(final String sql) throws SQLException {
+    return write(new MetaStoreWriter.Mutation<Integer>() {
+      @Override
+      public Integer apply() throws SQLException {
+        QueryHelper queryHelper = new QueryHelper(sql);
+        try {
+          return queryHelper.executeUpdate();
+        } finally {
+          queryHelper.close();
+        }
       }
-      return ret.size() == 0 ? null : ret;
-    } finally {
-      queryHelper.close();
-    }
+    });
   }
 
-  public int executeUpdate(String sql) throws SQLException {
-    QueryHelper queryHelper = new QueryHelper(sql);
-    try {
-      return queryHelper.executeUpdate();
-    } finally {
-      queryHelper.close();
-    }
+  public void execute(final String sql) throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        QueryHelper queryHelper = new QueryHelper(sql);
+        try {
+          queryHelper.execute();
+        } finally {
+          queryHelper.close();
+        }
+        return null;
+      }
+    });
   }
 
-  public void execute(String sql) throws SQLException {
-    QueryHelper queryHelper = new QueryHelper(sql);
-    try {
-      queryHelper.execute();
-    } finally {
-      queryHelper.close();
-    }
+  /**
+   * Execute the statements as one change, they are committed together
+   * when applied by the metastore writer.
+   */
+  public void execute(final List<String> statements) throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        for (String statement : statements) {
+          execute(statement);
+        }
+        return null;
+      }
+    });
   }
 
-  //Todo: optimize
-  public void execute(List<String> statements) throws SQLException {
-    for (String statement : statements) {
-      this.execute(statement);
-    }
+  public List<String> executeFilesPathQuery(String sql) throws SQLException {
+    return readPaths(new QueryHelper(sql));
   }
 
-  public List<String> executeFilesPathQuery(String sql) throws SQLException {
+  private static List<String> readPaths(QueryHelper queryHelper)
+      throws SQLException {
     List<String> paths = new LinkedList<>();
-    QueryHelper queryHelper = new QueryHelper(sql);
     try {
       ResultSet res = queryHelper.executeQuery();
       while (res.next()) {
@@ -657,159 +825,247 @@ public List<String> executeFilesPathQuery(String sql) throws SQLException {
     }
   }
 
-  public synchronized boolean insertNewRule(RuleInfo info)
+  /**
+   * Values of the first row returned by the query, e.g. aggregates.
+   * @return null for no row, 0 for SQL NULL
+   */
+  public long[] executeLongsQuery(String sql) throws SQLException {
+    return readLongs(new QueryHelper(sql));
+  }
+
+  private static long[] readLongs(QueryHelper queryHelper)
       throws SQLException {
-    long ruleId = 0;
-    if (info.getSubmitTime() == 0) {
-      info.setSubmitTime(System.currentTimeMillis());
-    }
-
-    String sql = "INSERT INTO rules (state, rule_text, submit_time, "
-        + "checked_count, commands_generated"
-        + (info.getLastCheckTime() == 0 ? "" : ", last_check_time")
-        + ") VALUES ("
-        + info.getState().getValue()
-        + ", '" + info.getRuleText() + "'" // TODO: take care of '
-        + ", " + info.getSubmitTime()
-        + ", " + info.getNumChecked()
-        + ", " + info.getNumCmdsGen()
-        + (info.getLastCheckTime() == 0 ? "" : ", " + info.getLastCheckTime())
-        +");";
-
-    QueryHelper queryHelperInsert = new QueryHelper(sql);
     try {
-      queryHelperInsert.execute();
+      ResultSet res = queryHelper.executeQuery();
+      if (!res.next()) {
+        return null;
+      }
+      long[] values = new long[res.getMetaData().getColumnCount()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = res.getLong(i + 1);
+      }
+      return values;
     } finally {
-      queryHelperInsert.close();
+      queryHelper.close();
     }
+  }
 
-    QueryHelper queryHelper = new QueryHelper("SELECT MAX(id) FROM rules;");
+  /**
+   * Open a session on a connection of its own, see {@link ScratchSession}.
+   */
+  public ScratchSession openScratchSession() throws SQLException {
+    Connection conn = getConnection();
+    if (conn == null) {
+      throw new SQLException("Invalid null connection");
+    }
     try {
-      ResultSet rs = queryHelper.executeQuery();
-      if (rs.next()) {
-        ruleId = rs.getLong(1);
-        info.setId(ruleId);
-        return true;
-      } else {
-        return false;
-      }
-    } finally {
-      queryHelper.close();
+      return new ScratchSession(conn, "MySQL".equalsIgnoreCase(
+          conn.getMetaData().getDatabaseProductName()));
+    } catch (SQLException e) {
+      closeConnection(conn);
+      throw e;
     }
   }
 
-  public synchronized boolean updateRuleInfo(long ruleId, RuleState rs,
-      long lastCheckTime, long checkedCount, int commandsGen)
-      throws SQLException {
-    StringBuffer sb = new StringBuffer("UPDATE rules SET");
-    if (rs != null) {
-      sb.append(" state = ").append(rs.getValue()).append(",");
+  private static final Pattern CREATE_TABLE = Pattern.compile(
+      "^\\s*CREATE\\s+TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?"
+          + "(['`\"]?)([a-zA-Z_][a-zA-Z0-9_\\-]*)\\1",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern DROP_TABLE = Pattern.compile(
+      "^\\s*DROP\\s+TABLE\\s+(?:IF\\s+EXISTS\\s+)?"
+          + "(['`\"]?)([a-zA-Z_][a-zA-Z0-9_\\-]*)\\1",
+      Pattern.CASE_INSENSITIVE);
+
+  /**
+   * Statements building intermediate tables and queries over them, e.g.
+   * those of a rule check, run on one pooled connection. Tables are
+   * created TEMPORARY so that they are private to the connection: the
+   * statements bypass the metastore writer, are not journaled and do not
+   * hold the write lock of the metastore. Tables left are dropped when the
+   * session is closed, before the connection goes back to the pool.
+   */
+  public class ScratchSession {
+    private final Connection conn;
+    private final boolean mysql;
+    private final Set<String> tables = new LinkedHashSet<>();
+
+    private ScratchSession(Connection conn, boolean mysql) {
+      this.conn = conn;
+      this.mysql = mysql;
     }
-    if (lastCheckTime != 0) {
-      sb.append(" last_check_time = ").append(lastCheckTime).append(",");
+
+    /**
+     * Execute the statement, tables it creates or drops are temporary.
+     */
+    public void execute(String sql) throws SQLException {
+      executeRaw(toScratchStatement(sql));
+    }
+
+    private void executeRaw(String sql) throws SQLException {
+      QueryHelper queryHelper = new QueryHelper(sql, conn);
+      try {
+        queryHelper.execute();
+      } finally {
+        queryHelper.close();
+      }
     }
-    if (checkedCount != 0) {
-      sb.append(" checked_count = checked_count + ")
-          .append(checkedCount).append(",");
+
+    public List<String> executeFilesPathQuery(String sql)
+        throws SQLException {
+      return readPaths(new QueryHelper(sql, conn));
     }
-    if (commandsGen != 0) {
-      sb.append(" commands_generated = commands_generated + ")
-          .append(commandsGen).append(",");
+
+    public long[] executeLongsQuery(String sql) throws SQLException {
+      return readLongs(new QueryHelper(sql, conn));
     }
-    int idx = sb.lastIndexOf(",");
-    sb.replace(idx, idx + 1, "");
-    sb.append(" WHERE id = ").append(ruleId).append(";");
 
-    return 1 == executeUpdate(sb.toString());
-  }
+    @VisibleForTesting
+    String toScratchStatement(String sql) {
+      Matcher m = CREATE_TABLE.matcher(sql);
+      if (m.find()) {
+        tables.add(m.group(2));
+        return sql.replaceFirst("(?i)CREATE\\s+TABLE",
+            "CREATE TEMPORARY TABLE");
+      }
+      m = DROP_TABLE.matcher(sql);
+      if (m.find()) {
+        tables.remove(m.group(2));
+        return dropStatement(m.group(1), m.group(2));
+      }
+      return sql;
+    }
 
-  public RuleInfo getRuleInfo(long ruleId) throws SQLException {
-    String sql = "SELECT * FROM rules WHERE id = " + ruleId;
-    List<RuleInfo> infos = doGetRuleInfo(sql);
-    return infos.size() == 1 ? infos.get(0) : null;
-  }
+    private String dropStatement(String quote, String table) {
+      // Never reach a table of the metastore with the same name
+      return mysql
+          ? "DROP TEMPORARY TABLE IF EXISTS " + quote + table + quote + ";"
+          : "DROP TABLE IF EXISTS temp." + quote + table + quote + ";";
+    }
 
-  public List<RuleInfo> getRuleInfo() throws SQLException {
-    String sql = "SELECT * FROM rules";
-    return doGetRuleInfo(sql);
+    public void close() throws SQLException {
+      SQLException error = null;
+      for (String table : new ArrayList<>(tables)) {
+        try {
+          executeRaw(dropStatement(mysql ? "`" : "'", table));
+        } catch (SQLException e) {
+          error = error == null ? e : error;
+        }
+      }
+      tables.clear();
+      closeConnection(conn);
+      if (error != null) {
+        throw error;
+      }
+    }
   }
 
-  private List<RuleInfo> doGetRuleInfo(String sql) throws SQLException {
+  /**
+   * Values of all rows returned by the query.
+   */
+  public List<long[]> executeLongRowsQuery(String sql) throws SQLException {
+    List<long[]> rows = new ArrayList<>();
     QueryHelper queryHelper = new QueryHelper(sql);
-    List<RuleInfo> infos = new LinkedList<>();
     try {
-      ResultSet rs = queryHelper.executeQuery();
-      while (rs.next()) {
-        infos.add(new RuleInfo(
-            rs.getLong("id"),
-            rs.getLong("submit_time"),
-            rs.getString("rule_text"),
-            RuleState.fromValue((int)rs.getByte("state")),
-            rs.getLong("checked_count"),
-            rs.getLong("commands_generated"),
-            rs.getLong("last_check_time")
-        ));
-      }
-      return infos;
+      ResultSet res = queryHelper.executeQuery();
+      int numColumns = res.getMetaData().getColumnCount();
+      while (res.next()) {
+        long[] values = new long[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+          values[i] = res.getLong(i + 1);
+        }
+        rows.add(values);
+      }
+      return rows;
     } finally {
       queryHelper.close();
     }
   }
 
-  public synchronized void insertCommandsTable(CommandInfo[] commands)
+  public boolean insertNewRule(final RuleInfo info)
       throws SQLException {
+    return write(new MetaStoreWriter.Mutation<Boolean>() {
+      @Override
+      public Boolean apply() throws SQLException {
+        if (info.getSubmitTime() == 0) {
+          info.setSubmitTime(System.currentTimeMillis());
+        }
+        Connection conn = getConnection();
+        try {
+          return ruleDao.insert(conn, info);
+        } finally {
+          closeConnection(conn);
+        }
+      }
+    });
+  }
+
+  public boolean updateRuleInfo(final long ruleId, final RuleState rs,
+      final long lastCheckTime, final long checkedCount,
+      final int commandsGen) throws SQLException {
+    return write(new MetaStoreWriter.Mutation<Boolean>() {
+      @Override
+      public Boolean apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          return ruleDao.update(conn, ruleId, rs, lastCheckTime,
+              checkedCount, commandsGen);
+        } finally {
+          closeConnection(conn);
+        }
+      }
+    });
+  }
+
+  public RuleInfo getRuleInfo(long ruleId) throws SQLException {
     Connection conn = getConnection();
-    Statement s = null;
     try {
-      s = conn.createStatement();
-      for (int i = 0; i < commands.length; i++) {
-        String sql = "INSERT INTO commands (rid, action_id, state, "
-            + "parameters, generate_time, state_changed_time) "
-            + "VALUES('" + commands[i].getRid() + "', '"
-            + commands[i].getActionType().getValue() + "', '"
-            + commands[i].getState().getValue() + "', '"
-            + commands[i].getParameters() + "', '"
-            + commands[i].getGenerateTime() + "', '"
-            + commands[i].getStateChangedTime() + "');";
-        s.addBatch(sql);
-      }
-      s.executeBatch();
+      return ruleDao.get(conn, ruleId);
     } finally {
-      if (s != null && !s.isClosed()) {
-        s.close();
-      }
       closeConnection(conn);
     }
   }
 
-  public synchronized boolean insertCommandTable(CommandInfo command)
-      throws SQLException {
-    // Insert single command into commands, update command.id with latest id
-    String sql = "INSERT INTO commands (rid, action_id, state, "
-            + "parameters, generate_time, state_changed_time) "
-            + "VALUES('" + command.getRid() + "', '"
-            + command.getActionType().getValue() + "', '"
-            + command.getState().getValue() + "', '"
-            + command.getParameters() + "', '"
-            + command.getGenerateTime() + "', '"
-            + command.getStateChangedTime() + "');";
-
-    execute(sql);
-    QueryHelper queryHelper = new QueryHelper("SELECT MAX(id) FROM commands;");
+  public List<RuleInfo> getRuleInfo() throws SQLException {
+    Connection conn = getConnection();
     try {
-      ResultSet rs = queryHelper.executeQuery();
-      if (rs.next()) {
-        long cid = rs.getLong(1);
-        command.setCid(cid);
-        return true;
-      } else {
-        return false;
-      }
+      return ruleDao.getAll(conn);
     } finally {
-      queryHelper.close();
+      closeConnection(conn);
     }
   }
 
+  public void insertCommandsTable(final CommandInfo[] commands)
+      throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          commandDao.insert(conn, commands);
+        } finally {
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+  }
+
+  public boolean insertCommandTable(final CommandInfo command)
+      throws SQLException {
+    // Insert single command into commands, update command.id with latest id
+    return write(new MetaStoreWriter.Mutation<Boolean>() {
+      @Override
+      public Boolean apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          return commandDao.insert(conn, command);
+        } finally {
+          closeConnection(conn);
+        }
+      }
+    });
+  }
+
   public List<CommandInfo> getCommandsTableItem(String cidCondition,
       String ridCondition, CommandState state) throws SQLException {
     String sqlPrefix = "SELECT * FROM commands WHERE ";
@@ -825,69 +1081,163 @@ public List<CommandInfo> getCommandsTableItem(String cidCondition,
     return null;
   }
 
-  private List<CommandInfo> getCommands(String sql) throws SQLException {
+  /**
+   * Parameters of the commands of the action in any of the states.
+   */
+  public List<String> getCommandsParameters(ActionType actionType,
+      CommandState... states) throws SQLException {
+    StringBuilder sql = new StringBuilder("SELECT parameters FROM commands "
+        + "WHERE action_id = " + actionType.getValue() + " AND state IN (");
+    for (int i = 0; i < states.length; i++) {
+      sql.append(i == 0 ? "" : ", ").append(states[i].getValue());
+    }
+    return readPaths(new QueryHelper(sql.append(");").toString()));
+  }
+
+  /**
+   * Commands matching the filter with cid greater than prevCid, in
+   * ascending order of cid.
+   */
+  public List<CommandInfo> listCommands(CommandFilter filter, long prevCid,
+      int limit) throws SQLException {
+    String sql = "SELECT * FROM commands WHERE cid > " + prevCid
+        + getCommandsCondition(filter) + " ORDER BY cid LIMIT " + limit + ";";
+    return getCommands(sql);
+  }
+
+  /**
+   * Number of commands matching the filter in each state.
+   */
+  public Map<CommandState, Long> getCommandsSummary(CommandFilter filter)
+      throws SQLException {
+    String condition = getCommandsCondition(filter);
+    String sql = "SELECT state, COUNT(*) AS num FROM commands"
+        + (condition.isEmpty() ? "" : " WHERE " + condition.substring(5))
+        + " GROUP BY state;";
     QueryHelper queryHelper = new QueryHelper(sql);
     try {
       ResultSet result = queryHelper.executeQuery();
-      List<CommandInfo> ret = convertCommandsTableItem(result);
+      Map<CommandState, Long> ret = new HashMap<>();
+      while (result.next()) {
+        ret.put(CommandState.fromValue((int) result.getByte("state")),
+            result.getLong("num"));
+      }
       return ret;
     } finally {
       queryHelper.close();
     }
   }
 
-  public boolean updateCommandStatus(long cid, long rid, CommandState state)
-      throws SQLException {
-    StringBuffer sb = new StringBuffer("UPDATE commands SET");
-    if (state != null) {
-      sb.append(" state = ").append(state.getValue()).append(",");
-      sb.append(" state_changed_time = ").append(System.currentTimeMillis()).append(",");
-    }
-    int idx = sb.lastIndexOf(",");
-    sb.replace(idx, idx + 1, "");
-    sb.append(" WHERE cid = ").append(cid).append(" AND ").append("rid = ")
-        .append(rid).append(";");
-    QueryHelper queryHelper = new QueryHelper(sb.toString());
+  private String getCommandsCondition(CommandFilter filter) {
+    if (filter == null) {
+      return "";
+    }
+    StringBuilder sb = new StringBuilder();
+    if (filter.getRuleId() != -1) {
+      sb.append(" AND rid = ").append(filter.getRuleId());
+    }
+    if (filter.getState() != null) {
+      sb.append(" AND state = ").append(filter.getState().getValue());
+    }
+    if (filter.getActionType() != null) {
+      sb.append(" AND action_id = ").append(filter.getActionType().getValue());
+    }
+    if (filter.getFromTime() != -1) {
+      sb.append(" AND generate_time >= ").append(filter.getFromTime());
+    }
+    if (filter.getToTime() != -1) {
+      sb.append(" AND generate_time < ").append(filter.getToTime());
+    }
+    return sb.toString();
+  }
+
+  private List<CommandInfo> getCommands(String sql) throws SQLException {
+    QueryHelper queryHelper = new QueryHelper(sql);
     try {
-      return queryHelper.executeUpdate() == 1;
+      ResultSet result = queryHelper.executeQuery();
+      List<CommandInfo> ret = convertCommandsTableItem(result);
+      return ret;
     } finally {
       queryHelper.close();
     }
   }
 
-  public void deleteCommand(long cid) throws SQLException {
-    String sql =  String.format("DELETE from commands WHERE cid = %d;", cid);
-    execute(sql);
+  public boolean updateCommandStatus(final long cid, final long rid,
+      final CommandState state) throws SQLException {
+    if (state == null) {
+      return false;
+    }
+    return write(new MetaStoreWriter.Mutation<Boolean>() {
+      @Override
+      public Boolean apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          return commandDao.updateState(conn, cid, rid, state,
+              System.currentTimeMillis());
+        } finally {
+          closeConnection(conn);
+        }
+      }
+    });
+  }
+
+  /**
+   * Set the state of several commands in one batch.
+   */
+  public void updateCommandsStatus(final Map<Long, CommandState> states)
+      throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          commandDao.updateStates(conn, states, System.currentTimeMillis());
+        } finally {
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+  }
+
+  public void deleteCommand(final long cid) throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          commandDao.delete(conn, cid);
+        } finally {
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
   }
 
   private List<CommandInfo> convertCommandsTableItem(ResultSet resultSet)
       throws SQLException {
-    List<CommandInfo> ret = new LinkedList<>();
+    List<CommandInfo> ret = new ArrayList<>();
     if (resultSet == null) {
       return ret;
     }
 
     while (resultSet.next()) {
-      CommandInfo commands = new CommandInfo(
-          resultSet.getLong("cid"),
-          resultSet.getLong("rid"),
-          ActionType.fromValue((int)resultSet.getByte("action_id")),
-          CommandState.fromValue((int)resultSet.getByte("state")),
-          resultSet.getString("parameters"),
-          resultSet.getLong("generate_time"),
-          resultSet.getLong("state_changed_time")
-      );
-      ret.add(commands);
+      ret.add(CommandDao.MAPPER.map(resultSet));
     }
     return ret;
   }
 
-  public synchronized void insertStoragePolicyTable(StoragePolicy s)
+  public void insertStoragePolicyTable(StoragePolicy s)
       throws SQLException {
     String sql = "INSERT INTO `storage_policy` (sid, policy_name) VALUES('"
       + s.getSid() + "','" + s.getPolicyName() + "');";
     mapStoragePolicyIdName = null;
-    execute(sql);
+    try {
+      execute(sql);
+    } finally {
+      generations.bump(TableGenerations.STORAGE_POLICY);
+    }
   }
 
   public String getStoragePolicyName(int sid) throws SQLException {
@@ -900,39 +1250,45 @@ public Integer getStoragePolicyID(String policyName) throws SQLException {
     return getKey(mapStoragePolicyIdName, policyName);
   }
 
-  public synchronized boolean insertXattrTable(Long fid, Map<String,
-      byte[]> map) throws SQLException {
-    String sql = "INSERT INTO xattr (fid, namespace, name, value) "
-        + "VALUES (?, ?, ?, ?)";
-    Connection conn = getConnection();
-    PreparedStatement p = null;
-    try {
-      conn.setAutoCommit(false);
-      p = conn.prepareStatement(sql);
-      for (Map.Entry<String, byte[]> e : map.entrySet()) {
-        XAttr xa = XAttrHelper.buildXAttr(e.getKey(), e.getValue());
-        p.setLong(1, fid);
-        p.setString(2, String.valueOf(xa.getNameSpace()));
-        p.setString(3, xa.getName());
-        p.setBytes(4, xa.getValue());
-        p.addBatch();
-      }
-      int[] i = p.executeBatch();
-      p.close();
-      p = null;
-      conn.commit();
-      conn.setAutoCommit(true);
-      if (i.length == map.size()) {
-        return true;
-      } else {
-        return false;
+  public boolean insertXattrTable(final Long fid,
+      final Map<String, byte[]> map) throws SQLException {
+    return write(TableGenerations.XATTR,
+        new MetaStoreWriter.Mutation<Boolean>() {
+      @Override
+      public Boolean apply() throws SQLException {
+        String sql = "INSERT INTO xattr (fid, namespace, name, value) "
+            + "VALUES (?, ?, ?, ?)";
+        Connection conn = getConnection();
+        PreparedStatement p = null;
+        try {
+          beginTransaction(conn);
+          p = conn.prepareStatement(sql);
+          for (Map.Entry<String, byte[]> e : map.entrySet()) {
+            XAttr xa = XAttrHelper.buildXAttr(e.getKey(), e.getValue());
+            p.setLong(1, fid);
+            p.setString(2, String.valueOf(xa.getNameSpace()));
+            p.setString(3, xa.getName());
+            p.setBytes(4, xa.getValue());
+            p.addBatch();
+          }
+          int[] i = p.executeBatch();
+          p.close();
+          p = null;
+          commitTransaction(conn);
+          endTransaction(conn);
+          if (i.length == map.size()) {
+            return true;
+          } else {
+            return false;
+          }
+        } finally {
+          if (p != null && !p.isClosed()) {
+            p.close();
+          }
+          closeConnection(conn);
+        }
       }
-    } finally {
-      if (p != null && !p.isClosed()) {
-        p.close();
-      }
-      closeConnection(conn);
-    }
+    });
   }
 
   public Map<String, byte[]> getXattrTable(Long fid) throws SQLException {
@@ -960,6 +1316,404 @@ private Map<String, byte[]> getXattrTable(String sql) throws SQLException {
     }
   }
 
+  /**
+   * Persist a heat snapshot. A full snapshot replaces the whole table,
+   * otherwise only the rows of the files in the snapshot are upserted and
+   * the rows of pruned files deleted.
+   */
+  public void updateFileHeatTable(
+      final FileHeatTracker.Snapshot snapshot) throws SQLException {
+    write(TableGenerations.FILE_HEAT, new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        String sql = (snapshot.isFull() ? "INSERT" : "REPLACE")
+            + " INTO file_heat (fid, half_life, heat, update_time) "
+            + "VALUES (?, ?, ?, ?)";
+        long[] halfLives = snapshot.getHalfLives();
+        Connection conn = getConnection();
+        Statement s = null;
+        PreparedStatement p = null;
+        PreparedStatement d = null;
+        try {
+          beginTransaction(conn);
+          if (snapshot.isFull()) {
+            s = conn.createStatement();
+            s.executeUpdate("DELETE FROM file_heat");
+          } else if (snapshot.getNumRemoved() > 0) {
+            d = conn.prepareStatement("DELETE FROM file_heat WHERE fid = ?");
+            for (int i = 0; i < snapshot.getNumRemoved(); i++) {
+              d.setLong(1, snapshot.getRemovedFid(i));
+              d.addBatch();
+            }
+            d.executeBatch();
+          }
+          p = conn.prepareStatement(sql);
+          for (int i = 0; i < snapshot.getSize(); i++) {
+            for (int h = 0; h < halfLives.length; h++) {
+              p.setLong(1, snapshot.getFid(i));
+              p.setLong(2, halfLives[h]);
+              p.setDouble(3, snapshot.getHeat(h, i));
+              p.setLong(4, snapshot.getBaseTime());
+              p.addBatch();
+            }
+          }
+          p.executeBatch();
+          commitTransaction(conn);
+        } catch (SQLException e) {
+          rollbackTransaction(conn);
+          throw e;
+        } finally {
+          endTransaction(conn);
+          if (s != null && !s.isClosed()) {
+            s.close();
+          }
+          if (p != null && !p.isClosed()) {
+            p.close();
+          }
+          if (d != null && !d.isClosed()) {
+            d.close();
+          }
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+  }
+
+  public void loadFileHeats(FileHeatTracker tracker) throws SQLException {
+    QueryHelper queryHelper = new QueryHelper(
+        "SELECT fid, half_life, heat, update_time FROM file_heat");
+    try {
+      ResultSet rs = queryHelper.executeQuery();
+      while (rs.next()) {
+        tracker.restore(rs.getLong("fid"), rs.getLong("half_life"),
+            rs.getDouble("heat"), rs.getLong("update_time"));
+      }
+    } finally {
+      queryHelper.close();
+    }
+  }
+
+  /**
+   * Add reads reported by DataNodes to the read volume of each file.
+   * Files not known in table 'files' are skipped.
+   */
+  public void updateFileReadVolumes(
+      final List<FileReadVolume> volumes, final long time)
+      throws SQLException {
+    write(TableGenerations.FILE_READ_VOLUME,
+        new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        if (volumes.isEmpty()) {
+          return null;
+        }
+        List<String> paths = new LinkedList<>();
+        for (FileReadVolume volume : volumes) {
+          paths.add(volume.getPath());
+        }
+        Map<String, Long> pathToId = getFileIDs(paths);
+        Connection conn = getConnection();
+        PreparedStatement u = null;
+        PreparedStatement p = null;
+        try {
+          beginTransaction(conn);
+          u = conn.prepareStatement("UPDATE file_read_volume SET "
+              + "num_reads = num_reads + ?, bytes_read = bytes_read + ?, "
+              + "update_time = ? WHERE fid = ?");
+          p = conn.prepareStatement("INSERT INTO file_read_volume "
+              + "(fid, num_reads, bytes_read, update_time) "
+              + "VALUES (?, ?, ?, ?)");
+          for (FileReadVolume volume : volumes) {
+            Long fid = pathToId.get(volume.getPath());
+            if (fid == null) {
+              continue;
+            }
+            u.setLong(1, volume.getNumReads());
+            u.setLong(2, volume.getBytesRead());
+            u.setLong(3, time);
+            u.setLong(4, fid);
+            if (u.executeUpdate() == 0) {
+              p.setLong(1, fid);
+              p.setLong(2, volume.getNumReads());
+              p.setLong(3, volume.getBytesRead());
+              p.setLong(4, time);
+              p.executeUpdate();
+            }
+          }
+          commitTransaction(conn);
+        } catch (SQLException e) {
+          rollbackTransaction(conn);
+          throw e;
+        } finally {
+          endTransaction(conn);
+          if (u != null && !u.isClosed()) {
+            u.close();
+          }
+          if (p != null && !p.isClosed()) {
+            p.close();
+          }
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Record where a compacted file is stored. Any former mapping of the
+   * same path is replaced in the same transaction.
+   */
+  public void insertCompactFile(final CompactFileInfo info)
+      throws SQLException {
+    write(TableGenerations.COMPACT_FILES, new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        PreparedStatement d = null;
+        PreparedStatement p = null;
+        try {
+          beginTransaction(conn);
+          d = conn.prepareStatement("DELETE FROM compact_files WHERE path = ?");
+          d.setString(1, info.getPath());
+          d.executeUpdate();
+          p = conn.prepareStatement("INSERT INTO compact_files (fid, path, "
+              + "container, container_offset, length) VALUES (?, ?, ?, ?, ?)");
+          p.setLong(1, info.getFid());
+          p.setString(2, info.getPath());
+          p.setString(3, info.getContainerPath());
+          p.setLong(4, info.getOffset());
+          p.setLong(5, info.getLength());
+          p.executeUpdate();
+          commitTransaction(conn);
+        } catch (SQLException e) {
+          rollbackTransaction(conn);
+          throw e;
+        } finally {
+          endTransaction(conn);
+          if (d != null && !d.isClosed()) {
+            d.close();
+          }
+          if (p != null && !p.isClosed()) {
+            p.close();
+          }
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+  }
+
+  public CompactFileInfo getCompactFileInfo(String path) throws SQLException {
+    Connection conn = getConnection();
+    PreparedStatement p = null;
+    try {
+      p = conn.prepareStatement("SELECT * FROM compact_files WHERE path = ?");
+      p.setString(1, path);
+      ResultSet rs = p.executeQuery();
+      if (!rs.next()) {
+        return null;
+      }
+      return new CompactFileInfo(rs.getLong("fid"), rs.getString("path"),
+          rs.getString("container"), rs.getLong("container_offset"),
+          rs.getLong("length"));
+    } finally {
+      if (p != null && !p.isClosed()) {
+        p.close();
+      }
+      closeConnection(conn);
+    }
+  }
+
+  /**
+   * Last edit log txid of the namespace applied to the metastore.
+   * @return null if the namespace has not been fetched
+   */
+  public Long getInotifyTxid(int nsid) throws SQLException {
+    Connection conn = getConnection();
+    PreparedStatement p = null;
+    try {
+      p = conn.prepareStatement("SELECT txid FROM inotify_txids WHERE nsid = ?");
+      p.setInt(1, nsid);
+      ResultSet rs = p.executeQuery();
+      return rs.next() ? rs.getLong(1) : null;
+    } finally {
+      if (p != null && !p.isClosed()) {
+        p.close();
+      }
+      closeConnection(conn);
+    }
+  }
+
+  public void updateInotifyTxid(final int nsid, final long txid)
+      throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        PreparedStatement d = null;
+        PreparedStatement p = null;
+        try {
+          beginTransaction(conn);
+          d = conn.prepareStatement("DELETE FROM inotify_txids WHERE nsid = ?");
+          d.setInt(1, nsid);
+          d.executeUpdate();
+          p = conn.prepareStatement(
+              "INSERT INTO inotify_txids (nsid, txid) VALUES (?, ?)");
+          p.setInt(1, nsid);
+          p.setLong(2, txid);
+          p.executeUpdate();
+          commitTransaction(conn);
+        } catch (SQLException e) {
+          rollbackTransaction(conn);
+          throw e;
+        } finally {
+          endTransaction(conn);
+          if (d != null && !d.isClosed()) {
+            d.close();
+          }
+          if (p != null && !p.isClosed()) {
+            p.close();
+          }
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Offset reached in an audit log file.
+   * @param fileKey identity of the file, as the log may have been rotated
+   * @return null if the file has not been tailed
+   */
+  public Long getAuditLogOffset(String path, String fileKey)
+      throws SQLException {
+    Connection conn = getConnection();
+    PreparedStatement p = null;
+    try {
+      p = conn.prepareStatement("SELECT log_offset FROM audit_log_offsets "
+          + "WHERE path = ? AND file_key = ?");
+      p.setString(1, path);
+      p.setString(2, fileKey);
+      ResultSet rs = p.executeQuery();
+      return rs.next() ? rs.getLong(1) : null;
+    } finally {
+      if (p != null && !p.isClosed()) {
+        p.close();
+      }
+      closeConnection(conn);
+    }
+  }
+
+  public void updateAuditLogOffset(final String path, final String fileKey,
+      final long offset) throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        PreparedStatement d = null;
+        PreparedStatement p = null;
+        try {
+          beginTransaction(conn);
+          d = conn.prepareStatement(
+              "DELETE FROM audit_log_offsets WHERE path = ?");
+          d.setString(1, path);
+          d.executeUpdate();
+          p = conn.prepareStatement("INSERT INTO audit_log_offsets "
+              + "(path, file_key, log_offset) VALUES (?, ?, ?)");
+          p.setString(1, path);
+          p.setString(2, fileKey);
+          p.setLong(3, offset);
+          p.executeUpdate();
+          commitTransaction(conn);
+        } catch (SQLException e) {
+          rollbackTransaction(conn);
+          throw e;
+        } finally {
+          endTransaction(conn);
+          if (d != null && !d.isClosed()) {
+            d.close();
+          }
+          if (p != null && !p.isClosed()) {
+            p.close();
+          }
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Names of the tables starting with the prefix, views excluded.
+   */
+  public List<String> getTableNames(String prefix) throws SQLException {
+    Connection conn = getConnection();
+    try {
+      return Util.getTableNames(conn, prefix);
+    } finally {
+      closeConnection(conn);
+    }
+  }
+
+  /**
+   * Replay in one transaction the changes logged by the writer of another
+   * metastore.
+   */
+  public void applyChanges(final List<MetaStoreChange> changes)
+      throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          beginTransaction(conn);
+          for (MetaStoreChange change : changes) {
+            change.apply(conn);
+          }
+          commitTransaction(conn);
+        } catch (SQLException e) {
+          rollbackTransaction(conn);
+          throw e;
+        } finally {
+          endTransaction(conn);
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+    // Cached tables may have been changed too
+    clearCache();
+  }
+
+  /**
+   * Drop everything in the metastore and create the empty tables of SSM.
+   */
+  public void formatDataBase() throws SQLException {
+    write(new MetaStoreWriter.Mutation<Void>() {
+      @Override
+      public Void apply() throws SQLException {
+        Connection conn = getConnection();
+        try {
+          Util.formatDataBase(conn);
+        } finally {
+          closeConnection(conn);
+        }
+        return null;
+      }
+    });
+    clearCache();
+  }
+
+  private void clearCache() {
+    mapOwnerIdName = null;
+    mapGroupIdName = null;
+    mapStoragePolicyIdName = null;
+    mapECPolicy = null;
+    mapStorageCapacity = null;
+  }
+
   @VisibleForTesting
   public ResultSet executeQuery(String sqlQuery) throws SQLException {
     Connection conn = getConnection();
@@ -28,7 +28,14 @@ public class DruidPool implements DBPool {
   private final DruidDataSource ds;
 
   public DruidPool(Properties properties) throws Exception {
-    ds = (DruidDataSource) DruidDataSourceFactory.createDataSource(properties);
+    Properties p = new Properties();
+    // Statements of readers stay prepared on pooled connections unless
+    // configured otherwise
+    p.setProperty("poolPreparedStatements", "true");
+    p.setProperty("maxPoolPreparedStatementPerConnectionSize",
+        String.valueOf(StatementCache.DEFAULT_CAPACITY));
+    p.putAll(properties);
+    ds = (DruidDataSource) DruidDataSourceFactory.createDataSource(p);
   }
 
   public Connection getConnection() throws SQLException {
@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * A row of table 'files'. Scans refill one record for every row, so
+ * handlers copy out what they keep.
+ */
+public class FileRecord {
+  private long fid;
+  private String path;
+  private long length;
+  private boolean dir;
+  private short replication;
+  private long blockSize;
+  private long modificationTime;
+  private long accessTime;
+  private short permission;
+  private int ownerId;
+  private int groupId;
+  private byte storagePolicy;
+  private int ecPolicyId;
+
+  /**
+   * Called for each row of a scan.
+   */
+  public interface Handler {
+    void handle(FileRecord record) throws SQLException;
+  }
+
+  /**
+   * Fill the record with the current row.
+   */
+  public void readFrom(ResultSet rs) throws SQLException {
+    fid = rs.getLong("fid");
+    path = rs.getString("path");
+    length = rs.getLong("length");
+    dir = rs.getBoolean("is_dir");
+    replication = rs.getShort("block_replication");
+    blockSize = rs.getLong("block_size");
+    modificationTime = rs.getLong("modification_time");
+    accessTime = rs.getLong("access_time");
+    permission = rs.getShort("permission");
+    ownerId = rs.getInt("oid");
+    groupId = rs.getInt("gid");
+    storagePolicy = rs.getByte("sid");
+    ecPolicyId = rs.getInt("ec_policy_id");
+  }
+
+  /**
+   * Status of the file with owner, group and erasure coding policy
+   * resolved from their ids.
+   */
+  public HdfsFileStatus toFileStatus(Map<Integer, String> owners,
+      Map<Integer, String> groups,
+      Map<Integer, ErasureCodingPolicy> ecPolicies) {
+    return new HdfsFileStatus(length, dir, replication, blockSize,
+        modificationTime, accessTime, new FsPermission(permission),
+        owners.get(ownerId), groups.get(groupId),
+        null, // Not tracked for now
+        path.getBytes(), fid,
+        0,    // Not tracked for now, set to 0
+        null, // Not tracked for now, set to null
+        storagePolicy, ecPolicies.get(ecPolicyId));
+  }
+
+  public long getFid() {
+    return fid;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public boolean isDir() {
+    return dir;
+  }
+
+  public short getReplication() {
+    return replication;
+  }
+
+  public long getBlockSize() {
+    return blockSize;
+  }
+
+  public long getModificationTime() {
+    return modificationTime;
+  }
+
+  public long getAccessTime() {
+    return accessTime;
+  }
+
+  public short getPermission() {
+    return permission;
+  }
+
+  public int getOwnerId() {
+    return ownerId;
+  }
+
+  public int getGroupId() {
+    return groupId;
+  }
+
+  public byte getStoragePolicy() {
+    return storagePolicy;
+  }
+
+  public int getEcPolicyId() {
+    return ecPolicyId;
+  }
+}
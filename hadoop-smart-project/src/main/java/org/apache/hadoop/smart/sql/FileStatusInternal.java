@@ -57,10 +57,19 @@ public FileStatusInternal(long length, boolean isdir, int block_replication,
   }
 
   public FileStatusInternal(HdfsFileStatus status, String parent) {
+    this(status, parent, status.getFileId());
+  }
+
+  /**
+   * Copy of the status with the file id replaced, e.g. by the id
+   * namespaced for the metastore.
+   */
+  public FileStatusInternal(HdfsFileStatus status, String parent,
+      long fileId) {
     this(status.getLen(), status.isDir(), status.getReplication(),
         status.getBlockSize(), status.getModificationTime(), status.getAccessTime(),
         status.getPermission(), status.getOwner(), status.getGroup(), status.getSymlinkInBytes(),
-        status.getLocalNameInBytes(), parent, status.getFileId(), status.getChildrenNum(),
+        status.getLocalNameInBytes(), parent, fileId, status.getChildrenNum(),
         status.getFileEncryptionInfo(), status.getStoragePolicy(),
         status.getErasureCodingPolicy());
   }
@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A statement committed to the metastore together with the parameters it
+ * was run with, so that it can be replayed on another metastore.
+ */
+public class MetaStoreChange {
+  private static final byte NULL = 0;
+  private static final byte LONG = 1;
+  private static final byte INT = 2;
+  private static final byte SHORT = 3;
+  private static final byte BYTE = 4;
+  private static final byte BOOLEAN = 5;
+  private static final byte DOUBLE = 6;
+  private static final byte FLOAT = 7;
+  private static final byte STRING = 8;
+  private static final byte BYTES = 9;
+
+  private final String sql;
+  // Null for a plain statement, else parameters of each run of the statement
+  private final List<Object[]> rows;
+
+  public MetaStoreChange(String sql) {
+    this(sql, null);
+  }
+
+  public MetaStoreChange(String sql, List<Object[]> rows) {
+    this.sql = sql;
+    this.rows = rows;
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  public List<Object[]> getRows() {
+    return rows == null
+        ? Collections.<Object[]>emptyList() : Collections.unmodifiableList(rows);
+  }
+
+  public boolean isPrepared() {
+    return rows != null;
+  }
+
+  /**
+   * Run the statement on the connection, transactions are managed by the
+   * caller.
+   */
+  public void apply(Connection conn) throws SQLException {
+    if (rows == null) {
+      Statement s = conn.createStatement();
+      try {
+        s.execute(sql);
+      } finally {
+        s.close();
+      }
+      return;
+    }
+    PreparedStatement p = conn.prepareStatement(sql);
+    try {
+      if (rows.size() == 1) {
+        bind(p, rows.get(0));
+        p.execute();
+        return;
+      }
+      for (Object[] row : rows) {
+        bind(p, row);
+        p.addBatch();
+      }
+      p.executeBatch();
+    } finally {
+      p.close();
+    }
+  }
+
+  private static void bind(PreparedStatement p, Object[] row)
+      throws SQLException {
+    for (int i = 0; i < row.length; i++) {
+      p.setObject(i + 1, row[i]);
+    }
+  }
+
+  public void write(DataOutput out) throws IOException {
+    Text.writeString(out, sql);
+    if (rows == null) {
+      WritableUtils.writeVInt(out, -1);
+      return;
+    }
+    WritableUtils.writeVInt(out, rows.size());
+    for (Object[] row : rows) {
+      WritableUtils.writeVInt(out, row.length);
+      for (Object value : row) {
+        writeValue(out, value);
+      }
+    }
+  }
+
+  public static MetaStoreChange read(DataInput in) throws IOException {
+    String sql = Text.readString(in);
+    int numRows = WritableUtils.readVInt(in);
+    if (numRows < 0) {
+      return new MetaStoreChange(sql);
+    }
+    List<Object[]> rows = new ArrayList<>(numRows);
+    for (int i = 0; i < numRows; i++) {
+      Object[] row = new Object[WritableUtils.readVInt(in)];
+      for (int j = 0; j < row.length; j++) {
+        row[j] = readValue(in);
+      }
+      rows.add(row);
+    }
+    return new MetaStoreChange(sql, rows);
+  }
+
+  public static void writeAll(DataOutput out, List<MetaStoreChange> changes)
+      throws IOException {
+    WritableUtils.writeVInt(out, changes.size());
+    for (MetaStoreChange change : changes) {
+      change.write(out);
+    }
+  }
+
+  public static List<MetaStoreChange> readAll(DataInput in)
+      throws IOException {
+    int size = WritableUtils.readVInt(in);
+    List<MetaStoreChange> changes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      changes.add(read(in));
+    }
+    return changes;
+  }
+
+  private static void writeValue(DataOutput out, Object value)
+      throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      Text.writeString(out, (String) value);
+    } else if (value instanceof byte[]) {
+      out.writeByte(BYTES);
+      byte[] bytes = (byte[]) value;
+      WritableUtils.writeVInt(out, bytes.length);
+      out.write(bytes);
+    } else {
+      throw new IOException("Unsupported parameter type: "
+          + value.getClass().getName());
+    }
+  }
+
+  private static Object readValue(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case LONG:
+        return in.readLong();
+      case INT:
+        return in.readInt();
+      case SHORT:
+        return in.readShort();
+      case BYTE:
+        return in.readByte();
+      case BOOLEAN:
+        return in.readBoolean();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case STRING:
+        return Text.readString(in);
+      case BYTES:
+        byte[] bytes = new byte[WritableUtils.readVInt(in)];
+        in.readFully(bytes);
+        return bytes;
+      default:
+        throw new IOException("Unknown parameter type: " + type);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return rows == null ? sql : sql + " (" + rows.size() + " rows)";
+  }
+}
@@ -0,0 +1,313 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The only thread writing to the metastore. Mutations are queued by callers
+ * and applied on one dedicated connection, several of them committed in one
+ * transaction, so that readers on other pooled connections only ever see
+ * committed snapshots and never contend with each other for the write lock.
+ */
+public class MetaStoreWriter implements Runnable {
+  static final Logger LOG = LoggerFactory.getLogger(MetaStoreWriter.class);
+
+  /**
+   * A change to the metastore. It is applied on the writer's connection,
+   * which is the one returned by the adapter on the writer thread, and must
+   * not commit or roll back by itself.
+   */
+  public interface Mutation<T> {
+    T apply() throws SQLException;
+  }
+
+  /**
+   * Where the changes committed by the writer are shipped to, e.g. to be
+   * replayed on a standby.
+   */
+  public interface ChangeLog {
+    /**
+     * Called with the statements of a transaction before it is committed,
+     * the transaction is rolled back if they could not be logged.
+     */
+    void append(List<MetaStoreChange> changes) throws IOException;
+  }
+
+  private static class Pending<T> {
+    private final Mutation<T> mutation;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private T result;
+    private SQLException error;
+
+    Pending(Mutation<T> mutation) {
+      this.mutation = mutation;
+    }
+
+    void apply() throws SQLException {
+      result = mutation.apply();
+    }
+  }
+
+  private final DBPool pool;
+  private final int maxBatchSize;
+  private final StatementCache statementCache;
+  private final ChangeLog changeLog;
+  private final LinkedBlockingQueue<Pending<?>> queue =
+      new LinkedBlockingQueue<>();
+  // Guards running against mutations queued while the writer stops
+  private final Object queueLock = new Object();
+  private Connection rawConn;
+  // Records the changes on rawConn if there is a change log
+  private Connection conn;
+  private Thread thread;
+  private volatile boolean running = false;
+
+  private volatile long numCommits = 0;
+  private volatile long numMutations = 0;
+  private volatile long numFailures = 0;
+  private volatile long totalCommitTime = 0;
+  private volatile long lastCommitTime = 0;
+  private volatile long maxCommitTime = 0;
+
+  public MetaStoreWriter(DBPool pool, int maxBatchSize,
+      StatementCache statementCache) {
+    this(pool, maxBatchSize, statementCache, null);
+  }
+
+  public MetaStoreWriter(DBPool pool, int maxBatchSize,
+      StatementCache statementCache, ChangeLog changeLog) {
+    this.pool = pool;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.statementCache = statementCache;
+    this.changeLog = changeLog;
+  }
+
+  public synchronized void start() throws SQLException {
+    if (running) {
+      return;
+    }
+    rawConn = pool.getConnection();
+    Util.enableWriteAheadLog(rawConn);
+    conn = changeLog == null
+        ? rawConn : ChangeRecorder.wrap(rawConn, changeLog);
+    // Statements stay prepared on the writer's connection
+    statementCache.pin(conn);
+    synchronized (queueLock) {
+      running = true;
+    }
+    thread = new Thread(this, "MetaStoreWriter");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stop accepting mutations. Those already queued are still committed.
+   */
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    synchronized (queueLock) {
+      // Nothing is queued after this, the writer drains the queue and exits
+      running = false;
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    statementCache.unpin(conn);
+    try {
+      pool.closeConnection(rawConn);
+    } catch (SQLException e) {
+      LOG.error("Failed to close the connection of metastore writer", e);
+    }
+    LOG.info("Metastore writer stopped: " + getReport());
+  }
+
+  public boolean isWriterThread() {
+    return Thread.currentThread() == thread;
+  }
+
+  /**
+   * The connection mutations are applied on.
+   */
+  public Connection getConnection() {
+    return conn;
+  }
+
+  /**
+   * Queue the mutation and wait until it is committed.
+   */
+  public <T> T execute(Mutation<T> mutation) throws SQLException {
+    if (isWriterThread()) {
+      // Nested mutation, it joins the transaction being built
+      return mutation.apply();
+    }
+    Pending<T> pending = new Pending<>(mutation);
+    synchronized (queueLock) {
+      if (!running) {
+        throw new SQLException("Metastore writer is not running");
+      }
+      queue.add(pending);
+    }
+    try {
+      pending.done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for commit", e);
+    }
+    if (pending.error != null) {
+      throw pending.error;
+    }
+    return pending.result;
+  }
+
+  @Override
+  public void run() {
+    List<Pending<?>> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      Pending<?> first;
+      try {
+        first = queue.poll(100, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        continue;
+      }
+      if (first == null) {
+        continue;
+      }
+      batch.add(first);
+      queue.drainTo(batch, maxBatchSize - 1);
+      try {
+        commit(batch);
+      } finally {
+        for (Pending<?> p : batch) {
+          p.done.countDown();
+        }
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Apply the batch in one transaction. If any mutation fails the batch is
+   * rolled back and each mutation is retried in its own transaction, so
+   * that one bad mutation does not fail the others.
+   */
+  private void commit(List<Pending<?>> batch) {
+    SQLException error = applyInTransaction(batch);
+    if (error == null) {
+      return;
+    }
+    if (batch.size() == 1) {
+      batch.get(0).error = error;
+      numFailures++;
+      return;
+    }
+    for (Pending<?> p : batch) {
+      error = applyInTransaction(Collections.<Pending<?>>singletonList(p));
+      if (error != null) {
+        p.error = error;
+        numFailures++;
+      }
+    }
+  }
+
+  private SQLException applyInTransaction(List<Pending<?>> batch) {
+    long startTime = System.nanoTime();
+    try {
+      conn.setAutoCommit(false);
+      for (Pending<?> p : batch) {
+        p.apply();
+      }
+      conn.commit();
+    } catch (SQLException | RuntimeException e) {
+      try {
+        conn.rollback();
+      } catch (SQLException re) {
+        LOG.error("Failed to roll back metastore transaction", re);
+      }
+      return e instanceof SQLException
+          ? (SQLException) e : new SQLException(e);
+    } finally {
+      try {
+        conn.setAutoCommit(true);
+      } catch (SQLException e) {
+        LOG.error("Failed to restore auto commit", e);
+      }
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    numCommits++;
+    numMutations += batch.size();
+    totalCommitTime += elapsed;
+    lastCommitTime = elapsed;
+    maxCommitTime = Math.max(maxCommitTime, elapsed);
+    return null;
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public long getNumCommits() {
+    return numCommits;
+  }
+
+  public long getNumMutations() {
+    return numMutations;
+  }
+
+  public long getNumFailures() {
+    return numFailures;
+  }
+
+  /**
+   * Time taken by the last commit, in milliseconds.
+   */
+  public long getLastCommitTime() {
+    return lastCommitTime;
+  }
+
+  public long getMaxCommitTime() {
+    return maxCommitTime;
+  }
+
+  public double getAverageCommitTime() {
+    long commits = numCommits;
+    return commits == 0 ? 0 : (double) totalCommitTime / commits;
+  }
+
+  public String getReport() {
+    return String.format("queue depth = %d, commits = %d, mutations = %d, "
+        + "failures = %d, commit time last/avg/max = %d/%.1f/%d ms",
+        getQueueDepth(), numCommits, numMutations, numFailures,
+        lastCommitTime, getAverageCommitTime(), maxCommitTime);
+  }
+}
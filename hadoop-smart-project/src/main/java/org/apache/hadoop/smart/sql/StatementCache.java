@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prepared statements kept open on pinned connections, so that each query
+ * is parsed and planned once per connection. A pinned connection must only
+ * be used by one thread at a time. Statements prepared on other connections
+ * are closed once released, pooled connections cache them in the pool.
+ */
+public class StatementCache {
+  static final Logger LOG = LoggerFactory.getLogger(StatementCache.class);
+  // Statements kept per connection, also the default of pooled connections
+  public static final int DEFAULT_CAPACITY = 64;
+
+  private final int maxStatementsPerConnection;
+  private final Map<Connection, Map<String, PreparedStatement>> pinned =
+      new HashMap<>();
+
+  public StatementCache(int maxStatementsPerConnection) {
+    this.maxStatementsPerConnection = maxStatementsPerConnection;
+  }
+
+  public synchronized void pin(Connection conn) {
+    if (pinned.containsKey(conn)) {
+      return;
+    }
+    pinned.put(conn, new LinkedHashMap<String, PreparedStatement>(
+        16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+          Map.Entry<String, PreparedStatement> eldest) {
+        if (size() > maxStatementsPerConnection) {
+          closeQuietly(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    });
+  }
+
+  /**
+   * Close all statements cached for the connection.
+   */
+  public synchronized void unpin(Connection conn) {
+    Map<String, PreparedStatement> statements = pinned.remove(conn);
+    if (statements != null) {
+      for (PreparedStatement p : statements.values()) {
+        closeQuietly(p);
+      }
+    }
+  }
+
+  public PreparedStatement prepare(Connection conn, String sql)
+      throws SQLException {
+    Map<String, PreparedStatement> statements = getStatements(conn);
+    if (statements == null) {
+      return conn.prepareStatement(sql);
+    }
+    PreparedStatement p = statements.get(sql);
+    if (p == null || p.isClosed()) {
+      p = conn.prepareStatement(sql);
+      statements.put(sql, p);
+    } else {
+      p.clearParameters();
+    }
+    return p;
+  }
+
+  public void release(Connection conn, PreparedStatement p)
+      throws SQLException {
+    if (getStatements(conn) == null) {
+      p.close();
+    }
+  }
+
+  private synchronized Map<String, PreparedStatement> getStatements(
+      Connection conn) {
+    return pinned.get(conn);
+  }
+
+  private static void closeQuietly(PreparedStatement p) {
+    try {
+      p.close();
+    } catch (SQLException e) {
+      LOG.error("Failed to close cached statement", e);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation counters of metastore tables. A counter is bumped after each
+ * committed change of its table, so that readers can tell whether what
+ * they read last time may have changed since.
+ */
+public class TableGenerations {
+  public static final String FILES = "files";
+  public static final String CACHED_FILES = "cached_files";
+  public static final String STORAGES = "storages";
+  public static final String STORAGE_POLICY = "storage_policy";
+  public static final String XATTR = "xattr";
+  public static final String FILE_HEAT = "file_heat";
+  public static final String FILE_READ_VOLUME = "file_read_volume";
+  public static final String COMPACT_FILES = "compact_files";
+  // Bumped when access count tables are added or evicted
+  public static final String ACCESS_COUNT_TABLES = "access_count_tables";
+
+  private static final Set<String> TRACKED_TABLES =
+      Collections.unmodifiableSet(new HashSet<>(Arrays.asList(FILES,
+          CACHED_FILES, STORAGES, STORAGE_POLICY, XATTR, FILE_HEAT,
+          FILE_READ_VOLUME, COMPACT_FILES, ACCESS_COUNT_TABLES)));
+
+  private final Map<String, AtomicLong> generations =
+      new ConcurrentHashMap<>();
+
+  public TableGenerations() {
+    for (String table : TRACKED_TABLES) {
+      generations.put(table, new AtomicLong(0));
+    }
+  }
+
+  /**
+   * Whether changes of the table are counted.
+   */
+  public static boolean isTracked(String table) {
+    return TRACKED_TABLES.contains(table);
+  }
+
+  /**
+   * Count a change of the table, must be called once the change is
+   * committed.
+   */
+  public long bump(String table) {
+    AtomicLong generation = generations.get(table);
+    if (generation == null) {
+      throw new IllegalArgumentException("Table not tracked: " + table);
+    }
+    return generation.incrementAndGet();
+  }
+
+  public long get(String table) {
+    AtomicLong generation = generations.get(table);
+    if (generation == null) {
+      throw new IllegalArgumentException("Table not tracked: " + table);
+    }
+    return generation.get();
+  }
+
+  /**
+   * Current generations of the given tables.
+   */
+  public Map<String, Long> get(Collection<String> tables) {
+    Map<String, Long> ret = new TreeMap<>();
+    for (String table : tables) {
+      ret.put(table, get(table));
+    }
+    return ret;
+  }
+}
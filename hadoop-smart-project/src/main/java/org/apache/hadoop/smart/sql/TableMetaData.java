@@ -33,6 +33,8 @@ public class TableMetaData {
         new String[] {"fid", "fid"});
     mapJoinableKeys.put("files-cached_files",
         new String[] {"fid", "fid"});
+    mapJoinableKeys.put("files-file_read_volume",
+        new String[] {"fid", "fid"});
     mapJoinableKeys.put("files-groups",
         new String[] {"gid", "gid"});
     mapJoinableKeys.put("files-owners",
@@ -19,8 +19,12 @@
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Utilities for table operations.
@@ -57,9 +61,14 @@ public static Connection createSqliteConnection(String dbFilePath)
   public static void initializeDataBase(Connection conn) throws SQLException {
     String createEmptyTables[] = new String[] {
         "DROP TABLE IF EXISTS `access_count_tables`;",
+        "DROP TABLE IF EXISTS `audit_log_offsets`;",
         "DROP TABLE IF EXISTS `cached_files`;",
+        "DROP TABLE IF EXISTS `compact_files`;",
         "DROP TABLE IF EXISTS `ecpolicys`;",
+        "DROP TABLE IF EXISTS `file_heat`;",
+        "DROP TABLE IF EXISTS `file_read_volume`;",
         "DROP TABLE IF EXISTS `files`;",
+        "DROP TABLE IF EXISTS `inotify_txids`;",
         "DROP TABLE IF EXISTS `groups`;",
         "DROP TABLE IF EXISTS `owners`;",
         "DROP TABLE IF EXISTS `storages`;",
@@ -75,6 +84,12 @@ public static void initializeDataBase(Connection conn) throws SQLException {
             "  `end_time` bigint(20) NOT NULL\n" +
             ") ;",
 
+        "CREATE TABLE `audit_log_offsets` (\n" +
+            "  `path` varchar(4096) NOT NULL,\n" +
+            "  `file_key` varchar(255) NOT NULL,\n" +
+            "  `log_offset` bigint(20) NOT NULL\n" +
+            ") ;",
+
         "CREATE TABLE `blank_access_count_info` (\n" +
             "  `fid` bigint(20) NOT NULL,\n" +
             "  `count` bigint(20) NOT NULL\n" +
@@ -87,6 +102,14 @@ public static void initializeDataBase(Connection conn) throws SQLException {
             "  `num_accessed` int(11) NOT NULL\n" +
             ") ;",
 
+        "CREATE TABLE `compact_files` (\n" +
+            "  `fid` bigint(20) NOT NULL,\n" +
+            "  `path` varchar(4096) NOT NULL,\n" +
+            "  `container` varchar(4096) NOT NULL,\n" +
+            "  `container_offset` bigint(20) NOT NULL,\n" +
+            "  `length` bigint(20) NOT NULL\n" +
+            ") ;",
+
         "CREATE TABLE `ecpolicys` (\n" +
             "  `id` INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
             "  `name` varchar(255) DEFAULT NULL,\n" +
@@ -96,6 +119,21 @@ public static void initializeDataBase(Connection conn) throws SQLException {
             "  `codecName` varchar(64) DEFAULT NULL\n" +
             ") ;",
 
+        "CREATE TABLE `file_heat` (\n" +
+            "  `fid` bigint(20) NOT NULL,\n" +
+            "  `half_life` bigint(20) NOT NULL,\n" +
+            "  `heat` double NOT NULL,\n" +
+            "  `update_time` bigint(20) NOT NULL,\n" +
+            "  PRIMARY KEY (`fid`, `half_life`)\n" +
+            ") ;",
+
+        "CREATE TABLE `file_read_volume` (\n" +
+            "  `fid` bigint(20) NOT NULL,\n" +
+            "  `num_reads` bigint(20) NOT NULL,\n" +
+            "  `bytes_read` bigint(20) NOT NULL,\n" +
+            "  `update_time` bigint(20) NOT NULL\n" +
+            ") ;",
+
         "CREATE TABLE `files` (\n" +
             "  `path` varchar(4096) NOT NULL,\n" +
             "  `fid` bigint(20) NOT NULL,\n" +
@@ -112,6 +150,11 @@ public static void initializeDataBase(Connection conn) throws SQLException {
             "  `ec_policy_id` smallint(6) DEFAULT NULL\n" +
             ") ;",
 
+        "CREATE TABLE `inotify_txids` (\n" +
+            "  `nsid` INTEGER PRIMARY KEY,\n" +
+            "  `txid` bigint(20) NOT NULL\n" +
+            ") ;",
+
         "CREATE TABLE `groups` (\n" +
             "  `gid` smallint(6) NOT NULL,\n" +
             "  `group_name` varchar(255) DEFAULT NULL\n" +
@@ -167,7 +210,12 @@ public static void initializeDataBase(Connection conn) throws SQLException {
             "  `parameters` varchar(4096) NOT NULL,\n" +
             "  `generate_time` bigint(20) NOT NULL,\n" +
             "  `state_changed_time` bigint(20) NOT NULL\n" +
-            ") ;"
+            ") ;",
+
+        "CREATE INDEX `commands_rid_state_idx` ON `commands` (`rid`, `state`);",
+
+        "CREATE INDEX `commands_generate_time_idx` ON `commands` "
+            + "(`generate_time`);"
     };
 
     for (String s : createEmptyTables) {
@@ -175,6 +223,82 @@ public static void initializeDataBase(Connection conn) throws SQLException {
     }
   }
 
+  /**
+   * Drop all tables and views, including those created at runtime such as
+   * access count tables, then create the empty tables.
+   */
+  public static void formatDataBase(Connection conn) throws SQLException {
+    List<String> views = getNames(conn, "", new String[] {"VIEW"});
+    for (String view : views) {
+      executeSql(conn, "DROP VIEW IF EXISTS `" + view + "`;");
+    }
+    List<String> tables = getTableNames(conn, "");
+    for (String table : tables) {
+      executeSql(conn, "DROP TABLE IF EXISTS `" + table + "`;");
+    }
+    initializeDataBase(conn);
+  }
+
+  /**
+   * Names of the tables starting with the prefix, views excluded.
+   */
+  public static List<String> getTableNames(Connection conn, String prefix)
+      throws SQLException {
+    return getNames(conn, prefix, new String[] {"TABLE"});
+  }
+
+  private static List<String> getNames(Connection conn, String prefix,
+      String[] types) throws SQLException {
+    List<String> names = new ArrayList<>();
+    ResultSet rs = conn.getMetaData().getTables(null, null, "%", types);
+    try {
+      while (rs.next()) {
+        String name = rs.getString("TABLE_NAME");
+        // Internal tables of sqlite
+        if (name.startsWith(prefix) && !name.startsWith("sqlite_")) {
+          names.add(name);
+        }
+      }
+    } finally {
+      rs.close();
+    }
+    return names;
+  }
+
+  /**
+   * Statements creating the table as it is now, its indexes included.
+   */
+  public static List<String> getCreateStatements(Connection conn,
+      String table) throws SQLException {
+    List<String> statements = new ArrayList<>();
+    String url = conn.getMetaData().getURL();
+    if (url != null && url.startsWith(SQLITE_URL_PREFIX)) {
+      PreparedStatement p = conn.prepareStatement("SELECT sql FROM "
+          + "sqlite_master WHERE tbl_name = ? AND sql IS NOT NULL "
+          + "ORDER BY CASE type WHEN 'table' THEN 0 ELSE 1 END");
+      try {
+        p.setString(1, table);
+        ResultSet rs = p.executeQuery();
+        while (rs.next()) {
+          statements.add(rs.getString(1));
+        }
+      } finally {
+        p.close();
+      }
+    } else {
+      Statement s = conn.createStatement();
+      try {
+        ResultSet rs = s.executeQuery("SHOW CREATE TABLE `" + table + "`");
+        if (rs.next()) {
+          statements.add(rs.getString(2));
+        }
+      } finally {
+        s.close();
+      }
+    }
+    return statements;
+  }
+
   public static void executeSql(Connection conn, String sql)
       throws SQLException {
     Statement s = conn.createStatement();
@@ -188,4 +312,16 @@ public static boolean supportsBatchUpdates(Connection conn) {
       return false;
     }
   }
+
+  /**
+   * Switch a sqlite database to write-ahead logging, readers then see the
+   * last committed snapshot without blocking the writer. Other databases
+   * are left as they are.
+   */
+  public static void enableWriteAheadLog(Connection conn) throws SQLException {
+    String url = conn.getMetaData().getURL();
+    if (url != null && url.startsWith(SQLITE_URL_PREFIX)) {
+      executeSql(conn, "PRAGMA journal_mode=WAL;");
+    }
+  }
 }
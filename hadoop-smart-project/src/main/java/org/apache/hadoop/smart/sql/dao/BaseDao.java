@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.dao;
+
+import org.apache.hadoop.smart.sql.StatementCache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers running parameterized statements prepared through the cache.
+ * Connections are managed by the caller.
+ */
+public abstract class BaseDao {
+  protected final StatementCache cache;
+
+  protected BaseDao(StatementCache cache) {
+    this.cache = cache;
+  }
+
+  protected <T> List<T> query(Connection conn, String sql,
+      RowMapper<T> mapper, Object... params) throws SQLException {
+    PreparedStatement p = cache.prepare(conn, sql);
+    try {
+      bind(p, params);
+      ResultSet rs = p.executeQuery();
+      try {
+        List<T> ret = new ArrayList<>();
+        while (rs.next()) {
+          ret.add(mapper.map(rs));
+        }
+        return ret;
+      } finally {
+        rs.close();
+      }
+    } finally {
+      cache.release(conn, p);
+    }
+  }
+
+  /**
+   * Map each row without collecting the results, for mappers passing rows
+   * on by themselves.
+   */
+  protected void scan(Connection conn, String sql, RowMapper<?> mapper,
+      Object... params) throws SQLException {
+    PreparedStatement p = cache.prepare(conn, sql);
+    try {
+      bind(p, params);
+      ResultSet rs = p.executeQuery();
+      try {
+        while (rs.next()) {
+          mapper.map(rs);
+        }
+      } finally {
+        rs.close();
+      }
+    } finally {
+      cache.release(conn, p);
+    }
+  }
+
+  /**
+   * @return the first row mapped, null if there is none
+   */
+  protected <T> T queryOne(Connection conn, String sql, RowMapper<T> mapper,
+      Object... params) throws SQLException {
+    PreparedStatement p = cache.prepare(conn, sql);
+    try {
+      bind(p, params);
+      ResultSet rs = p.executeQuery();
+      try {
+        return rs.next() ? mapper.map(rs) : null;
+      } finally {
+        rs.close();
+      }
+    } finally {
+      cache.release(conn, p);
+    }
+  }
+
+  protected int update(Connection conn, String sql, Object... params)
+      throws SQLException {
+    PreparedStatement p = cache.prepare(conn, sql);
+    try {
+      bind(p, params);
+      return p.executeUpdate();
+    } finally {
+      cache.release(conn, p);
+    }
+  }
+
+  /**
+   * Run the statement once for each row of parameters in one batch.
+   */
+  protected int[] batch(Connection conn, String sql, List<Object[]> rows)
+      throws SQLException {
+    if (rows.isEmpty()) {
+      return new int[0];
+    }
+    PreparedStatement p = cache.prepare(conn, sql);
+    try {
+      for (Object[] row : rows) {
+        bind(p, row);
+        p.addBatch();
+      }
+      return p.executeBatch();
+    } catch (SQLException e) {
+      // Do not leave a half built batch on a cached statement
+      p.clearBatch();
+      throw e;
+    } finally {
+      cache.release(conn, p);
+    }
+  }
+
+  private static void bind(PreparedStatement p, Object[] params)
+      throws SQLException {
+    for (int i = 0; i < params.length; i++) {
+      p.setObject(i + 1, params[i]);
+    }
+  }
+
+  /**
+   * Placeholders for an IN list of the given size.
+   */
+  protected static String placeholders(int size) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      sb.append(i == 0 ? "?" : ", ?");
+    }
+    return sb.toString();
+  }
+}
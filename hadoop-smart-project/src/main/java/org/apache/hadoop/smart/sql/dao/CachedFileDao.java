@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.dao;
+
+import org.apache.hadoop.smart.sql.CachedFileStatus;
+import org.apache.hadoop.smart.sql.StatementCache;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access to table 'cached_files'.
+ */
+public class CachedFileDao extends BaseDao {
+  public static final RowMapper<CachedFileStatus> MAPPER =
+      new RowMapper<CachedFileStatus>() {
+        @Override
+        public CachedFileStatus map(ResultSet rs) throws SQLException {
+          return new CachedFileStatus(
+              rs.getLong("fid"),
+              rs.getLong("from_time"),
+              rs.getLong("last_access_time"),
+              rs.getInt("num_accessed"));
+        }
+      };
+
+  private static final String INSERT = "INSERT INTO cached_files (fid, "
+      + "from_time, last_access_time, num_accessed) VALUES (?, ?, ?, ?)";
+  private static final String GET = "SELECT * FROM cached_files WHERE fid = ?";
+  private static final String GET_ALL = "SELECT * FROM cached_files";
+
+  public CachedFileDao(StatementCache cache) {
+    super(cache);
+  }
+
+  public int insert(Connection conn, CachedFileStatus s)
+      throws SQLException {
+    return update(conn, INSERT, toRow(s));
+  }
+
+  public int[] insert(Connection conn, List<CachedFileStatus> list)
+      throws SQLException {
+    List<Object[]> rows = new ArrayList<>(list.size());
+    for (CachedFileStatus s : list) {
+      rows.add(toRow(s));
+    }
+    return batch(conn, INSERT, rows);
+  }
+
+  /**
+   * Update the given fields of a cached file, null fields are not changed.
+   */
+  public boolean update(Connection conn, long fid, Long fromTime,
+      Long lastAccessTime, Integer numAccessed) throws SQLException {
+    StringBuilder sb = new StringBuilder();
+    List<Object> params = new ArrayList<>();
+    if (fromTime != null) {
+      sb.append(", from_time = ?");
+      params.add(fromTime);
+    }
+    if (lastAccessTime != null) {
+      sb.append(", last_access_time = ?");
+      params.add(lastAccessTime);
+    }
+    if (numAccessed != null) {
+      sb.append(", num_accessed = ?");
+      params.add(numAccessed);
+    }
+    if (params.isEmpty()) {
+      return false;
+    }
+    params.add(fid);
+    String sql = "UPDATE cached_files SET" + sb.substring(1)
+        + " WHERE fid = ?";
+    return update(conn, sql, params.toArray()) == 1;
+  }
+
+  public CachedFileStatus get(Connection conn, long fid)
+      throws SQLException {
+    return queryOne(conn, GET, MAPPER, fid);
+  }
+
+  public List<CachedFileStatus> getAll(Connection conn) throws SQLException {
+    return query(conn, GET_ALL, MAPPER);
+  }
+
+  private static Object[] toRow(CachedFileStatus s) {
+    return new Object[] {s.getFid(), s.getFromTime(), s.getLastAccessTime(),
+        s.getNumAccessed()};
+  }
+}
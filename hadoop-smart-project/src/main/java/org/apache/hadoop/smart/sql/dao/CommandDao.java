@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.dao;
+
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.StatementCache;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access to table 'commands'.
+ */
+public class CommandDao extends BaseDao {
+  public static final RowMapper<CommandInfo> MAPPER =
+      new RowMapper<CommandInfo>() {
+        @Override
+        public CommandInfo map(ResultSet rs) throws SQLException {
+          return new CommandInfo(
+              rs.getLong("cid"),
+              rs.getLong("rid"),
+              ActionType.fromValue((int) rs.getByte("action_id")),
+              CommandState.fromValue((int) rs.getByte("state")),
+              rs.getString("parameters"),
+              rs.getLong("generate_time"),
+              rs.getLong("state_changed_time"));
+        }
+      };
+
+  private static final String INSERT = "INSERT INTO commands (rid, "
+      + "action_id, state, parameters, generate_time, state_changed_time) "
+      + "VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String MAX_ID = "SELECT MAX(cid) FROM commands";
+  private static final String UPDATE_STATE = "UPDATE commands SET state = ?, "
+      + "state_changed_time = ? WHERE cid = ?";
+  private static final String UPDATE_STATE_OF_RULE = "UPDATE commands "
+      + "SET state = ?, state_changed_time = ? WHERE cid = ? AND rid = ?";
+  private static final String DELETE = "DELETE FROM commands WHERE cid = ?";
+
+  private static final RowMapper<Long> ID_MAPPER = new RowMapper<Long>() {
+    @Override
+    public Long map(ResultSet rs) throws SQLException {
+      return rs.getLong(1);
+    }
+  };
+
+  public CommandDao(StatementCache cache) {
+    super(cache);
+  }
+
+  /**
+   * Insert the command and set its id. Must run in the same transaction,
+   * or on the only writer, for the id to be the right one.
+   */
+  public boolean insert(Connection conn, CommandInfo command)
+      throws SQLException {
+    update(conn, INSERT, toRow(command));
+    Long cid = queryOne(conn, MAX_ID, ID_MAPPER);
+    if (cid == null) {
+      return false;
+    }
+    command.setCid(cid);
+    return true;
+  }
+
+  public int[] insert(Connection conn, CommandInfo[] commands)
+      throws SQLException {
+    List<Object[]> rows = new ArrayList<>(commands.length);
+    for (CommandInfo c : commands) {
+      rows.add(toRow(c));
+    }
+    return batch(conn, INSERT, rows);
+  }
+
+  public boolean updateState(Connection conn, long cid, long rid,
+      CommandState state, long time) throws SQLException {
+    return update(conn, UPDATE_STATE_OF_RULE,
+        state.getValue(), time, cid, rid) == 1;
+  }
+
+  /**
+   * Set the state of several commands in one batch.
+   */
+  public int[] updateStates(Connection conn, Map<Long, CommandState> states,
+      long time) throws SQLException {
+    List<Object[]> rows = new ArrayList<>(states.size());
+    for (Map.Entry<Long, CommandState> e : states.entrySet()) {
+      rows.add(new Object[] {e.getValue().getValue(), time, e.getKey()});
+    }
+    return batch(conn, UPDATE_STATE, rows);
+  }
+
+  public int delete(Connection conn, long cid) throws SQLException {
+    return update(conn, DELETE, cid);
+  }
+
+  private static Object[] toRow(CommandInfo c) {
+    return new Object[] {c.getRid(), c.getActionType().getValue(),
+        c.getState().getValue(), c.getParameters(), c.getGenerateTime(),
+        c.getStateChangedTime()};
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.dao;
+
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.smart.sql.FileRecord;
+import org.apache.hadoop.smart.sql.FileStatusInternal;
+import org.apache.hadoop.smart.sql.StatementCache;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access to table 'files'.
+ */
+public class FileDao extends BaseDao {
+  // Lookups by path are padded to this size to share one statement
+  static final int PATHS_PER_QUERY = 64;
+
+  private static final String INSERT = "INSERT INTO files (path, fid, "
+      + "length, block_replication, block_size, modification_time, "
+      + "access_time, is_dir, sid, oid, gid, permission, ec_policy_id) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String GET_BY_FID = "SELECT * FROM files WHERE fid = ?";
+  private static final String GET_BY_PATH =
+      "SELECT * FROM files WHERE path = ?";
+  private static final String SCAN =
+      "SELECT * FROM files WHERE path >= ? AND path < ?";
+  private static final String GET_IDS = "SELECT fid, path FROM files "
+      + "WHERE path IN (" + placeholders(PATHS_PER_QUERY) + ")";
+
+  public FileDao(StatementCache cache) {
+    super(cache);
+  }
+
+  /**
+   * Insert files in one batch, owners, groups and erasure coding policies
+   * are stored by their ids.
+   */
+  public int[] insert(Connection conn, FileStatusInternal[] files,
+      Map<String, Integer> ownerIds, Map<String, Integer> groupIds,
+      Map<ErasureCodingPolicy, Integer> ecPolicyIds) throws SQLException {
+    List<Object[]> rows = new ArrayList<>(files.length);
+    for (FileStatusInternal f : files) {
+      rows.add(new Object[] {f.getPath(), f.getFileId(), f.getLen(),
+          f.getReplication(), f.getBlockSize(), f.getModificationTime(),
+          f.getAccessTime(), f.isDir() ? 1 : 0, (int) f.getStoragePolicy(),
+          ownerIds.get(f.getOwner()), groupIds.get(f.getGroup()),
+          f.getPermission().toShort(),
+          ecPolicyIds.get(f.getErasureCodingPolicy())});
+    }
+    return batch(conn, INSERT, rows);
+  }
+
+  public <T> T getByFid(Connection conn, long fid, RowMapper<T> mapper)
+      throws SQLException {
+    return queryOne(conn, GET_BY_FID, mapper, fid);
+  }
+
+  public <T> T getByPath(Connection conn, String path, RowMapper<T> mapper)
+      throws SQLException {
+    return queryOne(conn, GET_BY_PATH, mapper, path);
+  }
+
+  /**
+   * Pass the files with paths starting with the prefix to the handler,
+   * one record is refilled for every row.
+   */
+  public void scan(Connection conn, String pathPrefix,
+      final FileRecord.Handler handler) throws SQLException {
+    if (pathPrefix.isEmpty()) {
+      throw new IllegalArgumentException("Empty path prefix");
+    }
+    final FileRecord record = new FileRecord();
+    // Paths with the prefix sort between it and the prefix with its last
+    // character incremented
+    String end = pathPrefix.substring(0, pathPrefix.length() - 1)
+        + (char) (pathPrefix.charAt(pathPrefix.length() - 1) + 1);
+    scan(conn, SCAN, new RowMapper<Void>() {
+      @Override
+      public Void map(ResultSet rs) throws SQLException {
+        record.readFrom(rs);
+        handler.handle(record);
+        return null;
+      }
+    }, pathPrefix, end);
+  }
+
+  /**
+   * Ids of the given paths, paths not in the table are left out.
+   */
+  public Map<String, Long> getFileIds(Connection conn,
+      Collection<String> paths) throws SQLException {
+    Map<String, Long> pathToId = new HashMap<>();
+    if (paths.isEmpty()) {
+      return pathToId;
+    }
+    RowMapper<Void> mapper = new PathToIdMapper(pathToId);
+    Object[] params = new Object[PATHS_PER_QUERY];
+    int n = 0;
+    for (String path : paths) {
+      params[n++] = path;
+      if (n == PATHS_PER_QUERY) {
+        scan(conn, GET_IDS, mapper, params);
+        n = 0;
+      }
+    }
+    if (n > 0) {
+      // Repeat the last path, duplicates do not change the result
+      for (int i = n; i < PATHS_PER_QUERY; i++) {
+        params[i] = params[n - 1];
+      }
+      scan(conn, GET_IDS, mapper, params);
+    }
+    return pathToId;
+  }
+
+  private static class PathToIdMapper implements RowMapper<Void> {
+    private final Map<String, Long> pathToId;
+
+    PathToIdMapper(Map<String, Long> pathToId) {
+      this.pathToId = pathToId;
+    }
+
+    @Override
+    public Void map(ResultSet rs) throws SQLException {
+      pathToId.put(rs.getString("path"), rs.getLong("fid"));
+      return null;
+    }
+  }
+}
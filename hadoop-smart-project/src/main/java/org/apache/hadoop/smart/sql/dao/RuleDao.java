@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.dao;
+
+import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.StatementCache;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access to table 'rules'.
+ */
+public class RuleDao extends BaseDao {
+  public static final RowMapper<RuleInfo> MAPPER = new RowMapper<RuleInfo>() {
+    @Override
+    public RuleInfo map(ResultSet rs) throws SQLException {
+      return new RuleInfo(
+          rs.getLong("id"),
+          rs.getLong("submit_time"),
+          rs.getString("rule_text"),
+          RuleState.fromValue((int) rs.getByte("state")),
+          rs.getLong("checked_count"),
+          rs.getLong("commands_generated"),
+          rs.getLong("last_check_time"));
+    }
+  };
+
+  private static final String INSERT = "INSERT INTO rules (state, "
+      + "rule_text, submit_time, checked_count, commands_generated, "
+      + "last_check_time) VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String MAX_ID = "SELECT MAX(id) FROM rules";
+  private static final String GET = "SELECT * FROM rules WHERE id = ?";
+  private static final String GET_ALL = "SELECT * FROM rules";
+
+  private static final RowMapper<Long> ID_MAPPER = new RowMapper<Long>() {
+    @Override
+    public Long map(ResultSet rs) throws SQLException {
+      return rs.getLong(1);
+    }
+  };
+
+  public RuleDao(StatementCache cache) {
+    super(cache);
+  }
+
+  /**
+   * Insert the rule and set its id. Must run in the same transaction,
+   * or on the only writer, for the id to be the right one.
+   */
+  public boolean insert(Connection conn, RuleInfo info) throws SQLException {
+    update(conn, INSERT, info.getState().getValue(), info.getRuleText(),
+        info.getSubmitTime(), info.getNumChecked(), info.getNumCmdsGen(),
+        info.getLastCheckTime() == 0 ? null : info.getLastCheckTime());
+    Long id = queryOne(conn, MAX_ID, ID_MAPPER);
+    if (id == null) {
+      return false;
+    }
+    info.setId(id);
+    return true;
+  }
+
+  /**
+   * Update the given fields of a rule, counters are added to the stored
+   * values. Fields left null or 0 are not changed.
+   */
+  public boolean update(Connection conn, long ruleId, RuleState state,
+      long lastCheckTime, long checkedCount, int commandsGen)
+      throws SQLException {
+    StringBuilder sb = new StringBuilder();
+    List<Object> params = new ArrayList<>();
+    if (state != null) {
+      sb.append(", state = ?");
+      params.add(state.getValue());
+    }
+    if (lastCheckTime != 0) {
+      sb.append(", last_check_time = ?");
+      params.add(lastCheckTime);
+    }
+    if (checkedCount != 0) {
+      sb.append(", checked_count = checked_count + ?");
+      params.add(checkedCount);
+    }
+    if (commandsGen != 0) {
+      sb.append(", commands_generated = commands_generated + ?");
+      params.add(commandsGen);
+    }
+    if (params.isEmpty()) {
+      return false;
+    }
+    params.add(ruleId);
+    String sql = "UPDATE rules SET" + sb.substring(1) + " WHERE id = ?";
+    return update(conn, sql, params.toArray()) == 1;
+  }
+
+  public RuleInfo get(Connection conn, long ruleId) throws SQLException {
+    return queryOne(conn, GET, MAPPER, ruleId);
+  }
+
+  public List<RuleInfo> getAll(Connection conn) throws SQLException {
+    return query(conn, GET_ALL, MAPPER);
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.dao;
+
+import org.apache.hadoop.smart.sql.StatementCache;
+import org.apache.hadoop.smart.sql.StorageCapacity;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access to table 'storages'.
+ */
+public class StorageDao extends BaseDao {
+  public static final RowMapper<StorageCapacity> MAPPER =
+      new RowMapper<StorageCapacity>() {
+        @Override
+        public StorageCapacity map(ResultSet rs) throws SQLException {
+          return new StorageCapacity(rs.getString("type"),
+              rs.getLong("capacity"), rs.getLong("free"));
+        }
+      };
+
+  private static final String INSERT =
+      "INSERT INTO storages (type, capacity, free) VALUES (?, ?, ?)";
+  private static final String GET_ALL = "SELECT * FROM storages";
+
+  public StorageDao(StatementCache cache) {
+    super(cache);
+  }
+
+  public int[] insert(Connection conn, StorageCapacity[] storages)
+      throws SQLException {
+    List<Object[]> rows = new ArrayList<>(storages.length);
+    for (StorageCapacity s : storages) {
+      rows.add(new Object[] {s.getType(), s.getCapacity(), s.getFree()});
+    }
+    return batch(conn, INSERT, rows);
+  }
+
+  /**
+   * Update capacity and free space of a storage type, null values are
+   * not changed.
+   */
+  public boolean update(Connection conn, String type, Long capacity,
+      Long free) throws SQLException {
+    if (capacity == null && free == null) {
+      return false;
+    }
+    String sql = "UPDATE storages SET "
+        + (capacity != null ? "capacity = ?" : "")
+        + (capacity != null && free != null ? ", " : "")
+        + (free != null ? "free = ?" : "")
+        + " WHERE type = ?";
+    List<Object> params = new ArrayList<>(3);
+    if (capacity != null) {
+      params.add(capacity);
+    }
+    if (free != null) {
+      params.add(free);
+    }
+    params.add(type);
+    return update(conn, sql, params.toArray()) == 1;
+  }
+
+  public List<StorageCapacity> getAll(Connection conn) throws SQLException {
+    return query(conn, GET_ALL, MAPPER);
+  }
+}
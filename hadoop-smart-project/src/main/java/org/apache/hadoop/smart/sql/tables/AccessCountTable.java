@@ -18,10 +18,12 @@
 package org.apache.hadoop.smart.sql.tables;
 
 import org.apache.hadoop.smart.utils.TimeGranularity;
+import org.apache.hadoop.smart.utils.TimeUtils;
 
 public class AccessCountTable {
   public final static String FILE_FIELD = "fid";
   public final static String ACCESSCOUNT_FIELD = "count";
+  public final static String TABLE_PREFIX = "accessCount_";
 
   private String tableName;
   private Long startTime;
@@ -29,13 +31,15 @@ public class AccessCountTable {
   private TimeGranularity granularity;
 
   private boolean isView;
+  // Part of the counts taken, for a window split by the time queried
+  private double proportion = 1.0;
 
   public AccessCountTable(Long startTime, Long endTime) {
     this(startTime, endTime, TimeGranularity.SECOND);
   }
 
   public AccessCountTable(Long startTime, Long endTime, TimeGranularity granularity) {
-    this("accessCount_" + startTime + "_" + endTime, startTime, endTime, granularity);
+    this(TABLE_PREFIX + startTime + "_" + endTime, startTime, endTime, granularity);
   }
 
   public AccessCountTable(String name, Long startTime, Long endTime, TimeGranularity granularity) {
@@ -86,6 +90,28 @@ public String toString() {
         this.tableName, this.startTime, this.endTime, this.granularity);
   }
 
+  /**
+   * The table of the given name, its time range is taken from the name.
+   * @return null if it is not the name of an access count table
+   */
+  public static AccessCountTable fromTableName(String tableName) {
+    if (!tableName.startsWith(TABLE_PREFIX)) {
+      return null;
+    }
+    String[] range = tableName.substring(TABLE_PREFIX.length()).split("_");
+    if (range.length != 2) {
+      return null;
+    }
+    try {
+      long startTime = Long.parseLong(range[0]);
+      long endTime = Long.parseLong(range[1]);
+      return new AccessCountTable(tableName, startTime, endTime,
+          TimeUtils.getGranularity(endTime - startTime));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
   public static String createTableSQL(String tableName) {
     return String.format(
         "CREATE TABLE %s (%s INTEGER NOT NULL, %s INTEGER NOT NULL)",
@@ -99,4 +125,12 @@ public boolean isView() {
   public void setView(boolean view) {
     isView = view;
   }
+
+  public double getProportion() {
+    return proportion;
+  }
+
+  public void setProportion(double proportion) {
+    this.proportion = proportion;
+  }
 }
@@ -27,16 +27,28 @@
 
 public class AccessCountTableAggregator {
   private final DBAdapter adapter;
+  private final AccessHistoryTable historyTable;
   public static final Logger LOG =
       LoggerFactory.getLogger(AccessCountTableAggregator.class);
 
   public AccessCountTableAggregator(DBAdapter adapter) {
+    this(adapter, null);
+  }
+
+  /**
+   * @param historyTable roll up windows kept in it if not null
+   */
+  public AccessCountTableAggregator(DBAdapter adapter,
+      AccessHistoryTable historyTable) {
     this.adapter = adapter;
+    this.historyTable = historyTable;
   }
 
   public void aggregate(AccessCountTable destinationTable,
       List<AccessCountTable> tablesToAggregate) throws SQLException {
-    if (tablesToAggregate.size() > 0) {
+    if (tablesToAggregate.size() > 0 && historyTable != null) {
+      historyTable.aggregate(destinationTable, tablesToAggregate);
+    } else if (tablesToAggregate.size() > 0) {
       String aggregateSQ = this.aggregateSQLStatement(destinationTable, tablesToAggregate);
       this.adapter.execute(aggregateSQ);
     }
@@ -51,6 +51,14 @@ public boolean add(AccessCountTable table) {
     return true;
   }
 
+  /**
+   * Add a table that was aggregated already, the listener is not notified.
+   */
+  public void restore(AccessCountTable table) {
+    super.add(table);
+    tableEvictor.evictTables(this, this.size());
+  }
+
   public List<AccessCountTable> getTables(Long start, Long end) {
     List<AccessCountTable> results = new ArrayList<>();
     for (AccessCountTable table : this) {
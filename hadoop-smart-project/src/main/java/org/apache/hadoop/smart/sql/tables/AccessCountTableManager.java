@@ -19,7 +19,11 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.hdfs.protocol.FileReadVolume;
+import org.apache.hadoop.smart.cache.AccessSequencePredictor;
 import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.TableGenerations;
+import org.apache.hadoop.smart.utils.Constants;
 import org.apache.hadoop.smart.utils.TimeGranularity;
 import org.apache.hadoop.smart.utils.TimeUtils;
 import org.slf4j.Logger;
@@ -27,6 +31,8 @@
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -45,6 +51,7 @@ public class AccessCountTableManager {
   private AccessCountTableDeque secondTableDeque;
   private AccessEventAggregator accessEventAggregator;
   private ExecutorService executorService;
+  private AccessHistoryTable historyTable;
   public static final Logger LOG =
       LoggerFactory.getLogger(AccessCountTableManager.class);
 
@@ -53,15 +60,51 @@ public AccessCountTableManager(DBAdapter adapter) {
   }
 
   public AccessCountTableManager(DBAdapter adapter, ExecutorService service) {
+    this(adapter, service, false);
+  }
+
+  /**
+   * @param partitioned keep windows of all granularities in one
+   *                    partitioned table instead of a table per window,
+   *                    only supported with MySQL
+   */
+  public AccessCountTableManager(DBAdapter adapter, ExecutorService service,
+      boolean partitioned) {
     this.dbAdapter = adapter;
     this.tableDeques = new HashMap<>();
     this.executorService = service;
     this.accessEventAggregator = new AccessEventAggregator(adapter, this);
+    if (partitioned) {
+      this.initHistoryTable();
+    }
     this.initTables();
+    this.recoverTables();
+  }
+
+  private void initHistoryTable() {
+    // A partition holds as many windows as kept in the deques
+    Map<TimeGranularity, Long> spans = new HashMap<>();
+    spans.put(TimeGranularity.SECOND, NUM_SECOND_TABLES_TO_KEEP
+        * AccessEventAggregator.DEFAULT_AGGREGATION_GRANULARITY);
+    spans.put(TimeGranularity.MINUTE,
+        NUM_MINUTE_TABLES_TO_KEEP * Constants.ONE_MINUTE_IN_MILLIS);
+    spans.put(TimeGranularity.HOUR,
+        NUM_HOUR_TABLES_TO_KEEP * Constants.ONE_HOUR_IN_MILLIS);
+    spans.put(TimeGranularity.DAY,
+        NUM_DAY_TABLES_TO_KEEP * Constants.ONE_DAY_IN_MILLIS);
+    AccessHistoryTable table = new AccessHistoryTable(dbAdapter, spans);
+    try {
+      table.init();
+      this.historyTable = table;
+    } catch (SQLException e) {
+      LOG.error("Failed to init " + AccessHistoryTable.TABLE_NAME
+          + ", a table is created for each window instead", e);
+    }
   }
 
   private void initTables() {
-    AccessCountTableAggregator aggregator = new AccessCountTableAggregator(dbAdapter);
+    AccessCountTableAggregator aggregator =
+        new AccessCountTableAggregator(dbAdapter, historyTable);
     AccessCountTableDeque dayTableDeque =
         new AccessCountTableDeque(new CountEvictor(NUM_DAY_TABLES_TO_KEEP));
     TableAddOpListener dayTableListener =
@@ -85,19 +128,89 @@ private void initTables() {
     this.tableDeques.put(TimeGranularity.DAY, dayTableDeque);
   }
 
+  /**
+   * Track the tables already in the metastore, e.g. replayed by a standby
+   * SSM, the latest ones of each granularity are kept.
+   */
+  private void recoverTables() {
+    List<AccessCountTable> tables = new ArrayList<>();
+    try {
+      if (historyTable != null) {
+        for (AccessCountTable table : historyTable.getWindows()) {
+          if (tableDeques.containsKey(table.getGranularity())) {
+            tables.add(table);
+          }
+        }
+      } else {
+        for (String name
+            : dbAdapter.getTableNames(AccessCountTable.TABLE_PREFIX)) {
+          AccessCountTable table = AccessCountTable.fromTableName(name);
+          if (table != null
+              && tableDeques.containsKey(table.getGranularity())) {
+            tables.add(table);
+          }
+        }
+      }
+    } catch (SQLException e) {
+      LOG.error("Failed to list access count tables in metastore", e);
+      return;
+    }
+    Collections.sort(tables, new Comparator<AccessCountTable>() {
+      @Override
+      public int compare(AccessCountTable a, AccessCountTable b) {
+        return a.getEndTime().compareTo(b.getEndTime());
+      }
+    });
+    for (AccessCountTable table : tables) {
+      tableDeques.get(table.getGranularity()).restore(table);
+    }
+    if (!tables.isEmpty()) {
+      LOG.info("Recovered " + tables.size() + " access count tables.");
+    }
+  }
+
   public void addTable(AccessCountTable accessCountTable) {
     if (LOG.isDebugEnabled()) {
       LOG.debug(accessCountTable.toString());
     }
     this.secondTableDeque.add(accessCountTable);
+    // Adding a table may also evict older ones from the deques
+    this.dbAdapter.bumpGeneration(TableGenerations.ACCESS_COUNT_TABLES);
+  }
+
+  /**
+   * @return null if a table is created for each window
+   */
+  public AccessHistoryTable getHistoryTable() {
+    return historyTable;
+  }
+
+  public void setFileHeatTracker(FileHeatTracker heatTracker) {
+    this.accessEventAggregator.setFileHeatTracker(heatTracker);
+  }
+
+  public void setAccessSequencePredictor(
+      AccessSequencePredictor sequencePredictor) {
+    this.accessEventAggregator.setAccessSequencePredictor(sequencePredictor);
   }
 
   public void onAccessEventsArrived(List<FileAccessEvent> accessEvents) {
     this.accessEventAggregator.addAccessEvents(accessEvents);
   }
 
+  public void onReadVolumesArrived(List<FileReadVolume> readVolumes) {
+    try {
+      this.dbAdapter.updateFileReadVolumes(readVolumes,
+          System.currentTimeMillis());
+    } catch (SQLException e) {
+      LOG.error("Failed to update read volume of "
+          + readVolumes.size() + " files", e);
+    }
+  }
+
   public List<AccessCountTable> getTables(long lengthInMillis) throws SQLException {
-    return AccessCountTableManager.getTables(this.tableDeques, this.dbAdapter, lengthInMillis);
+    return AccessCountTableManager.getTables(this.tableDeques, this.dbAdapter,
+        lengthInMillis, historyTable != null);
   }
 
   public static List<AccessCountTable> getTables(
@@ -105,6 +218,19 @@ public static List<AccessCountTable> getTables(
       DBAdapter adapter,
       long lengthInMillis)
       throws SQLException {
+    return getTables(tableDeques, adapter, lengthInMillis, false);
+  }
+
+  /**
+   * @param partitioned windows split by the time queried are scaled down
+   *                    instead of read through a view
+   */
+  public static List<AccessCountTable> getTables(
+      Map<TimeGranularity, AccessCountTableDeque> tableDeques,
+      DBAdapter adapter,
+      long lengthInMillis,
+      boolean partitioned)
+      throws SQLException {
     if (tableDeques.isEmpty()) {
       return new ArrayList<>();
     }
@@ -113,7 +239,8 @@ public static List<AccessCountTable> getTables(
       return new ArrayList<>();
     }
     long now = secondTableDeque.getLast().getEndTime();
-    return getTablesDuring(tableDeques, adapter, lengthInMillis, now);
+    return getTablesDuring(tableDeques, adapter, lengthInMillis, now,
+        partitioned);
   }
 
   // Todo: multi-thread issue
@@ -121,7 +248,8 @@ private static List<AccessCountTable> getTablesDuring(
       final Map<TimeGranularity, AccessCountTableDeque> tableDeques,
       DBAdapter adapter,
       final long length,
-      final long endTime)
+      final long endTime,
+      final boolean partitioned)
       throws SQLException {
     long startTime = endTime - length;
     TimeGranularity timeGranularity = TimeUtils.getGranularity(length);
@@ -135,16 +263,27 @@ private static List<AccessCountTable> getTablesDuring(
           results.add(table);
         } else if (table.getStartTime() < startTime) {
           // We got a table should be spilt here.
-          AccessCountTable splitTable = new AccessCountTable(startTime, table.getEndTime());
-          splitTable.setView(true);
-          adapter.createProportionView(splitTable, table);
-          results.add(splitTable);
+          if (partitioned) {
+            AccessCountTable splitTable = new AccessCountTable(
+                table.getTableName(), table.getStartTime(),
+                table.getEndTime(), table.getGranularity());
+            splitTable.setProportion(
+                ((double) table.getEndTime() - startTime)
+                    / (table.getEndTime() - table.getStartTime()));
+            results.add(splitTable);
+          } else {
+            AccessCountTable splitTable = new AccessCountTable(startTime, table.getEndTime());
+            splitTable.setView(true);
+            adapter.createProportionView(splitTable, table);
+            results.add(splitTable);
+          }
         }
         startTime = table.getEndTime();
       }
     }
     if (startTime != endTime && !timeGranularity.equals(TimeGranularity.SECOND)) {
-      results.addAll(getTablesDuring(tableDeques, adapter, endTime - startTime, endTime));
+      results.addAll(getTablesDuring(tableDeques, adapter, endTime - startTime, endTime,
+          partitioned));
     }
     return results;
   }
@@ -18,6 +18,7 @@
 package org.apache.hadoop.smart.sql.tables;
 
 import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.smart.cache.AccessSequencePredictor;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,16 +33,21 @@
 import java.util.stream.Collectors;
 
 public class AccessEventAggregator {
+  // Length of the windows of the finest granularity
+  public static final long DEFAULT_AGGREGATION_GRANULARITY = 5 * 1000L;
+
   private final DBAdapter adapter;
   private final long aggregationGranularity;
   private final AccessCountTableManager accessCountTableManager;
   private Window currentWindow;
   private List<FileAccessEvent> eventBuffer;
+  private FileHeatTracker heatTracker;
+  private AccessSequencePredictor sequencePredictor;
   public static final Logger LOG =
       LoggerFactory.getLogger(AccessEventAggregator.class);
 
   public AccessEventAggregator(DBAdapter adapter, AccessCountTableManager manager) {
-    this(adapter, manager,  5 * 1000L);
+    this(adapter, manager, DEFAULT_AGGREGATION_GRANULARITY);
   }
 
   public AccessEventAggregator(DBAdapter adapter,
@@ -52,11 +58,23 @@ public AccessEventAggregator(DBAdapter adapter,
     this.eventBuffer = new ArrayList<>();
   }
 
+  public void setFileHeatTracker(FileHeatTracker heatTracker) {
+    this.heatTracker = heatTracker;
+  }
+
+  public void setAccessSequencePredictor(
+      AccessSequencePredictor sequencePredictor) {
+    this.sequencePredictor = sequencePredictor;
+  }
+
   public void addAccessEvents(List<FileAccessEvent> eventList) {
     if (this.currentWindow == null && !eventList.isEmpty()) {
       this.currentWindow = assignWindow(eventList.get(0).getTimestamp());
     }
     for (FileAccessEvent event : eventList) {
+      if (sequencePredictor != null) {
+        sequencePredictor.onAccess(event.getPath(), event.getTimestamp());
+      }
       if (this.currentWindow.contains(event.getTimestamp())) {
         this.eventBuffer.add(event);
       } else { // New Window occurs
@@ -81,6 +99,31 @@ private AccessCountTable createTable() {
       return table;
     }
     Map<String, Integer> accessCount = this.getAccessCountMap(eventBuffer);
+    if (heatTracker != null) {
+      for (Map.Entry<String, Integer> entry : accessCount.entrySet()) {
+        Long fid = pathToIDs.get(entry.getKey());
+        if (fid != null) {
+          heatTracker.addAccess(fid, entry.getValue(), currentWindow.end);
+        }
+      }
+    }
+    AccessHistoryTable historyTable = accessCountTableManager.getHistoryTable();
+    if (historyTable != null) {
+      Map<Long, Integer> counts = new HashMap<>();
+      for (Map.Entry<String, Integer> entry : accessCount.entrySet()) {
+        Long fid = pathToIDs.get(entry.getKey());
+        if (fid != null) {
+          counts.put(fid, entry.getValue());
+        }
+      }
+      try {
+        historyTable.insertWindow(table, counts);
+      } catch (SQLException e) {
+        LOG.error("Insert access counts error: " + table, e);
+      }
+      return table;
+    }
+
     String values =
       accessCount
         .entrySet()
@@ -0,0 +1,335 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.tables;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.utils.TimeGranularity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Access counts of all windows in one table range partitioned by
+ * (granularity, window_start), used with MySQL instead of one table per
+ * window. Windows are rows, roll-ups are INSERT ... SELECT into coarser
+ * windows and old windows are dropped a partition at a time.
+ *
+ * The partitions of each granularity are followed by a tail partition
+ * bounded by (granularity + 1, 0). A new partition is split from the tail
+ * before the first window falling into it is written, the tail is empty
+ * then and the split costs no data movement.
+ */
+public class AccessHistoryTable {
+  public final static String TABLE_NAME = "access_history";
+  public final static String GRANULARITY_FIELD = "granularity";
+  public final static String WINDOW_START_FIELD = "window_start";
+  public final static String WINDOW_END_FIELD = "window_end";
+
+  private final static String TAIL = "tail";
+  private final static String MAX_PARTITION = "p_max";
+
+  private final DBAdapter adapter;
+  // Time span covered by each partition of a granularity
+  private final Map<TimeGranularity, Long> partitionSpans;
+  // Upper bounds of window_start of the partitions of each granularity
+  private final Map<TimeGranularity, TreeSet<Long>> partitions =
+      new HashMap<>();
+  public static final Logger LOG =
+      LoggerFactory.getLogger(AccessHistoryTable.class);
+
+  /**
+   * @param partitionSpans time span of the partitions of each granularity
+   *                       kept, at least the span of the windows kept as
+   *                       two partitions are kept in the table
+   */
+  public AccessHistoryTable(DBAdapter adapter,
+      Map<TimeGranularity, Long> partitionSpans) {
+    this.adapter = adapter;
+    this.partitionSpans = partitionSpans;
+    for (TimeGranularity granularity : partitionSpans.keySet()) {
+      partitions.put(granularity, new TreeSet<Long>());
+    }
+  }
+
+  /**
+   * Create the table, or load its partitions if it exists already.
+   */
+  public synchronized void init() throws SQLException {
+    if (adapter.getTableNames(TABLE_NAME).contains(TABLE_NAME)) {
+      loadPartitions();
+    } else {
+      adapter.execute(createTableSQL());
+    }
+  }
+
+  private void loadPartitions() throws SQLException {
+    List<String> names = adapter.executeFilesPathQuery(
+        "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '"
+        + TABLE_NAME + "'");
+    for (String name : names) {
+      if (name == null || name.equals(MAX_PARTITION)) {
+        continue;
+      }
+      String[] parts = name.substring(1).split("_");
+      if (parts.length != 2 || parts[1].equals(TAIL)) {
+        continue;
+      }
+      try {
+        TreeSet<Long> ends = partitions.get(
+            TimeGranularity.values()[Integer.parseInt(parts[0])]);
+        if (ends != null) {
+          ends.add(Long.parseLong(parts[1]));
+        }
+      } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+        LOG.warn("Unknown partition " + name + " of " + TABLE_NAME);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  String createTableSQL() {
+    StringBuilder sql = new StringBuilder();
+    sql.append("CREATE TABLE " + TABLE_NAME + " ("
+        + GRANULARITY_FIELD + " INTEGER NOT NULL, "
+        + WINDOW_START_FIELD + " BIGINT NOT NULL, "
+        + WINDOW_END_FIELD + " BIGINT NOT NULL, "
+        + AccessCountTable.FILE_FIELD + " BIGINT NOT NULL, "
+        + AccessCountTable.ACCESSCOUNT_FIELD + " INTEGER NOT NULL, "
+        + "PRIMARY KEY (" + GRANULARITY_FIELD + ", " + WINDOW_START_FIELD
+        + ", " + AccessCountTable.FILE_FIELD + ")) "
+        + "PARTITION BY RANGE COLUMNS (" + GRANULARITY_FIELD + ", "
+        + WINDOW_START_FIELD + ") (");
+    for (TimeGranularity granularity : TimeGranularity.values()) {
+      if (partitionSpans.containsKey(granularity)) {
+        sql.append(tailPartitionSQL(granularity) + ", ");
+      }
+    }
+    sql.append("PARTITION " + MAX_PARTITION
+        + " VALUES LESS THAN (MAXVALUE, MAXVALUE))");
+    return sql.toString();
+  }
+
+  /**
+   * Write the counts of a window of the finest granularity.
+   */
+  public void insertWindow(AccessCountTable window, Map<Long, Integer> counts)
+      throws SQLException {
+    addPartitionFor(window);
+    if (!counts.isEmpty()) {
+      StringBuilder sql = new StringBuilder();
+      sql.append("INSERT INTO " + TABLE_NAME + " (" + GRANULARITY_FIELD
+          + ", " + WINDOW_START_FIELD + ", " + WINDOW_END_FIELD + ", "
+          + AccessCountTable.FILE_FIELD + ", "
+          + AccessCountTable.ACCESSCOUNT_FIELD + ") VALUES ");
+      String prefix = "(" + window.getGranularity().ordinal() + ", "
+          + window.getStartTime() + ", " + window.getEndTime() + ", ";
+      Iterator<Map.Entry<Long, Integer>> it = counts.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<Long, Integer> entry = it.next();
+        sql.append(prefix + entry.getKey() + ", " + entry.getValue() + ")");
+        if (it.hasNext()) {
+          sql.append(", ");
+        }
+      }
+      adapter.execute(sql.toString());
+    }
+    dropPartitionsBefore(window);
+  }
+
+  /**
+   * Roll up the windows given into a coarser window.
+   */
+  public void aggregate(AccessCountTable destination,
+      List<AccessCountTable> windows) throws SQLException {
+    addPartitionFor(destination);
+    adapter.execute(aggregateSQL(destination, windows));
+    dropPartitionsBefore(destination);
+  }
+
+  @VisibleForTesting
+  String aggregateSQL(AccessCountTable destination,
+      List<AccessCountTable> windows) {
+    TimeGranularity from = windows.get(0).getGranularity();
+    return "INSERT INTO " + TABLE_NAME + " (" + GRANULARITY_FIELD + ", "
+        + WINDOW_START_FIELD + ", " + WINDOW_END_FIELD + ", "
+        + AccessCountTable.FILE_FIELD + ", "
+        + AccessCountTable.ACCESSCOUNT_FIELD + ") "
+        + "SELECT " + destination.getGranularity().ordinal() + ", "
+        + destination.getStartTime() + ", " + destination.getEndTime() + ", "
+        + AccessCountTable.FILE_FIELD + ", SUM("
+        + AccessCountTable.ACCESSCOUNT_FIELD + ") FROM " + TABLE_NAME
+        + " WHERE " + rangeSQL(from, destination.getStartTime(),
+            destination.getEndTime())
+        + " GROUP BY " + AccessCountTable.FILE_FIELD;
+  }
+
+  /**
+   * Query summing up the access counts of the windows per file, with the
+   * same columns as a table of access counts.
+   */
+  public String selectSQL(List<AccessCountTable> windows) {
+    List<String> ranges = new ArrayList<>();
+    List<String> scaled = new ArrayList<>();
+    AccessCountTable first = null;
+    AccessCountTable last = null;
+    for (AccessCountTable window : windows) {
+      if (window.getProportion() < 1.0) {
+        scaled.add("WHEN " + GRANULARITY_FIELD + " = "
+            + window.getGranularity().ordinal() + " AND "
+            + WINDOW_START_FIELD + " = " + window.getStartTime()
+            + " THEN FLOOR(" + AccessCountTable.ACCESSCOUNT_FIELD + " * "
+            + window.getProportion() + ")");
+      }
+      // Consecutive windows of a granularity are read as one range
+      if (last != null && last.getGranularity() == window.getGranularity()
+          && last.getEndTime().equals(window.getStartTime())) {
+        last = window;
+        continue;
+      }
+      if (first != null) {
+        ranges.add(rangeSQL(first.getGranularity(), first.getStartTime(),
+            last.getEndTime()));
+      }
+      first = window;
+      last = window;
+    }
+    if (first != null) {
+      ranges.add(rangeSQL(first.getGranularity(), first.getStartTime(),
+          last.getEndTime()));
+    }
+
+    StringBuilder count = new StringBuilder();
+    if (scaled.isEmpty()) {
+      count.append(AccessCountTable.ACCESSCOUNT_FIELD);
+    } else {
+      count.append("CASE");
+      for (String when : scaled) {
+        count.append(" " + when);
+      }
+      count.append(" ELSE " + AccessCountTable.ACCESSCOUNT_FIELD + " END");
+    }
+    StringBuilder where = new StringBuilder();
+    if (ranges.isEmpty()) {
+      where.append("1 = 0");
+    } else {
+      for (int i = 0; i < ranges.size(); i++) {
+        where.append(i == 0 ? "(" : " OR (").append(ranges.get(i))
+            .append(")");
+      }
+    }
+    return "SELECT " + AccessCountTable.FILE_FIELD + ", SUM(" + count
+        + ") AS " + AccessCountTable.ACCESSCOUNT_FIELD + " FROM "
+        + TABLE_NAME + " WHERE " + where + " GROUP BY "
+        + AccessCountTable.FILE_FIELD;
+  }
+
+  /**
+   * Windows written to the table, in no particular order.
+   */
+  public List<AccessCountTable> getWindows() throws SQLException {
+    List<AccessCountTable> windows = new ArrayList<>();
+    List<long[]> rows = adapter.executeLongRowsQuery("SELECT "
+        + GRANULARITY_FIELD + ", " + WINDOW_START_FIELD + ", "
+        + WINDOW_END_FIELD + " FROM " + TABLE_NAME + " GROUP BY "
+        + GRANULARITY_FIELD + ", " + WINDOW_START_FIELD + ", "
+        + WINDOW_END_FIELD);
+    for (long[] row : rows) {
+      windows.add(new AccessCountTable(row[1], row[2],
+          TimeGranularity.values()[(int) row[0]]));
+    }
+    return windows;
+  }
+
+  private synchronized void addPartitionFor(AccessCountTable window)
+      throws SQLException {
+    TimeGranularity granularity = window.getGranularity();
+    TreeSet<Long> ends = partitions.get(granularity);
+    if (ends == null) {
+      return;
+    }
+    long span = partitionSpans.get(granularity);
+    long end = window.getStartTime() - window.getStartTime() % span + span;
+    // Windows older than the last partition land in existing partitions
+    if (!ends.isEmpty() && end <= ends.last()) {
+      return;
+    }
+    int g = granularity.ordinal();
+    adapter.execute("ALTER TABLE " + TABLE_NAME + " REORGANIZE PARTITION "
+        + partitionName(g, TAIL) + " INTO (PARTITION "
+        + partitionName(g, "" + end) + " VALUES LESS THAN (" + g + ", "
+        + end + "), " + tailPartitionSQL(granularity) + ")");
+    ends.add(end);
+  }
+
+  /**
+   * Drop the partitions holding only windows older than a span before the
+   * end of the window, the span of windows before it stays queryable.
+   */
+  private synchronized void dropPartitionsBefore(AccessCountTable window)
+      throws SQLException {
+    TimeGranularity granularity = window.getGranularity();
+    TreeSet<Long> ends = partitions.get(granularity);
+    if (ends == null) {
+      return;
+    }
+    long expired = window.getEndTime() - partitionSpans.get(granularity);
+    List<String> names = new ArrayList<>();
+    for (Long end : ends.headSet(expired, true)) {
+      names.add(partitionName(granularity.ordinal(), "" + end));
+    }
+    if (names.isEmpty()) {
+      return;
+    }
+    StringBuilder sql = new StringBuilder();
+    sql.append("ALTER TABLE " + TABLE_NAME + " DROP PARTITION ");
+    for (int i = 0; i < names.size(); i++) {
+      sql.append(i == 0 ? "" : ", ").append(names.get(i));
+    }
+    adapter.execute(sql.toString());
+    ends.headSet(expired, true).clear();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Dropped partitions " + names + " of " + TABLE_NAME);
+    }
+  }
+
+  private static String rangeSQL(TimeGranularity granularity, long start,
+      long end) {
+    return GRANULARITY_FIELD + " = " + granularity.ordinal() + " AND "
+        + WINDOW_START_FIELD + " >= " + start + " AND "
+        + WINDOW_START_FIELD + " < " + end;
+  }
+
+  private static String tailPartitionSQL(TimeGranularity granularity) {
+    int g = granularity.ordinal();
+    return "PARTITION " + partitionName(g, TAIL) + " VALUES LESS THAN ("
+        + (g + 1) + ", 0)";
+  }
+
+  private static String partitionName(int granularity, String suffix) {
+    return "p" + granularity + "_" + suffix;
+  }
+}
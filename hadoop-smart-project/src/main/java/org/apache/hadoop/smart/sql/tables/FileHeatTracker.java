@@ -0,0 +1,566 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.tables;
+
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an exponentially decayed access counter, the 'heat', for each file.
+ *
+ * Counters are kept in primitive arrays indexed by an open addressing table
+ * keyed on fid, so updating the heat of a file when an access window arrives
+ * and looking it up are both O(1) and allocate nothing per file.
+ * Several half-lives can be tracked at the same time, the first one is the
+ * default used by the 'heat' property of rules.
+ *
+ * The counters are periodically persisted into table 'file_heat', which is
+ * what rules query and what is loaded back on restart. Persisted values are
+ * scaled to a common base time, heat(t) = value * 2^-((t - base) / halfLife),
+ * so a row stays valid until the file is accessed again and only the files
+ * accessed since the last snapshot are written. All rows are rewritten when
+ * the base time moves forward or a half-life is added.
+ */
+public class FileHeatTracker {
+  public static final int MAX_HALF_LIVES = 8;
+  // Counters decayed below this value are dropped on snapshot
+  private static final double PRUNE_THRESHOLD = 0.001;
+  // Move the base time forward once values scaled to it exceed 2^32
+  private static final int MAX_BASE_HALF_LIVES = 32;
+  private static final int INITIAL_CAPACITY = 1024;
+  // Inode ids start from 16385, 0 is never a valid fid
+  private static final long EMPTY = 0L;
+  private static final double LN2 = Math.log(2);
+
+  private final DBAdapter adapter;
+  private final long[] halfLives;
+  private final double[] lambdas;
+  private final double[][] heats;
+  private int numHalfLives;
+  // Half-lives at index below this one have values in table 'file_heat'
+  private int numPersistedHalfLives = 1;
+
+  private long[] fids;
+  private long[] stamps;
+  private boolean[] dirty;
+  private int size;
+  private long baseTime;
+  // Base time of the values in table 'file_heat'
+  private long persistedBaseTime;
+  private boolean fullSnapshot = true;
+  private long lastSnapshotTime;
+  private final Object snapshotLock = new Object();
+  private ScheduledExecutorService service;
+  private ScheduledFuture snapshotFuture;
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(FileHeatTracker.class);
+
+  public FileHeatTracker(DBAdapter adapter, long defaultHalfLife) {
+    if (defaultHalfLife <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid heat half-life: " + defaultHalfLife);
+    }
+    this.adapter = adapter;
+    this.halfLives = new long[MAX_HALF_LIVES];
+    this.lambdas = new double[MAX_HALF_LIVES];
+    this.heats = new double[MAX_HALF_LIVES][];
+    this.fids = new long[INITIAL_CAPACITY];
+    this.stamps = new long[INITIAL_CAPACITY];
+    this.dirty = new boolean[INITIAL_CAPACITY];
+    this.halfLives[0] = defaultHalfLife;
+    this.lambdas[0] = LN2 / defaultHalfLife;
+    this.heats[0] = new double[INITIAL_CAPACITY];
+    this.numHalfLives = 1;
+  }
+
+  public long getDefaultHalfLife() {
+    return halfLives[0];
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized long getLastSnapshotTime() {
+    return lastSnapshotTime;
+  }
+
+  /**
+   * Start tracking the given half-life. The new counters are seeded with
+   * the ones of the default half-life so that rules using it do not see
+   * every file as cold right after registration.
+   *
+   * @param halfLife half-life in milliseconds, null for the default one
+   * @return true if the half-life was not tracked before
+   */
+  public synchronized boolean registerHalfLife(Long halfLife) {
+    return addHalfLife(halfLife, true);
+  }
+
+  private boolean addHalfLife(Long halfLife, boolean seed) {
+    if (halfLife == null || indexOf(halfLife) >= 0) {
+      return false;
+    }
+    if (halfLife <= 0) {
+      throw new IllegalArgumentException("Invalid heat half-life: " + halfLife);
+    }
+    if (numHalfLives == MAX_HALF_LIVES) {
+      LOG.warn("Can not track more than " + MAX_HALF_LIVES
+          + " heat half-lives, " + halfLife + " ignored.");
+      return false;
+    }
+    int idx = numHalfLives;
+    halfLives[idx] = halfLife;
+    lambdas[idx] = LN2 / halfLife;
+    heats[idx] = seed ? heats[0].clone() : new double[fids.length];
+    numHalfLives++;
+    // Rows of the new half-life are not in table 'file_heat' yet
+    fullSnapshot = true;
+    return true;
+  }
+
+  /**
+   * Get the half-life that will actually be used for the given one. A
+   * half-life is only used once its values have been persisted, before
+   * that the default one is used instead.
+   */
+  public synchronized long resolveHalfLife(Long halfLife) {
+    if (halfLife == null) {
+      return halfLives[0];
+    }
+    int idx = indexOf(halfLife);
+    return idx >= 0 && idx < numPersistedHalfLives ? halfLife : halfLives[0];
+  }
+
+  /**
+   * Account accesses of a file happened at the given time.
+   */
+  public synchronized void addAccess(long fid, int count, long time) {
+    if (fid == EMPTY || count <= 0) {
+      return;
+    }
+    int slot = findOrInsert(fid);
+    long stamp = stamps[slot];
+    if (time >= stamp) {
+      // Counters of new entries are zero, no matter how long elapsed
+      long elapsed = time - stamp;
+      for (int i = 0; i < numHalfLives; i++) {
+        heats[i][slot] = heats[i][slot] * Math.exp(-lambdas[i] * elapsed)
+            + count;
+      }
+      stamps[slot] = time;
+    } else {
+      // Late accesses, decay them to the time of the counter instead
+      for (int i = 0; i < numHalfLives; i++) {
+        heats[i][slot] += count * Math.exp(-lambdas[i] * (stamp - time));
+      }
+    }
+    dirty[slot] = true;
+  }
+
+  /**
+   * Get heat of the file at time 'now'.
+   *
+   * @return 0 if the file has never been accessed or the half-life given
+   * is not tracked
+   */
+  public synchronized double getHeat(long fid, long halfLife, long now) {
+    int idx = indexOf(halfLife);
+    int slot = find(fid);
+    if (idx < 0 || slot < 0) {
+      return 0;
+    }
+    long elapsed = Math.max(0, now - stamps[slot]);
+    return heats[idx][slot] * Math.exp(-lambdas[idx] * elapsed);
+  }
+
+  /**
+   * Get the time of the last access accounted for the file.
+   *
+   * @return 0 if the file has never been accessed
+   */
+  public synchronized long getLastAccessTime(long fid) {
+    int slot = find(fid);
+    return slot < 0 ? 0 : stamps[slot];
+  }
+
+  /**
+   * Factor to apply to the persisted heat values to get the heat values at
+   * time 'now'.
+   */
+  public synchronized double getDecayFactor(long halfLife, long now) {
+    if (persistedBaseTime == 0) {
+      return 1.0;
+    }
+    return Math.exp(-LN2 * (now - persistedBaseTime) / halfLife);
+  }
+
+  /**
+   * Used to restore counters from table 'file_heat'.
+   *
+   * @param time the base time the persisted value is scaled to
+   */
+  public synchronized void restore(long fid, long halfLife, double heat,
+      long time) {
+    addHalfLife(halfLife, false);
+    int idx = indexOf(halfLife);
+    if (idx < 0 || fid == EMPTY) {
+      return;
+    }
+    int oldSize = size;
+    int slot = findOrInsert(fid);
+    if (size != oldSize) {
+      stamps[slot] = time;
+    }
+    heats[idx][slot] += heat * Math.exp(-lambdas[idx]
+        * Math.max(0, stamps[slot] - time));
+    baseTime = Math.max(baseTime, time);
+    persistedBaseTime = baseTime;
+    lastSnapshotTime = Math.max(lastSnapshotTime, time);
+  }
+
+  /**
+   * Decay all the counters to time 'now', drop the ones too small to matter
+   * and return the rows to persist: the files accessed since the last
+   * snapshot, or all of them if the table has to be rewritten.
+   */
+  public synchronized Snapshot takeSnapshot(long now) {
+    boolean full = fullSnapshot || baseTime == 0
+        || now - baseTime > MAX_BASE_HALF_LIVES * minHalfLife();
+    if (full) {
+      baseTime = now;
+    }
+    int capacity = fids.length;
+    while (capacity > INITIAL_CAPACITY && size * 4 < capacity) {
+      capacity >>= 1;
+    }
+    long[] oldFids = fids;
+    long[] oldStamps = stamps;
+    boolean[] oldDirty = dirty;
+    double[][] oldHeats = new double[numHalfLives][];
+    for (int i = 0; i < numHalfLives; i++) {
+      oldHeats[i] = heats[i];
+    }
+    allocate(capacity);
+
+    Snapshot snapshot = new Snapshot(now, baseTime, full, numHalfLives,
+        oldFids.length);
+    System.arraycopy(halfLives, 0, snapshot.halfLives, 0, numHalfLives);
+    double[] decayed = new double[numHalfLives];
+    for (int slot = 0; slot < oldFids.length; slot++) {
+      if (oldFids[slot] == EMPTY) {
+        continue;
+      }
+      long elapsed = Math.max(0, now - oldStamps[slot]);
+      boolean keep = false;
+      for (int i = 0; i < numHalfLives; i++) {
+        decayed[i] = oldHeats[i][slot] * Math.exp(-lambdas[i] * elapsed);
+        keep |= decayed[i] >= PRUNE_THRESHOLD;
+      }
+      if (!keep) {
+        if (!full) {
+          snapshot.addRemoved(oldFids[slot]);
+        }
+        continue;
+      }
+      // Counters kept relative to the last access time of the file
+      int newSlot = findOrInsert(oldFids[slot]);
+      stamps[newSlot] = oldStamps[slot];
+      for (int i = 0; i < numHalfLives; i++) {
+        heats[i][newSlot] = oldHeats[i][slot];
+      }
+      if (full || oldDirty[slot]) {
+        snapshot.fids[snapshot.size] = oldFids[slot];
+        for (int i = 0; i < numHalfLives; i++) {
+          snapshot.heats[i][snapshot.size] = oldHeats[i][slot]
+              * Math.exp(lambdas[i] * (oldStamps[slot] - baseTime));
+        }
+        snapshot.size++;
+      }
+    }
+    fullSnapshot = false;
+    lastSnapshotTime = now;
+    return snapshot;
+  }
+
+  private long minHalfLife() {
+    long min = halfLives[0];
+    for (int i = 1; i < numHalfLives; i++) {
+      min = Math.min(min, halfLives[i]);
+    }
+    return min;
+  }
+
+  /**
+   * Load counters persisted from last run.
+   */
+  public void load() {
+    if (adapter == null) {
+      return;
+    }
+    try {
+      adapter.loadFileHeats(this);
+      synchronized (this) {
+        numPersistedHalfLives = numHalfLives;
+        fullSnapshot = false;
+      }
+      LOG.info("Loaded heat of " + size() + " files.");
+    } catch (SQLException e) {
+      LOG.error("Failed to load file heat", e);
+    }
+  }
+
+  /**
+   * Take a snapshot of counters and persist it into table 'file_heat'.
+   */
+  public void snapshot() {
+    if (adapter == null) {
+      return;
+    }
+    synchronized (snapshotLock) {
+      Snapshot snapshot = takeSnapshot(System.currentTimeMillis());
+      try {
+        adapter.updateFileHeatTable(snapshot);
+        markPersisted(snapshot);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Heat of " + snapshot.getSize() + " files persisted, "
+              + snapshot.getNumRemoved() + " removed.");
+        }
+      } catch (SQLException e) {
+        LOG.error("Failed to persist file heat", e);
+        // Rows of this snapshot are lost, rewrite everything next time
+        synchronized (this) {
+          fullSnapshot = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Called once the rows of the snapshot are in table 'file_heat'.
+   */
+  public synchronized void markPersisted(Snapshot snapshot) {
+    persistedBaseTime = snapshot.getBaseTime();
+    if (snapshot.isFull()) {
+      numPersistedHalfLives = Math.max(numPersistedHalfLives,
+          snapshot.getHalfLives().length);
+    }
+  }
+
+  /**
+   * Ask for a snapshot as soon as possible, without waiting for it.
+   */
+  public void requestSnapshot() {
+    ScheduledExecutorService s = service;
+    if (s == null) {
+      return;
+    }
+    s.execute(new Runnable() {
+      @Override
+      public void run() {
+        snapshot();
+      }
+    });
+  }
+
+  public void start(ScheduledExecutorService service, long interval) {
+    this.service = service;
+    this.snapshotFuture = service.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        snapshot();
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    if (snapshotFuture != null) {
+      snapshotFuture.cancel(false);
+      snapshotFuture = null;
+      service = null;
+      snapshot();
+    }
+  }
+
+  private int indexOf(long halfLife) {
+    for (int i = 0; i < numHalfLives; i++) {
+      if (halfLives[i] == halfLife) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int hash(long fid, int mask) {
+    long h = fid * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private int find(long fid) {
+    int mask = fids.length - 1;
+    for (int slot = hash(fid, mask); ; slot = (slot + 1) & mask) {
+      if (fids[slot] == fid) {
+        return slot;
+      } else if (fids[slot] == EMPTY) {
+        return -1;
+      }
+    }
+  }
+
+  private int findOrInsert(long fid) {
+    if ((size + 1) * 4 > fids.length * 3) {
+      grow();
+    }
+    int mask = fids.length - 1;
+    int slot = hash(fid, mask);
+    while (fids[slot] != EMPTY) {
+      if (fids[slot] == fid) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    fids[slot] = fid;
+    size++;
+    return slot;
+  }
+
+  private void grow() {
+    long[] oldFids = fids;
+    long[] oldStamps = stamps;
+    boolean[] oldDirty = dirty;
+    double[][] oldHeats = new double[numHalfLives][];
+    for (int i = 0; i < numHalfLives; i++) {
+      oldHeats[i] = heats[i];
+    }
+    allocate(oldFids.length << 1);
+    int mask = fids.length - 1;
+    for (int old = 0; old < oldFids.length; old++) {
+      if (oldFids[old] == EMPTY) {
+        continue;
+      }
+      int slot = hash(oldFids[old], mask);
+      while (fids[slot] != EMPTY) {
+        slot = (slot + 1) & mask;
+      }
+      fids[slot] = oldFids[old];
+      stamps[slot] = oldStamps[old];
+      dirty[slot] = oldDirty[old];
+      for (int i = 0; i < numHalfLives; i++) {
+        heats[i][slot] = oldHeats[i][old];
+      }
+      size++;
+    }
+  }
+
+  private void allocate(int capacity) {
+    fids = new long[capacity];
+    stamps = new long[capacity];
+    dirty = new boolean[capacity];
+    for (int i = 0; i < numHalfLives; i++) {
+      heats[i] = new double[capacity];
+    }
+    size = 0;
+  }
+
+  /**
+   * Rows of table 'file_heat' to write at a given time.
+   */
+  public static class Snapshot {
+    private final long time;
+    private final long baseTime;
+    private final boolean full;
+    private final long[] halfLives;
+    private final long[] fids;
+    private final double[][] heats;
+    private int size;
+    private long[] removed = new long[16];
+    private int numRemoved;
+
+    Snapshot(long time, long baseTime, boolean full, int numHalfLives,
+        int capacity) {
+      this.time = time;
+      this.baseTime = baseTime;
+      this.full = full;
+      this.halfLives = new long[numHalfLives];
+      this.fids = new long[capacity];
+      this.heats = new double[numHalfLives][capacity];
+    }
+
+    private void addRemoved(long fid) {
+      if (numRemoved == removed.length) {
+        removed = Arrays.copyOf(removed, numRemoved << 1);
+      }
+      removed[numRemoved++] = fid;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    /**
+     * Time the heat values are scaled to.
+     */
+    public long getBaseTime() {
+      return baseTime;
+    }
+
+    /**
+     * @return true if the rows replace the whole table, otherwise they
+     * are upserted
+     */
+    public boolean isFull() {
+      return full;
+    }
+
+    public long[] getHalfLives() {
+      return halfLives;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public long getFid(int index) {
+      return fids[index];
+    }
+
+    public double getHeat(int halfLifeIndex, int index) {
+      return heats[halfLifeIndex][index];
+    }
+
+    /**
+     * Number of files pruned since the last snapshot, their rows have to be
+     * deleted.
+     */
+    public int getNumRemoved() {
+      return numRemoved;
+    }
+
+    public long getRemovedFid(int index) {
+      return removed[index];
+    }
+  }
+}
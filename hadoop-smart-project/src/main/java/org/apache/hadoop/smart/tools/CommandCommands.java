@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.tools;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.shell.Command;
+import org.apache.hadoop.fs.shell.CommandFactory;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.protocol.SmartClient;
+import org.apache.hadoop.smart.sql.CommandFilter;
+import org.apache.hadoop.smart.sql.CommandInfo;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class CommandCommands {
+  static final String FILTER_USAGE = "[-rule rule_id] [-state state] "
+      + "[-action action_type] [-from time_ms] [-to time_ms]";
+
+  public static void registerCommands(CommandFactory factory) {
+    factory.addClass(ListCommands.class, "listcommands");
+    factory.addClass(CommandsSummary.class, "commandsummary");
+  }
+
+  /**
+   * Parse the filter options, returns the page size given by -limit.
+   */
+  static int parseFilter(String[] args, CommandFilter filter)
+      throws IOException {
+    int limit = 0;
+    for (int i = 0; i < args.length; i += 2) {
+      if (i + 1 >= args.length) {
+        throw new IOException("Missing value of option " + args[i]);
+      }
+      String value = args[i + 1];
+      try {
+        switch (args[i]) {
+          case "-rule":
+            filter.setRuleId(Long.parseLong(value));
+            break;
+          case "-state":
+            filter.setState(CommandState.valueOf(value.toUpperCase()));
+            break;
+          case "-action":
+            ActionType type = ActionType.fromName(value);
+            if (type == null) {
+              throw new IOException("Invalid action type: " + value);
+            }
+            filter.setActionType(type);
+            break;
+          case "-from":
+            filter.setFromTime(Long.parseLong(value));
+            break;
+          case "-to":
+            filter.setToTime(Long.parseLong(value));
+            break;
+          case "-limit":
+            limit = Integer.parseInt(value);
+            break;
+          default:
+            throw new IOException("Unknown option " + args[i]);
+        }
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid value of " + args[i] + ": " + value);
+      }
+    }
+    return limit;
+  }
+
+  public static class ListCommands extends Command {
+    public static final String NAME = "listcommands";
+    public static final String USAGE = FILTER_USAGE + " [-limit page_size]";
+    public static final String DESCRIPTION = "List commands in SSM "
+        + "matching the filter. Commands are fetched page by page.";
+
+    public int doList(String[] args) throws IOException {
+      CommandFilter filter = new CommandFilter();
+      int limit = parseFilter(args, filter);
+      SmartClient client = RuleCommands.newSSMClient(this);
+      RemoteIterator<CommandInfo> it = client.listCommands(filter, limit);
+      long num = 0;
+      while (it.hasNext()) {
+        System.out.println(it.next());
+        num++;
+      }
+      System.out.println("Totally " + num + " commands listed.");
+      return 0;
+    }
+
+    public String getCommandName() {
+      return NAME;
+    }
+
+    protected void run(Path path) throws IOException {
+      throw new IOException("Method not implemented");
+    }
+
+    public int run(String[] argv) {
+      try {
+        return doList(argv);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      return -1;
+    }
+  }
+
+  public static class CommandsSummary extends Command {
+    public static final String NAME = "commandsummary";
+    public static final String USAGE = FILTER_USAGE;
+    public static final String DESCRIPTION = "Count commands in SSM "
+        + "matching the filter in each state.";
+
+    public int doSummary(String[] args) throws IOException {
+      CommandFilter filter = new CommandFilter();
+      parseFilter(args, filter);
+      SmartClient client = RuleCommands.newSSMClient(this);
+      Map<CommandState, Long> counts = client.getCommandsSummary(filter);
+      long total = 0;
+      for (CommandState state : CommandState.values()) {
+        Long count = counts.get(state);
+        if (count != null) {
+          System.out.println(state + "\t" + count);
+          total += count;
+        }
+      }
+      System.out.println("Totally " + total + " commands.");
+      return 0;
+    }
+
+    public String getCommandName() {
+      return NAME;
+    }
+
+    protected void run(Path path) throws IOException {
+      throw new IOException("Method not implemented");
+    }
+
+    public int run(String[] argv) {
+      try {
+        return doSummary(argv);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      return -1;
+    }
+  }
+}
@@ -19,25 +19,27 @@
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.shell.Command;
 import org.apache.hadoop.fs.shell.CommandFactory;
 import org.apache.hadoop.smart.SmartConfiguration;
 import org.apache.hadoop.smart.protocol.SmartClient;
+import org.apache.hadoop.smart.rule.RuleEstimate;
 import org.apache.hadoop.smart.rule.RuleInfo;
 import org.apache.hadoop.smart.rule.RuleState;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.List;
 
 public class RuleCommands {
   public static void registerCommands(CommandFactory factory) {
     factory.addClass(SubmitRule.class, "submitrule");
     factory.addClass(ListRules.class, "listrules");
+    factory.addClass(EstimateRule.class, "estimaterule");
   }
 
-  private static SmartClient newSSMClient(Command cmd) throws IOException {
+  static SmartClient newSSMClient(Command cmd) throws IOException {
     Configuration conf = cmd.getConf();
     if (conf == null) {
       conf = new SmartConfiguration();
@@ -48,6 +50,25 @@ private static SmartClient newSSMClient(Command cmd) throws IOException {
     return client;
   }
 
+  static String readRuleFile(String path) throws IOException {
+    File file = new File(path);
+    if (!file.exists() || file.isDirectory() || !file.canRead()) {
+      throw new IOException("Invalid rule file path: " + path);
+    }
+    if (file.length() >= 2 * 1024L * 1024 * 1024) {
+      throw new IOException("File size is too big (>= 2BG)");
+    }
+    int len = (int)file.length();
+    int nreaded = 0;
+    FileInputStream in = new FileInputStream(file);
+    byte[] con = new byte[len];
+    while (nreaded < len) {
+      nreaded += in.read(con, nreaded, len - nreaded);
+    }
+    in.close();
+    return new String(con);
+  }
+
   public static class SubmitRule extends Command {
     public static final String NAME = "submitrule";
     public static final String USAGE =
@@ -57,22 +78,7 @@ public static class SubmitRule extends Command {
 
     public int doSubmit(String[] args) throws IOException {
       SmartClient client = newSSMClient(this);
-      File file = new File(args[0]);
-      if (!file.exists() || file.isDirectory() || !file.canRead()) {
-        throw new IOException("Invalid rule file path: " + args[0]);
-      }
-      if (file.length() >= 2 * 1024L * 1024 * 1024) {
-        throw new IOException("File size is too big (>= 2BG)");
-      }
-      int len = (int)file.length();
-      int nreaded = 0;
-      FileInputStream in = new FileInputStream(file);
-      byte[] con = new byte[len];
-      while (nreaded < len) {
-        nreaded += in.read(con, nreaded, len - nreaded);
-      }
-      in.close();
-      String ruleText = new String(con);
+      String ruleText = readRuleFile(args[0]);
       System.out.println("Rule text:\n" + ruleText);
 
       RuleState state =
@@ -104,6 +110,49 @@ public int run(String[] argv) {
     }
   }
 
+  public static class EstimateRule extends Command {
+    public static final String NAME = "estimaterule";
+    public static final String USAGE = "rule_file_path";
+    public static final String DESCRIPTION = "Estimate the files a rule "
+        + "matches and the commands it generates, without submitting it.";
+
+    public int doEstimate(String[] args) throws IOException {
+      SmartClient client = newSSMClient(this);
+      String ruleText = readRuleFile(args[0]);
+      System.out.println("Rule text:\n" + ruleText);
+      RuleEstimate estimate = client.estimateRule(ruleText);
+      System.out.println();
+      System.out.println("Files matched per check: "
+          + estimate.getMatchedFiles() + " (" + estimate.getMatchedBytes()
+          + " bytes)");
+      System.out.println("Time per check: " + estimate.getCheckTime() + " ms");
+      System.out.println(String.format("Checks per hour: %.1f",
+          estimate.getChecksPerHour()));
+      System.out.println(String.format("Commands per hour: %.1f",
+          estimate.getCommandsPerHour()));
+      System.out.println("Sampled " + estimate.getSampledFiles() + " of "
+          + estimate.getTotalFiles() + " files.");
+      return 0;
+    }
+
+    public String getCommandName() {
+      return NAME;
+    }
+
+    protected void run(Path path) throws IOException {
+      throw new IOException("Method not implemented");
+    }
+
+    public int run(String[] argv) {
+      try {
+        return doEstimate(argv);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      return -1;
+    }
+  }
+
   public static class ListRules extends Command {
     public static final String NAME = "listrules";
     public static final String USAGE = "";
@@ -111,11 +160,13 @@ public static class ListRules extends Command {
 
     public int doList(String[] args) throws IOException {
       SmartClient client = newSSMClient(this);
-      List<RuleInfo> infos = client.listRulesInfo();
-      for (RuleInfo info : infos) {
-        System.out.println(info);
+      RemoteIterator<RuleInfo> it = client.listRules();
+      long num = 0;
+      while (it.hasNext()) {
+        System.out.println(it.next());
+        num++;
       }
-      System.out.println("Totally " + infos.size() + " in SSM.");
+      System.out.println("Totally " + num + " in SSM.");
       return 0;
     }
 
@@ -26,6 +26,7 @@
 public class SmartCommand extends Command {
   public static void registerCommands(CommandFactory factory) {
     factory.registerCommands(RuleCommands.class);
+    factory.registerCommands(CommandCommands.class);
   }
 
   @Override
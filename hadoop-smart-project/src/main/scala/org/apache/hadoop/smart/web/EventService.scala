@@ -0,0 +1,81 @@
+/**
+  * Licensed to the Apache Software Foundation (ASF) under one
+  * or more contributor license agreements.  See the NOTICE file
+  * distributed with this work for additional information
+  * regarding copyright ownership.  The ASF licenses this file
+  * to you under the Apache License, Version 2.0 (the
+  * "License"); you may not use this file except in compliance
+  * with the License.  You may obtain a copy of the License at
+  *
+  * http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+package org.apache.hadoop.smart.web
+
+import akka.actor.{Actor, ActorRef, ActorSystem, Props, Terminated}
+import akka.http.scaladsl.model.ws.{Message, TextMessage}
+import akka.http.scaladsl.server.Directives._
+import akka.http.scaladsl.server.Route
+import akka.stream.{Materializer, OverflowStrategy}
+import akka.stream.scaladsl.{Flow, Sink, Source}
+import com.google.gson.Gson
+import org.apache.hadoop.smart.{SmartConfigureKeys, SmartServer}
+import org.apache.hadoop.smart.event.{StateChangeBus, StateChangeEvent}
+
+/**
+  * Push state transitions of rules and commands to web clients over a
+  * websocket, one JSON object per message. Each client has its own bounded
+  * buffer, the oldest events are dropped when it falls behind; clients
+  * notice the gap in sequence numbers and list rules or commands again.
+  */
+class EventService(ssmServer: SmartServer)(implicit system: ActorSystem)
+  extends BasicService {
+  private val gson: Gson = new Gson()
+
+  override protected def doRoute(implicit mat: Materializer): Route =
+    path("events") {
+      handleWebsocketMessages(eventFlow)
+    }
+
+  private def bufferSize: Int = ssmServer.getConf.getInt(
+    SmartConfigureKeys.DFS_SSM_HTTP_EVENT_BUFFER_SIZE_KEY,
+    SmartConfigureKeys.DFS_SSM_HTTP_EVENT_BUFFER_SIZE_DEFAULT)
+
+  // Messages from clients are ignored
+  private def eventFlow: Flow[Message, Message, Any] = {
+    val events = Source.actorRef[StateChangeEvent](bufferSize,
+      OverflowStrategy.dropHead)
+      .mapMaterializedValue(subscribe)
+      .map(event => TextMessage(gson.toJson(event)): Message)
+    Flow.fromSinkAndSource(Sink.ignore, events)
+  }
+
+  private def subscribe(ref: ActorRef): ActorRef = {
+    val bus = ssmServer.getStateChangeBus
+    val listener = new StateChangeBus.Listener {
+      override def onEvent(event: StateChangeEvent): Unit = ref ! event
+    }
+    bus.subscribe(listener)
+    system.actorOf(Props(new SubscriptionWatcher(ref, bus, listener)))
+    ref
+  }
+}
+
+/**
+  * Unsubscribe from the bus once the stream of a client is closed.
+  */
+private class SubscriptionWatcher(ref: ActorRef, bus: StateChangeBus,
+    listener: StateChangeBus.Listener) extends Actor {
+  context.watch(ref)
+
+  override def receive: Receive = {
+    case Terminated(_) =>
+      bus.unsubscribe(listener)
+      context.stop(self)
+  }
+}
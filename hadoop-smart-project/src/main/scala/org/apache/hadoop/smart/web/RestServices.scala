@@ -17,16 +17,18 @@
   */
 package org.apache.hadoop.smart.web
 
+import akka.actor.ActorSystem
 import akka.http.scaladsl.server.Directives._
 import akka.http.scaladsl.server.Route
 import org.apache.hadoop.smart.SmartServer
 
-class RestServices(ssmServer: SmartServer) {
+class RestServices(ssmServer: SmartServer)(implicit system: ActorSystem) {
 
   private val static = new StaticRestService().route
   private val rule = new RuleService(ssmServer).route
+  private val event = new EventService(ssmServer).route
 
   def route: Route = {
-    static ~ rule
+    static ~ rule ~ event
   }
 }
@@ -17,75 +17,101 @@
   */
 package org.apache.hadoop.smart.web
 
-import java.util
-import java.util.{HashMap, Map}
+import java.io.IOException
 
-import scala.collection.JavaConverters._
+import akka.http.scaladsl.model.StatusCodes
 import akka.http.scaladsl.server.Directives._
-import akka.http.scaladsl.server.Directives.{complete, path}
-import akka.http.scaladsl.server.Route
+import akka.http.scaladsl.server.{ExceptionHandler, Route}
 import akka.stream.Materializer
 import com.google.gson.Gson
-import org.apache.hadoop.smart.{CommandState, SmartServer}
-import org.apache.hadoop.smart.actions.ActionType
-import org.apache.hadoop.smart.rule.{RuleInfo, RuleState}
-import org.apache.hadoop.smart.sql.CommandInfo
-import org.apache.hadoop.smart.utils.JsonUtil
-
-import scala.util.Random
+import org.apache.hadoop.smart.{CommandState, SmartConfigureKeys, SmartServer}
+import org.apache.hadoop.smart.protocol.ListingPage
+import org.apache.hadoop.smart.rule.RuleState
+import org.apache.hadoop.smart.sql.CommandFilter
 
 class RuleService(ssmServer: SmartServer) extends BasicService {
   private val gson: Gson = new Gson()
-  private val rules: util.Collection[RuleInfo] = new util.ArrayList[RuleInfo]()
 
-  override protected def doRoute(implicit mat: Materializer): Route = pathPrefix("rules" / IntNumber) { ruleId =>
-    path("start") {
-      post {
-        rules.asScala.filter(_.getId == ruleId).foreach(_.setState(RuleState.ACTIVE))
-        complete("success")
-      }
-    } ~
-    path("stop") {
-      delete {
-        rules.asScala.filter(_.getId == ruleId).foreach(_.setState(RuleState.DISABLED))
-        complete("success")
-      }
-    } ~
-    path("detail") {
-      complete(gson.toJson(rules.asScala.find(_.getId == ruleId).get))
-    } ~
-    path("errors") {
-      complete("{\"time\" : \"0\", \"error\" : \"\"}")
-    } ~
-    path("commands") {
-      val smap1 = new util.HashMap[String, String]
-      smap1.put("_FILE_PATH_", "/testCacheFile")
-      val command1 = new CommandInfo(0, 1, ActionType.MoveFile,
-        CommandState.PENDING, JsonUtil.toJsonString(smap1), 123123333l, 232444444l)
-      val command2 = new CommandInfo(1, 1, ActionType.CacheFile, CommandState.PENDING,
-        JsonUtil.toJsonString(smap1), 123178333l, 232444994l)
-      complete(gson.toJson(util.Arrays.asList(command1, command2)))
-    }
-  } ~
-    path("rulelist") {
-      complete(gson.toJson(rules))
-  } ~
-  path("addrule") {
-    post {
-      entity(as[String]) { request =>
-        val rule = java.net.URLDecoder.decode(request, "UTF-8")
-        System.out.println("Adding rule: " + rule)
-        addRuleInfo(rule)
-        complete("Success")
+  private val ioExceptionHandler = ExceptionHandler {
+    case e: IOException => complete(StatusCodes.BadRequest, e.getMessage)
+    case e: IllegalArgumentException =>
+      complete(StatusCodes.BadRequest, e.getMessage)
+  }
+
+  override protected def doRoute(implicit mat: Materializer): Route =
+    handleExceptions(ioExceptionHandler) {
+      pathPrefix("rules" / LongNumber) { ruleId =>
+        path("start") {
+          post {
+            ssmServer.getRuleManager.ActivateRule(ruleId)
+            complete("success")
+          }
+        } ~
+        path("stop") {
+          delete {
+            ssmServer.getRuleManager.DisableRule(ruleId, false)
+            complete("success")
+          }
+        } ~
+        path("detail") {
+          complete(gson.toJson(ssmServer.getRuleManager.getRuleInfo(ruleId)))
+        } ~
+        path("errors") {
+          complete("{\"time\" : \"0\", \"error\" : \"\"}")
+        } ~
+        path("commands") {
+          pageParameters { (pageToken, limit) =>
+            complete(listCommands(
+              new CommandFilter(ruleId, null, null, -1, -1), pageToken, limit))
+          }
+        }
+      } ~
+      path("rules") {
+        pageParameters { (pageToken, limit) =>
+          complete(gson.toJson(ssmServer.getRuleManager
+            .listRulesInfo(pageToken, pageSize(limit))))
+        }
+      } ~
+      path("rulelist") {
+        complete(gson.toJson(ssmServer.getRuleManager.listRulesInfo()))
+      } ~
+      path("addrule") {
+        post {
+          entity(as[String]) { request =>
+            val rule = java.net.URLDecoder.decode(request, "UTF-8")
+            ssmServer.getRuleManager.submitRule(rule, RuleState.DISABLED)
+            complete("Success")
+          }
+        }
+      } ~
+      path("commands") {
+        pageParameters { (pageToken, limit) =>
+          parameters('ruleId.as[Long] ? -1L, 'state.?) { (ruleId, state) =>
+            val filter = if (ruleId == -1L && state.isEmpty) null else {
+              new CommandFilter(ruleId,
+                state.map(CommandState.valueOf).orNull, null, -1, -1)
+            }
+            complete(listCommands(filter, pageToken, limit))
+          }
+        }
       }
     }
+
+  private def pageParameters =
+    parameters('pageToken.as[Long] ? ListingPage.FIRST_PAGE,
+      'limit.as[Int] ? 0)
+
+  // Same bound on page sizes as listings over RPC
+  private def pageSize(limit: Int): Int = {
+    val max = ssmServer.getConf.getInt(
+      SmartConfigureKeys.DFS_SSM_LIST_MAX_PAGE_SIZE_KEY,
+      SmartConfigureKeys.DFS_SSM_LIST_MAX_PAGE_SIZE_DEFAULT)
+    if (limit <= 0) max else math.min(limit, max)
   }
 
-  private def addRuleInfo(rule: String): RuleInfo = {
-    val builder = RuleInfo.newBuilder
-    builder.setRuleText(rule).setId(Math.abs(Random.nextInt())).setState(RuleState.DISABLED)
-    val ruleInfo = builder.build
-    rules.add(ruleInfo)
-    ruleInfo
+  private def listCommands(filter: CommandFilter, pageToken: Long,
+      limit: Int): String = {
+    gson.toJson(ssmServer.getCommandExecutor
+      .listCommandsInfo(filter, pageToken, pageSize(limit)))
   }
 }
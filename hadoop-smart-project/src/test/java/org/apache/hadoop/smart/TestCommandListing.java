@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart;
+
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.protocol.ListingPage;
+import org.apache.hadoop.smart.sql.CommandFilter;
+import org.apache.hadoop.smart.sql.CommandInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestCommandListing {
+  private static final CommandFilter PENDING =
+      new CommandFilter(-1, CommandState.PENDING, null, -1, -1);
+
+  private CommandInfo command(long cid, CommandState state) {
+    return new CommandInfo(cid, 1, ActionType.CacheFile, state, "", 0, 0);
+  }
+
+  private List<Long> cids(ListingPage<CommandInfo> page) {
+    List<Long> ret = new ArrayList<>();
+    for (CommandInfo info : page.getEntries()) {
+      ret.add(info.getCid());
+    }
+    return ret;
+  }
+
+  @Test
+  public void testCachedStateFiltered() {
+    Map<Long, CommandInfo> cached = new HashMap<>();
+    // Pending in the metastore but executing in cache
+    cached.put(2L, command(2, CommandState.EXECUTING));
+    // Done in the metastore but pending again in cache
+    cached.put(3L, command(3, CommandState.PENDING));
+    List<CommandInfo> rows = Arrays.asList(
+        command(1, CommandState.PENDING), command(2, CommandState.PENDING),
+        command(4, CommandState.PENDING));
+
+    ListingPage<CommandInfo> page =
+        CommandExecutor.mergePage(rows, cached, PENDING, -1, 10);
+    Assert.assertEquals(Arrays.asList(1L, 3L, 4L), cids(page));
+    Assert.assertFalse(page.hasMore());
+    Assert.assertEquals(4L, page.getNextPageToken());
+  }
+
+  @Test
+  public void testPaging() {
+    Map<Long, CommandInfo> cached = new HashMap<>();
+    cached.put(2L, command(2, CommandState.PENDING));
+    cached.put(6L, command(6, CommandState.PENDING));
+    // limit + 1 rows listed
+    List<CommandInfo> rows = Arrays.asList(
+        command(1, CommandState.PENDING), command(3, CommandState.PENDING),
+        command(5, CommandState.PENDING));
+
+    ListingPage<CommandInfo> page =
+        CommandExecutor.mergePage(rows, cached, PENDING, -1, 2);
+    // Command 6 is beyond the rows, it comes in a later page
+    Assert.assertEquals(Arrays.asList(1L, 2L), cids(page));
+    Assert.assertTrue(page.hasMore());
+    Assert.assertEquals(2L, page.getNextPageToken());
+
+    rows = Arrays.asList(command(3, CommandState.PENDING),
+        command(5, CommandState.PENDING));
+    page = CommandExecutor.mergePage(rows, cached, PENDING,
+        page.getNextPageToken(), 2);
+    Assert.assertEquals(Arrays.asList(3L, 5L), cids(page));
+    Assert.assertTrue(page.hasMore());
+
+    rows = new ArrayList<>();
+    page = CommandExecutor.mergePage(rows, cached, PENDING,
+        page.getNextPageToken(), 2);
+    Assert.assertEquals(Arrays.asList(6L), cids(page));
+    Assert.assertFalse(page.hasMore());
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.smart.actions.CompactFile;
+import org.apache.hadoop.smart.protocol.SmartClient;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Read compacted files through SmartClient.
+ */
+public class TestCompactFileRead extends TestEmptyMiniSmartCluster {
+
+  @Test
+  public void testOpen() throws Exception {
+    waitTillSSMExitSafeMode();
+    DistributedFileSystem dfs = cluster.getFileSystem();
+    DFSClient dfsClient = dfs.getClient();
+    SmartClient client = new SmartClient(conf);
+
+    byte[][] data = new byte[2][];
+    Random random = new Random();
+    for (int i = 0; i < data.length; i++) {
+      String file = "/testOpen/file" + i;
+      data[i] = new byte[1000 + i];
+      random.nextBytes(data[i]);
+      FSDataOutputStream out = dfs.create(new Path(file));
+      out.write(data[i]);
+      out.close();
+      new CompactFile(ssm.getDFSClient(), conf, ssm.getDBAdapter())
+          .initial(new String[] {file}).execute();
+      Assert.assertNull(dfsClient.getFileInfo(file));
+    }
+
+    CompactFileInfo info = client.getCompactFileInfo("/testOpen/file1");
+    Assert.assertNotNull(info);
+    Assert.assertEquals("/testOpen/file1", info.getPath());
+    Assert.assertEquals("/testOpen/" + CompactFile.CONTAINER_PREFIX + 0,
+        info.getContainerPath());
+    Assert.assertEquals(data[0].length, info.getOffset());
+    Assert.assertEquals(data[1].length, info.getLength());
+    Assert.assertNull(client.getCompactFileInfo("/testOpen/none"));
+
+    for (int i = 0; i < data.length; i++) {
+      InputStream in = client.open(dfsClient, "/testOpen/file" + i);
+      try {
+        Assert.assertArrayEquals(data[i], readAll(in));
+      } finally {
+        in.close();
+      }
+    }
+
+    try {
+      client.open(dfsClient, "/testOpen/none");
+      Assert.fail("Open a file not exists");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+
+    // Files written later to the same path are read from HDFS
+    byte[] newData = new byte[10];
+    random.nextBytes(newData);
+    FSDataOutputStream out = dfs.create(new Path("/testOpen/file0"));
+    out.write(newData);
+    out.close();
+    InputStream in = client.open(dfsClient, "/testOpen/file0");
+    try {
+      Assert.assertArrayEquals(newData, readAll(in));
+    } finally {
+      in.close();
+    }
+    client.close();
+  }
+
+  private byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IOUtils.copyBytes(in, out, 4096, false);
+    return out.toByteArray();
+  }
+}
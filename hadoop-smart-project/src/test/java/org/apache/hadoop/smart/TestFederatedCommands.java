@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart;
+
+import com.google.common.base.Supplier;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.MiniDFSNNTopology;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
+import org.apache.hadoop.io.nativeio.NativeIO;
+import org.apache.hadoop.io.nativeio.NativeIO.POSIX.NoMlockCacheManipulator;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.sql.CommandInfo;
+import org.apache.hadoop.smart.sql.TestDBUtil;
+import org.apache.hadoop.smart.sql.Util;
+import org.apache.hadoop.smart.utils.JsonUtil;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_MAX_LOCKED_MEMORY_KEY;
+
+/**
+ * Commands on files of a namespace mounted under a sub directory should
+ * go to its NameNode only.
+ */
+public class TestFederatedCommands extends TestEmptyMiniSmartCluster {
+  private static final String FILE = "/dir/file";
+
+  @Before
+  @Override
+  public void setUp() throws Exception {
+    NativeIO.POSIX.setCacheManipulator(new NoMlockCacheManipulator());
+    conf = new SmartConfiguration();
+    conf.setLong(DFS_DATANODE_MAX_LOCKED_MEMORY_KEY, 64 * 1024 * 1024);
+    cluster = new MiniDFSCluster.Builder(conf)
+        .nnTopology(MiniDFSNNTopology.simpleFederatedTopology(2))
+        .numDataNodes(3)
+        .build();
+    cluster.waitActive();
+    conf.set(SmartConfigureKeys.DFS_SSM_NAMENODE_RPCSERVER_KEY,
+        cluster.getURI(0) + "," + cluster.getURI(1));
+    conf.set(SmartConfigureKeys.DFS_SSM_NAMESPACE_MOUNTS_KEY, "/ns0,/ns1");
+    conf.setBoolean(
+        SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_ENABLED_KEY, false);
+
+    dbFile = TestDBUtil.getUniqueEmptySqliteDBFile();
+    dbUrl = Util.SQLITE_URL_PREFIX + dbFile;
+    conf.set(SmartConfigureKeys.DFS_SSM_DEFAULT_DB_URL_KEY, dbUrl);
+
+    ssm = SmartServer.createSSM(null, conf);
+  }
+
+  private CommandInfo command(ActionType type, Map<String, String> params) {
+    long now = System.currentTimeMillis();
+    return new CommandInfo(0, 1, type, CommandState.PENDING,
+        JsonUtil.toJsonString(params), now, now);
+  }
+
+  private boolean isCached(DFSClient client, String path)
+      throws IOException {
+    RemoteIterator<CacheDirectiveEntry> it = client.listCacheDirectives(
+        new CacheDirectiveInfo.Builder().setPath(new Path(path)).build());
+    return it.hasNext();
+  }
+
+  private short getReplication(DFSClient client, String path)
+      throws IOException {
+    return client.getFileInfo(path).getReplication();
+  }
+
+  @Test
+  public void testActionsGoToMountedNameNode() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      DFSTestUtil.createFile(cluster.getFileSystem(i), new Path(FILE), 1024,
+          (short) 1, 0L);
+    }
+    waitTillSSMExitSafeMode();
+
+    Map<String, String> cache = new HashMap<>();
+    cache.put("_FILE_PATH_", "/ns1" + FILE);
+    Map<String, String> replicate = new HashMap<>(cache);
+    replicate.put("_REPLICATION_", "2");
+    ssm.getDBAdapter().insertCommandsTable(new CommandInfo[] {
+        command(ActionType.CacheFile, cache),
+        command(ActionType.SetReplication, replicate)});
+
+    final DFSClient client0 = cluster.getFileSystem(0).getClient();
+    final DFSClient client1 = cluster.getFileSystem(1).getClient();
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        try {
+          return isCached(client1, FILE) && getReplication(client1, FILE) == 2;
+        } catch (IOException e) {
+          return false;
+        }
+      }
+    }, 500, 60000);
+    Assert.assertFalse(isCached(client0, FILE));
+    Assert.assertEquals(1, getReplication(client0, FILE));
+    Assert.assertNotSame(ssm.getStatesManager().getCacheManager(),
+        ssm.getStatesManager().getCacheManager(
+            ssm.getMountTable().get(1)));
+  }
+}
@@ -24,6 +24,7 @@
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.apache.hadoop.smart.actions.ActionType;
 import org.apache.hadoop.smart.rule.parser.SmartRuleLexer;
 import org.apache.hadoop.smart.rule.parser.SmartRuleParser;
 import org.apache.hadoop.smart.rule.parser.SmartRuleVisitTranslator;
@@ -32,6 +33,7 @@
 import org.apache.hadoop.smart.sql.ExecutionContext;
 import org.apache.hadoop.smart.rule.RuleQueryExecutor;
 import org.apache.hadoop.smart.sql.TestDBUtil;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
@@ -39,6 +41,8 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class TestSmartRuleParser {
   List<RecognitionException> parseErrors = new ArrayList<RecognitionException>();
@@ -109,4 +113,101 @@ public void parseRule() throws Exception {
       index++;
     }
   }
+
+  private TranslateResult translate(String rule) throws Exception {
+    parseErrors.clear();
+    InputStream input = new ByteArrayInputStream(rule.getBytes());
+    SmartRuleLexer lexer = new SmartRuleLexer(new ANTLRInputStream(input));
+    SmartRuleParser parser = new SmartRuleParser(new CommonTokenStream(lexer));
+    parser.removeErrorListeners();
+    parser.addErrorListener(new SSMRuleErrorListener());
+    ParseTree tree = parser.ssmrule();
+    Assert.assertEquals("Parse errors in: " + rule, 0, parseErrors.size());
+    SmartRuleVisitTranslator visitor = new SmartRuleVisitTranslator();
+    visitor.visit(tree);
+    return visitor.generateSql();
+  }
+
+  private static String allSql(TranslateResult result) {
+    StringBuilder sb = new StringBuilder();
+    for (String sql : result.getSqlStatements()) {
+      sb.append(sql).append("\n");
+    }
+    return sb.toString();
+  }
+
+  private static int count(String str, String sub) {
+    int n = 0;
+    for (int i = str.indexOf(sub); i >= 0; i = str.indexOf(sub, i + 1)) {
+      n++;
+    }
+    return n;
+  }
+
+  @Test
+  public void testHeatRule() throws Exception {
+    TranslateResult result = translate("file: every 5s | heat < 1 "
+        + "and heat(1d) < 10 | movefile \"COLD\"");
+    String sql = allSql(result);
+    Assert.assertEquals(sql, 2, count(sql, "FROM file_heat"));
+    Assert.assertEquals(sql, 2, count(sql, "$@heatHalfLife("));
+    Assert.assertEquals(sql, 2, count(sql, "$@heatDecayFactor("));
+    Assert.assertEquals(ActionType.MoveFile, result.getActionType());
+    Assert.assertEquals("COLD",
+        result.getActionParams().get("_STORAGE_POLICY_"));
+  }
+
+  @Test
+  public void testECRule() throws Exception {
+    TranslateResult result = translate("file: every 1d | "
+        + "accessCount(30d) < 1 | ecfile \"RS-6-3-64k\"");
+    Assert.assertTrue(allSql(result),
+        allSql(result).contains("$@genVirtualAccessCountTable("));
+    Assert.assertEquals(ActionType.ConvertToEC, result.getActionType());
+    Assert.assertEquals("RS-6-3-64k",
+        result.getActionParams().get("_EC_POLICY_"));
+
+    result = translate("file: every 1d | accessCount(1d) > 100 "
+        + "| ecfile \"replication\"");
+    Assert.assertEquals(ActionType.ConvertToReplica, result.getActionType());
+    Assert.assertNull(result.getActionParams().get("_EC_POLICY_"));
+  }
+
+  @Test
+  public void testCompactRule() throws Exception {
+    TranslateResult result = translate("file: every 1d | length < 1MB "
+        + "and age > 7d | compact");
+    String sql = allSql(result);
+    Assert.assertTrue(sql, sql.contains("1048576"));
+    Assert.assertTrue(sql, sql.contains("$@currentTime() - modification_time"));
+    Assert.assertTrue(sql, sql.contains("604800000"));
+    Assert.assertEquals(ActionType.Compact, result.getActionType());
+  }
+
+  @Test
+  public void testReplicationRule() throws Exception {
+    TranslateResult result = translate("file: every 1m | heat(10m) > 100 "
+        + "| setreplication 6");
+    String sql = allSql(result);
+    Assert.assertEquals(sql, 1, count(sql, "FROM file_heat"));
+    Matcher m = Pattern.compile("\\$@heatHalfLife\\((\\w+)\\)").matcher(sql);
+    Assert.assertTrue(sql, m.find());
+    Assert.assertEquals(10 * 60 * 1000L,
+        ((Number) result.getParameter(m.group(1)).get(0)).longValue());
+    Assert.assertEquals(ActionType.SetReplication, result.getActionType());
+    Assert.assertEquals("6", result.getActionParams().get("_REPLICATION_"));
+  }
+
+  @Test
+  public void testReadVolumeRule() throws Exception {
+    TranslateResult result = translate("file: every 1h | bytesRead > 10GB "
+        + "and length < 1GB | setreplication 5");
+    String sql = allSql(result);
+    Assert.assertTrue(sql, sql.contains("file_read_volume"));
+    Assert.assertTrue(sql, sql.contains("bytes_read"));
+    Assert.assertTrue(sql, sql.contains("10737418240"));
+    Assert.assertTrue(sql, sql.contains("1073741824"));
+    Assert.assertEquals(ActionType.SetReplication, result.getActionType());
+    Assert.assertEquals("5", result.getActionParams().get("_REPLICATION_"));
+  }
 }
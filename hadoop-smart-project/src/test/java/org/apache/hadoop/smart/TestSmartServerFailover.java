@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.smart.ha.JournalTailer;
+import org.apache.hadoop.smart.ha.MetaStoreJournal;
+import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.DruidPool;
+import org.apache.hadoop.smart.sql.TestDBUtil;
+import org.apache.hadoop.smart.sql.Util;
+import org.apache.hadoop.util.ExitUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TestSmartServerFailover {
+  private static final Path DIR = new Path(
+      SmartConfigureKeys.DFS_SSM_HA_JOURNAL_DIR_DEFAULT);
+  private static final long FAILOVER_TIMEOUT = 2000L;
+  private Configuration conf;
+  private MiniDFSCluster cluster;
+  private final List<DruidPool> pools = new ArrayList<>();
+  private final List<DBAdapter> adapters = new ArrayList<>();
+
+  @Before
+  public void init() throws Exception {
+    ExitUtil.disableSystemExit();
+    conf = new SmartConfiguration();
+    conf.set(SmartConfigureKeys.DFS_SSM_RPC_ADDRESS_KEY, "localhost:0");
+    conf.setBoolean(SmartConfigureKeys.DFS_SSM_HA_ENABLED_KEY, true);
+    conf.setBoolean(
+        SmartConfigureKeys.DFS_SSM_METASTORE_WRITER_ENABLED_KEY, true);
+    conf.setLong(SmartConfigureKeys.DFS_SSM_HA_FAILOVER_TIMEOUT_KEY,
+        FAILOVER_TIMEOUT);
+    conf.setLong(SmartConfigureKeys.DFS_SSM_HA_TAIL_INTERVAL_KEY, 50L);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+  }
+
+  @After
+  public void shutdown() {
+    for (DBAdapter adapter : adapters) {
+      adapter.stopWriter();
+    }
+    for (DruidPool pool : pools) {
+      pool.close();
+    }
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+    ExitUtil.resetFirstExitException();
+  }
+
+  private DBAdapter createAdapter() throws Exception {
+    InputStream in = getClass().getClassLoader()
+        .getResourceAsStream("druid-template.xml");
+    Properties p = new Properties();
+    p.loadFromXML(in);
+    p.setProperty("url",
+        Util.SQLITE_URL_PREFIX + TestDBUtil.getUniqueEmptySqliteDBFile());
+    DruidPool pool = new DruidPool(p);
+    pools.add(pool);
+    DBAdapter adapter = new DBAdapter(pool);
+    adapters.add(adapter);
+    return adapter;
+  }
+
+  private void insertRule(DBAdapter adapter) throws SQLException {
+    RuleInfo info = new RuleInfo(0, System.currentTimeMillis(),
+        "file : length() > 1 | cachefile", RuleState.ACTIVE, 0, 0, 0);
+    Assert.assertTrue(adapter.insertNewRule(info));
+  }
+
+  private long countRules(DBAdapter adapter) throws SQLException {
+    return adapter.executeLongsQuery("SELECT COUNT(*) FROM rules")[0];
+  }
+
+  @Test
+  public void testFailover() throws Exception {
+    // The active SSM holds the lock and writes its journal through a client
+    // of its own, without heartbeats
+    DistributedFileSystem activeFs =
+        (DistributedFileSystem) cluster.getNewFileSystemInstance(0);
+    FSDataOutputStream lock = activeFs.create(SmartServer.SSM_ID_PATH, false);
+    lock.hflush();
+    MetaStoreJournal activeJournal =
+        new MetaStoreJournal(activeFs, DIR, 64 * 1024 * 1024L, 600000L);
+    activeJournal.start(1);
+    DBAdapter active = createAdapter();
+    active.startWriter(16, activeJournal);
+    insertRule(active);
+
+    final DistributedFileSystem fs = cluster.getFileSystem();
+    final DBAdapter standby = createAdapter();
+    final SmartServer ssm = new SmartServer(conf);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<OutputStream> future = executor.submit(
+          new Callable<OutputStream>() {
+            @Override
+            public OutputStream call() throws Exception {
+              return ssm.runAsStandby(fs, standby);
+            }
+          });
+
+      // Standing by as long as the active SSM goes on
+      for (int i = 0; i < 3 * FAILOVER_TIMEOUT / 200; i++) {
+        insertRule(active);
+        Thread.sleep(200);
+      }
+      Assert.assertFalse(future.isDone());
+
+      // Taken over once the journal is silent, the active SSM still alive
+      OutputStream out = future.get(60, TimeUnit.SECONDS);
+      Assert.assertNotNull(out);
+      long numRules = countRules(active);
+      Assert.assertEquals(numRules, countRules(standby));
+      List<Long> segments = MetaStoreJournal.listSegments(fs, DIR);
+      Assert.assertEquals(2L, (long) segments.get(segments.size() - 1));
+
+      // The former active SSM is fenced off
+      try {
+        active.execute("DELETE FROM rules");
+        Assert.fail("The fenced SSM should fail to write its journal");
+      } catch (SQLException e) {
+        // expected
+      }
+      Assert.assertTrue(ExitUtil.terminateCalled());
+
+      // The new active SSM continues the journal
+      insertRule(standby);
+      DBAdapter replayed = createAdapter();
+      JournalTailer tailer = new JournalTailer(fs, DIR, replayed);
+      tailer.format();
+      tailer.tail();
+      Assert.assertEquals(numRules + 1, countRules(replayed));
+
+      ssm.stopMetaStore();
+      out.close();
+    } finally {
+      executor.shutdownNow();
+      activeJournal.close();
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.actions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.TestDBUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compact small files Unit Test
+ */
+public class TestCompactFile {
+
+  @Test
+  public void testCompact() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(SmartConfigureKeys.DFS_SSM_COMPACT_CONTAINER_SIZE_KEY, 2500);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).build();
+    Connection conn = TestDBUtil.getUniqueEmptySqliteDBInstance();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem dfs = cluster.getFileSystem();
+      DFSClient client = dfs.getClient();
+      DBAdapter adapter = new DBAdapter(conn);
+      Random random = new Random();
+      byte[][] data = new byte[3][];
+      for (int i = 0; i < data.length; i++) {
+        String file = "/testCompact/file" + i;
+        data[i] = new byte[1000 + i];
+        random.nextBytes(data[i]);
+        FSDataOutputStream out = dfs.create(new Path(file));
+        out.write(data[i]);
+        out.close();
+        new CompactFile(client, conf, adapter).initial(new String[] {file})
+            .execute();
+        Assert.assertNull(client.getFileInfo(file));
+      }
+
+      // The third file does not fit in the first container
+      String container0 = "/testCompact/" + CompactFile.CONTAINER_PREFIX + 0;
+      String container1 = "/testCompact/" + CompactFile.CONTAINER_PREFIX + 1;
+      Assert.assertEquals(2001, client.getFileInfo(container0).getLen());
+      Assert.assertEquals(1002, client.getFileInfo(container1).getLen());
+
+      for (int i = 0; i < data.length; i++) {
+        CompactFileInfo info =
+            adapter.getCompactFileInfo("/testCompact/file" + i);
+        Assert.assertNotNull(info);
+        Assert.assertEquals(data[i].length, info.getLength());
+        byte[] content = DFSTestUtil.readFileAsBytes(dfs,
+            new Path(info.getContainerPath()));
+        Assert.assertArrayEquals(data[i], Arrays.copyOfRange(content,
+            (int) info.getOffset(),
+            (int) (info.getOffset() + info.getLength())));
+      }
+      Assert.assertNull(adapter.getCompactFileInfo("/testCompact/none"));
+    } finally {
+      conn.close();
+      cluster.shutdown();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.actions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.XAttrSetFlag;
+import org.apache.hadoop.fs.permission.AclEntry;
+import org.apache.hadoop.fs.permission.AclEntryScope;
+import org.apache.hadoop.fs.permission.AclEntryType;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Convert to erasure coding Unit Test
+ */
+public class TestECFile {
+  private static final String EC_POLICY = "XOR-2-1-64k";
+
+  @Test
+  public void testConvert() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_EC_POLICIES_ENABLED_KEY, EC_POLICY);
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_ACLS_ENABLED_KEY, true);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(3).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem dfs = cluster.getFileSystem();
+      DFSClient client = dfs.getClient();
+      String file = "/testECFile/file";
+      byte[] data = new byte[10 * 1024 * 1024 + 123];
+      new Random().nextBytes(data);
+      FSDataOutputStream out = dfs.create(new Path(file));
+      out.write(data);
+      out.close();
+      long fid = client.getFileInfo(file).getFileId();
+      byte[] value = {1, 2, 3};
+      client.setXAttr(file, "user.a", value, EnumSet.of(XAttrSetFlag.CREATE));
+      List<AclEntry> acl = Arrays.asList(new AclEntry.Builder()
+          .setScope(AclEntryScope.ACCESS).setType(AclEntryType.USER)
+          .setName("bob").setPermission(FsAction.READ).build());
+      client.modifyAclEntries(file, acl);
+      List<AclEntry> aclEntries = client.getAclStatus(file).getEntries();
+      short perm = client.getFileInfo(file).getPermission().toShort();
+
+      String[] args = {file};
+      new ECFile(client, conf, EC_POLICY).initial(args).execute();
+      HdfsFileStatus status = client.getFileInfo(file);
+      Assert.assertEquals(EC_POLICY, status.getErasureCodingPolicy().getName());
+      Assert.assertNotEquals(fid, status.getFileId());
+      Assert.assertArrayEquals(value, client.getXAttrs(file).get("user.a"));
+      Assert.assertEquals(aclEntries, client.getAclStatus(file).getEntries());
+      Assert.assertEquals(perm, status.getPermission().toShort());
+      Assert.assertArrayEquals(data, DFSTestUtil.readFileAsBytes(dfs,
+          new Path(file)));
+
+      // And back to replication
+      new ECFile(client, conf, null).initial(args).execute();
+      status = client.getFileInfo(file);
+      Assert.assertNull(status.getErasureCodingPolicy());
+      Assert.assertArrayEquals(data, DFSTestUtil.readFileAsBytes(dfs,
+          new Path(file)));
+      Assert.assertEquals(0,
+          client.listPaths(ECFile.TMP_DIR, new byte[0]).getPartialListing()
+              .length);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testSkipFileBeingWritten() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_EC_POLICIES_ENABLED_KEY, EC_POLICY);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(3).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem dfs = cluster.getFileSystem();
+      DFSClient client = dfs.getClient();
+      String file = "/testECFile/open";
+      FSDataOutputStream out = dfs.create(new Path(file));
+      out.write(new byte[1024]);
+      out.hflush();
+      long fid = client.getFileInfo(file).getFileId();
+
+      new ECFile(client, conf, EC_POLICY).initial(new String[] {file})
+          .execute();
+      HdfsFileStatus status = client.getFileInfo(file);
+      Assert.assertEquals(fid, status.getFileId());
+      Assert.assertNull(status.getErasureCodingPolicy());
+      out.write(new byte[1024]);
+      out.close();
+      Assert.assertEquals(2048, client.getFileInfo(file).getLen());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
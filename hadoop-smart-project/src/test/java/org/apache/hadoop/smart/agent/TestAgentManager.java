@@ -0,0 +1,281 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.agent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.smart.actions.ActionBase;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.protocol.AgentHeartbeatResponse;
+import org.apache.hadoop.smart.protocol.AgentSmartProtocol;
+import org.apache.hadoop.smart.sql.CommandInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestAgentManager {
+  private final Map<Long, CommandState> finished = new ConcurrentHashMap<>();
+
+  private AgentManager createManager(long expireInterval,
+      ActionType... types) {
+    return new AgentManager(Arrays.asList(types), expireInterval,
+        new AgentManager.Listener() {
+          @Override
+          public void onCommandFinished(CommandInfo cmd, CommandState state) {
+            finished.put(cmd.getCid(), state);
+          }
+        });
+  }
+
+  private CommandInfo command(long cid, ActionType type) {
+    return new CommandInfo(cid, 1, type, CommandState.EXECUTING,
+        "{\"_FILE_PATH_\":\"/file" + cid + "\"}", 0, 0);
+  }
+
+  private Map<Long, CommandState> none() {
+    return Collections.emptyMap();
+  }
+
+  private Map<Long, CommandInfo> heartbeat(AgentManager manager,
+      long agentId, Map<Long, CommandState> reports, int numFreeSlots)
+      throws IOException {
+    return manager.agentHeartbeat(agentId, reports,
+        Collections.<Long>emptySet(), numFreeSlots).getCommands();
+  }
+
+  private AgentSmartProtocol server(final AgentManager manager) {
+    return new AgentSmartProtocol() {
+      @Override
+      public long registerAgent(String host, int numSlots) {
+        return manager.registerAgent(host, numSlots);
+      }
+
+      @Override
+      public AgentHeartbeatResponse agentHeartbeat(long agentId,
+          Map<Long, CommandState> reports, Set<Long> running,
+          int numFreeSlots) throws IOException {
+        return manager.agentHeartbeat(agentId, reports, running,
+            numFreeSlots);
+      }
+    };
+  }
+
+  @Test
+  public void testDispatch() throws Exception {
+    AgentManager manager = createManager(60000, ActionType.ConvertToEC);
+    // Executed by SSM server if no agent is there
+    Assert.assertFalse(manager.dispatch(
+        command(1, ActionType.ConvertToEC), null));
+
+    long a1 = manager.registerAgent("host1", 2);
+    long a2 = manager.registerAgent("host2", 2);
+    Assert.assertNotEquals(a1, a2);
+    for (long cid = 1; cid <= 3; cid++) {
+      Assert.assertTrue(manager.dispatch(
+          command(cid, ActionType.ConvertToEC), null));
+    }
+    Assert.assertFalse(manager.dispatch(
+        command(4, ActionType.CacheFile), null));
+
+    Map<Long, CommandInfo> cmds1 = heartbeat(manager, a1, none(), 5);
+    Assert.assertEquals(2, cmds1.size());
+    Assert.assertEquals(1, heartbeat(manager, a2, none(), 5).size());
+    Assert.assertEquals(0, manager.getNumUnassigned());
+
+    Map<Long, CommandState> reports = new HashMap<>();
+    for (Map.Entry<Long, CommandInfo> entry : cmds1.entrySet()) {
+      if (entry.getValue().getCid() == 2) {
+        reports.put(entry.getKey(), CommandState.DONE);
+      }
+    }
+    // Unknown epochs are ignored
+    reports.put(-100L, CommandState.DONE);
+    heartbeat(manager, a1, reports, 1);
+    Assert.assertEquals(1, finished.size());
+    Assert.assertEquals(CommandState.DONE, finished.get(2L));
+    Assert.assertEquals(2, manager.getNumRunning());
+  }
+
+  @Test
+  public void testExpire() throws Exception {
+    AgentManager manager = createManager(200, ActionType.ConvertToEC);
+    long a1 = manager.registerAgent("host1", 2);
+    manager.dispatch(command(1, ActionType.ConvertToEC), null);
+    Map<Long, CommandInfo> old = heartbeat(manager, a1, none(), 2);
+    Assert.assertEquals(1, old.size());
+    long oldEpoch = old.keySet().iterator().next();
+
+    Thread.sleep(400);
+    long a2 = manager.registerAgent("host2", 2);
+    Assert.assertTrue(manager.expireAgents().isEmpty());
+    Assert.assertEquals(1, manager.getNumAgents());
+    // Dispatched again to the live agent under a new epoch
+    Map<Long, CommandInfo> cmds = heartbeat(manager, a2, none(), 2);
+    Assert.assertEquals(1, cmds.size());
+    Assert.assertEquals(1, cmds.values().iterator().next().getCid());
+    Assert.assertNotEquals(oldEpoch, (long) cmds.keySet().iterator().next());
+    try {
+      heartbeat(manager, a1, none(), 2);
+      Assert.fail("Expired agent should be rejected");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // Stale report of the expired agent registered again is ignored and
+    // the command is cancelled on it
+    long a3 = manager.registerAgent("host1", 2);
+    AgentHeartbeatResponse r = manager.agentHeartbeat(a3,
+        Collections.singletonMap(oldEpoch, CommandState.DONE),
+        Collections.singleton(oldEpoch), 2);
+    Assert.assertTrue(finished.isEmpty());
+    Assert.assertEquals(Collections.singletonList(oldEpoch),
+        r.getCancelled());
+    Assert.assertEquals(1, manager.getNumRunning());
+
+    // Left to SSM server once no agent is alive
+    Thread.sleep(400);
+    List<CommandInfo> left = manager.expireAgents();
+    Assert.assertEquals(1, left.size());
+    Assert.assertEquals(0, manager.getNumAgents());
+    Assert.assertEquals(0, manager.getNumUnassigned());
+  }
+
+  @Test
+  public void testAgents() throws Exception {
+    // Compact needs the metastore so agents give it up
+    final AgentManager manager = createManager(60000, ActionType.Compact);
+    AgentSmartProtocol server = server(manager);
+    Configuration conf = new Configuration();
+    conf.setInt(SmartConfigureKeys.DFS_SSM_AGENT_SLOTS_KEY, 1);
+    SmartAgent agent1 = new SmartAgent(conf, server, "host1");
+    SmartAgent agent2 = new SmartAgent(conf, server, "host2");
+    try {
+      agent1.heartbeat();
+      agent2.heartbeat();
+      Assert.assertEquals(2, manager.getNumAgents());
+      manager.dispatch(command(1, ActionType.Compact), null);
+      manager.dispatch(command(2, ActionType.Compact), null);
+
+      agent1.heartbeat();
+      agent2.heartbeat();
+      Assert.assertEquals(2, manager.getNumRunning());
+      long start = System.currentTimeMillis();
+      while (finished.size() < 2
+          && System.currentTimeMillis() - start < 10000) {
+        Thread.sleep(100);
+        agent1.heartbeat();
+        agent2.heartbeat();
+      }
+      Assert.assertEquals(CommandState.CANCELLED, finished.get(1L));
+      Assert.assertEquals(CommandState.CANCELLED, finished.get(2L));
+      Assert.assertEquals(0, manager.getNumRunning());
+    } finally {
+      agent1.stop();
+      agent2.stop();
+    }
+  }
+
+  @Test
+  public void testExpiredAgentCancelled() throws Exception {
+    final AgentManager manager = createManager(200, ActionType.ConvertToEC);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    Configuration conf = new Configuration();
+    conf.setInt(SmartConfigureKeys.DFS_SSM_AGENT_SLOTS_KEY, 1);
+    // Actions block until interrupted
+    SmartAgent agent = new SmartAgent(conf, server(manager), "host1") {
+      @Override
+      ActionBase createAction(ActionType type,
+          final Map<String, String> parameters) {
+        return new ActionBase(null) {
+          {
+            actionType = ActionType.ConvertToEC;
+          }
+
+          @Override
+          public ActionBase initial(String[] args) {
+            return this;
+          }
+
+          @Override
+          protected UUID execute() {
+            started.countDown();
+            try {
+              Thread.sleep(60000);
+            } catch (InterruptedException e) {
+              interrupted.countDown();
+            }
+            return null;
+          }
+        };
+      }
+    };
+    try {
+      agent.heartbeat();
+      manager.dispatch(command(1, ActionType.ConvertToEC), null);
+      agent.heartbeat();
+      Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+      Assert.assertEquals(1, agent.getNumRunning());
+
+      // The agent misses heartbeats and the command goes to another one
+      Thread.sleep(400);
+      long other = manager.registerAgent("host2", 1);
+      manager.expireAgents();
+      Assert.assertEquals(1, heartbeat(manager, other, none(), 1).size());
+
+      // Rejected, then registered again and told to cancel
+      try {
+        agent.heartbeat();
+        Assert.fail("Expired agent should be rejected");
+      } catch (IOException e) {
+        // expected
+      }
+      agent.heartbeat();
+      Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+      Assert.assertEquals(0, agent.getNumRunning());
+      agent.heartbeat();
+      // Nothing reported for the command cancelled
+      Assert.assertTrue(finished.isEmpty());
+      Assert.assertEquals(1, manager.getNumRunning());
+    } finally {
+      agent.stop();
+    }
+  }
+
+  @Test
+  public void testParseActionTypes() {
+    // Cache and replication changes need the admission run on the server
+    Assert.assertEquals(
+        Arrays.asList(ActionType.ConvertToEC, ActionType.MoveFile),
+        AgentManager.parseActionTypes(new String[] {"ConvertToEC",
+            "CacheFile", " MoveFile", "UncacheFile", "SetReplication",
+            "NoSuchAction", ""}));
+  }
+}
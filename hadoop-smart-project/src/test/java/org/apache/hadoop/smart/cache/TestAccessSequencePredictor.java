@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.cache;
+
+import org.apache.hadoop.smart.federation.MountTable;
+import org.apache.hadoop.smart.federation.NamespaceMount;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class TestAccessSequencePredictor {
+
+  private void scan(AccessSequencePredictor predictor, String dir, int files,
+      long start) {
+    for (int i = 0; i < files; i++) {
+      long time = start + i * 100;
+      predictor.onAccess(dir + "/part-" + i, time, time);
+    }
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    CacheManager cacheManager = mock(CacheManager.class);
+    AccessSequencePredictor predictor =
+        new AccessSequencePredictor(cacheManager, 2000, 0.6, 1000);
+
+    // Not enough support yet
+    for (int run = 0; run < AccessSequencePredictor.MIN_SUPPORT; run++) {
+      scan(predictor, "/t", 5, run * 10000L);
+    }
+    Assert.assertEquals(0, predictor.getNumPredictions());
+    verify(cacheManager, never()).cacheFile("/t/part-1");
+
+    scan(predictor, "/t", 5, 100000L);
+    verify(cacheManager).cacheFile("/t/part-1");
+    verify(cacheManager).cacheFile("/t/part-4");
+    Assert.assertEquals(4, predictor.getNumPredictions());
+    Assert.assertEquals(4, predictor.getNumHits());
+
+    // Prediction not followed by a read in window is a miss
+    predictor.onAccess("/t/part-0", 200000L, 200000L);
+    predictor.onAccess("/t/part-1", 300000L, 300000L);
+    Assert.assertEquals(6, predictor.getNumPredictions());
+    Assert.assertEquals(4, predictor.getNumHits());
+    Assert.assertEquals(4.0 / 6, predictor.getHitRate(), 0.0001);
+
+    // Accesses in other directories are not successions
+    predictor.onAccess("/u/a", 400000L, 400000L);
+    predictor.onAccess("/v/b", 400001L, 400001L);
+    Assert.assertEquals(6, predictor.getNumPredictions());
+  }
+
+  @Test
+  public void testPrefetchOfMountedNamespace() throws Exception {
+    CacheManager cacheManager0 = mock(CacheManager.class);
+    CacheManager cacheManager1 = mock(CacheManager.class);
+    MountTable mountTable = new MountTable(Arrays.asList(
+        new NamespaceMount(0, null, "/", null),
+        new NamespaceMount(1, null, "/ns1", null)));
+    AccessSequencePredictor predictor = new AccessSequencePredictor(
+        mountTable, Arrays.asList(cacheManager0, cacheManager1), 2000, 0.6,
+        1000);
+    for (int run = 0; run <= AccessSequencePredictor.MIN_SUPPORT; run++) {
+      scan(predictor, "/ns1/t", 3, run * 10000L);
+    }
+    verify(cacheManager1).cacheFile("/t/part-1");
+    verify(cacheManager0, never()).cacheFile("/t/part-1");
+    verify(cacheManager0, never()).cacheFile("/ns1/t/part-1");
+  }
+
+  @Test
+  public void testReset() throws Exception {
+    AccessSequencePredictor predictor =
+        new AccessSequencePredictor(null, 2000, 0.6, 3);
+    scan(predictor, "/t", 3, 0);
+    Assert.assertEquals(3, predictor.getNumFiles());
+    predictor.onAccess("/t/part-3", 1000, 1000);
+    Assert.assertEquals(1, predictor.getNumFiles());
+  }
+
+  @Test
+  public void testHitsAfterPrefetchIssued() throws Exception {
+    AccessSequencePredictor predictor =
+        new AccessSequencePredictor(null, 10000, 0.6, 1000);
+    for (int run = 0; run < AccessSequencePredictor.MIN_SUPPORT; run++) {
+      scan(predictor, "/t", 2, run * 100000L);
+    }
+
+    // Both accesses arrive in one batch 5s late, the successor was read
+    // before its prefetch was issued
+    predictor.onAccess("/t/part-0", 500000L, 505000L);
+    predictor.onAccess("/t/part-1", 500100L, 505000L);
+    Assert.assertEquals(1, predictor.getNumPredictions());
+    Assert.assertEquals(0, predictor.getNumHits());
+
+    // A read after the prefetch is a hit
+    predictor.onAccess("/t/part-1", 506000L, 511000L);
+    Assert.assertEquals(1, predictor.getNumHits());
+  }
+}
@@ -0,0 +1,256 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.cache;
+
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
+import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
+import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
+import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.DatanodeReportType;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestCacheManager {
+  private DFSClient client;
+  private Map<Long, Double> scores = new HashMap<>();
+  private CacheManager cacheManager;
+
+  private static class ListIterator<T> implements RemoteIterator<T> {
+    private final Iterator<T> it;
+
+    ListIterator(List<T> list) {
+      this.it = list.iterator();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+      return it.hasNext();
+    }
+
+    @Override
+    public T next() throws IOException {
+      return it.next();
+    }
+  }
+
+  private HdfsFileStatus status(long fid, long length) {
+    return new HdfsFileStatus(length, false, 1, 1024, 0, 0,
+        new FsPermission((short) 777), "owner", "group", new byte[0],
+        new byte[0], fid, 0, null, (byte) 0, null);
+  }
+
+  private void mockFile(String path, long fid, long length, double score)
+      throws IOException {
+    when(client.getFileInfo(path)).thenReturn(status(fid, length));
+    scores.put(fid, score);
+  }
+
+  @Before
+  public void init() throws IOException {
+    client = mock(DFSClient.class);
+    CachePoolEntry pool = new CachePoolEntry(
+        new CachePoolInfo(CacheManager.SSMPOOL), null);
+    when(client.listCachePools()).thenReturn(
+        new ListIterator<>(Arrays.asList(pool)));
+    when(client.listCacheDirectives(any(CacheDirectiveInfo.class)))
+        .thenReturn(new ListIterator<CacheDirectiveEntry>(
+            Arrays.<CacheDirectiveEntry>asList()));
+    DatanodeInfo dn1 = mock(DatanodeInfo.class);
+    when(dn1.getXferAddr()).thenReturn("127.0.0.1:50010");
+    when(dn1.getCacheCapacity()).thenReturn(60L);
+    DatanodeInfo dn2 = mock(DatanodeInfo.class);
+    when(dn2.getXferAddr()).thenReturn("127.0.0.1:50011");
+    when(dn2.getCacheCapacity()).thenReturn(40L);
+    when(client.datanodeReport(DatanodeReportType.LIVE))
+        .thenReturn(new DatanodeInfo[] {dn1, dn2});
+    when(client.addCacheDirective(any(CacheDirectiveInfo.class),
+        any(EnumSet.class))).thenReturn(1L, 2L, 3L, 4L);
+
+    cacheManager = new CacheManager(client, new CacheEvictionPolicy() {
+      @Override
+      public double getScore(long fid, long now) {
+        return scores.get(fid);
+      }
+    }, 1.0f);
+  }
+
+  @Test
+  public void testAdmissionAndEviction() throws Exception {
+    mockFile("/a", 1, 40, 5);
+    mockFile("/b", 2, 40, 1);
+    mockFile("/c", 3, 40, 10);
+    mockFile("/d", 4, 40, 0);
+
+    cacheManager.cacheFile("/a");
+    cacheManager.cacheFile("/b");
+    Assert.assertTrue(cacheManager.isCached("/a"));
+    Assert.assertEquals(2, cacheManager.getNumPendingRequests());
+    cacheManager.flush();
+    Assert.assertEquals(0, cacheManager.getNumPendingRequests());
+    Assert.assertEquals(2, cacheManager.getNumCachedFiles());
+    Assert.assertEquals(80, cacheManager.getBytesPinned());
+    Assert.assertEquals(100, cacheManager.getCacheCapacity());
+
+    // Hotter file evicts the coldest one
+    cacheManager.cacheFile("/c");
+    cacheManager.flush();
+    verify(client).removeCacheDirective(2L);
+    Assert.assertFalse(cacheManager.isCached("/b"));
+    Assert.assertTrue(cacheManager.isCached("/c"));
+    Assert.assertEquals(80, cacheManager.getBytesPinned());
+
+    // Colder file is not admitted
+    cacheManager.cacheFile("/d");
+    cacheManager.flush();
+    Assert.assertFalse(cacheManager.isCached("/d"));
+    verify(client, times(3)).addCacheDirective(any(CacheDirectiveInfo.class),
+        any(EnumSet.class));
+
+    // Requests are coalesced
+    cacheManager.cacheFile("/b");
+    cacheManager.uncacheFile("/b");
+    cacheManager.uncacheFile("/a");
+    cacheManager.flush();
+    verify(client).removeCacheDirective(1L);
+    verify(client, times(3)).addCacheDirective(any(CacheDirectiveInfo.class),
+        any(EnumSet.class));
+    Assert.assertEquals(1, cacheManager.getNumCachedFiles());
+    Assert.assertEquals(40, cacheManager.getBytesPinned());
+    verify(client, never()).addCachePool(any(CachePoolInfo.class));
+  }
+
+  @Test
+  public void testFailedRequestsStayQueued() throws Exception {
+    mockFile("/a", 1, 30, 1);
+    mockFile("/c", 3, 30, 1);
+    scores.put(2L, 1.0);
+    when(client.getFileInfo("/b"))
+        .thenThrow(new IOException("NameNode busy"))
+        .thenReturn(status(2, 30));
+    when(client.getFileInfo("/e")).thenThrow(new IOException("Denied"));
+
+    cacheManager.cacheFile("/a");
+    cacheManager.cacheFile("/b");
+    cacheManager.cacheFile("/c");
+    try {
+      cacheManager.flush();
+      Assert.fail("Flush should fail");
+    } catch (IOException e) {
+      // Expected
+    }
+    Assert.assertEquals(1, cacheManager.getNumCachedFiles());
+    Assert.assertEquals(2, cacheManager.getNumPendingRequests());
+    cacheManager.flush();
+    Assert.assertEquals(3, cacheManager.getNumCachedFiles());
+    Assert.assertEquals(0, cacheManager.getNumPendingRequests());
+
+    // Given up after a few attempts
+    cacheManager.cacheFile("/e");
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(1, cacheManager.getNumPendingRequests());
+      try {
+        cacheManager.flush();
+        Assert.fail("Flush should fail");
+      } catch (IOException e) {
+        // Expected
+      }
+    }
+    Assert.assertEquals(0, cacheManager.getNumPendingRequests());
+  }
+
+  private Thread waitForRequest(final String path, final boolean cache,
+      final List<Exception> failures) {
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        try {
+          if (cache) {
+            cacheManager.cacheFileAndWait(path);
+          } else {
+            cacheManager.uncacheFileAndWait(path);
+          }
+        } catch (Exception e) {
+          failures.add(e);
+        }
+      }
+    };
+    t.start();
+    return t;
+  }
+
+  @Test
+  public void testRequestOutcome() throws Exception {
+    mockFile("/a", 1, 80, 5);
+    mockFile("/b", 2, 80, 1);
+    List<Exception> failures = new CopyOnWriteArrayList<>();
+
+    Thread t = waitForRequest("/a", true, failures);
+    while (cacheManager.getNumPendingRequests() == 0) {
+      Thread.sleep(10);
+    }
+    // Not reported before it is applied
+    Assert.assertTrue(t.isAlive());
+    cacheManager.flush();
+    t.join();
+    Assert.assertTrue(failures.isEmpty());
+
+    // Colder file is rejected, missing file fails
+    t = waitForRequest("/b", true, failures);
+    Thread t2 = waitForRequest("/x", true, failures);
+    while (cacheManager.getNumPendingRequests() < 2) {
+      Thread.sleep(10);
+    }
+    cacheManager.flush();
+    t.join();
+    t2.join();
+    Assert.assertEquals(2, failures.size());
+    Assert.assertFalse(cacheManager.isCached("/b"));
+
+    failures.clear();
+    t = waitForRequest("/a", false, failures);
+    while (cacheManager.getNumPendingRequests() == 0) {
+      Thread.sleep(10);
+    }
+    cacheManager.flush();
+    t.join();
+    Assert.assertTrue(failures.isEmpty());
+    Assert.assertEquals(0, cacheManager.getNumCachedFiles());
+  }
+}
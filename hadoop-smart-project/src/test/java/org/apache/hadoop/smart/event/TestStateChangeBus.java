@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.event;
+
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.smart.rule.RuleState;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestStateChangeBus {
+
+  private static class Collector implements StateChangeBus.Listener {
+    private final List<StateChangeEvent> events = new ArrayList<>();
+
+    @Override
+    public void onEvent(StateChangeEvent event) {
+      events.add(event);
+    }
+  }
+
+  @Test
+  public void testPublish() throws Exception {
+    StateChangeBus bus = new StateChangeBus();
+    Collector collector = new Collector();
+    bus.subscribe(collector);
+
+    RuleInfo info = RuleInfo.newBuilder().setId(3).setRuleText("rule")
+        .setState(RuleState.ACTIVE).build();
+    bus.publishRuleState(info);
+    bus.publishCommandState(7, 3, CommandState.EXECUTING);
+    bus.publishCommandDeleted(7, 3);
+
+    Assert.assertEquals(3, collector.events.size());
+    Assert.assertEquals(3, bus.getLastSeq());
+    StateChangeEvent rule = collector.events.get(0);
+    Assert.assertEquals(1, rule.getSeq());
+    Assert.assertEquals(StateChangeEvent.Type.RULE_STATE, rule.getType());
+    Assert.assertEquals(3, rule.getRuleId());
+    Assert.assertEquals(-1, rule.getCid());
+    Assert.assertEquals("ACTIVE", rule.getState());
+    StateChangeEvent cmd = collector.events.get(1);
+    Assert.assertEquals(2, cmd.getSeq());
+    Assert.assertEquals(7, cmd.getCid());
+    Assert.assertEquals("EXECUTING", cmd.getState());
+    Assert.assertEquals(StateChangeEvent.Type.COMMAND_DELETED,
+        collector.events.get(2).getType());
+  }
+
+  @Test
+  public void testSubscribers() throws Exception {
+    StateChangeBus bus = new StateChangeBus();
+    Collector collector = new Collector();
+    // A failing subscriber does not keep events from the others
+    bus.subscribe(new StateChangeBus.Listener() {
+      @Override
+      public void onEvent(StateChangeEvent event) {
+        throw new IllegalStateException("closed");
+      }
+    });
+    bus.subscribe(collector);
+    Assert.assertEquals(2, bus.getNumSubscribers());
+
+    bus.publishCommandState(1, 1, CommandState.PENDING);
+    Assert.assertEquals(1, collector.events.size());
+
+    bus.unsubscribe(collector);
+    bus.publishCommandState(1, 1, CommandState.DONE);
+    Assert.assertEquals(1, collector.events.size());
+    Assert.assertEquals(2, bus.getLastSeq());
+  }
+}
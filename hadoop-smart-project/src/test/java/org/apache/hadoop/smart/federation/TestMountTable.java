@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.federation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+
+public class TestMountTable {
+
+  private MountTable create(String... mountPoints) {
+    NamespaceMount[] mounts = new NamespaceMount[mountPoints.length];
+    for (int i = 0; i < mountPoints.length; i++) {
+      mounts[i] = new NamespaceMount(i, null, mountPoints[i], null);
+    }
+    return new MountTable(Arrays.asList(mounts));
+  }
+
+  @Test
+  public void testPathTranslation() {
+    NamespaceMount root = NamespaceMount.root(null);
+    Assert.assertEquals("/a/b", root.toGlobalPath("/a/b"));
+    Assert.assertEquals("/a/b", root.toLocalPath("/a/b"));
+
+    NamespaceMount mount = new NamespaceMount(1, null, "/ns1", null);
+    Assert.assertEquals("/ns1/a/b", mount.toGlobalPath("/a/b"));
+    Assert.assertEquals("/ns1", mount.toGlobalPath("/"));
+    Assert.assertEquals("/a/b", mount.toLocalPath("/ns1/a/b"));
+    Assert.assertEquals("/", mount.toLocalPath("/ns1"));
+    Assert.assertTrue(mount.contains("/ns1/a"));
+    Assert.assertFalse(mount.contains("/ns10/a"));
+    try {
+      mount.toLocalPath("/ns10/a");
+      Assert.fail("Path outside of the mount point should be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFid() {
+    NamespaceMount root = NamespaceMount.root(null);
+    Assert.assertEquals(16386L, root.toGlobalFid(16386L));
+
+    NamespaceMount mount = new NamespaceMount(3, null, "/ns3", null);
+    long fid = mount.toGlobalFid(16386L);
+    Assert.assertNotEquals(16386L, fid);
+    Assert.assertEquals(3, NamespaceMount.getNamespaceId(fid));
+    Assert.assertEquals(16386L, NamespaceMount.getLocalFid(fid));
+  }
+
+  @Test
+  public void testResolve() {
+    MountTable table = create("/", "/ns1", "/ns1/sub");
+    Assert.assertTrue(table.isFederated());
+    Assert.assertEquals(0, table.resolve("/user/a").getId());
+    Assert.assertEquals(0, table.resolve("/ns10").getId());
+    Assert.assertEquals(1, table.resolve("/ns1/a").getId());
+    Assert.assertEquals(2, table.resolve("/ns1/sub/a").getId());
+    Assert.assertNull(table.resolve(null));
+    Assert.assertEquals(2,
+        table.getByFid(table.get(2).toGlobalFid(20000L)).getId());
+
+    Assert.assertNull(create("/ns1", "/ns2").resolve("/other"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateMountPoint() {
+    create("/ns1", "/ns1");
+  }
+
+  @Test
+  public void testDefaultMountPoints() throws IOException {
+    URI[] one = {URI.create("hdfs://localhost:9000")};
+    Assert.assertArrayEquals(new String[] {"/"},
+        MountTable.getMountPoints(one, new String[0]));
+
+    URI[] two = {URI.create("hdfs://ns1"), URI.create("hdfs://ns2")};
+    Assert.assertArrayEquals(new String[] {"/ns1", "/ns2"},
+        MountTable.getMountPoints(two, new String[0]));
+    Assert.assertArrayEquals(new String[] {"/a", "/b"},
+        MountTable.getMountPoints(two, new String[] {"/a", "/b"}));
+    try {
+      MountTable.getMountPoints(two, new String[] {"/a"});
+      Assert.fail("Mount points should match the NameNodes");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
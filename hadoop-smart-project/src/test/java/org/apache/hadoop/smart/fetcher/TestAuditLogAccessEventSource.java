@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.fetcher;
+
+import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.TestDBUtil;
+import org.apache.hadoop.smart.sql.tables.AccessCountTableManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class TestAuditLogAccessEventSource {
+  private File dir;
+  private File log;
+  private AccessCountTableManager manager;
+  private ScheduledExecutorService service;
+  private Connection conn;
+  private DBAdapter adapter;
+  private AuditLogAccessEventSource source;
+  private List<FileAccessEvent> received = new ArrayList<>();
+
+  private static String line(String time, boolean allowed, String cmd,
+      String src) {
+    return time + " INFO FSNamesystem.audit: allowed=" + allowed
+        + "\tugi=hdfs (auth:SIMPLE)\tip=/127.0.0.1\tcmd=" + cmd + "\tsrc="
+        + src + "\tdst=null\tperm=null\tproto=rpc\n";
+  }
+
+  private void append(File file, String str) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(str.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private List<FileAccessEvent> pollEvents() throws IOException {
+    received.clear();
+    source.poll();
+    return new ArrayList<>(received);
+  }
+
+  @Before
+  public void init() throws Exception {
+    dir = Files.createTempDirectory("audit").toFile();
+    log = new File(dir, "hdfs-audit.log");
+    manager = mock(AccessCountTableManager.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        received.addAll((List<FileAccessEvent>) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(manager).onAccessEventsArrived(anyListOf(FileAccessEvent.class));
+    service = Executors.newSingleThreadScheduledExecutor();
+    conn = TestDBUtil.getUniqueEmptySqliteDBInstance();
+    adapter = new DBAdapter(conn);
+    source = newSource();
+  }
+
+  private AuditLogAccessEventSource newSource() {
+    return new AuditLogAccessEventSource(log.getPath(), manager, adapter,
+        service, 1000, TimeZone.getTimeZone("UTC"));
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    source.stop();
+    conn.close();
+    service.shutdownNow();
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testTail() throws Exception {
+    // Not created yet
+    Assert.assertTrue(pollEvents().isEmpty());
+
+    // Lines written before start are skipped
+    append(log, line("2017-05-01 10:00:00,000", true, "open", "/old"));
+    Assert.assertTrue(pollEvents().isEmpty());
+
+    append(log, line("2017-05-01 10:00:01,234", true, "open", "/a/b")
+        + line("2017-05-01 10:00:01,235", false, "open", "/denied")
+        + line("2017-05-01 10:00:01,236", true, "getfileinfo", "/a")
+        + line("2017-05-01 10:00:01,237", true, "open", "/a/\\u4E2D")
+        + "2017-05-01 10:00:02,000 INFO FSNamesystem.audit: allowed=true\tugi");
+    List<FileAccessEvent> events = pollEvents();
+    Assert.assertEquals(2, events.size());
+    Assert.assertEquals("/a/b", events.get(0).getPath());
+    Assert.assertEquals(1493632801234L, events.get(0).getTimestamp());
+    Assert.assertEquals("/a/\u4E2D", events.get(1).getPath());
+
+    // Incomplete line is parsed once completed
+    append(log, "=hdfs\tip=/127.0.0.1\tcmd=open\tsrc=/c\tdst=null\n");
+    events = pollEvents();
+    Assert.assertEquals(1, events.size());
+    Assert.assertEquals("/c", events.get(0).getPath());
+    Assert.assertEquals(log.length(), source.getOffset());
+
+    // Rotation, lines appended to the former file are not lost
+    append(log, line("2017-05-01 11:00:00,000", true, "open", "/d"));
+    Assert.assertTrue(log.renameTo(new File(dir, "hdfs-audit.log.1")));
+    append(log, line("2017-05-01 11:00:00,001", true, "open", "/e"));
+    events = pollEvents();
+    Assert.assertEquals(2, events.size());
+    Assert.assertEquals("/d", events.get(0).getPath());
+    Assert.assertEquals("/e", events.get(1).getPath());
+    Assert.assertEquals(1493636400001L, events.get(1).getTimestamp());
+    Assert.assertEquals(5, source.getNumEvents());
+  }
+
+  @Test
+  public void testPathEncoding() throws Exception {
+    pollEvents();
+    append(log, line("2017-05-01 10:00:00,000", true, "open", "/\u4E2D\u6587")
+        + line("2017-05-01 10:00:00,001", true, "open", "/r\u00e9sum\u00e9")
+        + line("2017-05-01 10:00:00,002", true, "open", "/a\\\\b\\\"c\\u4E2D"));
+    List<FileAccessEvent> events = pollEvents();
+    Assert.assertEquals(3, events.size());
+    // Written by a logger not escaping characters beyond ASCII
+    Assert.assertEquals("/\u4E2D\u6587", events.get(0).getPath());
+    Assert.assertEquals("/r\u00e9sum\u00e9", events.get(1).getPath());
+    Assert.assertEquals("/a\\b\"c\u4E2D", events.get(2).getPath());
+  }
+
+  @Test
+  public void testUnescape() throws Exception {
+    Assert.assertEquals("/a\\b",
+        AuditLogAccessEventSource.unescape("/a\\\\b"));
+    Assert.assertEquals("/a\tb\n",
+        AuditLogAccessEventSource.unescape("/a\\tb\\n"));
+    Assert.assertEquals("/\u4E2D\u00e9",
+        AuditLogAccessEventSource.unescape("/\\u4E2D\\u00e9"));
+    // Not produced by escapeJava, kept as is
+    Assert.assertEquals("/a\\'b\\101\\u12",
+        AuditLogAccessEventSource.unescape("/a\\'b\\101\\u12"));
+    Assert.assertEquals("/a\\", AuditLogAccessEventSource.unescape("/a\\"));
+  }
+
+  @Test
+  public void testResumeFromSavedOffset() throws Exception {
+    append(log, line("2017-05-01 10:00:00,000", true, "open", "/old"));
+    Assert.assertTrue(pollEvents().isEmpty());
+    append(log, line("2017-05-01 10:00:01,000", true, "open", "/a"));
+    Assert.assertEquals(1, pollEvents().size());
+
+    // Lines written while stopped are read on restart
+    source.stop();
+    append(log, line("2017-05-01 10:00:02,000", true, "open", "/b"));
+    source = newSource();
+    List<FileAccessEvent> events = pollEvents();
+    Assert.assertEquals(1, events.size());
+    Assert.assertEquals("/b", events.get(0).getPath());
+
+    // Rotated while stopped, the saved offset is of another file
+    source.stop();
+    Assert.assertTrue(log.renameTo(new File(dir, "hdfs-audit.log.1")));
+    append(log, line("2017-05-01 10:00:03,000", true, "open", "/c"));
+    source = newSource();
+    Assert.assertTrue(pollEvents().isEmpty());
+    Assert.assertEquals(log.length(), source.getOffset());
+  }
+}
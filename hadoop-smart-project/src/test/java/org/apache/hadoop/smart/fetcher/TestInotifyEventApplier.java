@@ -21,6 +21,7 @@
 import org.apache.hadoop.hdfs.DFSClient;
 import org.apache.hadoop.hdfs.inotify.Event;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.smart.sql.CompactFileInfo;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.apache.hadoop.smart.sql.DBTest;
 import org.apache.hadoop.smart.sql.Util;
@@ -35,6 +36,8 @@
 
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class TestInotifyEventApplier extends DBTest {
@@ -79,6 +82,8 @@ public void testApplier() throws Exception {
             null);
     when(client.getFileInfo(anyString())).thenReturn(status1);
     applier.apply(new Event[] {createEvent});
+    // One NameNode call per CREATE event
+    verify(client, times(1)).getFileInfo("/file");
 
     ResultSet result1 = adapter.executeQuery("SELECT * FROM files");
     Assert.assertEquals(result1.getString("path"), "/file");
@@ -153,4 +158,78 @@ public void testApplier() throws Exception {
     ResultSet result6 = adapter.executeQuery("SELECT * FROM files");
     Assert.assertFalse(result6.next());
   }
+
+  @Test
+  public void testCompactFiles() throws Exception {
+    DFSClient client = mock(DFSClient.class);
+    Connection connection = databaseTester.getConnection().getConnection();
+    Util.initializeDataBase(connection);
+    DBAdapter adapter = new DBAdapter(connection);
+    InotifyEventApplier applier = new InotifyEventApplier(adapter, client);
+
+    when(client.getFileInfo("/dir")).thenReturn(status(10, true));
+    when(client.getFileInfo("/dir/a")).thenReturn(status(11, false));
+    when(client.getFileInfo("/dir/b")).thenReturn(status(12, false));
+    applier.apply(new Event[] {create("/dir", true), create("/dir/a", false),
+        create("/dir/b", false)});
+    String container = "/dir/.ssm_container_0";
+    adapter.insertCompactFile(new CompactFileInfo(11, "/dir/a", container,
+        0, 10));
+    adapter.insertCompactFile(new CompactFileInfo(12, "/dir/b", container,
+        10, 10));
+
+    // Compaction removes the original files itself
+    applier.apply(new Event[] {unlink("/dir/a"), unlink("/dir/b")});
+    Assert.assertNotNull(adapter.getCompactFileInfo("/dir/a"));
+    Assert.assertNotNull(adapter.getCompactFileInfo("/dir/b"));
+
+    // A new file takes the path of a compacted one
+    when(client.getFileInfo("/dir/b")).thenReturn(status(13, false));
+    applier.apply(new Event[] {create("/dir/b", false)});
+    Assert.assertNull(adapter.getCompactFileInfo("/dir/b"));
+
+    // A file is renamed onto the path of a compacted one
+    when(client.getFileInfo("/dir/c")).thenReturn(status(14, false));
+    adapter.insertCompactFile(new CompactFileInfo(15, "/dir/d", container,
+        20, 10));
+    applier.apply(new Event[] {create("/dir/c", false),
+        new Event.RenameEvent.Builder().srcPath("/dir/c").dstPath("/dir/d")
+            .timestamp(2).build()});
+    Assert.assertNull(adapter.getCompactFileInfo("/dir/d"));
+
+    applier.apply(new Event[] {new Event.RenameEvent.Builder()
+        .srcPath("/dir").dstPath("/dir2").timestamp(3).build()});
+    Assert.assertNull(adapter.getCompactFileInfo("/dir/a"));
+    CompactFileInfo info = adapter.getCompactFileInfo("/dir2/a");
+    Assert.assertEquals(11, info.getFid());
+    Assert.assertEquals("/dir2/.ssm_container_0", info.getContainerPath());
+    Assert.assertEquals(0, info.getOffset());
+
+    applier.apply(new Event[] {unlink("/dir2")});
+    Assert.assertNull(adapter.getCompactFileInfo("/dir2/a"));
+  }
+
+  private Event.CreateEvent create(String path, boolean isDir) {
+    return new Event.CreateEvent.Builder()
+        .iNodeType(isDir ? Event.CreateEvent.INodeType.DIRECTORY
+            : Event.CreateEvent.INodeType.FILE)
+        .ctime(1)
+        .groupName("cg1")
+        .overwrite(true)
+        .ownerName("user1")
+        .path(path)
+        .perms(new FsPermission("777"))
+        .replication(3)
+        .build();
+  }
+
+  private Event unlink(String path) {
+    return new Event.UnlinkEvent.Builder().path(path).timestamp(1).build();
+  }
+
+  private HdfsFileStatus status(long fid, boolean isDir) {
+    return new HdfsFileStatus(0, isDir, 1, 1024, 0, 0,
+        new FsPermission((short) 777), "owner", "group", new byte[0],
+        new byte[0], fid, 0, null, (byte) 0, null);
+  }
 }
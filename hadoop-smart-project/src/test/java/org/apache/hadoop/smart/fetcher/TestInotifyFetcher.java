@@ -29,7 +29,9 @@
 import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.inotify.Event;
+import org.apache.hadoop.hdfs.inotify.EventFilter;
 import org.apache.hadoop.hdfs.qjournal.MiniQJMHACluster;
+import org.apache.hadoop.smart.federation.NamespaceMount;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.junit.Assert;
 import org.junit.Test;
@@ -184,4 +186,32 @@ public void run() {
       cluster.shutdown();
     }
   }
+
+  @Test
+  public void testCreateFilter() {
+    NamespaceMount mount = new NamespaceMount(1, null, "/ns1", null);
+    EventFilter filter = InotifyEventFetcher.createFilter(mount,
+        Arrays.asList("/ns1/user/", "/ns1/data", "/ns2/data", "/ns10"));
+    Assert.assertEquals(Arrays.asList("/user", "/data"),
+        filter.getPathPrefixes());
+    Assert.assertTrue(filter.getEventTypes().isEmpty());
+
+    // A prefix at or above the mount point covers all of its events
+    Assert.assertNull(InotifyEventFetcher.createFilter(mount,
+        Arrays.asList("/ns1/user", "/ns1/")));
+    Assert.assertNull(InotifyEventFetcher.createFilter(mount,
+        Arrays.asList("/ns1/user", "/")));
+    Assert.assertNull(InotifyEventFetcher.createFilter(
+        new NamespaceMount(2, null, "/fed/ns2", null),
+        Arrays.asList("/fed")));
+    // So does a set of prefixes that misses the mount entirely
+    Assert.assertNull(InotifyEventFetcher.createFilter(mount,
+        Arrays.asList("/ns2/data")));
+
+    NamespaceMount root = new NamespaceMount(0, null, NamespaceMount.ROOT, null);
+    filter = InotifyEventFetcher.createFilter(root,
+        Arrays.asList("/user", "/data/"));
+    Assert.assertEquals(Arrays.asList("/user", "/data"),
+        filter.getPathPrefixes());
+  }
 }
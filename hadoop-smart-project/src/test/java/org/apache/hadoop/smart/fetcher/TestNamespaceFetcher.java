@@ -25,8 +25,10 @@
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.inotify.MissingEventsException;
 import org.apache.hadoop.smart.SmartConfiguration;
+import org.apache.hadoop.smart.federation.NamespaceMount;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.apache.hadoop.smart.sql.FileStatusInternal;
+import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 
@@ -35,6 +37,7 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import static org.mockito.Matchers.argThat;
@@ -82,4 +85,47 @@ public void testNamespaceFetcher() throws IOException, InterruptedException,
     verify(adapter).insertFiles(argThat(new FileStatusArgMatcher(expected)));
     fetcher.stop();
   }
+
+  @Test
+  public void testGetRoots() {
+    Assert.assertEquals(Arrays.asList("/"),
+        NamespaceFetcher.getRoots(Collections.<String>emptyList()));
+    Assert.assertEquals(Arrays.asList("/"),
+        NamespaceFetcher.getRoots(Arrays.asList("/user", "/")));
+    Assert.assertEquals(Arrays.asList("/a", "/a-b", "/data", "/user"),
+        NamespaceFetcher.getRoots(Arrays.asList(
+            "/user/", "/user/user1", "/data", "/a-b", "/a", "/a/b")));
+  }
+
+  @Test
+  public void testFetchUnderRoots() throws IOException, InterruptedException,
+      SQLException {
+    final Configuration conf = new SmartConfiguration();
+    final MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+      .numDataNodes(2).build();
+    try {
+      final DistributedFileSystem dfs = cluster.getFileSystem();
+      dfs.mkdir(new Path("/user"), new FsPermission("777"));
+      dfs.create(new Path("/user/user1"));
+      dfs.mkdir(new Path("/data"), new FsPermission("777"));
+      dfs.create(new Path("/data/file1"));
+      dfs.mkdir(new Path("/tmp"), new FsPermission("777"));
+      dfs.create(new Path("/tmp/file2"));
+
+      DBAdapter adapter = mock(DBAdapter.class);
+      NamespaceFetcher fetcher = new NamespaceFetcher(
+          NamespaceMount.root(dfs.getClient()), adapter, 100,
+          Executors.newSingleThreadScheduledExecutor(),
+          Arrays.asList("/user/", "/data"));
+      fetcher.startFetch();
+      List<String> expected = Arrays.asList(
+          "/data", "/data/file1", "/user", "/user/user1");
+      Thread.sleep(1000);
+
+      verify(adapter).insertFiles(argThat(new FileStatusArgMatcher(expected)));
+      fetcher.stop();
+    } finally {
+      cluster.shutdown();
+    }
+  }
 }
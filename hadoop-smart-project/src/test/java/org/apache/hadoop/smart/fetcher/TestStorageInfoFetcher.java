@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.fetcher;
+
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.DatanodeReportType;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
+import org.apache.hadoop.hdfs.server.protocol.StorageReport;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.StorageCapacity;
+import org.apache.hadoop.smart.sql.TestDBUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestStorageInfoFetcher {
+  private Connection conn;
+  private DBAdapter adapter;
+  private DFSClient client;
+
+  @Before
+  public void init() throws Exception {
+    conn = TestDBUtil.getUniqueEmptySqliteDBInstance();
+    adapter = spy(new DBAdapter(conn));
+    client = mock(DFSClient.class);
+  }
+
+  @After
+  public void close() throws Exception {
+    conn.close();
+  }
+
+  private static DatanodeStorageReport report(String addr, long cacheCapacity,
+      StorageType type, long capacity, long remaining) {
+    DatanodeInfo dn = mock(DatanodeInfo.class);
+    when(dn.getXferAddr()).thenReturn(addr);
+    when(dn.getCacheCapacity()).thenReturn(cacheCapacity);
+    when(dn.getCacheRemaining()).thenReturn(cacheCapacity);
+    StorageReport storage = new StorageReport(new DatanodeStorage(
+        addr + type, DatanodeStorage.State.NORMAL, type), false, capacity,
+        capacity - remaining, remaining, capacity - remaining, 0);
+    return new DatanodeStorageReport(dn, new StorageReport[] {storage});
+  }
+
+  @Test
+  public void testFetch() throws Exception {
+    when(client.getDatanodeStorageReport(DatanodeReportType.LIVE))
+        .thenReturn(new DatanodeStorageReport[] {
+            report("127.0.0.1:50010", 100, StorageType.SSD, 1000, 600),
+            report("127.0.0.1:50011", 100, StorageType.SSD, 1000, 400),
+            report("127.0.0.1:50012", 0, StorageType.DISK, 5000, 5000)});
+    StorageInfoFetcher fetcher =
+        new StorageInfoFetcher(client, adapter, null, 1000);
+    Assert.assertNull(fetcher.getCacheStatus());
+    fetcher.fetch();
+    // One report for all the DataNodes
+    verify(client, times(1)).getDatanodeStorageReport(DatanodeReportType.LIVE);
+    Assert.assertEquals(2000,
+        (long) fetcher.getStorageCapacity("SSD").getCapacity());
+    Assert.assertEquals(1000, (long) fetcher.getStorageCapacity("SSD").getFree());
+    Assert.assertEquals(3, fetcher.getDatanodeStorages().size());
+    Assert.assertEquals(200, fetcher.getCacheStatus().getCacheCapacityTotal());
+    Assert.assertEquals(3,
+        fetcher.getCacheStatus().getdnCacheStatusMap().size());
+    Assert.assertEquals(2000,
+        (long) adapter.getStorageCapacity("SSD").getCapacity());
+    Assert.assertEquals(200, (long) adapter.getStorageCapacity(
+        StorageInfoFetcher.CACHE_STORAGE_TYPE).getFree());
+
+    // Only changed rows written
+    when(client.getDatanodeStorageReport(DatanodeReportType.LIVE))
+        .thenReturn(new DatanodeStorageReport[] {
+            report("127.0.0.1:50010", 100, StorageType.SSD, 1000, 500),
+            report("127.0.0.1:50011", 100, StorageType.SSD, 1000, 400),
+            report("127.0.0.1:50012", 0, StorageType.DISK, 5000, 5000)});
+    fetcher.fetch();
+    verify(adapter, times(4)).updateStoragesTable(anyString(),
+        anyLong(), anyLong());
+    verify(adapter, times(1)).insertStoragesTable(
+        any(StorageCapacity[].class));
+    Assert.assertEquals(900, (long) adapter.getStorageCapacity("SSD").getFree());
+  }
+
+  @Test
+  public void testInsertFailure() throws Exception {
+    when(client.getDatanodeStorageReport(DatanodeReportType.LIVE))
+        .thenReturn(new DatanodeStorageReport[] {
+            report("127.0.0.1:50010", 100, StorageType.SSD, 1000, 600)});
+    StorageInfoFetcher fetcher =
+        new StorageInfoFetcher(client, adapter, null, 1000);
+    doThrow(new SQLException("Injected")).when(adapter)
+        .insertStoragesTable(any(StorageCapacity[].class));
+    try {
+      fetcher.fetch();
+      Assert.fail("Should have failed to insert");
+    } catch (SQLException e) {
+      // expected
+    }
+
+    // Rows not inserted are written again even though nothing changed
+    reset(adapter);
+    fetcher.fetch();
+    verify(adapter, times(1)).insertStoragesTable(
+        any(StorageCapacity[].class));
+    Assert.assertEquals(600, (long) adapter.getStorageCapacity("SSD").getFree());
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.governor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+
+public class TestNameNodeGovernor {
+
+  private NameNodeGovernor createGovernor() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setDouble(SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_RATE_PREFIX
+        + "getListing", 20);
+    conf.setDouble(SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_RATE_PREFIX
+        + "getFileInfo", 0);
+    return new NameNodeGovernor(new URI("hdfs://localhost:9000"), conf, null);
+  }
+
+  @Test
+  public void testTokenBucket() throws Exception {
+    TokenBucket bucket = new TokenBucket(50);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) {
+      bucket.acquire(1.0);
+    }
+    // 50 permits at hand, the other 50 take about a second
+    long used = System.currentTimeMillis() - start;
+    Assert.assertTrue("Used " + used + " ms", used >= 800);
+    Assert.assertTrue(bucket.getNumWaits() > 0);
+  }
+
+  @Test
+  public void testRatePerOperation() throws Exception {
+    NameNodeGovernor governor = createGovernor();
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 40; i++) {
+      governor.acquire("getListing");
+    }
+    Assert.assertTrue(System.currentTimeMillis() - start >= 800);
+
+    // Not limited
+    start = System.currentTimeMillis();
+    for (int i = 0; i < 10000; i++) {
+      governor.acquire("getFileInfo");
+    }
+    Assert.assertTrue(System.currentTimeMillis() - start < 800);
+  }
+
+  @Test
+  public void testScale() throws Exception {
+    NameNodeGovernor governor = createGovernor();
+    Assert.assertEquals(1.0, governor.getScale(), 0.001);
+    governor.onLoad(100, 10);
+    Assert.assertEquals(0.5, governor.getScale(), 0.001);
+    governor.onLoad(1, 100);
+    Assert.assertEquals(0.25, governor.getScale(), 0.001);
+    for (int i = 0; i < 10; i++) {
+      governor.onLoad(100, 100);
+    }
+    Assert.assertEquals(NameNodeGovernor.MIN_SCALE, governor.getScale(),
+        0.001);
+    for (int i = 0; i < 20; i++) {
+      governor.onLoad(1, 1);
+    }
+    Assert.assertEquals(1.0, governor.getScale(), 0.001);
+  }
+
+  @Test
+  public void testPriority() throws Exception {
+    final NameNodeGovernor governor = createGovernor();
+    Assert.assertEquals(NameNodePriority.ACTION,
+        NameNodeGovernor.getPriority());
+    governor.onLoad(100, 100);
+    governor.onLoad(100, 100);
+    Assert.assertTrue(
+        governor.getScale() < NameNodePriority.ACTION.getMinScale());
+
+    Thread action = new Thread() {
+      @Override
+      public void run() {
+        try {
+          governor.acquire("getFileInfo");
+        } catch (Exception e) {
+          // Checked through isAlive
+        }
+      }
+    };
+    action.start();
+
+    NameNodePriority prev =
+        NameNodeGovernor.setPriority(NameNodePriority.INOTIFY);
+    try {
+      governor.acquire("getFileInfo");
+    } finally {
+      NameNodeGovernor.setPriority(prev);
+    }
+    Thread.sleep(500);
+    Assert.assertTrue(action.isAlive());
+
+    for (int i = 0; i < 5; i++) {
+      governor.onLoad(1, 1);
+    }
+    action.join(5000);
+    Assert.assertFalse(action.isAlive());
+  }
+
+  @Test
+  public void testCreateClient() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(0).build();
+    try {
+      cluster.waitActive();
+      URI uri = cluster.getURI();
+      conf.setDouble(SmartConfigureKeys.DFS_SSM_NAMENODE_GOVERNOR_RATE_PREFIX
+          + "getFileInfo", 20);
+      NameNodeGovernor governor = new NameNodeGovernor(uri, conf, null);
+      DFSClient client = governor.createClient();
+      DFSClient plain = new DFSClient(uri, conf);
+      try {
+        // Tokens are issued for the NameNode as with a plain client
+        Assert.assertNotNull(client.getCanonicalServiceName());
+        Assert.assertEquals(plain.getCanonicalServiceName(),
+            client.getCanonicalServiceName());
+
+        client.mkdirs("/dir", FsPermission.getDefault(), true);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 40; i++) {
+          Assert.assertNotNull(client.getFileInfo("/dir"));
+        }
+        // Calls are throttled by the governor
+        Assert.assertTrue(System.currentTimeMillis() - start >= 800);
+      } finally {
+        client.close();
+        plain.close();
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.ha;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.smart.SmartConfiguration;
+import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.DruidPool;
+import org.apache.hadoop.smart.sql.TestDBUtil;
+import org.apache.hadoop.smart.sql.Util;
+import org.apache.hadoop.smart.sql.tables.AccessCountTable;
+import org.apache.hadoop.util.ExitUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class TestJournalTailer {
+  private static final Path DIR = new Path("/system/ssm.journal");
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private final List<DruidPool> pools = new ArrayList<>();
+  private final List<DBAdapter> adapters = new ArrayList<>();
+  private final List<MetaStoreJournal> journals = new ArrayList<>();
+
+  @Before
+  public void init() throws Exception {
+    ExitUtil.disableSystemExit();
+    cluster = new MiniDFSCluster.Builder(new SmartConfiguration())
+        .numDataNodes(1).build();
+    fs = cluster.getFileSystem();
+  }
+
+  @After
+  public void shutdown() {
+    for (DBAdapter adapter : adapters) {
+      adapter.stopWriter();
+    }
+    for (MetaStoreJournal journal : journals) {
+      journal.close();
+    }
+    for (DruidPool pool : pools) {
+      pool.close();
+    }
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+    ExitUtil.resetFirstExitException();
+  }
+
+  private DBAdapter createAdapter() throws Exception {
+    InputStream in = getClass().getClassLoader()
+        .getResourceAsStream("druid-template.xml");
+    Properties p = new Properties();
+    p.loadFromXML(in);
+    p.setProperty("url",
+        Util.SQLITE_URL_PREFIX + TestDBUtil.getUniqueEmptySqliteDBFile());
+    DruidPool pool = new DruidPool(p);
+    pools.add(pool);
+    DBAdapter adapter = new DBAdapter(pool);
+    adapters.add(adapter);
+    return adapter;
+  }
+
+  private MetaStoreJournal startJournal(DistributedFileSystem fs,
+      long segmentId) throws Exception {
+    MetaStoreJournal journal =
+        new MetaStoreJournal(fs, DIR, 64 * 1024 * 1024L, 60000L);
+    journals.add(journal);
+    journal.start(segmentId);
+    return journal;
+  }
+
+  private long insertRule(DBAdapter adapter) throws SQLException {
+    RuleInfo info = new RuleInfo(0, System.currentTimeMillis(),
+        "file : length() > 1 | cachefile", RuleState.ACTIVE, 0, 0, 0);
+    Assert.assertTrue(adapter.insertNewRule(info));
+    return info.getId();
+  }
+
+  private long count(DBAdapter adapter, String sql) throws SQLException {
+    return adapter.executeLongsQuery(sql)[0];
+  }
+
+  @Test
+  public void testCheckpoint() throws Exception {
+    DBAdapter active = createAdapter();
+    MetaStoreJournal journal = startJournal(fs, 1);
+    active.startWriter(16, journal);
+    long rule1 = insertRule(active);
+    AccessCountTable source = new AccessCountTable(0L, 5000L);
+    active.execute(AccessCountTable.createTableSQL(source.getTableName()));
+    active.execute("INSERT INTO " + source.getTableName() + " VALUES (1, 3)");
+
+    DBAdapter standby = createAdapter();
+    JournalTailer tailer = new JournalTailer(fs, DIR, standby);
+    tailer.format();
+    Assert.assertTrue(tailer.tail() > 0);
+    Assert.assertEquals(1, tailer.getSegmentId());
+    Assert.assertNotNull(standby.getRuleInfo(rule1));
+
+    // Soft state is not journaled
+    active.execute("INSERT INTO file_heat (fid, half_life, heat, "
+        + "update_time) VALUES (1, 1000, 2.0, 1000)");
+    AccessCountTable view = new AccessCountTable(2500L, 5000L);
+    active.createProportionView(view, source);
+    tailer.tail();
+    Assert.assertEquals(1, count(active, "SELECT COUNT(*) FROM file_heat"));
+    Assert.assertEquals(0, count(standby, "SELECT COUNT(*) FROM file_heat"));
+    Assert.assertEquals(0, count(standby,
+        "SELECT COUNT(*) FROM sqlite_master WHERE type = 'view'"));
+
+    MetaStoreCheckpointer checkpointer =
+        new MetaStoreCheckpointer(fs, DIR, active, journal, 60000L);
+    long id = checkpointer.checkpoint();
+    Assert.assertEquals(2, id);
+    Assert.assertEquals(id, journal.getSegmentId());
+    long rule2 = insertRule(active);
+
+    // The journal covered by the checkpoint is truncated
+    List<Long> segments = MetaStoreJournal.listSegments(fs, DIR);
+    Assert.assertEquals(id, (long) segments.get(0));
+    List<Long> checkpoints = MetaStoreJournal.listCheckpoints(fs, DIR);
+    Assert.assertEquals(1, checkpoints.size());
+    Assert.assertEquals(id, (long) checkpoints.get(0));
+
+    // The lagging replay starts over from the checkpoint
+    tailer.tail();
+    assertReplayed(active, standby, tailer, id, rule1, rule2, source);
+    DBAdapter replayed = createAdapter();
+    JournalTailer t = new JournalTailer(fs, DIR, replayed);
+    t.format();
+    t.tail();
+    assertReplayed(active, replayed, t, id, rule1, rule2, source);
+  }
+
+  private void assertReplayed(DBAdapter active, DBAdapter replayed,
+      JournalTailer tailer, long segmentId, long rule1, long rule2,
+      AccessCountTable table) throws SQLException {
+    Assert.assertEquals(segmentId, tailer.getSegmentId());
+    Assert.assertNotNull(replayed.getRuleInfo(rule1));
+    Assert.assertNotNull(replayed.getRuleInfo(rule2));
+    Assert.assertArrayEquals(new long[] {1, 3}, replayed.executeLongsQuery(
+        "SELECT * FROM " + table.getTableName()));
+    Assert.assertEquals(0, count(replayed, "SELECT COUNT(*) FROM file_heat"));
+    // Indexes are part of the checkpoint
+    String indexes = "SELECT COUNT(*) FROM sqlite_master "
+        + "WHERE type = 'index' AND sql IS NOT NULL";
+    Assert.assertEquals(count(active, indexes), count(replayed, indexes));
+  }
+
+  @Test
+  public void testTakeOver() throws Exception {
+    // The active SSM writes through a client of its own
+    DistributedFileSystem activeFs =
+        (DistributedFileSystem) cluster.getNewFileSystemInstance(0);
+    DBAdapter active = createAdapter();
+    MetaStoreJournal activeJournal = startJournal(activeFs, 1);
+    active.startWriter(16, activeJournal);
+    long rule1 = insertRule(active);
+
+    DBAdapter standby = createAdapter();
+    JournalTailer tailer = new JournalTailer(fs, DIR, standby);
+    tailer.format();
+    tailer.tail();
+    long rule2 = insertRule(active);
+    Assert.assertFalse(
+        fs.isFileClosed(MetaStoreJournal.getSegmentPath(DIR, 1)));
+
+    // Fences the active SSM through the lease of its open segment
+    MetaStoreJournal journal =
+        new MetaStoreJournal(fs, DIR, 64 * 1024 * 1024L, 60000L);
+    journals.add(journal);
+    tailer.takeOver(journal);
+    Assert.assertEquals(2, journal.getSegmentId());
+    Assert.assertNotNull(standby.getRuleInfo(rule1));
+    Assert.assertNotNull(standby.getRuleInfo(rule2));
+
+    try {
+      active.execute("DELETE FROM rules");
+      Assert.fail("The fenced SSM should fail to write its journal");
+    } catch (SQLException e) {
+      // expected
+    }
+    Assert.assertTrue(ExitUtil.terminateCalled());
+    Assert.assertEquals(2, count(active, "SELECT COUNT(*) FROM rules"));
+
+    standby.startWriter(16, journal);
+    long rule3 = insertRule(standby);
+    DBAdapter replayed = createAdapter();
+    JournalTailer t = new JournalTailer(fs, DIR, replayed);
+    t.format();
+    t.tail();
+    Assert.assertEquals(2, t.getSegmentId());
+    Assert.assertNotNull(replayed.getRuleInfo(rule3));
+    Assert.assertEquals(3, count(replayed, "SELECT COUNT(*) FROM rules"));
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.mover;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TestMoveScheduler {
+  private final DatanodeInfo dn1 = DFSTestUtil.getDatanodeInfo("1.1.1.1");
+  private final DatanodeInfo dn2 = DFSTestUtil.getDatanodeInfo("2.2.2.2");
+
+  private MoveScheduler createScheduler(long bandwidth, float reserved) {
+    Configuration conf = new Configuration();
+    conf.setLong(SmartConfigureKeys.DFS_SSM_MOVER_DATANODE_BANDWIDTH_KEY,
+        bandwidth);
+    conf.setFloat(SmartConfigureKeys.DFS_SSM_MOVER_RESERVED_RATIO_KEY,
+        reserved);
+    return new MoveScheduler(conf);
+  }
+
+  @Test
+  public void testMovePriority() {
+    Assert.assertEquals(MovePriority.PROMOTION, MovePriority.of(
+        Arrays.asList(StorageType.DISK), Arrays.asList(StorageType.SSD)));
+    Assert.assertEquals(MovePriority.DEMOTION, MovePriority.of(
+        Arrays.asList(StorageType.DISK), Arrays.asList(StorageType.ARCHIVE)));
+    Assert.assertEquals(MovePriority.DEMOTION, MovePriority.of(
+        Arrays.asList(StorageType.SSD, StorageType.DISK),
+        Collections.singletonList(StorageType.DISK)));
+  }
+
+  @Test
+  public void testReservedForPromotions() throws Exception {
+    MoveScheduler scheduler = createScheduler(1000, 0.5f);
+    long start = System.currentTimeMillis();
+    scheduler.acquire(MovePriority.DEMOTION, 600, dn1, dn2,
+        StorageType.ARCHIVE, 600);
+    // Only the reserved part is left, still usable by promotions
+    scheduler.acquire(MovePriority.PROMOTION, 600, dn1, dn2,
+        StorageType.SSD, 600);
+    Assert.assertTrue(System.currentTimeMillis() - start < 300);
+
+    // Debt of 200 bytes plus the reserved 500 bytes to refill
+    scheduler.acquire(MovePriority.DEMOTION, 600, dn1, dn2,
+        StorageType.ARCHIVE, 600);
+    Assert.assertTrue(System.currentTimeMillis() - start >= 500);
+    Assert.assertEquals(1200, scheduler.getMovedBytes(MovePriority.DEMOTION));
+    Assert.assertEquals(600, scheduler.getMovedBytes(MovePriority.PROMOTION));
+    Assert.assertTrue(
+        scheduler.getMovedBytesPerSecond(MovePriority.DEMOTION) > 0);
+  }
+
+  @Test
+  public void testPromotionFirst() throws Exception {
+    final MoveScheduler scheduler = createScheduler(1000, 0);
+    scheduler.acquire(MovePriority.PROMOTION, 1500, dn1, dn2,
+        StorageType.SSD, 1500);
+
+    final List<MovePriority> done = new CopyOnWriteArrayList<>();
+    Thread demotion = new MoveThread(scheduler, MovePriority.DEMOTION, done);
+    Thread promotion = new MoveThread(scheduler, MovePriority.PROMOTION, done);
+    demotion.start();
+    Thread.sleep(100);
+    Assert.assertEquals(1, scheduler.getQueueDepth(MovePriority.DEMOTION));
+    promotion.start();
+    demotion.join(10000);
+    promotion.join(10000);
+    Assert.assertEquals(Arrays.asList(MovePriority.PROMOTION,
+        MovePriority.DEMOTION), done);
+    Assert.assertEquals(0, scheduler.getQueueDepth(MovePriority.DEMOTION));
+  }
+
+  private class MoveThread extends Thread {
+    private final MoveScheduler scheduler;
+    private final MovePriority priority;
+    private final List<MovePriority> done;
+
+    MoveThread(MoveScheduler scheduler, MovePriority priority,
+        List<MovePriority> done) {
+      this.scheduler = scheduler;
+      this.priority = priority;
+      this.done = done;
+    }
+
+    @Override
+    public void run() {
+      try {
+        scheduler.acquire(priority, 100, dn1, dn2, StorageType.DISK, 100);
+        done.add(priority);
+      } catch (InterruptedException e) {
+        // Checked through done
+      }
+    }
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.replication;
+
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.smart.sql.tables.FileHeatTracker;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.Matchers.anyShort;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestReplicationController {
+  private static final long HALF_LIFE = 60 * 1000L;
+  private DFSClient client;
+  private FileHeatTracker tracker;
+  private ReplicationController controller;
+
+  private HdfsFileStatus status(long fid, long length, int replication) {
+    return new HdfsFileStatus(length, false, replication,
+        1024, 0, 0, new FsPermission((short) 777), "owner", "group",
+        new byte[0], new byte[0], fid, 0, null, (byte) 0, null);
+  }
+
+  private void mockFile(String path, long fid, long length, int replication)
+      throws IOException {
+    when(client.getFileInfo(path)).thenReturn(
+        status(fid, length, replication));
+  }
+
+  @Before
+  public void init() throws IOException {
+    client = mock(DFSClient.class);
+    tracker = new FileHeatTracker(null, HALF_LIFE);
+    // 300 extra bytes at most, 200 bytes per second
+    controller = new ReplicationController(client, tracker, 300, 200, 1.0);
+  }
+
+  @Test
+  public void testBudgetAndCoolDown() throws Exception {
+    long now = 1000;
+    mockFile("/a", 1, 100, 3);
+    mockFile("/b", 2, 100, 3);
+    mockFile("/c", 3, 100, 3);
+    tracker.addAccess(1, 100, now);
+    tracker.addAccess(2, 100, now);
+    tracker.addAccess(3, 100, now);
+
+    // Second request exceeds the bandwidth and is deferred
+    controller.setReplication("/a", (short) 5);
+    controller.setReplication("/b", (short) 4);
+    controller.flush(now);
+    verify(client).setReplication("/a", (short) 5);
+    verify(client, never()).setReplication("/b", (short) 4);
+    Assert.assertEquals(1, controller.getNumPendingRequests());
+    Assert.assertEquals(200, controller.getExtraBytes());
+    mockFile("/a", 1, 100, 5);
+
+    now += 1000;
+    controller.flush(now);
+    verify(client).setReplication("/b", (short) 4);
+    Assert.assertEquals(0, controller.getNumPendingRequests());
+    Assert.assertEquals(300, controller.getExtraBytes());
+    mockFile("/b", 2, 100, 4);
+
+    // Out of budget
+    now += 1000;
+    controller.setReplication("/c", (short) 4);
+    controller.flush(now);
+    verify(client, never()).setReplication("/c", (short) 4);
+    Assert.assertFalse(controller.isBoosted("/c"));
+    Assert.assertEquals(2, controller.getNumBoostedFiles());
+
+    // File '/a' cools down while '/b' is still read
+    now += 10 * HALF_LIFE;
+    tracker.addAccess(2, 100, now);
+    controller.flush(now);
+    verify(client).setReplication("/a", (short) 3);
+    Assert.assertFalse(controller.isBoosted("/a"));
+    Assert.assertTrue(controller.isBoosted("/b"));
+    Assert.assertEquals(100, controller.getExtraBytes());
+
+    // Explicitly set back to original replication
+    controller.setReplication("/b", (short) 3);
+    controller.flush(now);
+    verify(client).setReplication("/b", (short) 3);
+    Assert.assertEquals(0, controller.getNumBoostedFiles());
+    Assert.assertEquals(0, controller.getExtraBytes());
+  }
+
+  @Test
+  public void testNoBoostUnderOriginal() throws Exception {
+    mockFile("/a", 1, 100, 3);
+    controller.setReplication("/a", (short) 3);
+    controller.flush(1000);
+    verify(client, never()).setReplication(anyString(), anyShort());
+    Assert.assertEquals(0, controller.getNumBoostedFiles());
+  }
+
+  @Test
+  public void testDeletedFileReturnsBudget() throws Exception {
+    long now = 1000;
+    mockFile("/a", 1, 100, 3);
+    tracker.addAccess(1, 100, now);
+    controller.setReplication("/a", (short) 5);
+    controller.flush(now);
+    Assert.assertEquals(200, controller.getExtraBytes());
+
+    // Deleted while boosted, then requested again
+    when(client.getFileInfo("/a")).thenReturn(null);
+    controller.setReplication("/a", (short) 5);
+    controller.flush(now + 1000);
+    Assert.assertFalse(controller.isBoosted("/a"));
+    Assert.assertEquals(0, controller.getExtraBytes());
+
+    // The returned budget is available to other files
+    mockFile("/b", 2, 100, 3);
+    tracker.addAccess(2, 100, now + 2000);
+    controller.setReplication("/b", (short) 6);
+    controller.flush(now + 2000);
+    verify(client).setReplication("/b", (short) 6);
+    Assert.assertEquals(300, controller.getExtraBytes());
+
+    // Replaced by another file of the same path
+    mockFile("/b", 3, 100, 3);
+    controller.setReplication("/b", (short) 4);
+    controller.flush(now + 3000);
+    verify(client).setReplication("/b", (short) 4);
+    Assert.assertEquals(100, controller.getExtraBytes());
+  }
+
+  @Test
+  public void testFailedRequestsStayQueued() throws Exception {
+    long now = 1000;
+    mockFile("/a", 1, 100, 3);
+    mockFile("/c", 3, 100, 3);
+    when(client.getFileInfo("/b"))
+        .thenThrow(new IOException("NameNode busy"))
+        .thenReturn(status(2, 100, 3));
+    when(client.getFileInfo("/e")).thenThrow(new IOException("Denied"));
+    for (long fid = 1; fid <= 3; fid++) {
+      tracker.addAccess(fid, 100, now);
+    }
+
+    controller.setReplication("/a", (short) 4);
+    controller.setReplication("/b", (short) 4);
+    controller.setReplication("/c", (short) 4);
+    try {
+      controller.flush(now);
+      Assert.fail("Flush should fail");
+    } catch (IOException e) {
+      // Expected
+    }
+    Assert.assertEquals(1, controller.getNumBoostedFiles());
+    Assert.assertEquals(2, controller.getNumPendingRequests());
+    controller.flush(now + 1000);
+    verify(client).setReplication("/b", (short) 4);
+    verify(client).setReplication("/c", (short) 4);
+    Assert.assertEquals(3, controller.getNumBoostedFiles());
+    Assert.assertEquals(0, controller.getNumPendingRequests());
+
+    // Given up after a few attempts
+    controller.setReplication("/e", (short) 4);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(1, controller.getNumPendingRequests());
+      try {
+        controller.flush(now + 1000);
+        Assert.fail("Flush should fail");
+      } catch (IOException e) {
+        // Expected
+      }
+    }
+    Assert.assertEquals(0, controller.getNumPendingRequests());
+  }
+
+  private Thread waitForRequest(final String path, final short replication,
+      final List<Exception> failures) {
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        try {
+          controller.setReplicationAndWait(path, replication);
+        } catch (Exception e) {
+          failures.add(e);
+        }
+      }
+    };
+    t.start();
+    return t;
+  }
+
+  @Test
+  public void testRequestOutcome() throws Exception {
+    long now = 1000;
+    mockFile("/a", 1, 100, 3);
+    mockFile("/b", 2, 100, 3);
+    tracker.addAccess(1, 100, now);
+    tracker.addAccess(2, 100, now);
+    List<Exception> failures = new CopyOnWriteArrayList<>();
+
+    Thread t = waitForRequest("/a", (short) 4, failures);
+    while (controller.getNumPendingRequests() == 0) {
+      Thread.sleep(10);
+    }
+    // Not reported before it is applied
+    Assert.assertTrue(t.isAlive());
+    controller.flush(now);
+    t.join();
+    Assert.assertTrue(failures.isEmpty());
+    Assert.assertTrue(controller.isBoosted("/a"));
+
+    // Over the budget is rejected, missing file fails
+    t = waitForRequest("/b", (short) 7, failures);
+    Thread t2 = waitForRequest("/x", (short) 4, failures);
+    while (controller.getNumPendingRequests() < 2) {
+      Thread.sleep(10);
+    }
+    controller.flush(now + 1000);
+    t.join();
+    t2.join();
+    Assert.assertEquals(2, failures.size());
+    Assert.assertFalse(controller.isBoosted("/b"));
+    verify(client, never()).setReplication("/b", (short) 7);
+  }
+}
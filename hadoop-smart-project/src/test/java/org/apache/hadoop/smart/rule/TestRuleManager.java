@@ -17,6 +17,12 @@
  */
 package org.apache.hadoop.smart.rule;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.protocol.ListingPage;
+import org.apache.hadoop.smart.sql.CommandInfo;
 import org.apache.hadoop.smart.sql.DBAdapter;
 import org.apache.hadoop.smart.sql.FileStatusInternal;
 import org.apache.hadoop.smart.sql.TestDBUtil;
@@ -220,6 +226,52 @@ public void testSubmitNewMultiRules() throws Exception {
     for (RuleInfo info : allRules) {
       System.out.println(info);
     }
+
+    ListingPage<RuleInfo> page =
+        ruleManager.listRulesInfo(ListingPage.FIRST_PAGE, nRules);
+    Assert.assertTrue(page.hasMore());
+    Assert.assertTrue(page.getEntries().size() == nRules);
+    page = ruleManager.listRulesInfo(page.getNextPageToken(), nRules);
+    Assert.assertFalse(page.hasMore());
+    Assert.assertTrue(page.getEntries().get(0).getId() == ids2[0]);
+  }
+
+  @Test
+  public void testEstimateRule() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(SmartConfigureKeys.DFS_SSM_RULE_ESTIMATE_SAMPLE_SIZE_KEY, 100);
+    ruleManager = new RuleManager(null, conf, dbAdapter);
+    long now = System.currentTimeMillis();
+    int nFiles = 1000;
+    FileStatusInternal[] files = new FileStatusInternal[nFiles];
+    for (int i = 0; i < nFiles; i++) {
+      files[i] = new FileStatusInternal(i < 250 ? 1000 : 100, false, 3,
+          1024, now, now, null, null, null, null,
+          ("file" + i).getBytes(), "/tmp", 10000 + i, 0, null, (byte) 3, null);
+    }
+    dbAdapter.insertFiles(files);
+    // Matched files already cached or being cached get no new commands,
+    // those with other commands still do
+    CommandInfo[] commands = new CommandInfo[100];
+    for (int i = 0; i < commands.length; i++) {
+      commands[i] = new CommandInfo(0, 1,
+          i < 50 ? ActionType.CacheFile : ActionType.UncacheFile,
+          i % 2 == 0 ? CommandState.PENDING : CommandState.DONE,
+          "{\"_FILE_PATH_\":\"/tmp/file" + i + "\"}", now, now);
+    }
+    dbAdapter.insertCommandsTable(commands);
+
+    String rule = "file: every 10s \n | length > 300 | cachefile";
+    RuleEstimate estimate = ruleManager.estimateRule(rule);
+    // One in ten files by fid is sampled, the counts are scaled up by 10
+    Assert.assertEquals(nFiles, estimate.getTotalFiles());
+    Assert.assertEquals(100, estimate.getSampledFiles());
+    Assert.assertEquals(250, estimate.getMatchedFiles());
+    Assert.assertEquals(250 * 1000, estimate.getMatchedBytes());
+    Assert.assertEquals(360, estimate.getChecksPerHour(), 0.01);
+    Assert.assertEquals(200 * 360, estimate.getCommandsPerHour(), 0.01);
+    // Nothing submitted
+    Assert.assertTrue(ruleManager.listRulesInfo().isEmpty());
   }
 
   @Test
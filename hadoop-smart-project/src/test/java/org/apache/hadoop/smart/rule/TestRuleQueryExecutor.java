@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.rule;
+
+import org.apache.hadoop.smart.rule.parser.TranslateResult;
+import org.apache.hadoop.smart.sql.TableGenerations;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TestRuleQueryExecutor {
+
+  private TranslateResult translate(List<String> sqls, List<String> temps) {
+    return new TranslateResult(sqls, temps, null, sqls.size() - 1,
+        null, null, null);
+  }
+
+  @Test
+  public void testReadTables() {
+    List<String> sqls = Arrays.asList(
+        "DROP TABLE IF EXISTS 'VIR_ACC_CNT_TAB_1_accessCount';",
+        "CREATE TABLE 'VIR_ACC_CNT_TAB_1_accessCount' AS "
+            + "$@genVirtualAccessCountTable(VIR_ACC_CNT_TAB_1_accessCount)",
+        "SELECT path FROM files WHERE fid IN (SELECT fid FROM "
+            + "'VIR_ACC_CNT_TAB_1_accessCount' WHERE count > 10) AND fid IN "
+            + "(SELECT fid FROM cached_files);");
+    Set<String> tables = RuleQueryExecutor.getReadTables(translate(sqls,
+        new ArrayList<>(Arrays.asList("VIR_ACC_CNT_TAB_1_accessCount"))));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(
+        TableGenerations.FILES, TableGenerations.CACHED_FILES,
+        TableGenerations.ACCESS_COUNT_TABLES)), tables);
+  }
+
+  @Test
+  public void testUntrackedTable() {
+    List<String> sqls = Arrays.asList(
+        "SELECT path FROM files JOIN commands ON files.fid = commands.rid;");
+    Assert.assertNull(RuleQueryExecutor.getReadTables(
+        translate(sqls, new ArrayList<String>())));
+  }
+
+  @Test
+  public void testGenerations() {
+    TableGenerations generations = new TableGenerations();
+    Assert.assertEquals(0, generations.get(TableGenerations.FILES));
+    generations.bump(TableGenerations.FILES);
+    Assert.assertEquals(1, generations.get(TableGenerations.FILES));
+    Assert.assertEquals(0, generations.get(TableGenerations.XATTR));
+    try {
+      generations.bump("commands");
+      Assert.fail("Untracked table should be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSampleQuery() throws Exception {
+    Assert.assertEquals("SELECT COUNT(*), SUM(length) FROM files WHERE "
+        + "fid % 10 = 3 AND ((length > 300));",
+        RuleQueryExecutor.toSampleQuery(
+            "SELECT path FROM files WHERE (length > 300);",
+            "COUNT(*), SUM(length)", 10, 3));
+    Assert.assertEquals("SELECT path FROM files WHERE fid % 1 = 0;",
+        RuleQueryExecutor.toSampleQuery("SELECT path FROM files", "path",
+            1, 0));
+  }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.smart.sql;
 
+import org.apache.hadoop.hdfs.protocol.FileReadVolume;
 import org.apache.hadoop.smart.sql.tables.AccessCountTable;
 import org.apache.hadoop.smart.utils.TimeGranularity;
 import org.dbunit.database.IDatabaseConnection;
@@ -27,6 +28,7 @@
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.Arrays;
 import java.util.List;
@@ -59,6 +61,43 @@ public void testGetFileIds() throws Exception {
     Assert.assertTrue(pathToID.get("file3") == 103);
   }
 
+  @Test
+  public void testUpdateFileReadVolumes() throws Exception {
+    createTables(databaseTester.getConnection());
+    IDataSet dataSet = new XmlDataSet(getClass().getClassLoader()
+      .getResourceAsStream("files.xml"));
+    databaseTester.setDataSet(dataSet);
+    databaseTester.onSetup();
+    Statement statement =
+        databaseTester.getConnection().getConnection().createStatement();
+    statement.execute("CREATE TABLE `file_read_volume` (" +
+      "`fid` bigint(20) NOT NULL," +
+      "`num_reads` bigint(20) NOT NULL," +
+      "`bytes_read` bigint(20) NOT NULL," +
+      "`update_time` bigint(20) NOT NULL )");
+
+    DBAdapter dbAdapter = new DBAdapter(databaseTester.getConnection().getConnection());
+    dbAdapter.updateFileReadVolumes(Arrays.asList(
+        new FileReadVolume("file1", 2, 200),
+        new FileReadVolume("unknown", 1, 100)), 1000L);
+    dbAdapter.updateFileReadVolumes(Arrays.asList(
+        new FileReadVolume("file1", 1, 50),
+        new FileReadVolume("file2", 3, 300)), 2000L);
+
+    ResultSet rs = statement.executeQuery(
+        "SELECT * FROM file_read_volume ORDER BY fid");
+    Assert.assertTrue(rs.next());
+    Assert.assertEquals(101, rs.getLong("fid"));
+    Assert.assertEquals(3, rs.getLong("num_reads"));
+    Assert.assertEquals(250, rs.getLong("bytes_read"));
+    Assert.assertEquals(2000, rs.getLong("update_time"));
+    Assert.assertTrue(rs.next());
+    Assert.assertEquals(102, rs.getLong("fid"));
+    Assert.assertEquals(300, rs.getLong("bytes_read"));
+    Assert.assertFalse(rs.next());
+    statement.close();
+  }
+
   @Test
   public void testCreateProportionView() throws Exception {
     Statement statement = databaseTester.getConnection().getConnection().createStatement();
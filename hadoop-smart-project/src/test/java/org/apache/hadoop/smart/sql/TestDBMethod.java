@@ -132,6 +132,8 @@ public void testInsertCachedFiles() throws Exception {
             234568l, 460));
         Assert.assertTrue(dbAdapter.getCachedFileStatus().get(0)
             .getLastAccessTime() == 234568l);
+        Assert.assertTrue(dbAdapter.getCachedFileStatus(80l)
+            .getFromTime() == 123455l);
         List<CachedFileStatus> list = new LinkedList<>();
         list.add(new CachedFileStatus(321l, 113334l,
             222222l, 222));
@@ -209,6 +211,16 @@ public void testInsetFiles() throws Exception {
         dbAdapter.insertFiles(files);
         HdfsFileStatus hdfsFileStatus = dbAdapter.getFile("/tmp/testFile");
         Assert.assertTrue(hdfsFileStatus.getBlockSize() == 128 * 1024L);
+
+        final List<Long> fids = new LinkedList<>();
+        dbAdapter.scanFiles("/tmp/", new FileRecord.Handler() {
+          @Override
+          public void handle(FileRecord record) {
+            Assert.assertTrue(record.getPath().startsWith("/tmp/"));
+            fids.add(record.getFid());
+          }
+        });
+        Assert.assertTrue(fids.contains(fileId));
       } finally {
         if (conn != null) {
           conn.close();
@@ -283,6 +295,53 @@ public void testUpdateCommand() throws Exception {
     }
 
 
+    @Test
+    public void testListCommands() throws Exception {
+      String dbFile = TestDBUtil.getUniqueDBFilePath();
+      Connection conn = null;
+      try {
+        conn = Util.createSqliteConnection(dbFile);
+        Util.initializeDataBase(conn);
+        DBAdapter dbAdapter = new DBAdapter(conn);
+        CommandInfo[] commands = new CommandInfo[10];
+        for (int i = 0; i < commands.length; i++) {
+          commands[i] = new CommandInfo(0, i % 2, ActionType.CacheFile,
+              i < 4 ? CommandState.DONE : CommandState.PENDING, "p" + i,
+              1000L + i, 1000L + i);
+        }
+        dbAdapter.insertCommandsTable(commands);
+
+        CommandFilter filter = new CommandFilter(1, null, null, -1, -1);
+        List<CommandInfo> page1 = dbAdapter.listCommands(filter, -1, 3);
+        Assert.assertEquals(3, page1.size());
+        List<CommandInfo> page2 = dbAdapter.listCommands(filter,
+            page1.get(2).getCid(), 3);
+        Assert.assertEquals(2, page2.size());
+        Assert.assertTrue(page2.get(0).getCid() > page1.get(2).getCid());
+        for (CommandInfo info : page2) {
+          Assert.assertEquals(1, info.getRid());
+        }
+
+        filter = new CommandFilter(-1, CommandState.PENDING, null, 1005L,
+            1008L);
+        Assert.assertEquals(3, dbAdapter.listCommands(filter, -1, 10).size());
+
+        Map<CommandState, Long> summary = dbAdapter.getCommandsSummary(null);
+        Assert.assertEquals(4L, (long) summary.get(CommandState.DONE));
+        Assert.assertEquals(6L, (long) summary.get(CommandState.PENDING));
+        summary = dbAdapter.getCommandsSummary(
+            new CommandFilter(0, null, null, -1, -1));
+        Assert.assertEquals(2L, (long) summary.get(CommandState.DONE));
+        Assert.assertEquals(3L, (long) summary.get(CommandState.PENDING));
+      } finally {
+        if (conn != null) {
+          conn.close();
+        }
+        File file = new File(dbFile);
+        file.deleteOnExit();
+      }
+    }
+
     @Test
     public void testInsertStoragePolicyTable() throws Exception {
       String dbFile = TestDBUtil.getUniqueDBFilePath();
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.actions.ActionType;
+import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.tables.AccessCountTable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class TestMetaStoreChange {
+  private DruidPool activePool;
+  private DruidPool standbyPool;
+  private DBAdapter active;
+  private DBAdapter standby;
+  private final List<List<MetaStoreChange>> log = new ArrayList<>();
+
+  @Before
+  public void init() throws Exception {
+    activePool = createPool();
+    standbyPool = createPool();
+    active = new DBAdapter(activePool);
+    standby = new DBAdapter(standbyPool);
+    active.startWriter(16, new MetaStoreWriter.ChangeLog() {
+      @Override
+      public void append(List<MetaStoreChange> changes) throws IOException {
+        // Logged as written to the journal
+        DataOutputBuffer out = new DataOutputBuffer();
+        MetaStoreChange.writeAll(out, changes);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        synchronized (log) {
+          log.add(MetaStoreChange.readAll(in));
+        }
+      }
+    });
+  }
+
+  @After
+  public void shutdown() {
+    active.stopWriter();
+    activePool.close();
+    standbyPool.close();
+  }
+
+  private DruidPool createPool() throws Exception {
+    InputStream in = getClass().getClassLoader()
+        .getResourceAsStream("druid-template.xml");
+    Properties p = new Properties();
+    p.loadFromXML(in);
+    p.setProperty("url",
+        Util.SQLITE_URL_PREFIX + TestDBUtil.getUniqueEmptySqliteDBFile());
+    return new DruidPool(p);
+  }
+
+  private void replay() throws SQLException {
+    synchronized (log) {
+      for (List<MetaStoreChange> changes : log) {
+        standby.applyChanges(changes);
+      }
+      log.clear();
+    }
+  }
+
+  @Test
+  public void testReplay() throws Exception {
+    RuleInfo info = new RuleInfo(0, System.currentTimeMillis(),
+        "file : accessCount(10m) > 1 | cachefile", RuleState.ACTIVE, 0, 0, 0);
+    Assert.assertTrue(active.insertNewRule(info));
+    Assert.assertTrue(active.updateRuleInfo(info.getId(), RuleState.DISABLED,
+        System.currentTimeMillis(), 3, 1));
+    active.insertCommandsTable(new CommandInfo[] {
+        new CommandInfo(0, info.getId(), ActionType.CacheFile,
+            CommandState.PENDING, "/file1", 1000L, 1000L),
+        new CommandInfo(0, info.getId(), ActionType.UncacheFile,
+            CommandState.PENDING, "/file2", 2000L, 2000L)});
+    active.updateInotifyTxid(0, 42L);
+    active.updateInotifyTxid(0, 43L);
+    String table = new AccessCountTable(0L, 5000L).getTableName();
+    active.execute(AccessCountTable.createTableSQL(table));
+    active.execute("INSERT INTO " + table + " VALUES (1, 3)");
+
+    // Failed changes are rolled back and not logged
+    try {
+      active.execute("INSERT INTO no_such_table VALUES (1);");
+      Assert.fail("Statement on a missing table should fail");
+    } catch (SQLException e) {
+      // expected
+    }
+    replay();
+
+    RuleInfo replayed = standby.getRuleInfo(info.getId());
+    Assert.assertEquals(info.getRuleText(), replayed.getRuleText());
+    Assert.assertEquals(RuleState.DISABLED, replayed.getState());
+    Assert.assertEquals(3, replayed.getNumChecked());
+    List<CommandInfo> commands =
+        standby.getCommandsTableItem(null, "= " + info.getId(), null);
+    Assert.assertEquals(2, commands.size());
+    Assert.assertEquals(Long.valueOf(43L), standby.getInotifyTxid(0));
+    Assert.assertNull(standby.getInotifyTxid(1));
+    Assert.assertEquals(1, standby.getTableNames(table).size());
+    Assert.assertArrayEquals(new long[] {1, 3}, standby.executeLongsQuery(
+        "SELECT * FROM " + table));
+
+    // Going on with the replayed metastore
+    Assert.assertEquals(info.getId() + 1, insertRule(standby));
+  }
+
+  @Test
+  public void testFormat() throws Exception {
+    String table = new AccessCountTable(0L, 5000L).getTableName();
+    standby.execute(AccessCountTable.createTableSQL(table));
+    insertRule(standby);
+    standby.formatDataBase();
+
+    Assert.assertTrue(standby.getTableNames(table).isEmpty());
+    Assert.assertTrue(standby.getRuleInfo().isEmpty());
+    Assert.assertEquals(1, insertRule(standby));
+  }
+
+  private long insertRule(DBAdapter adapter) throws SQLException {
+    RuleInfo info = new RuleInfo(0, System.currentTimeMillis(),
+        "file : length() > 1 | cachefile", RuleState.ACTIVE, 0, 0, 0);
+    Assert.assertTrue(adapter.insertNewRule(info));
+    return info.getId();
+  }
+}
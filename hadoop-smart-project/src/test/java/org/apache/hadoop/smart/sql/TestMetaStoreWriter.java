@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.util.ExitUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestMetaStoreWriter {
+  private DruidPool druidPool;
+  private DBAdapter adapter;
+
+  @Before
+  public void init() throws Exception {
+    InputStream in = getClass().getClassLoader()
+        .getResourceAsStream("druid-template.xml");
+    Properties p = new Properties();
+    p.loadFromXML(in);
+    String dbFile = TestDBUtil.getUniqueEmptySqliteDBFile();
+    p.setProperty("url", Util.SQLITE_URL_PREFIX + dbFile);
+
+    druidPool = new DruidPool(p);
+    adapter = new DBAdapter(druidPool);
+    adapter.startWriter(16);
+  }
+
+  @After
+  public void shutdown() {
+    adapter.stopWriter();
+    druidPool.close();
+  }
+
+  @Test
+  public void testConcurrentWrites() throws Exception {
+    final int numRules = 100;
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Long>> futures = new ArrayList<>();
+    for (int i = 0; i < numRules; i++) {
+      final String rule = "file : accessCount(10m) > " + i + " | cachefile";
+      futures.add(executor.submit(new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          RuleInfo info = new RuleInfo(0, System.currentTimeMillis(),
+              rule, RuleState.ACTIVE, 0, 0, 0);
+          Assert.assertTrue(adapter.insertNewRule(info));
+          return info.getId();
+        }
+      }));
+    }
+    Set<Long> ids = new HashSet<>();
+    for (Future<Long> f : futures) {
+      ids.add(f.get());
+    }
+    executor.shutdown();
+
+    // Each rule got its own id and is visible to readers once committed
+    Assert.assertEquals(numRules, ids.size());
+    Assert.assertEquals(numRules, adapter.getRuleInfo().size());
+
+    MetaStoreWriter writer = adapter.getWriter();
+    Assert.assertEquals(numRules, writer.getNumMutations());
+    Assert.assertTrue(writer.getNumCommits() <= numRules);
+    Assert.assertEquals(0, writer.getQueueDepth());
+  }
+
+  @Test
+  public void testFailedMutation() throws Exception {
+    RuleInfo info = new RuleInfo(0, System.currentTimeMillis(),
+        "file : length() > 1 | cachefile", RuleState.ACTIVE, 0, 0, 0);
+    Assert.assertTrue(adapter.insertNewRule(info));
+    try {
+      adapter.execute("INSERT INTO no_such_table VALUES (1);");
+      Assert.fail("Statement on a missing table should fail");
+    } catch (SQLException e) {
+      // expected
+    }
+    Assert.assertEquals(1, adapter.getWriter().getNumFailures());
+
+    // The writer keeps working after a failure
+    long now = System.currentTimeMillis();
+    Assert.assertTrue(adapter.updateRuleInfo(info.getId(), null, now, 1, 0));
+    Assert.assertEquals(now, adapter.getRuleInfo(info.getId())
+        .getLastCheckTime());
+  }
+
+  @Test
+  public void testStopWhileExecuting() throws Exception {
+    final MetaStoreWriter writer = adapter.getWriter();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          int committed = 0;
+          while (true) {
+            try {
+              writer.execute(new MetaStoreWriter.Mutation<Void>() {
+                @Override
+                public Void apply() throws SQLException {
+                  return null;
+                }
+              });
+              committed++;
+            } catch (SQLException e) {
+              return committed;
+            }
+          }
+        }
+      }));
+    }
+    Thread.sleep(100);
+    adapter.stopWriter();
+    // No caller is left waiting for a mutation that is never applied
+    long committed = 0;
+    for (Future<Integer> f : futures) {
+      committed += f.get(10, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+    Assert.assertEquals(committed, writer.getNumMutations());
+  }
+
+  @Test
+  public void testScratchSession() throws Exception {
+    long mutations = adapter.getWriter().getNumMutations();
+    DBAdapter.ScratchSession session = adapter.openScratchSession();
+    try {
+      session.execute("DROP TABLE IF EXISTS 'scratch_1';");
+      session.execute("CREATE TABLE 'scratch_1' AS SELECT 1 AS fid;");
+      Assert.assertEquals(1, session.executeLongsQuery(
+          "SELECT COUNT(*) FROM 'scratch_1';")[0]);
+      // The table is private to the session
+      Assert.assertEquals(0, adapter.executeLongsQuery("SELECT COUNT(*) "
+          + "FROM sqlite_master WHERE name = 'scratch_1';")[0]);
+    } finally {
+      session.close();
+    }
+    Assert.assertEquals(mutations, adapter.getWriter().getNumMutations());
+
+    session = adapter.openScratchSession();
+    try {
+      session.executeLongsQuery("SELECT COUNT(*) FROM 'scratch_1';");
+      Assert.fail("Table of a closed session should be dropped");
+    } catch (SQLException e) {
+      // expected
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test
+  public void testCommitFailureAfterLogging() throws Exception {
+    final List<MetaStoreChange> logged = new ArrayList<>();
+    Connection raw = mock(Connection.class);
+    Statement statement = mock(Statement.class);
+    when(raw.getAutoCommit()).thenReturn(false);
+    when(raw.createStatement()).thenReturn(statement);
+    doThrow(new SQLException("Injected")).when(raw).commit();
+    Connection conn = ChangeRecorder.wrap(raw,
+        new MetaStoreWriter.ChangeLog() {
+          @Override
+          public void append(List<MetaStoreChange> changes) {
+            logged.addAll(changes);
+          }
+        });
+
+    // Nothing logged, the transaction can simply be rolled back
+    conn.createStatement().executeUpdate("DELETE FROM rules");
+    conn.rollback();
+    try {
+      conn.commit();
+      Assert.fail("Commit should fail");
+    } catch (SQLException e) {
+      // expected
+    }
+    Assert.assertTrue(logged.isEmpty());
+
+    // Logged changes must not be rolled back
+    ExitUtil.disableSystemExit();
+    try {
+      conn.createStatement().executeUpdate("DELETE FROM rules");
+      conn.commit();
+      Assert.fail("Commit should fail");
+    } catch (ExitUtil.ExitException e) {
+      // expected
+    } finally {
+      Assert.assertTrue(ExitUtil.terminateCalled());
+      ExitUtil.resetFirstExitException();
+    }
+    Assert.assertEquals(1, logged.size());
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestStatementCache {
+
+  private Connection mockConnection() throws Exception {
+    Connection conn = mock(Connection.class);
+    when(conn.prepareStatement(anyString())).thenAnswer(
+        new Answer<PreparedStatement>() {
+          @Override
+          public PreparedStatement answer(InvocationOnMock invocation) {
+            return mock(PreparedStatement.class);
+          }
+        });
+    return conn;
+  }
+
+  @Test
+  public void testPinnedConnection() throws Exception {
+    StatementCache cache = new StatementCache(2);
+    Connection conn = mockConnection();
+    cache.pin(conn);
+
+    PreparedStatement p1 = cache.prepare(conn, "SELECT 1");
+    cache.release(conn, p1);
+    Assert.assertSame(p1, cache.prepare(conn, "SELECT 1"));
+    verify(conn, times(1)).prepareStatement("SELECT 1");
+    verify(p1, never()).close();
+
+    // The least recently used statement is closed beyond the limit
+    PreparedStatement p2 = cache.prepare(conn, "SELECT 2");
+    cache.prepare(conn, "SELECT 1");
+    PreparedStatement p3 = cache.prepare(conn, "SELECT 3");
+    verify(p2).close();
+    verify(p1, never()).close();
+
+    cache.unpin(conn);
+    verify(p1).close();
+    verify(p3).close();
+  }
+
+  @Test
+  public void testUnpinnedConnection() throws Exception {
+    StatementCache cache = new StatementCache(2);
+    Connection conn = mockConnection();
+
+    PreparedStatement p1 = cache.prepare(conn, "SELECT 1");
+    cache.release(conn, p1);
+    verify(p1).close();
+    Assert.assertNotSame(p1, cache.prepare(conn, "SELECT 1"));
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.tables;
+
+import org.apache.hadoop.smart.sql.DBAdapter;
+import org.apache.hadoop.smart.sql.DruidPool;
+import org.apache.hadoop.smart.utils.Constants;
+import org.apache.hadoop.smart.utils.TimeGranularity;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestAccessHistoryTable {
+  private static final long SPAN = 30 * 5 * Constants.ONE_SECOND_IN_MILLIS;
+  // Set by the mysql profile to run the statements on a MySQL database
+  private static final String MYSQL_URL = "smart.test.mysql.url";
+
+  private AccessHistoryTable createTable(DBAdapter adapter) throws Exception {
+    when(adapter.getTableNames(anyString())).thenReturn(new ArrayList<String>());
+    AccessHistoryTable table = new AccessHistoryTable(adapter, getSpans());
+    table.init();
+    return table;
+  }
+
+  private Map<TimeGranularity, Long> getSpans() {
+    Map<TimeGranularity, Long> spans = new HashMap<>();
+    spans.put(TimeGranularity.SECOND, SPAN);
+    spans.put(TimeGranularity.MINUTE, 30 * Constants.ONE_MINUTE_IN_MILLIS);
+    return spans;
+  }
+
+  @Test
+  public void testPartitions() throws Exception {
+    DBAdapter adapter = mock(DBAdapter.class);
+    AccessHistoryTable table = createTable(adapter);
+    Map<Long, Integer> counts = new HashMap<>();
+    counts.put(1L, 2);
+
+    // Two windows in the first partition, one in the second
+    table.insertWindow(new AccessCountTable(0L, 5000L), counts);
+    table.insertWindow(new AccessCountTable(5000L, 10000L), counts);
+    table.insertWindow(new AccessCountTable(SPAN, SPAN + 5000), counts);
+    // Ends a span after the first partition
+    table.insertWindow(
+        new AccessCountTable(2 * SPAN - 5000, 2 * SPAN), counts);
+
+    ArgumentCaptor<String> sqls = ArgumentCaptor.forClass(String.class);
+    verify(adapter, times(8)).execute(sqls.capture());
+    List<String> executed = sqls.getAllValues();
+    Assert.assertTrue(executed.get(0).startsWith("CREATE TABLE access_history"));
+    Assert.assertTrue(executed.get(0).contains(
+        "PARTITION p0_tail VALUES LESS THAN (1, 0), "
+        + "PARTITION p1_tail VALUES LESS THAN (2, 0), PARTITION p_max"));
+    Assert.assertEquals("ALTER TABLE access_history REORGANIZE PARTITION "
+        + "p0_tail INTO (PARTITION p0_" + SPAN + " VALUES LESS THAN (0, "
+        + SPAN + "), PARTITION p0_tail VALUES LESS THAN (1, 0))",
+        executed.get(1));
+    Assert.assertEquals("INSERT INTO access_history (granularity, "
+        + "window_start, window_end, fid, count) VALUES (0, 0, 5000, 1, 2)",
+        executed.get(2));
+    Assert.assertTrue(executed.get(3).startsWith("INSERT INTO"));
+    Assert.assertTrue(executed.get(4).contains(
+        "PARTITION p0_" + 2 * SPAN + " VALUES LESS THAN (0, " + 2 * SPAN));
+    Assert.assertTrue(executed.get(5).startsWith("INSERT INTO"));
+    Assert.assertTrue(executed.get(6).startsWith("INSERT INTO"));
+    Assert.assertEquals("ALTER TABLE access_history DROP PARTITION p0_"
+        + SPAN, executed.get(7));
+  }
+
+  @Test
+  public void testAggregateSQL() throws Exception {
+    AccessHistoryTable table = createTable(mock(DBAdapter.class));
+    AccessCountTable minute = new AccessCountTable(0L,
+        Constants.ONE_MINUTE_IN_MILLIS, TimeGranularity.MINUTE);
+    String sql = table.aggregateSQL(minute, Arrays.asList(
+        new AccessCountTable(0L, 5000L), new AccessCountTable(5000L, 10000L)));
+    Assert.assertEquals("INSERT INTO access_history (granularity, "
+        + "window_start, window_end, fid, count) SELECT 1, 0, 60000, fid, "
+        + "SUM(count) FROM access_history WHERE granularity = 0 AND "
+        + "window_start >= 0 AND window_start < 60000 GROUP BY fid", sql);
+  }
+
+  @Test
+  public void testSelectSQL() throws Exception {
+    AccessHistoryTable table = createTable(mock(DBAdapter.class));
+    AccessCountTable minute = new AccessCountTable(0L,
+        Constants.ONE_MINUTE_IN_MILLIS, TimeGranularity.MINUTE);
+    minute.setProportion(0.5);
+    String sql = table.selectSQL(Arrays.asList(minute,
+        new AccessCountTable(60000L, 65000L),
+        new AccessCountTable(65000L, 70000L)));
+    Assert.assertEquals("SELECT fid, SUM(CASE WHEN granularity = 1 AND "
+        + "window_start = 0 THEN FLOOR(count * 0.5) ELSE count END) AS count "
+        + "FROM access_history WHERE (granularity = 1 AND window_start >= 0 "
+        + "AND window_start < 60000) OR (granularity = 0 AND "
+        + "window_start >= 60000 AND window_start < 70000) GROUP BY fid", sql);
+
+    Assert.assertEquals("SELECT fid, SUM(count) AS count FROM access_history "
+        + "WHERE 1 = 0 GROUP BY fid",
+        table.selectSQL(new ArrayList<AccessCountTable>()));
+  }
+
+  @Test
+  public void testPartitionsOnMySQL() throws Exception {
+    String url = System.getProperty(MYSQL_URL);
+    Assume.assumeTrue(url != null && !url.isEmpty());
+    Properties p = new Properties();
+    p.setProperty("url", url);
+    p.setProperty("username", System.getProperty("smart.test.mysql.user"));
+    p.setProperty("password",
+        System.getProperty("smart.test.mysql.password", ""));
+    DruidPool pool = new DruidPool(p);
+    DBAdapter adapter = new DBAdapter(pool);
+    try {
+      adapter.execute("DROP TABLE IF EXISTS " + AccessHistoryTable.TABLE_NAME);
+      AccessHistoryTable table = new AccessHistoryTable(adapter, getSpans());
+      table.init();
+      Map<Long, Integer> counts = new HashMap<>();
+      counts.put(1L, 2);
+      counts.put(2L, 3);
+      table.insertWindow(new AccessCountTable(0L, 5000L), counts);
+      table.insertWindow(new AccessCountTable(5000L, 10000L), counts);
+      table.insertWindow(new AccessCountTable(SPAN, SPAN + 5000), counts);
+      table.insertWindow(
+          new AccessCountTable(2 * SPAN - 5000, 2 * SPAN), counts);
+      Assert.assertEquals(Arrays.asList("p0_" + 2 * SPAN, "p0_tail",
+          "p1_tail", "p_max"), getPartitions(adapter));
+      Assert.assertEquals(2, table.getWindows().size());
+
+      AccessCountTable minute = new AccessCountTable(2 * SPAN - 60000,
+          2 * SPAN, TimeGranularity.MINUTE);
+      table.aggregate(minute, Arrays.asList(
+          new AccessCountTable(2 * SPAN - 5000, 2 * SPAN)));
+      Assert.assertEquals(Arrays.asList("p0_" + 2 * SPAN, "p0_tail",
+          "p1_" + 30 * Constants.ONE_MINUTE_IN_MILLIS, "p1_tail", "p_max"),
+          getPartitions(adapter));
+      minute.setProportion(0.5);
+      List<long[]> rows = adapter.executeLongRowsQuery(
+          table.selectSQL(Arrays.asList(minute)) + " ORDER BY fid");
+      Assert.assertEquals(2, rows.size());
+      Assert.assertArrayEquals(new long[] {1, 1}, rows.get(0));
+      Assert.assertArrayEquals(new long[] {2, 1}, rows.get(1));
+
+      // Partitions are loaded back from the existing table
+      table = new AccessHistoryTable(adapter, getSpans());
+      table.init();
+      table.insertWindow(
+          new AccessCountTable(3 * SPAN, 3 * SPAN + 5000), counts);
+      Assert.assertEquals(Arrays.asList("p0_" + 4 * SPAN, "p0_tail",
+          "p1_" + 30 * Constants.ONE_MINUTE_IN_MILLIS, "p1_tail", "p_max"),
+          getPartitions(adapter));
+    } finally {
+      adapter.execute("DROP TABLE IF EXISTS " + AccessHistoryTable.TABLE_NAME);
+      pool.close();
+    }
+  }
+
+  private List<String> getPartitions(DBAdapter adapter) throws Exception {
+    return adapter.executeFilesPathQuery("SELECT PARTITION_NAME FROM "
+        + "information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() "
+        + "AND TABLE_NAME = '" + AccessHistoryTable.TABLE_NAME + "' "
+        + "ORDER BY PARTITION_ORDINAL_POSITION");
+  }
+}
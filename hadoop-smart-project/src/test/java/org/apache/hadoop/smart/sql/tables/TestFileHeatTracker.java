@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.sql.tables;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFileHeatTracker {
+  private static final long HOUR = 60 * 60 * 1000L;
+  private static final double DELTA = 1e-6;
+
+  @Test
+  public void testDecay() {
+    FileHeatTracker tracker = new FileHeatTracker(null, HOUR);
+    tracker.addAccess(16386L, 8, 0L);
+    Assert.assertEquals(8, tracker.getHeat(16386L, HOUR, 0L), DELTA);
+    Assert.assertEquals(4, tracker.getHeat(16386L, HOUR, HOUR), DELTA);
+    Assert.assertEquals(2, tracker.getHeat(16386L, HOUR, 2 * HOUR), DELTA);
+
+    tracker.addAccess(16386L, 2, HOUR);
+    Assert.assertEquals(6, tracker.getHeat(16386L, HOUR, HOUR), DELTA);
+
+    // Late accesses
+    tracker.addAccess(16386L, 2, 0L);
+    Assert.assertEquals(7, tracker.getHeat(16386L, HOUR, HOUR), DELTA);
+    Assert.assertEquals(0, tracker.getHeat(16387L, HOUR, HOUR), DELTA);
+    Assert.assertEquals(HOUR, tracker.getLastAccessTime(16386L));
+    Assert.assertEquals(0, tracker.getLastAccessTime(16387L));
+  }
+
+  @Test
+  public void testHalfLives() {
+    FileHeatTracker tracker = new FileHeatTracker(null, HOUR);
+    tracker.addAccess(16386L, 8, 0L);
+    Assert.assertTrue(tracker.registerHalfLife(2 * HOUR));
+    Assert.assertFalse(tracker.registerHalfLife(2 * HOUR));
+    Assert.assertFalse(tracker.registerHalfLife(null));
+    Assert.assertEquals(HOUR, tracker.resolveHalfLife(null));
+    // Not persisted yet
+    Assert.assertEquals(HOUR, tracker.resolveHalfLife(2 * HOUR));
+    FileHeatTracker.Snapshot snapshot = tracker.takeSnapshot(0L);
+    Assert.assertTrue(snapshot.isFull());
+    Assert.assertEquals(2, snapshot.getHalfLives().length);
+    tracker.markPersisted(snapshot);
+    Assert.assertEquals(2 * HOUR, tracker.resolveHalfLife(2 * HOUR));
+    Assert.assertEquals(HOUR, tracker.resolveHalfLife(3 * HOUR));
+
+    tracker.addAccess(16386L, 8, 2 * HOUR);
+    Assert.assertEquals(10, tracker.getHeat(16386L, HOUR, 2 * HOUR), DELTA);
+    Assert.assertEquals(12, tracker.getHeat(16386L, 2 * HOUR, 2 * HOUR),
+        DELTA);
+  }
+
+  @Test
+  public void testSnapshot() {
+    FileHeatTracker tracker = new FileHeatTracker(null, HOUR);
+    int numFiles = 5000;
+    for (long fid = 16386L; fid < 16386L + numFiles; fid++) {
+      tracker.addAccess(fid, 1, 0L);
+    }
+    tracker.addAccess(16386L, 1024, 0L);
+    Assert.assertEquals(numFiles, tracker.size());
+
+    FileHeatTracker.Snapshot snapshot = tracker.takeSnapshot(HOUR);
+    Assert.assertTrue(snapshot.isFull());
+    Assert.assertEquals(numFiles, snapshot.getSize());
+    Assert.assertEquals(HOUR, snapshot.getBaseTime());
+    tracker.markPersisted(snapshot);
+    Assert.assertEquals(1.0, tracker.getDecayFactor(HOUR, HOUR), DELTA);
+    Assert.assertEquals(0.5, tracker.getDecayFactor(HOUR, 2 * HOUR), DELTA);
+
+    // Counters decayed to nearly zero are pruned, nothing else changed
+    snapshot = tracker.takeSnapshot(10 * HOUR);
+    Assert.assertFalse(snapshot.isFull());
+    Assert.assertEquals(0, snapshot.getSize());
+    Assert.assertEquals(numFiles - 1, snapshot.getNumRemoved());
+    Assert.assertEquals(1, tracker.size());
+    Assert.assertEquals(1.0, tracker.getHeat(16386L, HOUR, 10 * HOUR), 0.01);
+    Assert.assertEquals(0, tracker.getLastAccessTime(16386L));
+
+    // Only the accessed file is written, scaled to the base time
+    tracker.addAccess(16386L, 1, 10 * HOUR);
+    snapshot = tracker.takeSnapshot(10 * HOUR);
+    tracker.markPersisted(snapshot);
+    Assert.assertEquals(1, snapshot.getSize());
+    Assert.assertEquals(16386L, snapshot.getFid(0));
+    Assert.assertEquals(HOUR, snapshot.getBaseTime());
+    Assert.assertEquals(2.0, snapshot.getHeat(0, 0)
+        * tracker.getDecayFactor(HOUR, 10 * HOUR), 0.01);
+    Assert.assertEquals(0, tracker.takeSnapshot(10 * HOUR).getSize());
+
+    // The base time moves forward once values scaled to it grow too large
+    snapshot = tracker.takeSnapshot(40 * HOUR);
+    Assert.assertTrue(snapshot.isFull());
+    Assert.assertEquals(40 * HOUR, snapshot.getBaseTime());
+
+    FileHeatTracker restored = new FileHeatTracker(null, HOUR);
+    restored.restore(16386L, HOUR, 1.0, 10 * HOUR);
+    Assert.assertEquals(0.5, restored.getHeat(16386L, HOUR, 11 * HOUR), DELTA);
+    Assert.assertEquals(0.5, restored.getDecayFactor(HOUR, 11 * HOUR), DELTA);
+  }
+}
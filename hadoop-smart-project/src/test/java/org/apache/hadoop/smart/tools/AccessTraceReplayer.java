@@ -0,0 +1,473 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.tools;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSInputStream;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.namenode.metrics.FileAccessMetrics;
+import org.apache.hadoop.smart.CommandState;
+import org.apache.hadoop.smart.SmartConfiguration;
+import org.apache.hadoop.smart.SmartConfigureKeys;
+import org.apache.hadoop.smart.SmartServer;
+import org.apache.hadoop.smart.fetcher.AuditLogAccessEventSource;
+import org.apache.hadoop.smart.protocol.SmartServiceState;
+import org.apache.hadoop.smart.rule.RuleInfo;
+import org.apache.hadoop.smart.rule.RuleManager;
+import org.apache.hadoop.smart.rule.RuleState;
+import org.apache.hadoop.smart.sql.TestDBUtil;
+import org.apache.hadoop.smart.sql.Util;
+import org.apache.hadoop.smart.sql.tables.AccessCountTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_HTTP_ADDRESS_KEY;
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+
+/**
+ * Replay a recorded file access trace against a MiniDFSCluster with SSM,
+ * so that rules and cache policies can be benchmarked offline.
+ *
+ * The trace is NameNode audit log, output of
+ * {@link FileAccessMetrics.FileAccessRollingFileSink}, i.e. lines of
+ * "path:user:time=count", or lines of "time[TAB]path[TAB]user", time in
+ * milliseconds and user optional. Files of the namespace snapshot, lines of
+ * "path[TAB]length", and files only seen in the trace are created before
+ * replay. Each access is replayed as a read of the whole file, the gaps
+ * between accesses shortened by the speedup factor.
+ */
+public class AccessTraceReplayer {
+  private static final String USAGE = "Usage: AccessTraceReplayer"
+      + " -trace <file> [-namespace <file>] [-rules <file>]"
+      + " [-speedup <factor>] [-fileLength <bytes>] [-settle <ms>]\n"
+      + "  -rules: one rule per line, lines starting with '#' are skipped\n"
+      + "  -settle: max time to wait for SSM after the last access";
+
+  private final Configuration conf;
+  private final double speedup;
+  private final long defaultFileLength;
+  private final long settleTime;
+
+  private MiniDFSCluster cluster;
+  private SmartServer ssm;
+  private DFSClient dfsClient;
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(AccessTraceReplayer.class);
+
+  public AccessTraceReplayer(Configuration conf, double speedup,
+      long defaultFileLength, long settleTime) {
+    this.conf = conf;
+    this.speedup = speedup;
+    this.defaultFileLength = defaultFileLength;
+    this.settleTime = settleTime;
+  }
+
+  /**
+   * Outcome of a replay.
+   */
+  public static class Report {
+    long numAccesses;
+    long replayTime;
+    // How far the reads fell behind the compressed schedule at most
+    long maxScheduleLag;
+    long numCacheHits;
+    // Time from the last access until all accesses are counted, -1 if not
+    long ingestLag = -1;
+    long numIngested;
+    long numRuleChecks;
+    long avgRuleCheckTime;
+    long maxRuleCheckTime;
+    long numCommandsGenerated;
+    Map<CommandState, Long> commandsSummary;
+    long bytesRead;
+    long datanodeBytesWritten;
+
+    public double getCacheHitRatio() {
+      return numAccesses == 0 ? 0 : (double) numCacheHits / numAccesses;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Accesses replayed: %d in %d ms, "
+              + "max schedule lag %d ms, %d bytes read%n"
+              + "Ingest lag: %d ms, %d of %d accesses counted%n"
+              + "Rule checks: %d, avg %d ms, max %d ms%n"
+              + "Commands generated: %d %s%n"
+              + "Cache hit ratio: %.4f%n"
+              + "DataNode bytes written: %d",
+          numAccesses, replayTime, maxScheduleLag, bytesRead,
+          ingestLag, numIngested, numAccesses,
+          numRuleChecks, avgRuleCheckTime, maxRuleCheckTime,
+          numCommandsGenerated, commandsSummary,
+          getCacheHitRatio(), datanodeBytesWritten);
+    }
+  }
+
+  /**
+   * Read access events from trace, sorted by time.
+   */
+  public static List<FileAccessEvent> readTrace(String path)
+      throws IOException {
+    List<FileAccessEvent> events = new ArrayList<>();
+    AuditLogAccessEventSource auditLog =
+        new AuditLogAccessEventSource(path, null, null, null, 0);
+    BufferedReader reader = Files.newBufferedReader(Paths.get(path),
+        StandardCharsets.UTF_8);
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        if (line.contains("\tcmd=")) {
+          byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+          auditLog.parseLine(bytes, 0, bytes.length, events);
+          continue;
+        }
+        if (!line.contains("\t") && line.contains("=")) {
+          if (!parseSinkLine(line, events)) {
+            LOG.warn("Skip malformed trace line: " + line);
+          }
+          continue;
+        }
+        String[] fields = line.split("\t");
+        try {
+          events.add(fields.length > 2
+              ? new FileAccessEvent(fields[1], fields[2],
+                  Long.parseLong(fields[0]))
+              : new FileAccessEvent(fields[1], Long.parseLong(fields[0])));
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+          LOG.warn("Skip malformed trace line: " + line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    Collections.sort(events, new Comparator<FileAccessEvent>() {
+      @Override
+      public int compare(FileAccessEvent a, FileAccessEvent b) {
+        return Long.compare(a.getTimestamp(), b.getTimestamp());
+      }
+    });
+    return events;
+  }
+
+  /**
+   * Parse a record of the file access sink, "path:user:time=count". Path
+   * may contain ':', so fields are split from the right.
+   * @return false if the line is malformed
+   */
+  static boolean parseSinkLine(String line, List<FileAccessEvent> events) {
+    int eq = line.lastIndexOf('=');
+    int timeSep = line.lastIndexOf(':', eq);
+    int userSep = timeSep <= 0 ? -1 : line.lastIndexOf(':', timeSep - 1);
+    if (userSep <= 0) {
+      return false;
+    }
+    try {
+      long time = Long.parseLong(line.substring(timeSep + 1, eq).trim());
+      // Gauge value, the number of accesses recorded
+      long count = (long) Double.parseDouble(line.substring(eq + 1).trim());
+      String path = line.substring(0, userSep);
+      String user = line.substring(userSep + 1, timeSep);
+      for (long i = 0; i < count; i++) {
+        events.add(new FileAccessEvent(path, user, time));
+      }
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Read namespace snapshot, length is -1 if not given.
+   */
+  public static Map<String, Long> readNamespace(String path)
+      throws IOException {
+    Map<String, Long> files = new LinkedHashMap<>();
+    for (String line : Files.readAllLines(Paths.get(path),
+        StandardCharsets.UTF_8)) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      String[] fields = line.split("\t");
+      files.put(fields[0],
+          fields.length > 1 ? Long.parseLong(fields[1].trim()) : -1L);
+    }
+    return files;
+  }
+
+  public static List<String> readRules(String path) throws IOException {
+    List<String> rules = new ArrayList<>();
+    for (String line : Files.readAllLines(Paths.get(path),
+        StandardCharsets.UTF_8)) {
+      line = line.trim();
+      if (!line.isEmpty() && !line.startsWith("#")) {
+        rules.add(line);
+      }
+    }
+    return rules;
+  }
+
+  public void start() throws Exception {
+    cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(3)
+        .storagesPerDatanode(3)
+        .storageTypes(new StorageType[] {StorageType.DISK, StorageType.SSD,
+            StorageType.ARCHIVE})
+        .build();
+    List<URI> uriList = new ArrayList<>(DFSUtil.getInternalNsRpcUris(conf));
+    conf.set(DFS_NAMENODE_HTTP_ADDRESS_KEY, uriList.get(0).toString());
+    conf.set(SmartConfigureKeys.DFS_SSM_NAMENODE_RPCSERVER_KEY,
+        uriList.get(0).toString());
+    conf.set(SmartConfigureKeys.DFS_SSM_DEFAULT_DB_URL_KEY,
+        Util.SQLITE_URL_PREFIX + TestDBUtil.getUniqueEmptySqliteDBFile());
+    dfsClient = cluster.getFileSystem().getClient();
+    ssm = SmartServer.createSSM(null, conf);
+    while (ssm.getSSMServiceState() == SmartServiceState.SAFEMODE) {
+      Thread.sleep(1000);
+    }
+  }
+
+  public void shutdown() {
+    if (ssm != null) {
+      ssm.shutdown();
+      ssm = null;
+    }
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  /**
+   * Create the files of namespace and those accessed in trace.
+   */
+  public void createFiles(Map<String, Long> namespace,
+      List<FileAccessEvent> events) throws IOException {
+    Map<String, Long> files = new LinkedHashMap<>(namespace);
+    for (FileAccessEvent event : events) {
+      if (!files.containsKey(event.getPath())) {
+        files.put(event.getPath(), -1L);
+      }
+    }
+    DistributedFileSystem dfs = cluster.getFileSystem();
+    for (Map.Entry<String, Long> file : files.entrySet()) {
+      long length = file.getValue() < 0
+          ? defaultFileLength : file.getValue();
+      DFSTestUtil.createFile(dfs, new Path(file.getKey()), length,
+          (short) 3, file.getKey().hashCode());
+    }
+    LOG.info(files.size() + " files created");
+  }
+
+  public Report replay(List<FileAccessEvent> events, List<String> rules)
+      throws Exception {
+    Report report = new Report();
+    RuleManager ruleManager = ssm.getRuleManager();
+    List<Long> ruleIds = new ArrayList<>();
+    for (String rule : rules) {
+      ruleIds.add(ruleManager.submitRule(rule, RuleState.ACTIVE));
+    }
+    long checksBefore = ruleManager.getNumChecks();
+    long checkTimeBefore = ruleManager.getTotalCheckTime();
+    long bytesWrittenBefore = getDatanodeBytesWritten();
+
+    byte[] buf = new byte[64 * 1024];
+    long start = System.currentTimeMillis();
+    long traceStart = events.isEmpty() ? 0 : events.get(0).getTimestamp();
+    for (FileAccessEvent event : events) {
+      long due = start
+          + (long) ((event.getTimestamp() - traceStart) / speedup);
+      long now = System.currentTimeMillis();
+      if (due > now) {
+        Thread.sleep(due - now);
+      } else {
+        report.maxScheduleLag = Math.max(report.maxScheduleLag, now - due);
+      }
+      if (isCached(event.getPath())) {
+        report.numCacheHits++;
+      }
+      DFSInputStream in = dfsClient.open(event.getPath());
+      try {
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) > 0) {
+          report.bytesRead += n;
+        }
+      } finally {
+        in.close();
+      }
+      report.numAccesses++;
+    }
+    long replayEnd = System.currentTimeMillis();
+    report.replayTime = replayEnd - start;
+
+    while (System.currentTimeMillis() - replayEnd < settleTime) {
+      if (report.ingestLag < 0) {
+        report.numIngested = countIngested(System.currentTimeMillis() - start);
+        if (report.numIngested >= report.numAccesses) {
+          report.ingestLag = System.currentTimeMillis() - replayEnd;
+        }
+      }
+      Thread.sleep(1000);
+    }
+
+    report.numRuleChecks = ruleManager.getNumChecks() - checksBefore;
+    if (report.numRuleChecks > 0) {
+      report.avgRuleCheckTime = (ruleManager.getTotalCheckTime()
+          - checkTimeBefore) / report.numRuleChecks;
+    }
+    report.maxRuleCheckTime = ruleManager.getMaxCheckTime();
+    for (long id : ruleIds) {
+      RuleInfo info = ruleManager.getRuleInfo(id);
+      report.numCommandsGenerated += info.getNumCmdsGen();
+    }
+    report.commandsSummary =
+        ssm.getCommandExecutor().getCommandsSummary(null);
+    report.datanodeBytesWritten =
+        getDatanodeBytesWritten() - bytesWrittenBefore;
+    return report;
+  }
+
+  /**
+   * Whether all blocks of the file are cached on some DataNode.
+   */
+  private boolean isCached(String path) throws IOException {
+    LocatedBlocks blocks = dfsClient.getLocatedBlocks(path, 0);
+    if (blocks == null || blocks.getLocatedBlocks().isEmpty()) {
+      return false;
+    }
+    for (LocatedBlock block : blocks.getLocatedBlocks()) {
+      if (block.getCachedLocations().length == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sum of access counts in the tables covering the last given period.
+   */
+  private long countIngested(long period) throws Exception {
+    long count = 0;
+    Connection conn = ssm.getDBConnection();
+    try {
+      Statement s = conn.createStatement();
+      for (AccessCountTable table :
+          ssm.getStatesManager().getTablesInLast(period)) {
+        ResultSet rs = s.executeQuery("SELECT SUM(count) FROM '"
+            + table.getTableName() + "'");
+        if (rs.next()) {
+          count += rs.getLong(1);
+        }
+        rs.close();
+      }
+      s.close();
+    } finally {
+      conn.close();
+    }
+    return count;
+  }
+
+  private long getDatanodeBytesWritten() {
+    long bytes = 0;
+    for (DataNode dn : cluster.getDataNodes()) {
+      bytes += getLongCounter("BytesWritten",
+          getMetrics(dn.getMetrics().name()));
+    }
+    return bytes;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String trace = null;
+    String namespace = null;
+    String rules = null;
+    double speedup = 1;
+    long fileLength = 1024;
+    long settle = 30 * 1000;
+    for (int i = 0; i < args.length; i++) {
+      if (i + 1 >= args.length) {
+        System.err.println(USAGE);
+        System.exit(1);
+      }
+      if ("-trace".equals(args[i])) {
+        trace = args[++i];
+      } else if ("-namespace".equals(args[i])) {
+        namespace = args[++i];
+      } else if ("-rules".equals(args[i])) {
+        rules = args[++i];
+      } else if ("-speedup".equals(args[i])) {
+        speedup = Double.parseDouble(args[++i]);
+      } else if ("-fileLength".equals(args[i])) {
+        fileLength = Long.parseLong(args[++i]);
+      } else if ("-settle".equals(args[i])) {
+        settle = Long.parseLong(args[++i]);
+      } else {
+        System.err.println(USAGE);
+        System.exit(1);
+      }
+    }
+    if (trace == null || speedup <= 0) {
+      System.err.println(USAGE);
+      System.exit(1);
+    }
+
+    List<FileAccessEvent> events = readTrace(trace);
+    AccessTraceReplayer replayer = new AccessTraceReplayer(
+        new SmartConfiguration(), speedup, fileLength, settle);
+    try {
+      replayer.start();
+      replayer.createFiles(namespace == null
+          ? new LinkedHashMap<String, Long>() : readNamespace(namespace),
+          events);
+      Report report = replayer.replay(events, rules == null
+          ? new ArrayList<String>() : readRules(rules));
+      System.out.println(report);
+    } finally {
+      replayer.shutdown();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.smart.tools;
+
+import org.apache.hadoop.hdfs.protocol.FileAccessEvent;
+import org.apache.hadoop.smart.SmartConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestAccessTraceReplayer {
+
+  private File write(String content) throws Exception {
+    File file = File.createTempFile("trace", ".log");
+    file.deleteOnExit();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  @Test
+  public void testReadTrace() throws Exception {
+    File trace = write("3000\t/b\n"
+        + "\n"
+        + "1000\t/a\thdfs\n"
+        + "bad line\n"
+        + "2017-03-01 12:00:00,123 INFO FSNamesystem.audit: allowed=true"
+        + "\tugi=hdfs (auth:SIMPLE)\tip=/127.0.0.1\tcmd=open\tsrc=/c"
+        + "\tdst=null\tperm=null\tproto=rpc\n"
+        + "2017-03-01 12:00:01,123 INFO FSNamesystem.audit: allowed=true"
+        + "\tugi=hdfs (auth:SIMPLE)\tip=/127.0.0.1\tcmd=delete\tsrc=/d"
+        + "\tdst=null\tperm=null\tproto=rpc\n");
+    List<FileAccessEvent> events =
+        AccessTraceReplayer.readTrace(trace.getPath());
+    Assert.assertEquals(3, events.size());
+    Assert.assertEquals("/a", events.get(0).getPath());
+    Assert.assertEquals("hdfs", events.get(0).getUser());
+    Assert.assertEquals("/b", events.get(1).getPath());
+    // Audit log timestamps are far later than the ones above
+    Assert.assertEquals("/c", events.get(2).getPath());
+  }
+
+  @Test
+  public void testReadSinkTrace() throws Exception {
+    File trace = write("/a/b:hdfs:2000=1\n"
+        + "/x:y/z:alice:1000=2\n"
+        + "/bad:hdfs:notime=1\n");
+    List<FileAccessEvent> events =
+        AccessTraceReplayer.readTrace(trace.getPath());
+    Assert.assertEquals(3, events.size());
+    Assert.assertEquals("/x:y/z", events.get(0).getPath());
+    Assert.assertEquals("alice", events.get(0).getUser());
+    Assert.assertEquals(1000L, events.get(1).getTimestamp());
+    Assert.assertEquals("/a/b", events.get(2).getPath());
+    Assert.assertEquals("hdfs", events.get(2).getUser());
+    Assert.assertEquals(2000L, events.get(2).getTimestamp());
+  }
+
+  @Test
+  public void testReplay() throws Exception {
+    File trace = write("/replay/a:hdfs:1000=1\n"
+        + "/replay/b:hdfs:1100=1\n"
+        + "/replay/a:hdfs:1200=1\n");
+    List<FileAccessEvent> events =
+        AccessTraceReplayer.readTrace(trace.getPath());
+    AccessTraceReplayer replayer = new AccessTraceReplayer(
+        new SmartConfiguration(), 10, 1024, 1000);
+    try {
+      replayer.start();
+      replayer.createFiles(new LinkedHashMap<String, Long>(), events);
+      AccessTraceReplayer.Report report =
+          replayer.replay(events, new ArrayList<String>());
+      Assert.assertEquals(3, report.numAccesses);
+      Assert.assertEquals(3 * 1024, report.bytesRead);
+      Assert.assertTrue(report.replayTime >= 0);
+      Assert.assertEquals(0, report.numCommandsGenerated);
+      Assert.assertNotNull(report.commandsSummary);
+      Assert.assertTrue(report.getCacheHitRatio() >= 0
+          && report.getCacheHitRatio() <= 1);
+      Assert.assertTrue(report.toString().startsWith("Accesses replayed: 3"));
+    } finally {
+      replayer.shutdown();
+    }
+  }
+
+  @Test
+  public void testReadNamespace() throws Exception {
+    File namespace = write("/a\t100\n/b\n");
+    Map<String, Long> files =
+        AccessTraceReplayer.readNamespace(namespace.getPath());
+    Assert.assertEquals(100L, (long) files.get("/a"));
+    Assert.assertEquals(-1L, (long) files.get("/b"));
+  }
+}